@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.api.filters;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * Runs each request in a (non transactional) storage unit of work, so that all of the storage
+ * calls made while handling the request share a single database connection instead of each
+ * checking out their own.  The connection is only opened once the request first needs it.  The
+ * filter is only mapped to the storage heavy endpoints, and those release the connection (see
+ * {@link IStorage#releaseConnections()}) before calling out to other systems.
+ * @author eric.wittmann@gmail.com
+ */
+public class StorageUnitOfWorkFilter implements Filter {
+
+    @Inject
+    private IStorage storage;
+
+    /**
+     * C'tor
+     */
+    public StorageUnitOfWorkFilter() {
+    }
+
+    /**
+     * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
+     */
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+    /**
+     * @see javax.servlet.Filter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, javax.servlet.FilterChain)
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        try {
+            storage.beginUnitOfWork(false);
+        } catch (StorageException e) {
+            throw new ServletException(e);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            try {
+                storage.endUnitOfWork(true);
+            } catch (StorageException e) {
+                throw new ServletException(e);
+            }
+        }
+    }
+
+    /**
+     * @see javax.servlet.Filter#destroy()
+     */
+    @Override
+    public void destroy() {
+    }
+}
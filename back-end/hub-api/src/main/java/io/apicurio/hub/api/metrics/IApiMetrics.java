@@ -19,12 +19,14 @@ package io.apicurio.hub.api.metrics;
 import java.io.IOException;
 
 import io.apicurio.hub.core.beans.LinkedAccountType;
+import io.apicurio.hub.core.js.IScriptEngineMetrics;
+import io.apicurio.hub.core.storage.IStorageMetrics;
 
 /**
  * Interface used to report metrics information for the Hub API.
  * @author eric.wittmann@gmail.com
  */
-public interface IApiMetrics {
+public interface IApiMetrics extends IScriptEngineMetrics, IStorageMetrics {
 
     /**
      * Returns the current state of the metrics.  This information is typically presented
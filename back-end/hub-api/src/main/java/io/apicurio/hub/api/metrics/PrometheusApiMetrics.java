@@ -23,8 +23,13 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 
 import io.apicurio.hub.core.beans.LinkedAccountType;
+import io.apicurio.hub.core.js.IScriptEngineMetrics;
+import io.apicurio.hub.core.js.ScriptEnginePool;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
 import io.prometheus.client.exporter.common.TextFormat;
 
 /**
@@ -49,8 +54,32 @@ public class PrometheusApiMetrics implements IApiMetrics {
     static final Counter accountLinksCompleted = Counter.build().labelNames("type")
             .name("apicurio_account_creates").help("Total number of Linked Accounts completed.").register();
 
+    static final Histogram scriptEngineCreation = Histogram.build().labelNames("pool")
+            .buckets(0.5, 1, 2.5, 5, 10, 20, 40)
+            .name("apicurio_script_engine_creation_seconds").help("Time taken to create a script engine.").register();
+    static final Histogram scriptEngineBorrowWait = Histogram.build().labelNames("pool")
+            .buckets(0.001, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30)
+            .name("apicurio_script_engine_borrow_wait_seconds").help("Time spent waiting for a pooled script engine.").register();
+    static final Histogram scriptEngineExecution = Histogram.build().labelNames("pool", "commands", "size")
+            .buckets(0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+            .name("apicurio_script_engine_execution_seconds").help("Time spent executing work in a script engine.").register();
+    static final Gauge scriptEnginesActive = Gauge.build().labelNames("pool")
+            .name("apicurio_script_engines_active").help("Number of script engines currently in use.").register();
+    static final Gauge scriptEnginesIdle = Gauge.build().labelNames("pool")
+            .name("apicurio_script_engines_idle").help("Number of idle script engines in the pool.").register();
+    static final Gauge scriptEngineEvictions = Gauge.build().labelNames("pool")
+            .name("apicurio_script_engine_evictions").help("Total number of script engines evicted from the pool.").register();
+
+    static final Counter storageStatements = Counter.build().labelNames("datasource", "kind")
+            .name("apicurio_storage_statements_total").help("Total number of SQL statements executed, per datasource.").register();
+    static final Histogram storageStatementTimes = Histogram.build().labelNames("datasource", "statement")
+            .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .name("apicurio_storage_statement_seconds").help("Time taken to execute a SQL statement, per statement.").register();
+
     @PostConstruct
     void postConstruct() {
+        ScriptEnginePool.setMetrics(this);
+        JdbcStorage.setMetrics(this);
         // The JVM metrics leak too much information!  Disable for now.
         //DefaultExports.initialize();
     }
@@ -110,4 +139,56 @@ public class PrometheusApiMetrics implements IApiMetrics {
     public void accountLinkCompleted(LinkedAccountType type) {
         accountLinksCompleted.labels(type.name()).inc();
     }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineCreated(java.lang.String, long)
+     */
+    @Override
+    public void scriptEngineCreated(String pool, long millis) {
+        scriptEngineCreation.labels(pool).observe(millis / 1000.0);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineBorrowed(java.lang.String, long)
+     */
+    @Override
+    public void scriptEngineBorrowed(String pool, long waitMillis) {
+        scriptEngineBorrowWait.labels(pool).observe(waitMillis / 1000.0);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineExecuted(java.lang.String, int, int, long)
+     */
+    @Override
+    public void scriptEngineExecuted(String pool, int numCommands, int documentSize, long millis) {
+        scriptEngineExecution.labels(pool, IScriptEngineMetrics.commandCountRange(numCommands),
+                IScriptEngineMetrics.documentSizeRange(documentSize)).observe(millis / 1000.0);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEnginePoolState(java.lang.String, int, int, long)
+     */
+    @Override
+    public void scriptEnginePoolState(String pool, int active, int idle, long evictions) {
+        scriptEnginesActive.labels(pool).set(active);
+        scriptEnginesIdle.labels(pool).set(idle);
+        scriptEngineEvictions.labels(pool).set(evictions);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorageMetrics#storageStatementExecuted(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void storageStatementExecuted(String datasource, String kind) {
+        storageStatements.labels(datasource, kind).inc();
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorageMetrics#storageStatementTimed(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public void storageStatementTimed(String datasource, String statement, long nanos) {
+        storageStatementTimes.labels(datasource, statement).observe(nanos / 1000000000.0);
+    }
+
 }
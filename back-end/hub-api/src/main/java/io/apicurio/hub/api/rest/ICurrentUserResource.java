@@ -26,6 +26,7 @@ import javax.ws.rs.core.MediaType;
 
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
+import io.apicurio.hub.core.exceptions.ApiValidationException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
 import io.apicurio.studio.shared.beans.User;
@@ -43,8 +44,8 @@ public interface ICurrentUserResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("activity")
-    public Collection<ApiDesignChange> getActivity(@QueryParam("start") Integer start, @QueryParam("end") Integer end) 
-    		throws ServerError, NotFoundException;
+    public Collection<ApiDesignChange> getActivity(@QueryParam("start") Integer start, @QueryParam("end") Integer end,
+            @QueryParam("cursor") String cursor) throws ServerError, NotFoundException, ApiValidationException;
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -55,10 +55,20 @@ import io.apicurio.hub.core.exceptions.ServerError;
  */
 @Path("designs")
 public interface IDesignsResource {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Apicurio-NextCursor";
+    
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Collection<ApiDesign> listDesigns(@QueryParam("limit") Integer limit, @QueryParam("cursor") String cursor,
+            @QueryParam("sort") String sort, @QueryParam("order") String order, @QueryParam("name") String namePrefix,
+            @QueryParam("tag") String tag, @QueryParam("createdBy") String createdBy) throws ServerError, ApiValidationException;
     
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Collection<ApiDesign> listDesigns() throws ServerError;
+    @Path("search")
+    public Collection<ApiDesign> searchDesigns(@QueryParam("q") String query, @QueryParam("limit") Integer limit,
+            @QueryParam("cursor") String cursor) throws ServerError, ApiValidationException;
     
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
@@ -84,6 +94,10 @@ public interface IDesignsResource {
     @DELETE
     @Path("{designId}")
     public void deleteDesign(@PathParam("designId") String designId) throws ServerError, NotFoundException;
+
+    @POST
+    @Path("{designId}/restore")
+    public void restoreDesign(@PathParam("designId") String designId) throws ServerError, NotFoundException;
     
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -94,7 +108,8 @@ public interface IDesignsResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{designId}/publications")
     public Collection<ApiPublication> getPublications(@PathParam("designId") String designId,
-            @QueryParam("start") Integer start, @QueryParam("end") Integer end) throws ServerError, NotFoundException;
+            @QueryParam("start") Integer start, @QueryParam("end") Integer end, @QueryParam("cursor") String cursor)
+            throws ServerError, NotFoundException, ApiValidationException;
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
@@ -147,7 +162,8 @@ public interface IDesignsResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{designId}/activity")
     public Collection<ApiDesignChange> getActivity(@PathParam("designId") String designId,
-            @QueryParam("start") Integer start, @QueryParam("end") Integer end) throws ServerError, NotFoundException;
+            @QueryParam("start") Integer start, @QueryParam("end") Integer end, @QueryParam("cursor") String cursor)
+            throws ServerError, NotFoundException, ApiValidationException;
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
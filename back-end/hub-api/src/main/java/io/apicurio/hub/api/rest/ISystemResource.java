@@ -16,14 +16,24 @@
 
 package io.apicurio.hub.api.rest;
 
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import io.apicurio.hub.api.beans.SystemReady;
 import io.apicurio.hub.api.beans.SystemStatus;
+import io.apicurio.hub.core.beans.BulkRollupStatus;
+import io.apicurio.hub.core.beans.ContentCompactionStatus;
+import io.apicurio.hub.core.beans.ContentCompressionStatus;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
+import io.apicurio.hub.core.exceptions.AccessDeniedException;
+import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
 
 /**
@@ -32,6 +42,8 @@ import io.apicurio.hub.core.exceptions.ServerError;
 @Path("system")
 public interface ISystemResource {
 
+    public static final String ADMIN_TOKEN_HEADER = "X-Apicurio-Admin-Token";
+
     @GET
     @Path("/status")
     @Produces(MediaType.APPLICATION_JSON)
@@ -47,4 +59,64 @@ public interface ISystemResource {
     @Produces(MediaType.TEXT_PLAIN)
     public Response getMetrics() throws ServerError;
 
+    @POST
+    @Path("/maintenance/rollup")
+    @Produces(MediaType.APPLICATION_JSON)
+    public BulkRollupStatus startBulkRollup(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken,
+            @QueryParam("resume") boolean resume) throws ServerError, NotFoundException, AccessDeniedException;
+
+    @GET
+    @Path("/maintenance/rollup")
+    @Produces(MediaType.APPLICATION_JSON)
+    public BulkRollupStatus getBulkRollupStatus(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @DELETE
+    @Path("/maintenance/rollup")
+    @Produces(MediaType.APPLICATION_JSON)
+    public BulkRollupStatus stopBulkRollup(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @POST
+    @Path("/maintenance/compression")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompressionStatus startContentCompression(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken,
+            @QueryParam("resume") boolean resume) throws ServerError, NotFoundException, AccessDeniedException;
+
+    @GET
+    @Path("/maintenance/compression")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompressionStatus getContentCompressionStatus(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @DELETE
+    @Path("/maintenance/compression")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompressionStatus stopContentCompression(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @POST
+    @Path("/maintenance/compaction")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompactionStatus startContentCompaction(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken,
+            @QueryParam("resume") boolean resume) throws ServerError, NotFoundException, AccessDeniedException;
+
+    @GET
+    @Path("/maintenance/compaction")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompactionStatus getContentCompactionStatus(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @DELETE
+    @Path("/maintenance/compaction")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentCompactionStatus stopContentCompaction(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
+    @GET
+    @Path("/maintenance/deduplication")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ContentDeduplicationReport getContentDeduplicationReport(@HeaderParam(ADMIN_TOKEN_HEADER) String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException;
+
 }
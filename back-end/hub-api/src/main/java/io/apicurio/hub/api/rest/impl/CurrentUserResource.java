@@ -20,18 +20,24 @@ import java.util.Collection;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.apicurio.hub.api.metrics.IApiMetrics;
 import io.apicurio.hub.api.rest.ICurrentUserResource;
+import io.apicurio.hub.api.rest.IDesignsResource;
 import io.apicurio.hub.api.security.ISecurityContext;
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
+import io.apicurio.hub.core.exceptions.ApiValidationException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
+import io.apicurio.hub.core.storage.CursorPage;
 import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.PageCursor;
 import io.apicurio.hub.core.storage.StorageException;
 import io.apicurio.studio.shared.beans.User;
 
@@ -50,6 +56,9 @@ public class CurrentUserResource implements ICurrentUserResource {
     @Inject
     private IApiMetrics metrics;
 
+    @Context
+    private HttpServletResponse response;
+
     /**
      * @see io.apicurio.hub.api.rest.ICurrentUserResource#getCurrentUser()
      */
@@ -59,10 +68,11 @@ public class CurrentUserResource implements ICurrentUserResource {
     }
     
     /**
-     * @see io.apicurio.hub.api.rest.ICurrentUserResource#getActivity(java.lang.Integer, java.lang.Integer)
+     * @see io.apicurio.hub.api.rest.ICurrentUserResource#getActivity(java.lang.Integer, java.lang.Integer, java.lang.String)
      */
     @Override
-    public Collection<ApiDesignChange> getActivity(Integer start, Integer end) throws ServerError, NotFoundException {
+    public Collection<ApiDesignChange> getActivity(Integer start, Integer end, String cursor)
+            throws ServerError, NotFoundException, ApiValidationException {
         metrics.apiCall("/currentuser", "GET");
     	int from = 0;
         int to = 20;
@@ -75,6 +85,21 @@ public class CurrentUserResource implements ICurrentUserResource {
         
         try {
             String user = this.security.getCurrentUser().getLogin();
+            if (cursor != null) {
+                PageCursor after = null;
+                if (!cursor.isEmpty()) {
+                    try {
+                        after = PageCursor.parse(cursor);
+                    } catch (IllegalArgumentException e) {
+                        throw new ApiValidationException("Invalid cursor: " + cursor);
+                    }
+                }
+                CursorPage<ApiDesignChange> page = this.storage.listUserActivity(user, after, Math.max(1, to - from));
+                if (page.getNextCursor() != null && this.response != null) {
+                    this.response.setHeader(IDesignsResource.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+                }
+                return page.getItems();
+            }
             return this.storage.listUserActivity(user, from, to);
         } catch (StorageException e) {
             throw new ServerError(e);
@@ -87,6 +87,8 @@ import io.apicurio.hub.core.beans.OpenApi2Document;
 import io.apicurio.hub.core.beans.OpenApi3Document;
 import io.apicurio.hub.core.beans.OpenApiDocument;
 import io.apicurio.hub.core.beans.OpenApiInfo;
+import io.apicurio.hub.core.cache.ContentCache;
+import io.apicurio.hub.core.cache.ContentCache.Rendering;
 import io.apicurio.hub.core.config.HubConfiguration;
 import io.apicurio.hub.core.editing.IEditingSessionManager;
 import io.apicurio.hub.core.exceptions.AccessDeniedException;
@@ -95,7 +97,14 @@ import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
 import io.apicurio.hub.core.js.OaiCommandException;
 import io.apicurio.hub.core.js.OaiCommandExecutor;
+import io.apicurio.hub.core.search.SearchService;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.DesignPurgeService;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.CursorPage;
 import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.PageCursor;
 import io.apicurio.hub.core.storage.StorageException;
 import io.apicurio.hub.core.util.FormatUtils;
 
@@ -106,6 +115,7 @@ import io.apicurio.hub.core.util.FormatUtils;
 public class DesignsResource implements IDesignsResource {
 
     private static Logger logger = LoggerFactory.getLogger(DesignsResource.class);
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
     private static ObjectMapper mapper = new ObjectMapper();
     static {
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -126,6 +136,12 @@ public class DesignsResource implements IDesignsResource {
     private OaiCommandExecutor oaiCommandExecutor;
     @Inject
     private IEditingSessionManager editingSessionManager;
+    @Inject
+    private ContentCache contentCache;
+    @Inject
+    private SearchService searchService;
+    @Inject
+    private DesignPurgeService purgeService;
 
     @Context
     private HttpServletRequest request;
@@ -133,22 +149,116 @@ public class DesignsResource implements IDesignsResource {
     private HttpServletResponse response;
 
     /**
-     * @see io.apicurio.hub.api.rest.IDesignsResource#listDesigns()
+     * @see io.apicurio.hub.api.rest.IDesignsResource#listDesigns(java.lang.Integer, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String)
      */
     @Override
-    public Collection<ApiDesign> listDesigns() throws ServerError {
+    public Collection<ApiDesign> listDesigns(Integer limit, String cursor, String sort, String order,
+            String namePrefix, String tag, String createdBy) throws ServerError, ApiValidationException {
         metrics.apiCall("/designs", "GET");
         
         try {
             logger.debug("Listing API Designs");
             String user = this.security.getCurrentUser().getLogin();
-            Collection<ApiDesign> designs = this.storage.listApiDesigns(user);
-            return designs;
+            if (limit == null && cursor == null && sort == null && order == null && namePrefix == null
+                    && tag == null && createdBy == null) {
+                Collection<ApiDesign> designs = this.storage.listApiDesigns(user);
+                return designs;
+            }
+            
+            ApiDesignQuery query = new ApiDesignQuery();
+            query.setNamePrefix(emptyToNull(namePrefix));
+            query.setTag(emptyToNull(tag));
+            query.setCreatedBy(emptyToNull(createdBy));
+            query.setAfter(emptyToNull(cursor));
+            if (limit != null) {
+                if (limit.intValue() < 1) {
+                    throw new ApiValidationException("Invalid limit: " + limit);
+                }
+                query.setLimit(limit.intValue());
+            }
+            if (sort != null) {
+                try {
+                    query.setSort(ApiDesignSort.fromName(sort));
+                } catch (IllegalArgumentException e) {
+                    throw new ApiValidationException(e.getMessage());
+                }
+            }
+            if (order != null) {
+                if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+                    throw new ApiValidationException("Invalid order: " + order);
+                }
+                query.setAscending("asc".equalsIgnoreCase(order));
+            }
+            
+            ApiDesignPage page;
+            try {
+                page = this.storage.listApiDesigns(user, query);
+            } catch (IllegalArgumentException e) {
+                throw new ApiValidationException(e.getMessage());
+            }
+            if (page.getNextCursor() != null && this.response != null) {
+                this.response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return page.getItems();
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.IDesignsResource#searchDesigns(java.lang.String, java.lang.Integer, java.lang.String)
+     */
+    @Override
+    public Collection<ApiDesign> searchDesigns(String query, Integer limit, String cursor)
+            throws ServerError, ApiValidationException {
+        metrics.apiCall("/designs/search", "GET");
+        
+        if (query == null || query.trim().isEmpty()) {
+            throw new ApiValidationException("Missing search query.");
+        }
+        int size = DEFAULT_SEARCH_LIMIT;
+        if (limit != null) {
+            if (limit.intValue() < 1) {
+                throw new ApiValidationException("Invalid limit: " + limit);
+            }
+            size = limit.intValue();
+        }
+        int offset = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                offset = Integer.parseInt(cursor);
+            } catch (NumberFormatException e) {
+                offset = -1;
+            }
+            if (offset < 0) {
+                throw new ApiValidationException("Invalid cursor: " + cursor);
+            }
+        }
+        
+        try {
+            logger.debug("Searching API Designs: {}", query);
+            String user = this.security.getCurrentUser().getLogin();
+            ApiDesignPage page = this.searchService.search(user, query, offset, size);
+            if (page.getNextCursor() != null && this.response != null) {
+                this.response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return page.getItems();
         } catch (StorageException e) {
             throw new ServerError(e);
         }
     }
 
+    /**
+     * Treats an empty query param the same as a missing one.
+     * @param value
+     */
+    private static String emptyToNull(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value;
+    }
+
     /**
      * @see io.apicurio.hub.api.rest.IDesignsResource#importDesign(io.apicurio.hub.api.beans.ImportApiDesign)
      */
@@ -190,6 +300,8 @@ public class DesignsResource implements IDesignsResource {
      * @throws ApiValidationException
      */
     private ApiDesign importDesignFromSource(ImportApiDesign info, ISourceConnector connector) throws NotFoundException, ServerError, ApiValidationException {
+        // Do not hold a database connection while waiting for the source control system
+        this.storage.releaseConnections();
         try {
             ApiDesignResourceInfo resourceInfo = connector.validateResourceExists(info.getUrl());
             ResourceContent initialApiContent = connector.getResourceContent(info.getUrl());
@@ -215,6 +327,7 @@ public class DesignsResource implements IDesignsResource {
                 }
                 String id = this.storage.createApiDesign(user, design, content);
                 design.setId(id);
+                this.searchService.designChanged(id);
             } catch (StorageException e) {
                 throw new ServerError(e);
             }
@@ -263,6 +376,7 @@ public class DesignsResource implements IDesignsResource {
                     }
                     String id = this.storage.createApiDesign(user, design, content);
                     design.setId(id);
+                    this.searchService.designChanged(id);
                 } catch (StorageException e) {
                     throw new ServerError(e);
                 }
@@ -289,6 +403,8 @@ public class DesignsResource implements IDesignsResource {
      * @throws ApiValidationException
      */
     private ApiDesign importDesignFromUrl(ImportApiDesign info) throws NotFoundException, ServerError, ApiValidationException {
+        // Do not hold a database connection while waiting for the remote server
+        this.storage.releaseConnections();
         try {
             URL url = new URL(info.getUrl());
             
@@ -323,6 +439,7 @@ public class DesignsResource implements IDesignsResource {
                     }
                     String id = this.storage.createApiDesign(user, design, content);
                     design.setId(id);
+                    this.searchService.designChanged(id);
                 } catch (StorageException e) {
                     throw new ServerError(e);
                 }
@@ -375,6 +492,7 @@ public class DesignsResource implements IDesignsResource {
             // Create the API Design in the database
             String designId = storage.createApiDesign(user, design, oaiContent);
             design.setId(designId);
+            this.searchService.designChanged(designId);
             
             metrics.apiCreate(info.getSpecVersion());
             
@@ -449,6 +567,24 @@ public class DesignsResource implements IDesignsResource {
         try {
             String user = this.security.getCurrentUser().getLogin();
             this.storage.deleteApiDesign(user, designId);
+            this.searchService.designDeleted(designId);
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.api.rest.IDesignsResource#restoreDesign(java.lang.String)
+     */
+    @Override
+    public void restoreDesign(String designId) throws ServerError, NotFoundException {
+        logger.debug("Restoring an API Design with ID {}", designId);
+        metrics.apiCall("/designs/{designId}/restore", "POST");
+        
+        try {
+            String user = this.security.getCurrentUser().getLogin();
+            this.storage.restoreApiDesign(user, designId, this.purgeService.getUndeleteCutoff());
+            this.searchService.designChanged(designId);
         } catch (StorageException e) {
             throw new ServerError(e);
         }
@@ -480,19 +616,12 @@ public class DesignsResource implements IDesignsResource {
 
         try {
             String user = this.security.getCurrentUser().getLogin();
-            ApiDesignContent designContent = this.storage.getLatestContentDocument(user, designId);
-            List<ApiDesignCommand> apiCommands = this.storage.listContentCommands(user, designId, designContent.getContentVersion());
-            List<String> commands = new ArrayList<>(apiCommands.size());
-            for (ApiDesignCommand apiCommand : apiCommands) {
-                commands.add(apiCommand.getCommand());
-            }
-            String content = this.oaiCommandExecutor.executeCommands(designContent.getOaiDocument(), commands);
+            Rendering rendering = "yaml".equals(format) ? Rendering.YAML : Rendering.JSON;
+            String content = this.renderContent(user, designId, rendering);
             String ct = "application/json; charset=" + StandardCharsets.UTF_8;
             String cl = null;
             
-            // Convert to yaml if necessary
-            if ("yaml".equals(format)) {
-                content = FormatUtils.jsonToYaml(content);
+            if (rendering == Rendering.YAML) {
                 ct = "application/x-yaml; charset=" + StandardCharsets.UTF_8;
             }
             
@@ -675,11 +804,11 @@ public class DesignsResource implements IDesignsResource {
     }
 
     /**
-     * @see io.apicurio.hub.api.rest.IDesignsResource#getActivity(java.lang.String, java.lang.Integer, java.lang.Integer)
+     * @see io.apicurio.hub.api.rest.IDesignsResource#getActivity(java.lang.String, java.lang.Integer, java.lang.Integer, java.lang.String)
      */
     @Override
-    public Collection<ApiDesignChange> getActivity(String designId, Integer start, Integer end)
-            throws ServerError, NotFoundException {
+    public Collection<ApiDesignChange> getActivity(String designId, Integer start, Integer end, String cursor)
+            throws ServerError, NotFoundException, ApiValidationException {
         int from = 0;
         int to = 20;
         if (start != null) {
@@ -696,6 +825,11 @@ public class DesignsResource implements IDesignsResource {
 	                throw new NotFoundException();
 	            }
         	}
+            if (cursor != null) {
+                CursorPage<ApiDesignChange> page = this.storage.listApiDesignActivity(designId, parseCursor(cursor), Math.max(1, to - from));
+                setNextCursor(page);
+                return page.getItems();
+            }
             return this.storage.listApiDesignActivity(designId, from, to);
         } catch (StorageException e) {
             throw new ServerError(e);
@@ -703,11 +837,11 @@ public class DesignsResource implements IDesignsResource {
     }
     
     /**
-     * @see io.apicurio.hub.api.rest.IDesignsResource#getPublications(java.lang.String, java.lang.Integer, java.lang.Integer)
+     * @see io.apicurio.hub.api.rest.IDesignsResource#getPublications(java.lang.String, java.lang.Integer, java.lang.Integer, java.lang.String)
      */
     @Override
-    public Collection<ApiPublication> getPublications(String designId, Integer start, Integer end)
-            throws ServerError, NotFoundException {
+    public Collection<ApiPublication> getPublications(String designId, Integer start, Integer end, String cursor)
+            throws ServerError, NotFoundException, ApiValidationException {
         int from = 0;
         int to = 20;
         if (start != null) {
@@ -722,11 +856,43 @@ public class DesignsResource implements IDesignsResource {
             if (!this.storage.hasWritePermission(user, designId)) {
                 throw new NotFoundException();
             }
+            if (cursor != null) {
+                CursorPage<ApiPublication> page = this.storage.listApiDesignPublications(designId, parseCursor(cursor), Math.max(1, to - from));
+                setNextCursor(page);
+                return page.getItems();
+            }
             return this.storage.listApiDesignPublications(designId, from, to);
         } catch (StorageException e) {
             throw new ServerError(e);
         }
     }
+
+    /**
+     * Parses the "cursor" query param of a paged feed.  An empty cursor asks for the
+     * first page.
+     * @param cursor
+     * @throws ApiValidationException
+     */
+    private static PageCursor parseCursor(String cursor) throws ApiValidationException {
+        if (cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return PageCursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ApiValidationException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Tells the client where the next page of a feed starts (if there is a next page).
+     * @param page
+     */
+    private void setNextCursor(CursorPage<?> page) {
+        if (page.getNextCursor() != null && this.response != null) {
+            this.response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+    }
     
     /**
      * @see io.apicurio.hub.api.rest.IDesignsResource#publishApi(java.lang.String, io.apicurio.hub.api.beans.NewApiPublication)
@@ -740,6 +906,7 @@ public class DesignsResource implements IDesignsResource {
             ISourceConnector connector = this.sourceConnectorFactory.createConnector(type);
             String resourceUrl = info.toResourceUrl();
             String formattedContent = getApiContent(designId, info.getFormat());
+            this.storage.releaseConnections();
             try {
                 ResourceContent content = connector.getResourceContent(resourceUrl);
                 content.setContent(formattedContent);
@@ -796,31 +963,67 @@ public class DesignsResource implements IDesignsResource {
     private String getApiContent(String designId, FormatType format) throws ServerError, NotFoundException {
         try {
             String user = this.security.getCurrentUser().getLogin();
-            ApiDesignContent designContent = this.storage.getLatestContentDocument(user, designId);
-            
-            String content = designContent.getOaiDocument();
-            
-            List<ApiDesignCommand> apiCommands = this.storage.listContentCommands(user, designId, designContent.getContentVersion());
-            if (!apiCommands.isEmpty()) {
-                List<String> commands = new ArrayList<>(apiCommands.size());
-                for (ApiDesignCommand apiCommand : apiCommands) {
-                    commands.add(apiCommand.getCommand());
-                }
-                content = this.oaiCommandExecutor.executeCommands(designContent.getOaiDocument(), commands);
-            }
-
-            // Convert to yaml if necessary
-            if (format == FormatType.YAML) {
-                content = FormatUtils.jsonToYaml(content);
-            } else {
-                content = FormatUtils.formatJson(content);
-            }
-            
-            return content;
+            Rendering rendering = format == FormatType.YAML ? Rendering.YAML : Rendering.FORMATTED_JSON;
+            return this.renderContent(user, designId, rendering);
         } catch (StorageException | OaiCommandException | IOException e) {
             throw new ServerError(e);
         }
     }
+
+    /**
+     * Renders the current content of an API, using the content cache when possible.  Only
+     * when the content has changed since it was last rendered are the latest snapshot and
+     * pending commands loaded and the commands executed.
+     * @param user
+     * @param designId
+     * @param rendering
+     * @throws StorageException
+     * @throws NotFoundException
+     * @throws OaiCommandException
+     * @throws IOException
+     */
+    private String renderContent(String user, String designId, Rendering rendering)
+            throws StorageException, NotFoundException, OaiCommandException, IOException {
+        String etag = this.storage.getContentETag(user, designId);
+        String content = this.contentCache.get(designId, etag, rendering);
+        if (content != null) {
+            logger.debug("Content for API {} served from the cache.", designId);
+            return content;
+        }
+
+        String json = this.contentCache.get(designId, etag, Rendering.JSON);
+        if (json == null) {
+            // Read the snapshot and the commands on top of it in one transaction (a consistent view)
+            ApiDesignContent designContent;
+            List<ApiDesignCommand> apiCommands;
+            this.storage.beginUnitOfWork(true);
+            try {
+                designContent = this.storage.getLatestContentDocument(user, designId);
+                apiCommands = this.storage.listContentCommands(user, designId, designContent.getContentVersion());
+            } finally {
+                this.storage.endUnitOfWork(true);
+            }
+            List<String> commands = new ArrayList<>(apiCommands.size());
+            for (ApiDesignCommand apiCommand : apiCommands) {
+                commands.add(apiCommand.getCommand());
+            }
+            json = this.oaiCommandExecutor.executeCommands(designContent.getOaiDocument(), commands);
+            this.contentCache.put(designId, etag, Rendering.JSON, json);
+        }
+
+        switch (rendering) {
+            case YAML:
+                content = FormatUtils.jsonToYaml(json);
+                break;
+            case FORMATTED_JSON:
+                content = FormatUtils.formatJson(json);
+                break;
+            default:
+                return json;
+        }
+        this.contentCache.put(designId, etag, rendering, content);
+        return content;
+    }
     
     /**
      * @see io.apicurio.hub.api.rest.IDesignsResource#getCodegenProjects(java.lang.String)
@@ -1064,6 +1267,7 @@ public class DesignsResource implements IDesignsResource {
             throws ServerError, NotFoundException {
         try {
             String oaiContent = this.getApiContent(project.getDesignId(), FormatType.JSON);
+            this.storage.releaseConnections();
             
             // TODO support other types besides Thorntail
             if (project.getType() == CodegenProjectType.thorntail) {
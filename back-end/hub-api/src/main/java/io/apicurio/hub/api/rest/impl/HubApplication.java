@@ -35,6 +35,8 @@ import com.mashape.unirest.http.ObjectMapper;
 import com.mashape.unirest.http.Unirest;
 
 import io.apicurio.hub.core.Version;
+import io.apicurio.hub.core.search.SearchService;
+import io.apicurio.hub.core.storage.DesignPurgeService;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -68,6 +70,10 @@ public class HubApplication extends Application {
     
     @Inject
     private Version version;
+    @Inject
+    private SearchService searchService;
+    @Inject
+    private DesignPurgeService purgeService;
 
     @PostConstruct
     public void postConstruct() {
@@ -89,6 +95,10 @@ public class HubApplication extends Application {
         builder.append("\n\tNashorn Class:  " + hasClass);
         builder.append("\n------------------------------------------------");
         logger.info(builder.toString());
+        
+        // Build the search index and purge deleted designs in the background
+        searchService.start();
+        purgeService.start();
     }
 
 }
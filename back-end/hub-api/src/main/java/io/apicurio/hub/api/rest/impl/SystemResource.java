@@ -32,7 +32,18 @@ import io.apicurio.hub.api.metrics.IApiMetrics;
 import io.apicurio.hub.api.rest.ISystemResource;
 import io.apicurio.hub.api.security.ISecurityContext;
 import io.apicurio.hub.core.Version;
+import io.apicurio.hub.core.beans.BulkRollupStatus;
+import io.apicurio.hub.core.beans.ContentCompactionStatus;
+import io.apicurio.hub.core.beans.ContentCompressionStatus;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.editing.RollupService;
+import io.apicurio.hub.core.exceptions.AccessDeniedException;
+import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ContentCompactionService;
+import io.apicurio.hub.core.storage.ContentCompressionService;
 import io.apicurio.hub.core.storage.IStorage;
 import io.apicurio.hub.core.storage.StorageException;
 import io.prometheus.client.exporter.common.TextFormat;
@@ -53,6 +64,14 @@ public class SystemResource implements ISystemResource {
     private ISecurityContext security;
     @Inject
     private IApiMetrics metrics;
+    @Inject
+    private HubConfiguration config;
+    @Inject
+    private RollupService rollupService;
+    @Inject
+    private ContentCompressionService compressionService;
+    @Inject
+    private ContentCompactionService compactionService;
 
     /**
      * @see io.apicurio.hub.api.rest.ISystemResource#getStatus()
@@ -73,7 +92,9 @@ public class SystemResource implements ISystemResource {
             status.setDescription("The API to the Apicurio Studio Hub.");
             status.setMoreInfo("http://www.apicur.io/");
             status.setName("Apicurio Studio Hub API");
-            status.setUp(storage != null && storage.listApiDesigns(user).size() >= 0);
+            ApiDesignQuery query = new ApiDesignQuery();
+            query.setLimit(1);
+            status.setUp(storage != null && storage.listApiDesigns(user, query).getItems().size() >= 0);
             status.setVersion(version.getVersionString());
             status.setUser(security.getCurrentUser());
         } catch (StorageException e) {
@@ -110,4 +131,149 @@ public class SystemResource implements ISystemResource {
         }
     }
 
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#startBulkRollup(java.lang.String, boolean)
+     */
+    @Override
+    public BulkRollupStatus startBulkRollup(String adminToken, boolean resume)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/rollup", "POST");
+        verifyAdminToken(adminToken);
+        try {
+            return rollupService.startBulkRollup(resume);
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#getBulkRollupStatus(java.lang.String)
+     */
+    @Override
+    public BulkRollupStatus getBulkRollupStatus(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/rollup", "GET");
+        verifyAdminToken(adminToken);
+        return rollupService.getBulkRollupStatus();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#stopBulkRollup(java.lang.String)
+     */
+    @Override
+    public BulkRollupStatus stopBulkRollup(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/rollup", "DELETE");
+        verifyAdminToken(adminToken);
+        return rollupService.stopBulkRollup();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#startContentCompression(java.lang.String, boolean)
+     */
+    @Override
+    public ContentCompressionStatus startContentCompression(String adminToken, boolean resume)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compression", "POST");
+        verifyAdminToken(adminToken);
+        try {
+            return compressionService.start(resume);
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#getContentCompressionStatus(java.lang.String)
+     */
+    @Override
+    public ContentCompressionStatus getContentCompressionStatus(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compression", "GET");
+        verifyAdminToken(adminToken);
+        return compressionService.getStatus();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#stopContentCompression(java.lang.String)
+     */
+    @Override
+    public ContentCompressionStatus stopContentCompression(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compression", "DELETE");
+        verifyAdminToken(adminToken);
+        return compressionService.stop();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#startContentCompaction(java.lang.String, boolean)
+     */
+    @Override
+    public ContentCompactionStatus startContentCompaction(String adminToken, boolean resume)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compaction", "POST");
+        verifyAdminToken(adminToken);
+        try {
+            return compactionService.start(resume);
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#getContentCompactionStatus(java.lang.String)
+     */
+    @Override
+    public ContentCompactionStatus getContentCompactionStatus(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compaction", "GET");
+        verifyAdminToken(adminToken);
+        return compactionService.getStatus();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#stopContentCompaction(java.lang.String)
+     */
+    @Override
+    public ContentCompactionStatus stopContentCompaction(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/compaction", "DELETE");
+        verifyAdminToken(adminToken);
+        return compactionService.stop();
+    }
+
+    /**
+     * @see io.apicurio.hub.api.rest.ISystemResource#getContentDeduplicationReport(java.lang.String)
+     */
+    @Override
+    public ContentDeduplicationReport getContentDeduplicationReport(String adminToken)
+            throws ServerError, NotFoundException, AccessDeniedException {
+        metrics.apiCall("/system/maintenance/deduplication", "GET");
+        verifyAdminToken(adminToken);
+        try {
+            ContentDeduplicationReport report = storage.getContentDeduplicationReport();
+            report.setRollupsSkipped(rollupService.getSkippedRollups());
+            return report;
+        } catch (StorageException e) {
+            throw new ServerError(e);
+        }
+    }
+
+    /**
+     * Maintenance operations are only available when an admin token has been configured, and
+     * only to callers that present that token.
+     * @param adminToken
+     * @throws NotFoundException
+     * @throws AccessDeniedException
+     */
+    private void verifyAdminToken(String adminToken) throws NotFoundException, AccessDeniedException {
+        String expectedToken = config.getAdminToken();
+        if (expectedToken.isEmpty()) {
+            throw new NotFoundException();
+        }
+        if (!expectedToken.equals(adminToken)) {
+            throw new AccessDeniedException();
+        }
+    }
+
 }
@@ -45,6 +45,8 @@ import io.apicurio.hub.api.connectors.SourceConnectorFactory;
 import io.apicurio.hub.api.rest.IDesignsResource;
 import io.apicurio.hub.core.beans.ApiContentType;
 import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.cache.ContentCache;
+import io.apicurio.hub.core.config.HubConfiguration;
 import io.apicurio.hub.core.beans.ApiDesignCollaborator;
 import io.apicurio.hub.core.beans.Contributor;
 import io.apicurio.hub.core.beans.Invitation;
@@ -54,6 +56,8 @@ import io.apicurio.hub.core.exceptions.ApiValidationException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
 import io.apicurio.hub.core.js.OaiCommandExecutor;
+import io.apicurio.hub.core.search.SearchService;
+import io.apicurio.hub.core.storage.DesignPurgeService;
 import io.apicurio.test.core.TestUtil;
 import test.io.apicurio.hub.api.MockEditingSessionManager;
 import test.io.apicurio.hub.api.MockGitHubService;
@@ -76,6 +80,7 @@ public class DesignsResourceTest {
     private OaiCommandExecutor commandExecutor;
     private SourceConnectorFactory sourceConnectorFactory;
     private MockMetrics metrics;
+    private SearchService searchService;
 
     @Before
     public void setUp() {
@@ -97,15 +102,27 @@ public class DesignsResourceTest {
         TestUtil.setPrivateField(resource, "metrics", metrics);
         TestUtil.setPrivateField(resource, "oaiCommandExecutor", commandExecutor);
         TestUtil.setPrivateField(resource, "editingSessionManager", editingSessionManager);
+        TestUtil.setPrivateField(resource, "contentCache", new ContentCache(1024 * 1024));
+        
+        searchService = new SearchService();
+        TestUtil.setPrivateField(searchService, "storage", storage);
+        TestUtil.setPrivateField(searchService, "config", new HubConfiguration());
+        TestUtil.setPrivateField(resource, "searchService", searchService);
+        
+        DesignPurgeService purgeService = new DesignPurgeService();
+        TestUtil.setPrivateField(purgeService, "storage", storage);
+        TestUtil.setPrivateField(purgeService, "config", new HubConfiguration());
+        TestUtil.setPrivateField(resource, "purgeService", purgeService);
     }
     
     @After
     public void tearDown() throws Exception {
+        searchService.stop();
     }
 
     @Test
-    public void testListDesignsEmpty() throws ServerError {
-        Collection<ApiDesign> apis = resource.listDesigns();
+    public void testListDesignsEmpty() throws ServerError, ApiValidationException {
+        Collection<ApiDesign> apis = resource.listDesigns(null, null, null, null, null, null, null);
         Assert.assertNotNull(apis);
     }
 
@@ -118,7 +135,7 @@ public class DesignsResourceTest {
         info.setUrl("https://github.com/Apicurio/api-samples/blob/master/apiman-rls/apiman-rls.json");
         resource.importDesign(info);
         
-        Collection<ApiDesign> apis = resource.listDesigns();
+        Collection<ApiDesign> apis = resource.listDesigns(null, null, null, null, null, null, null);
         Assert.assertNotNull(apis);
         Assert.assertEquals(2, apis.size());
         
@@ -140,6 +157,13 @@ public class DesignsResourceTest {
         Assert.assertEquals("apiman-rls.json", design1.getName());
         Assert.assertEquals("pet-store.json", design2.getName());
 
+        apis = resource.listDesigns(1, null, "name", "desc", null, null, null);
+        Assert.assertEquals(1, apis.size());
+        Assert.assertEquals("pet-store.json", apis.iterator().next().getName());
+        apis = resource.listDesigns(null, null, null, null, "apiman", null, null);
+        Assert.assertEquals(1, apis.size());
+        Assert.assertEquals("apiman-rls.json", apis.iterator().next().getName());
+
         String ghLog = github.auditLog();
         Assert.assertNotNull(ghLog);
         Assert.assertEquals(
@@ -269,6 +293,47 @@ public class DesignsResourceTest {
         Assert.assertEquals("3.0.1", oaiVersion);
     }
 
+    @Test
+    public void testSearchDesigns() throws Exception {
+        NewApiDesign info = new NewApiDesign();
+        info.setSpecVersion("3.0.1");
+        info.setName("Pet Store API");
+        info.setDescription("All about pets.");
+        ApiDesign petStore = resource.createDesign(info);
+        info.setName("Invoice API");
+        info.setDescription("Billing.");
+        resource.createDesign(info);
+        
+        // The index is built in the background when the search service starts
+        Collection<ApiDesign> results = resource.searchDesigns("pet", null, null);
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while (results.isEmpty() && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(20);
+            results = resource.searchDesigns("pet", null, null);
+        }
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(petStore.getId(), results.iterator().next().getId());
+        Assert.assertEquals(2, resource.searchDesigns("API", null, null).size());
+        Assert.assertEquals(0, resource.searchDesigns("pet invoice", null, null).size());
+        
+        // Once started, the index is updated as designs are created and deleted
+        info.setName("Pet Clinic");
+        info.setDescription("Vets.");
+        ApiDesign petClinic = resource.createDesign(info);
+        Assert.assertEquals(2, resource.searchDesigns("pet", null, null).size());
+        Assert.assertEquals(1, resource.searchDesigns("pet", 1, null).size());
+        Assert.assertEquals(1, resource.searchDesigns("pet", 1, "1").size());
+        resource.deleteDesign(petClinic.getId());
+        Assert.assertEquals(1, resource.searchDesigns("pet", null, null).size());
+        
+        try {
+            resource.searchDesigns("pet", 1, "foo");
+            Assert.fail("Expected an ApiValidationException");
+        } catch (ApiValidationException e) {
+            // should get here
+        }
+    }
+
     @Test
     public void testDeleteDesign() throws ServerError, AlreadyExistsException, NotFoundException, ApiValidationException {
         ImportApiDesign info = new ImportApiDesign();
@@ -286,6 +351,16 @@ public class DesignsResourceTest {
             // should get here
         }
 
+        // Deleted designs can be restored (for a while)
+        resource.restoreDesign(designId);
+        Assert.assertEquals(designId, resource.getDesign(designId).getId());
+        try {
+            resource.restoreDesign(designId);
+            Assert.fail("Expected a NotFoundException");
+        } catch (NotFoundException e) {
+            // should get here
+        }
+
         String ghLog = github.auditLog();
         Assert.assertNotNull(ghLog);
         Assert.assertEquals(
@@ -408,6 +483,38 @@ public class DesignsResourceTest {
         Assert.assertTrue(actualYaml.startsWith("---"));
     }
 
+    @Test
+    public void testGetContentCached() throws Exception {
+        ImportApiDesign info = new ImportApiDesign();
+        info.setUrl("https://github.com/Apicurio/api-samples/blob/master/pet-store/pet-store.json");
+        ApiDesign design = resource.importDesign(info);
+        
+        MockContentRow contentRow = new MockContentRow();
+        contentRow.createdBy = "user";
+        contentRow.data = "{\r\n" + 
+                "  \"__type\": \"ChangeTitleCommand_20\",\r\n" + 
+                "  \"_newTitle\": \"testGetContentCached\"\r\n" + 
+                "}";
+        contentRow.designId = design.getId();
+        contentRow.type = ApiContentType.Command;
+        this.storage.addContentRow(design.getId(), contentRow);
+
+        String json = resource.getContent(design.getId(), null).getEntity().toString();
+        Assert.assertTrue(json.contains("testGetContentCached"));
+        String yaml = resource.getContent(design.getId(), "yaml").getEntity().toString();
+        
+        // Without a command executor, only cached content can be returned
+        TestUtil.setPrivateField(resource, "oaiCommandExecutor", null);
+        Assert.assertEquals(json, resource.getContent(design.getId(), null).getEntity().toString());
+        Assert.assertEquals(yaml, resource.getContent(design.getId(), "yaml").getEntity().toString());
+        
+        // Undoing the command changes the content, so the cache must not be used
+        this.storage.undoContent("user", design.getId(), contentRow.version);
+        TestUtil.setPrivateField(resource, "oaiCommandExecutor", commandExecutor);
+        json = resource.getContent(design.getId(), null).getEntity().toString();
+        Assert.assertFalse(json.contains("testGetContentCached"));
+    }
+
     @Test
     public void testCreateInvitation() throws ServerError, NotFoundException, AccessDeniedException {
         NewApiDesign info = new NewApiDesign();
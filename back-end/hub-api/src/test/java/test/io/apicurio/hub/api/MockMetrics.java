@@ -69,4 +69,46 @@ public class MockMetrics implements IApiMetrics {
     public void apiImport(LinkedAccountType from) {
     }
 
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineCreated(java.lang.String, long)
+     */
+    @Override
+    public void scriptEngineCreated(String pool, long millis) {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineBorrowed(java.lang.String, long)
+     */
+    @Override
+    public void scriptEngineBorrowed(String pool, long waitMillis) {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEngineExecuted(java.lang.String, int, int, long)
+     */
+    @Override
+    public void scriptEngineExecuted(String pool, int numCommands, int documentSize, long millis) {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.js.IScriptEngineMetrics#scriptEnginePoolState(java.lang.String, int, int, long)
+     */
+    @Override
+    public void scriptEnginePoolState(String pool, int active, int idle, long evictions) {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorageMetrics#storageStatementExecuted(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void storageStatementExecuted(String datasource, String kind) {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorageMetrics#storageStatementTimed(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public void storageStatementTimed(String datasource, String statement, long nanos) {
+    }
+
 }
@@ -16,15 +16,20 @@
 
 package test.io.apicurio.hub.api;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
+import io.apicurio.hub.core.beans.ApiContentEntry;
 import io.apicurio.hub.core.beans.ApiContentType;
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
@@ -33,13 +38,22 @@ import io.apicurio.hub.core.beans.ApiDesignCommand;
 import io.apicurio.hub.core.beans.ApiDesignContent;
 import io.apicurio.hub.core.beans.ApiPublication;
 import io.apicurio.hub.core.beans.CodegenProject;
+import io.apicurio.hub.core.beans.ContentCompressionBatch;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
 import io.apicurio.hub.core.beans.Contributor;
 import io.apicurio.hub.core.beans.Invitation;
 import io.apicurio.hub.core.beans.LinkedAccount;
 import io.apicurio.hub.core.beans.LinkedAccountType;
 import io.apicurio.hub.core.exceptions.AlreadyExistsException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.CursorPage;
+import io.apicurio.hub.core.storage.IContentCommandConsumer;
+import io.apicurio.hub.core.storage.IContentDocumentReader;
 import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.PageCursor;
 import io.apicurio.hub.core.storage.StorageException;
 
 /**
@@ -49,10 +63,13 @@ public class MockStorage implements IStorage {
     
     private Map<String, Map<LinkedAccountType, LinkedAccount>> accounts = new HashMap<>();
     private Map<String, ApiDesign> designs = new HashMap<>();
+    private Map<String, ApiDesign> deletedDesigns = new HashMap<>();
+    private Map<String, Date> deletedOn = new HashMap<>();
     private Map<String, List<MockContentRow>> content = new HashMap<>();
     private Map<String, MockUuidRow> uuids = new HashMap<>();
     private Map<String, MockInviteRow> invites = new HashMap<>();
     private Map<String, String> permissions = new HashMap<>();
+    private Map<String, String> checkpoints = new HashMap<>();
     private int counter = 1;
     
     /**
@@ -260,6 +277,39 @@ public class MockStorage implements IStorage {
         return rval;
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#readLatestContentDocument(java.lang.String, java.lang.String, io.apicurio.hub.core.storage.IContentDocumentReader)
+     */
+    @Override
+    public <T> T readLatestContentDocument(String userId, String designId, IContentDocumentReader<T> reader)
+            throws NotFoundException, StorageException {
+        ApiDesignContent content = this.getLatestContentDocument(userId, designId);
+        try {
+            return reader.read(content.getContentVersion(), new StringReader(content.getOaiDocument()));
+        } catch (IOException e) {
+            throw new StorageException("Error reading content document.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getContentETag(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getContentETag(String userId, String designId) throws NotFoundException, StorageException {
+        List<MockContentRow> list = this.content.get(designId);
+        if (list == null || list.isEmpty()) {
+            throw new NotFoundException();
+        }
+        StringBuilder etag = new StringBuilder();
+        etag.append(list.get(list.size() - 1).version);
+        for (MockContentRow row : list) {
+            if (row.reverted) {
+                etag.append("-").append(row.version);
+            }
+        }
+        return etag.toString();
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.IStorage#listContentCommands(java.lang.String, java.lang.String, long)
      */
@@ -314,6 +364,21 @@ public class MockStorage implements IStorage {
         return rval;
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#streamAllContentCommands(java.lang.String, java.lang.String, long, io.apicurio.hub.core.storage.IContentCommandConsumer)
+     */
+    @Override
+    public void streamAllContentCommands(String userId, String designId, long sinceVersion, IContentCommandConsumer consumer)
+            throws StorageException {
+        try {
+            for (ApiDesignCommand command : this.listAllContentCommands(userId, designId, sinceVersion)) {
+                consumer.accept(command);
+            }
+        } catch (IOException e) {
+            throw new StorageException("Error streaming content commands.", e);
+        }
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.IStorage#addContent(java.lang.String, java.lang.String, io.apicurio.hub.core.beans.ApiContentType, java.lang.String)
      */
@@ -388,9 +453,49 @@ public class MockStorage implements IStorage {
      */
     @Override
     public void deleteApiDesign(String userId, String designId) throws NotFoundException, StorageException {
-        if (this.designs.remove(designId) == null) {
+        ApiDesign design = this.designs.remove(designId);
+        if (design == null) {
+            throw new NotFoundException();
+        }
+        this.deletedDesigns.put(designId, design);
+        this.deletedOn.put(designId, new Date());
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#restoreApiDesign(java.lang.String, java.lang.String, java.util.Date)
+     */
+    @Override
+    public void restoreApiDesign(String userId, String designId, Date deletedAfter) throws NotFoundException, StorageException {
+        Date deleted = this.deletedOn.get(designId);
+        if (deleted == null || !deleted.after(deletedAfter)) {
             throw new NotFoundException();
         }
+        this.deletedOn.remove(designId);
+        this.designs.put(designId, this.deletedDesigns.remove(designId));
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listDeletedApiDesignIds(java.util.Date, int)
+     */
+    @Override
+    public List<String> listDeletedApiDesignIds(Date deletedBefore, int limit) throws StorageException {
+        List<String> rval = new ArrayList<>();
+        for (Entry<String, Date> entry : this.deletedOn.entrySet()) {
+            if (entry.getValue().before(deletedBefore) && rval.size() < limit) {
+                rval.add(entry.getKey());
+            }
+        }
+        return rval;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#purgeApiDesign(java.lang.String, int)
+     */
+    @Override
+    public int purgeApiDesign(String designId, int limit) throws StorageException {
+        this.deletedOn.remove(designId);
+        this.deletedDesigns.remove(designId);
+        return 0;
     }
 
     /**
@@ -410,6 +515,51 @@ public class MockStorage implements IStorage {
     public Collection<ApiDesign> listApiDesigns(String userId) throws StorageException {
         return this.designs.values();
     }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesigns(java.lang.String, io.apicurio.hub.core.storage.ApiDesignQuery)
+     */
+    @Override
+    public ApiDesignPage listApiDesigns(String userId, ApiDesignQuery query) throws StorageException {
+        List<ApiDesign> rval = new ArrayList<>();
+        for (ApiDesign design : this.designs.values()) {
+            if (query.getNamePrefix() != null && !design.getName().startsWith(query.getNamePrefix())) {
+                continue;
+            }
+            if (query.getTag() != null && !design.getTags().contains(query.getTag())) {
+                continue;
+            }
+            if (query.getCreatedBy() != null && !query.getCreatedBy().equals(design.getCreatedBy())) {
+                continue;
+            }
+            rval.add(design);
+        }
+        Comparator<ApiDesign> comparator;
+        if (query.getSort() == ApiDesignSort.NAME) {
+            comparator = Comparator.comparing(ApiDesign::getName);
+        } else {
+            comparator = Comparator.comparing(ApiDesign::getCreatedOn);
+        }
+        rval.sort(query.isAscending() ? comparator : comparator.reversed());
+        if (query.getLimit() > 0 && rval.size() > query.getLimit()) {
+            rval = rval.subList(0, query.getLimit());
+        }
+        return new ApiDesignPage(rval, null);
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#countApiDesignTags(java.lang.String)
+     */
+    @Override
+    public Map<String, Integer> countApiDesignTags(String userId) throws StorageException {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (ApiDesign design : this.designs.values()) {
+            for (String tag : design.getTags()) {
+                counts.merge(tag, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
     
     @Override
     public Collection<ApiDesign> getRecentApiDesigns(String userId) throws StorageException {
@@ -581,6 +731,33 @@ public class MockStorage implements IStorage {
         return null;
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listApiDesignActivity(String designId, PageCursor after, int limit)
+            throws StorageException {
+        return new CursorPage<>(new ArrayList<>(), null);
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listUserActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listUserActivity(String user, PageCursor after, int limit)
+            throws StorageException {
+        return new CursorPage<>(new ArrayList<>(), null);
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignPublications(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiPublication> listApiDesignPublications(String designId, PageCursor after, int limit)
+            throws StorageException {
+        return new CursorPage<>(new ArrayList<>(), null);
+    }
+    
     public static class MockContentRow {
         private static long CONTENT_COUNTER = 0;
         
@@ -663,4 +840,167 @@ public class MockStorage implements IStorage {
     public void updateCodegenProject(String userId, CodegenProject project) throws StorageException {
     }
 
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIds(java.lang.String, int)
+     */
+    @Override
+    public List<String> listApiDesignIds(String afterId, int limit) throws StorageException {
+        long from = afterId == null ? 0 : Long.valueOf(afterId);
+        List<String> rval = new ArrayList<>();
+        this.designs.keySet().stream().mapToLong(Long::valueOf).filter(id -> id > from).sorted().limit(limit)
+                .forEach(id -> rval.add(String.valueOf(id)));
+        return rval;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listAccessibleApiDesignIds(java.lang.String)
+     */
+    @Override
+    public Collection<String> listAccessibleApiDesignIds(String userId) throws StorageException {
+        List<String> rval = new ArrayList<>();
+        for (String designId : this.designs.keySet()) {
+            if (this.permissions.containsKey(designId + ":" + userId)) {
+                rval.add(designId);
+            }
+        }
+        return rval;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIdsChangedSince(java.lang.String)
+     */
+    @Override
+    public List<String> listApiDesignIdsChangedSince(String changeCursor) throws StorageException {
+        long contentVersion = changeCursor == null ? 0 : Long.parseLong(changeCursor);
+        List<String> rval = new ArrayList<>();
+        this.content.forEach((designId, rows) -> {
+            if (rows.stream().anyMatch(row -> row.version > contentVersion)) {
+                rval.add(designId);
+            }
+        });
+        return rval;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getChangeCursor()
+     */
+    @Override
+    public String getChangeCursor() throws StorageException {
+        return String.valueOf(MockContentRow.CONTENT_COUNTER - 1);
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getCheckpoint(java.lang.String)
+     */
+    @Override
+    public String getCheckpoint(String name) throws StorageException {
+        return this.checkpoints.get(name);
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#setCheckpoint(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void setCheckpoint(String name, String value) throws StorageException {
+        if (value == null) {
+            this.checkpoints.remove(name);
+        } else {
+            this.checkpoints.put(name, value);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#compressContent(long, int)
+     */
+    @Override
+    public ContentCompressionBatch compressContent(long afterVersion, int limit) throws StorageException {
+        ContentCompressionBatch batch = new ContentCompressionBatch();
+        batch.setLastVersion(-1);
+        return batch;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getContentDeduplicationReport()
+     */
+    @Override
+    public ContentDeduplicationReport getContentDeduplicationReport() throws StorageException {
+        return new ContentDeduplicationReport();
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteOrphanedContentBlobs()
+     */
+    @Override
+    public int deleteOrphanedContentBlobs() throws StorageException {
+        return 0;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#compactContent(java.lang.String, int, java.util.Date, boolean, int)
+     */
+    @Override
+    public int compactContent(String designId, int keepSnapshots, Date olderThan, boolean archive, int limit)
+            throws StorageException {
+        return 0;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#reserveContentVersions(int)
+     */
+    @Override
+    public List<Long> reserveContentVersions(int count) throws StorageException {
+        return null;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#addReservedContent(java.util.List)
+     */
+    @Override
+    public int addReservedContent(List<ApiContentEntry> entries) throws StorageException {
+        return 0;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#releaseConnections()
+     */
+    @Override
+    public void releaseConnections() {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#markContentPending(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void markContentPending(String designId, String journalId) throws StorageException {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#clearContentPending(java.lang.String, java.util.Collection)
+     */
+    @Override
+    public void clearContentPending(String journalId, Collection<String> designIds) throws StorageException {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#isContentPending(java.lang.String)
+     */
+    @Override
+    public boolean isContentPending(String designId) throws StorageException {
+        return false;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#beginUnitOfWork(boolean)
+     */
+    @Override
+    public void beginUnitOfWork(boolean transactional) throws StorageException {
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#endUnitOfWork(boolean)
+     */
+    @Override
+    public void endUnitOfWork(boolean commit) throws StorageException {
+    }
+
 }
@@ -18,19 +18,12 @@ package io.apicurio.hub.api.codegen.js;
 
 import java.net.URL;
 
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-
-import org.apache.commons.pool2.BasePooledObjectFactory;
-import org.apache.commons.pool2.ObjectPool;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.apicurio.hub.api.codegen.beans.CodegenInfo;
 import io.apicurio.hub.core.js.OaiScriptEngineFactory;
+import io.apicurio.hub.core.js.ScriptEnginePool;
 
 /**
  * @author eric.wittmann@gmail.com
@@ -38,27 +31,15 @@ import io.apicurio.hub.core.js.OaiScriptEngineFactory;
 public class CodegenExecutor {
 
     private static Logger logger = LoggerFactory.getLogger(CodegenExecutor.class);
-    private static ObjectPool<ScriptEngine> enginePool;
-    static {
-        enginePool = new GenericObjectPool<>(new BasePooledObjectFactory<ScriptEngine>() {
+    private static ScriptEnginePool enginePool = new ScriptEnginePool("codegen", () -> {
+        URL codegenJsUrl = CodegenExecutor.class.getClassLoader().getResource("js-lib/OAI-codegen.umd.js");
+        URL libraryJsUrl = CodegenExecutor.class.getClassLoader().getResource("js-lib/codegen-library.js");
 
-            @Override
-            public ScriptEngine create() throws Exception {
-                URL codegenJsUrl = CodegenExecutor.class.getClassLoader().getResource("js-lib/OAI-codegen.umd.js");
-                URL libraryJsUrl = CodegenExecutor.class.getClassLoader().getResource("js-lib/codegen-library.js");
-                
-                if (codegenJsUrl == null) { throw new Exception("Failed to load script: OAI-codegen.umd.js"); }
-                if (libraryJsUrl == null) { throw new Exception("Failed to load script: codegen-library.js"); }
-                
-                return OaiScriptEngineFactory.createScriptEngine(codegenJsUrl, libraryJsUrl);
-            }
+        if (codegenJsUrl == null) { throw new Exception("Failed to load script: OAI-codegen.umd.js"); }
+        if (libraryJsUrl == null) { throw new Exception("Failed to load script: codegen-library.js"); }
 
-            @Override
-            public PooledObject<ScriptEngine> wrap(ScriptEngine obj) {
-                return new DefaultPooledObject<ScriptEngine>(obj);
-            }
-        });
-    }
+        return OaiScriptEngineFactory.createScriptEngine(codegenJsUrl, libraryJsUrl);
+    });
 
     /**
      * Executes the codegen logic on the given OAI document, returning a {@link CodegenInfo} object for it.
@@ -67,19 +48,13 @@ public class CodegenExecutor {
      * @throws Exception
      */
     public static String executeCodegen(String oaiDocument, String javaPackage) throws Exception {
-        ScriptEngine engine = null;
         try {
-            engine = enginePool.borrowObject();
-            final Invocable invocable = (Invocable) engine;
-            
-            return invocable.invokeFunction("executeCodegen", oaiDocument, javaPackage).toString();
+            return enginePool.execute(0, oaiDocument.length(), invocable -> {
+                return invocable.invokeFunction("executeCodegen", oaiDocument, javaPackage).toString();
+            });
         } catch (Exception e) {
             logger.error("Error executing codegen.", e);
             throw new Exception(e);
-        } finally {
-            if (engine != null) {
-                try { enginePool.returnObject(engine); } catch (Exception e) {}
-            }
         }
     }
 
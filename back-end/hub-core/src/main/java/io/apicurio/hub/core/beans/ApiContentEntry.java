@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.beans;
+
+import java.util.Date;
+
+/**
+ * A single row of content (of an API design) whose content version was assigned before it was stored.
+ * @author eric.wittmann@gmail.com
+ */
+public class ApiContentEntry {
+    
+    private String designId;
+    private long contentVersion;
+    private ApiContentType type;
+    private String data;
+    private String createdBy;
+    private Date createdOn;
+    
+    /**
+     * Constructor.
+     */
+    public ApiContentEntry() {
+    }
+
+    /**
+     * @return the designId
+     */
+    public String getDesignId() {
+        return designId;
+    }
+
+    /**
+     * @param designId the designId to set
+     */
+    public void setDesignId(String designId) {
+        this.designId = designId;
+    }
+
+    /**
+     * @return the contentVersion
+     */
+    public long getContentVersion() {
+        return contentVersion;
+    }
+
+    /**
+     * @param contentVersion the contentVersion to set
+     */
+    public void setContentVersion(long contentVersion) {
+        this.contentVersion = contentVersion;
+    }
+
+    /**
+     * @return the type
+     */
+    public ApiContentType getType() {
+        return type;
+    }
+
+    /**
+     * @param type the type to set
+     */
+    public void setType(ApiContentType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the data
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * @param data the data to set
+     */
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the createdBy
+     */
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    /**
+     * @param createdBy the createdBy to set
+     */
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    /**
+     * @return the createdOn
+     */
+    public Date getCreatedOn() {
+        return createdOn;
+    }
+
+    /**
+     * @param createdOn the createdOn to set
+     */
+    public void setCreatedOn(Date createdOn) {
+        this.createdOn = createdOn;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.beans;
+
+import java.util.Date;
+
+/**
+ * Reports the progress of a bulk rollup of all API designs.
+ * @author eric.wittmann@gmail.com
+ */
+public class BulkRollupStatus {
+    
+    private boolean running;
+    private Date startedOn;
+    private Date finishedOn;
+    private int parallelism;
+    private int rateLimit;
+    private String checkpoint;
+    private long designsProcessed;
+    private long designsRolledUp;
+    private long designsFailed;
+    private double designsPerSecond;
+    
+    /**
+     * Constructor.
+     */
+    public BulkRollupStatus() {
+    }
+
+    /**
+     * @return the running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param running the running to set
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * @return the startedOn
+     */
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    /**
+     * @param startedOn the startedOn to set
+     */
+    public void setStartedOn(Date startedOn) {
+        this.startedOn = startedOn;
+    }
+
+    /**
+     * @return the finishedOn
+     */
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    /**
+     * @param finishedOn the finishedOn to set
+     */
+    public void setFinishedOn(Date finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+
+    /**
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism the parallelism to set
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the rateLimit
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @param rateLimit the rateLimit to set
+     */
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * @return the checkpoint
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint the checkpoint to set
+     */
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the designsProcessed
+     */
+    public long getDesignsProcessed() {
+        return designsProcessed;
+    }
+
+    /**
+     * @param designsProcessed the designsProcessed to set
+     */
+    public void setDesignsProcessed(long designsProcessed) {
+        this.designsProcessed = designsProcessed;
+    }
+
+    /**
+     * @return the designsRolledUp
+     */
+    public long getDesignsRolledUp() {
+        return designsRolledUp;
+    }
+
+    /**
+     * @param designsRolledUp the designsRolledUp to set
+     */
+    public void setDesignsRolledUp(long designsRolledUp) {
+        this.designsRolledUp = designsRolledUp;
+    }
+
+    /**
+     * @return the designsFailed
+     */
+    public long getDesignsFailed() {
+        return designsFailed;
+    }
+
+    /**
+     * @param designsFailed the designsFailed to set
+     */
+    public void setDesignsFailed(long designsFailed) {
+        this.designsFailed = designsFailed;
+    }
+
+    /**
+     * @return the designsPerSecond
+     */
+    public double getDesignsPerSecond() {
+        return designsPerSecond;
+    }
+
+    /**
+     * @param designsPerSecond the designsPerSecond to set
+     */
+    public void setDesignsPerSecond(double designsPerSecond) {
+        this.designsPerSecond = designsPerSecond;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.beans;
+
+import java.util.Date;
+
+/**
+ * The status of the (background) compaction of the content history of all API designs.
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCompactionStatus {
+    
+    private boolean running;
+    private Date startedOn;
+    private Date finishedOn;
+    private String mode;
+    private String checkpoint;
+    private long designsProcessed;
+    private long rowsArchived;
+    private long rowsDropped;
+    
+    /**
+     * Constructor.
+     */
+    public ContentCompactionStatus() {
+    }
+
+    /**
+     * @return the running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param running the running to set
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * @return the startedOn
+     */
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    /**
+     * @param startedOn the startedOn to set
+     */
+    public void setStartedOn(Date startedOn) {
+        this.startedOn = startedOn;
+    }
+
+    /**
+     * @return the finishedOn
+     */
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    /**
+     * @param finishedOn the finishedOn to set
+     */
+    public void setFinishedOn(Date finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+
+    /**
+     * @return the mode
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * @param mode the mode to set
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return the checkpoint
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint the checkpoint to set
+     */
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the designsProcessed
+     */
+    public long getDesignsProcessed() {
+        return designsProcessed;
+    }
+
+    /**
+     * @param designsProcessed the designsProcessed to set
+     */
+    public void setDesignsProcessed(long designsProcessed) {
+        this.designsProcessed = designsProcessed;
+    }
+
+    /**
+     * @return the rowsArchived
+     */
+    public long getRowsArchived() {
+        return rowsArchived;
+    }
+
+    /**
+     * @param rowsArchived the rowsArchived to set
+     */
+    public void setRowsArchived(long rowsArchived) {
+        this.rowsArchived = rowsArchived;
+    }
+
+    /**
+     * @return the rowsDropped
+     */
+    public long getRowsDropped() {
+        return rowsDropped;
+    }
+
+    /**
+     * @param rowsDropped the rowsDropped to set
+     */
+    public void setRowsDropped(long rowsDropped) {
+        this.rowsDropped = rowsDropped;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.beans;
+
+/**
+ * The result of compressing a single batch of stored API design documents.
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCompressionBatch {
+    
+    private long lastVersion;
+    private long rowsExamined;
+    private long rowsCompressed;
+    private long bytesBefore;
+    private long bytesAfter;
+    private long compressNanos;
+    private long decompressNanos;
+    
+    /**
+     * Constructor.
+     */
+    public ContentCompressionBatch() {
+    }
+
+    /**
+     * @return the lastVersion
+     */
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+    /**
+     * @param lastVersion the lastVersion to set
+     */
+    public void setLastVersion(long lastVersion) {
+        this.lastVersion = lastVersion;
+    }
+
+    /**
+     * @return the rowsExamined
+     */
+    public long getRowsExamined() {
+        return rowsExamined;
+    }
+
+    /**
+     * @param rowsExamined the rowsExamined to set
+     */
+    public void setRowsExamined(long rowsExamined) {
+        this.rowsExamined = rowsExamined;
+    }
+
+    /**
+     * @return the rowsCompressed
+     */
+    public long getRowsCompressed() {
+        return rowsCompressed;
+    }
+
+    /**
+     * @param rowsCompressed the rowsCompressed to set
+     */
+    public void setRowsCompressed(long rowsCompressed) {
+        this.rowsCompressed = rowsCompressed;
+    }
+
+    /**
+     * @return the bytesBefore
+     */
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    /**
+     * @param bytesBefore the bytesBefore to set
+     */
+    public void setBytesBefore(long bytesBefore) {
+        this.bytesBefore = bytesBefore;
+    }
+
+    /**
+     * @return the bytesAfter
+     */
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    /**
+     * @param bytesAfter the bytesAfter to set
+     */
+    public void setBytesAfter(long bytesAfter) {
+        this.bytesAfter = bytesAfter;
+    }
+
+    /**
+     * @return the compressNanos
+     */
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    /**
+     * @param compressNanos the compressNanos to set
+     */
+    public void setCompressNanos(long compressNanos) {
+        this.compressNanos = compressNanos;
+    }
+
+    /**
+     * @return the decompressNanos
+     */
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    /**
+     * @param decompressNanos the decompressNanos to set
+     */
+    public void setDecompressNanos(long decompressNanos) {
+        this.decompressNanos = decompressNanos;
+    }
+
+}
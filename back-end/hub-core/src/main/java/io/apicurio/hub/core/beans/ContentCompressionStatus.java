@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.beans;
+
+import java.util.Date;
+
+/**
+ * Reports the progress of compressing all stored API design documents, including the space
+ * saved and the time spent compressing (write overhead) and decompressing (read overhead) them.
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCompressionStatus {
+    
+    private boolean running;
+    private Date startedOn;
+    private Date finishedOn;
+    private String codec;
+    private String checkpoint;
+    private long rowsProcessed;
+    private long rowsCompressed;
+    private long bytesBefore;
+    private long bytesAfter;
+    private double savingsPercent;
+    private double avgCompressMillis;
+    private double avgDecompressMillis;
+    
+    /**
+     * Constructor.
+     */
+    public ContentCompressionStatus() {
+    }
+
+    /**
+     * @return the running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param running the running to set
+     */
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * @return the startedOn
+     */
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    /**
+     * @param startedOn the startedOn to set
+     */
+    public void setStartedOn(Date startedOn) {
+        this.startedOn = startedOn;
+    }
+
+    /**
+     * @return the finishedOn
+     */
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    /**
+     * @param finishedOn the finishedOn to set
+     */
+    public void setFinishedOn(Date finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+
+    /**
+     * @return the codec
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * @param codec the codec to set
+     */
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @return the checkpoint
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint the checkpoint to set
+     */
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the rowsProcessed
+     */
+    public long getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    /**
+     * @param rowsProcessed the rowsProcessed to set
+     */
+    public void setRowsProcessed(long rowsProcessed) {
+        this.rowsProcessed = rowsProcessed;
+    }
+
+    /**
+     * @return the rowsCompressed
+     */
+    public long getRowsCompressed() {
+        return rowsCompressed;
+    }
+
+    /**
+     * @param rowsCompressed the rowsCompressed to set
+     */
+    public void setRowsCompressed(long rowsCompressed) {
+        this.rowsCompressed = rowsCompressed;
+    }
+
+    /**
+     * @return the bytesBefore
+     */
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+
+    /**
+     * @param bytesBefore the bytesBefore to set
+     */
+    public void setBytesBefore(long bytesBefore) {
+        this.bytesBefore = bytesBefore;
+    }
+
+    /**
+     * @return the bytesAfter
+     */
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+
+    /**
+     * @param bytesAfter the bytesAfter to set
+     */
+    public void setBytesAfter(long bytesAfter) {
+        this.bytesAfter = bytesAfter;
+    }
+
+    /**
+     * @return the savingsPercent
+     */
+    public double getSavingsPercent() {
+        return savingsPercent;
+    }
+
+    /**
+     * @param savingsPercent the savingsPercent to set
+     */
+    public void setSavingsPercent(double savingsPercent) {
+        this.savingsPercent = savingsPercent;
+    }
+
+    /**
+     * @return the avgCompressMillis
+     */
+    public double getAvgCompressMillis() {
+        return avgCompressMillis;
+    }
+
+    /**
+     * @param avgCompressMillis the avgCompressMillis to set
+     */
+    public void setAvgCompressMillis(double avgCompressMillis) {
+        this.avgCompressMillis = avgCompressMillis;
+    }
+
+    /**
+     * @return the avgDecompressMillis
+     */
+    public double getAvgDecompressMillis() {
+        return avgDecompressMillis;
+    }
+
+    /**
+     * @param avgDecompressMillis the avgDecompressMillis to set
+     */
+    public void setAvgDecompressMillis(double avgDecompressMillis) {
+        this.avgDecompressMillis = avgDecompressMillis;
+    }
+
+}
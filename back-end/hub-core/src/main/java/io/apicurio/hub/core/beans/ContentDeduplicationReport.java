@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.beans;
+
+/**
+ * Reports how much API design document content is deduplicated: the number of document
+ * snapshots that reference a shared (content-addressed) blob, the number of distinct blobs,
+ * the (uncompressed) size of the referenced content versus the size actually stored, and the
+ * number of rollups that were skipped because they would not have changed the document.
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentDeduplicationReport {
+    
+    private long sharedDocuments;
+    private long blobs;
+    private long logicalBytes;
+    private long storedBytes;
+    private long savedBytes;
+    private double savingsPercent;
+    private long rollupsSkipped;
+    
+    /**
+     * Constructor.
+     */
+    public ContentDeduplicationReport() {
+    }
+
+    /**
+     * @return the sharedDocuments
+     */
+    public long getSharedDocuments() {
+        return sharedDocuments;
+    }
+
+    /**
+     * @param sharedDocuments the sharedDocuments to set
+     */
+    public void setSharedDocuments(long sharedDocuments) {
+        this.sharedDocuments = sharedDocuments;
+    }
+
+    /**
+     * @return the blobs
+     */
+    public long getBlobs() {
+        return blobs;
+    }
+
+    /**
+     * @param blobs the blobs to set
+     */
+    public void setBlobs(long blobs) {
+        this.blobs = blobs;
+    }
+
+    /**
+     * @return the logicalBytes
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * @param logicalBytes the logicalBytes to set
+     */
+    public void setLogicalBytes(long logicalBytes) {
+        this.logicalBytes = logicalBytes;
+    }
+
+    /**
+     * @return the storedBytes
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @param storedBytes the storedBytes to set
+     */
+    public void setStoredBytes(long storedBytes) {
+        this.storedBytes = storedBytes;
+    }
+
+    /**
+     * @return the savedBytes
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * @param savedBytes the savedBytes to set
+     */
+    public void setSavedBytes(long savedBytes) {
+        this.savedBytes = savedBytes;
+    }
+
+    /**
+     * @return the savingsPercent
+     */
+    public double getSavingsPercent() {
+        return savingsPercent;
+    }
+
+    /**
+     * @param savingsPercent the savingsPercent to set
+     */
+    public void setSavingsPercent(double savingsPercent) {
+        this.savingsPercent = savingsPercent;
+    }
+
+    /**
+     * @return the rollupsSkipped
+     */
+    public long getRollupsSkipped() {
+        return rollupsSkipped;
+    }
+
+    /**
+     * @param rollupsSkipped the rollupsSkipped to set
+     */
+    public void setRollupsSkipped(long rollupsSkipped) {
+        this.rollupsSkipped = rollupsSkipped;
+    }
+
+}
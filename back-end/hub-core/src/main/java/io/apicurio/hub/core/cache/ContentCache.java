@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.cache;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * A bounded, in-memory cache of rendered API design content.  Producing the current content
+ * of an API design means loading the latest snapshot and replaying any pending commands in a
+ * script engine, which is expensive.  This cache holds the result (in each rendering that has
+ * been asked for) keyed by the design ID and the design's content ETag (see
+ * {@link io.apicurio.hub.core.storage.IStorage#getContentETag(String, String)}).  Since the ETag
+ * changes whenever content is added, undone or redone, stale entries are never served even when
+ * the content was changed by another node.
+ * 
+ * The cache is capped by the (approximate) total number of bytes it holds.  When the cap is
+ * exceeded, the least recently used designs are evicted.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class ContentCache {
+
+    private static Logger logger = LoggerFactory.getLogger(ContentCache.class);
+
+    /**
+     * The renderings of API design content that can be cached.
+     */
+    public static enum Rendering {
+        JSON, FORMATTED_JSON, YAML
+    }
+
+    @Inject
+    private HubConfiguration config;
+
+    private long maxBytes;
+    private long currentBytes;
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructor.
+     */
+    public ContentCache() {
+    }
+
+    /**
+     * Constructor.
+     * @param maxBytes
+     */
+    public ContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @PostConstruct
+    void postConstruct() {
+        this.maxBytes = config.getContentCacheMaxBytes();
+        logger.debug("Content cache size limited to {} bytes.", this.maxBytes);
+    }
+
+    /**
+     * Returns the cached rendering of the content of the given API design, or null if it is
+     * not cached (or the cached content is for a different ETag).
+     * @param designId
+     * @param etag
+     * @param rendering
+     */
+    public synchronized String get(String designId, String etag, Rendering rendering) {
+        CacheEntry entry = this.entries.get(designId);
+        if (entry == null || !entry.etag.equals(etag)) {
+            return null;
+        }
+        return entry.renderings.get(rendering);
+    }
+
+    /**
+     * Adds a rendering of the content of an API design to the cache.  Renderings cached for
+     * any other ETag of the same design are discarded.
+     * @param designId
+     * @param etag
+     * @param rendering
+     * @param content
+     */
+    public synchronized void put(String designId, String etag, Rendering rendering, String content) {
+        long size = sizeOf(content);
+        if (size > this.maxBytes) {
+            return;
+        }
+        CacheEntry entry = this.entries.get(designId);
+        if (entry == null || !entry.etag.equals(etag)) {
+            if (entry != null) {
+                this.currentBytes -= entry.size;
+            }
+            entry = new CacheEntry(etag);
+            this.entries.put(designId, entry);
+        }
+        String previous = entry.renderings.put(rendering, content);
+        if (previous != null) {
+            entry.size -= sizeOf(previous);
+            this.currentBytes -= sizeOf(previous);
+        }
+        entry.size += size;
+        this.currentBytes += size;
+        evict();
+    }
+
+    /**
+     * Removes all cached content for the given API design.
+     * @param designId
+     */
+    public synchronized void invalidate(String designId) {
+        CacheEntry entry = this.entries.remove(designId);
+        if (entry != null) {
+            this.currentBytes -= entry.size;
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes currently held by the cache
+     */
+    public synchronized long getSize() {
+        return this.currentBytes;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits within its limit.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, CacheEntry>> iter = this.entries.entrySet().iterator();
+        while (this.currentBytes > this.maxBytes && iter.hasNext()) {
+            Map.Entry<String, CacheEntry> eldest = iter.next();
+            logger.debug("Evicting content for API design {} from the cache.", eldest.getKey());
+            this.currentBytes -= eldest.getValue().size;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Approximates the number of bytes used by a string (two bytes per char, plus overhead).
+     * @param content
+     */
+    private static long sizeOf(String content) {
+        return 64L + 2L * content.length();
+    }
+
+    /**
+     * The cached renderings for a single API design.
+     */
+    private static class CacheEntry {
+
+        private final String etag;
+        private final Map<Rendering, String> renderings = new EnumMap<>(Rendering.class);
+        private long size;
+
+        /**
+         * Constructor.
+         * @param etag
+         */
+        public CacheEntry(String etag) {
+            this.etag = etag;
+        }
+    }
+
+}
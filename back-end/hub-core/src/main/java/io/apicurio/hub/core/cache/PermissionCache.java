@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * A short lived, in-memory cache of the roles users have on API designs.  Nearly every REST
+ * call checks the caller's permission on the design it touches (and most content queries join
+ * with the acl table to do the same), so remembering a verified role for a few seconds saves a
+ * lot of round trips to the acl table.
+ * 
+ * Only granted roles are cached.  Entries are explicitly invalidated when permissions are
+ * created, changed or removed, and when a design is deleted.  Since those changes may also be
+ * made by another node, entries always expire after the configured TTL, which bounds how long
+ * a revoked permission may still be honoured.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class PermissionCache {
+
+    private static Logger logger = LoggerFactory.getLogger(PermissionCache.class);
+
+    private static final int MAX_ENTRIES = 10000;
+
+    @Inject
+    private HubConfiguration config;
+
+    private long ttlMillis;
+    private final Map<String, Map<String, CacheEntry>> entries = new HashMap<>();
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public PermissionCache() {
+    }
+
+    /**
+     * Constructor.
+     * @param ttlMillis
+     */
+    public PermissionCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    @PostConstruct
+    void postConstruct() {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(config.getPermissionCacheTtl());
+        logger.debug("Permissions cached for {}ms.", this.ttlMillis);
+    }
+
+    /**
+     * Returns the cached role of the given user on the given API design, or null if no
+     * (unexpired) role is cached.
+     * @param userId
+     * @param designId
+     */
+    public synchronized String getRole(String userId, String designId) {
+        Map<String, CacheEntry> designEntries = this.entries.get(designId);
+        if (designEntries == null) {
+            return null;
+        }
+        CacheEntry entry = designEntries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresOn < System.currentTimeMillis()) {
+            designEntries.remove(userId);
+            this.size--;
+            if (designEntries.isEmpty()) {
+                this.entries.remove(designId);
+            }
+            return null;
+        }
+        return entry.role;
+    }
+
+    /**
+     * Caches the role of the given user on the given API design.
+     * @param userId
+     * @param designId
+     * @param role
+     */
+    public synchronized void putRole(String userId, String designId, String role) {
+        if (this.ttlMillis <= 0 || role == null) {
+            return;
+        }
+        if (this.size >= MAX_ENTRIES) {
+            evictExpired();
+        }
+        if (this.size >= MAX_ENTRIES) {
+            logger.debug("Permission cache is full, clearing it.");
+            this.entries.clear();
+            this.size = 0;
+        }
+        Map<String, CacheEntry> designEntries = this.entries.computeIfAbsent(designId, key -> new HashMap<>());
+        if (designEntries.put(userId, new CacheEntry(role, System.currentTimeMillis() + this.ttlMillis)) == null) {
+            this.size++;
+        }
+    }
+
+    /**
+     * Removes the cached role of the given user on the given API design.
+     * @param userId
+     * @param designId
+     */
+    public synchronized void invalidate(String userId, String designId) {
+        Map<String, CacheEntry> designEntries = this.entries.get(designId);
+        if (designEntries != null && designEntries.remove(userId) != null) {
+            this.size--;
+            if (designEntries.isEmpty()) {
+                this.entries.remove(designId);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached roles of all users on the given API design.
+     * @param designId
+     */
+    public synchronized void invalidate(String designId) {
+        Map<String, CacheEntry> designEntries = this.entries.remove(designId);
+        if (designEntries != null) {
+            this.size -= designEntries.size();
+        }
+    }
+
+    /**
+     * Removes all expired entries.
+     */
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map<String, CacheEntry>> designIter = this.entries.values().iterator();
+        while (designIter.hasNext()) {
+            Map<String, CacheEntry> designEntries = designIter.next();
+            Iterator<CacheEntry> iter = designEntries.values().iterator();
+            while (iter.hasNext()) {
+                if (iter.next().expiresOn < now) {
+                    iter.remove();
+                    this.size--;
+                }
+            }
+            if (designEntries.isEmpty()) {
+                designIter.remove();
+            }
+        }
+    }
+
+    /**
+     * A cached role.
+     */
+    private static class CacheEntry {
+
+        private final String role;
+        private final long expiresOn;
+
+        /**
+         * Constructor.
+         * @param role
+         * @param expiresOn
+         */
+        public CacheEntry(String role, long expiresOn) {
+            this.role = role;
+            this.expiresOn = expiresOn;
+        }
+    }
+
+}
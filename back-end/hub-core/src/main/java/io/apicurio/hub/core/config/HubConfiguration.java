@@ -44,6 +44,69 @@ public class HubConfiguration extends Configuration {
     private static final String BITBUCKET_API_URL_ENV = "APICURIO_BITBUCKET_API_URL";
     private static final String BITBUCKET_API_URL_SYSPROP = "apicurio.hub.bitbucket.api";
 
+    private static final String ADMIN_TOKEN_ENV = "APICURIO_HUB_ADMIN_TOKEN";
+    private static final String ADMIN_TOKEN_SYSPROP = "apicurio.hub.admin.token";
+
+    private static final String ROLLUP_PARALLELISM_ENV = "APICURIO_HUB_ROLLUP_PARALLELISM";
+    private static final String ROLLUP_PARALLELISM_SYSPROP = "apicurio.hub.rollup.parallelism";
+
+    private static final String ROLLUP_RATE_LIMIT_ENV = "APICURIO_HUB_ROLLUP_RATE_LIMIT";
+    private static final String ROLLUP_RATE_LIMIT_SYSPROP = "apicurio.hub.rollup.rate-limit";
+
+    private static final String CONTENT_CACHE_MAX_BYTES_ENV = "APICURIO_HUB_CONTENT_CACHE_MAX_BYTES";
+    private static final String CONTENT_CACHE_MAX_BYTES_SYSPROP = "apicurio.hub.content-cache.max-bytes";
+
+    private static final String CONTENT_COMPRESSION_ENV = "APICURIO_HUB_CONTENT_COMPRESSION";
+    private static final String CONTENT_COMPRESSION_SYSPROP = "apicurio.hub.content.compression";
+
+    private static final String CONTENT_DEDUPLICATION_ENV = "APICURIO_HUB_CONTENT_DEDUPLICATION";
+    private static final String CONTENT_DEDUPLICATION_SYSPROP = "apicurio.hub.content.deduplication";
+
+    private static final String PERMISSION_CACHE_TTL_ENV = "APICURIO_HUB_PERMISSION_CACHE_TTL";
+    private static final String PERMISSION_CACHE_TTL_SYSPROP = "apicurio.hub.permission-cache.ttl";
+
+    private static final String COMPACTION_KEEP_SNAPSHOTS_ENV = "APICURIO_HUB_COMPACTION_KEEP_SNAPSHOTS";
+    private static final String COMPACTION_KEEP_SNAPSHOTS_SYSPROP = "apicurio.hub.compaction.keep-snapshots";
+
+    private static final String COMPACTION_KEEP_DAYS_ENV = "APICURIO_HUB_COMPACTION_KEEP_DAYS";
+    private static final String COMPACTION_KEEP_DAYS_SYSPROP = "apicurio.hub.compaction.keep-days";
+
+    private static final String COMPACTION_MODE_ENV = "APICURIO_HUB_COMPACTION_MODE";
+    private static final String COMPACTION_MODE_SYSPROP = "apicurio.hub.compaction.mode";
+
+    private static final String READ_DATASOURCE_ENV = "APICURIO_HUB_READ_DATASOURCE";
+    private static final String READ_DATASOURCE_SYSPROP = "apicurio.hub.read-datasource";
+
+    private static final String READ_DATASOURCE_MAX_LAG_ENV = "APICURIO_HUB_READ_DATASOURCE_MAX_LAG";
+    private static final String READ_DATASOURCE_MAX_LAG_SYSPROP = "apicurio.hub.read-datasource.max-lag";
+
+    private static final String EDITING_JOURNAL_DIR_ENV = "APICURIO_HUB_EDITING_JOURNAL_DIR";
+    private static final String EDITING_JOURNAL_DIR_SYSPROP = "apicurio.hub.editing.journal.dir";
+
+    private static final String EDITING_JOURNAL_SIZE_ENV = "APICURIO_HUB_EDITING_JOURNAL_SIZE";
+    private static final String EDITING_JOURNAL_SIZE_SYSPROP = "apicurio.hub.editing.journal.size";
+
+    private static final String EDITING_JOURNAL_FLUSH_INTERVAL_ENV = "APICURIO_HUB_EDITING_JOURNAL_FLUSH_INTERVAL";
+    private static final String EDITING_JOURNAL_FLUSH_INTERVAL_SYSPROP = "apicurio.hub.editing.journal.flush-interval";
+
+    private static final String SEARCH_REFRESH_INTERVAL_ENV = "APICURIO_HUB_SEARCH_REFRESH_INTERVAL";
+    private static final String SEARCH_REFRESH_INTERVAL_SYSPROP = "apicurio.hub.search.refresh-interval";
+
+    private static final String UNDELETE_WINDOW_ENV = "APICURIO_HUB_UNDELETE_WINDOW";
+    private static final String UNDELETE_WINDOW_SYSPROP = "apicurio.hub.undelete-window";
+
+    private static final String PURGE_INTERVAL_ENV = "APICURIO_HUB_PURGE_INTERVAL";
+    private static final String PURGE_INTERVAL_SYSPROP = "apicurio.hub.purge-interval";
+
+    private static final String STORAGE_SHARDS_ENV = "APICURIO_HUB_STORAGE_SHARDS";
+    private static final String STORAGE_SHARDS_SYSPROP = "apicurio.hub.storage.shards";
+
+    private static final String STORAGE_NEW_DESIGN_SHARDS_ENV = "APICURIO_HUB_STORAGE_NEW_DESIGN_SHARDS";
+    private static final String STORAGE_NEW_DESIGN_SHARDS_SYSPROP = "apicurio.hub.storage.new-design-shards";
+
+    private static final String STORAGE_SLOW_STATEMENT_THRESHOLD_ENV = "APICURIO_HUB_STORAGE_SLOW_STATEMENT_THRESHOLD";
+    private static final String STORAGE_SLOW_STATEMENT_THRESHOLD_SYSPROP = "apicurio.hub.storage.slow-statement-threshold";
+
     /**
      * @return the configured JDBC type (default: h2)
      */
@@ -86,4 +149,188 @@ public class HubConfiguration extends Configuration {
         return getConfigurationProperty(BITBUCKET_API_URL_ENV, BITBUCKET_API_URL_SYSPROP, "https://api.bitbucket.org/2.0");
     }
     
+    /**
+     * @return the token that must be presented to invoke administrative (maintenance) operations, or
+     *         an empty string if those operations are disabled (default: disabled)
+     */
+    public String getAdminToken() {
+        return getConfigurationProperty(ADMIN_TOKEN_ENV, ADMIN_TOKEN_SYSPROP, "");
+    }
+
+    /**
+     * @return the number of designs to roll up in parallel during a bulk rollup (default: 0, which
+     *         means one per available script engine)
+     */
+    public int getRollupParallelism() {
+        return getIntConfigurationProperty(ROLLUP_PARALLELISM_ENV, ROLLUP_PARALLELISM_SYSPROP, 0);
+    }
+
+    /**
+     * @return the maximum number of designs per second to roll up during a bulk rollup (default: 10,
+     *         0 means unlimited)
+     */
+    public int getRollupRateLimit() {
+        return getIntConfigurationProperty(ROLLUP_RATE_LIMIT_ENV, ROLLUP_RATE_LIMIT_SYSPROP, 10);
+    }
+
+    /**
+     * @return the maximum (approximate) number of bytes of rendered API content to keep in 
+     *         memory (default: 32MB, 0 disables the cache)
+     */
+    public int getContentCacheMaxBytes() {
+        return getIntConfigurationProperty(CONTENT_CACHE_MAX_BYTES_ENV, CONTENT_CACHE_MAX_BYTES_SYSPROP, 32 * 1024 * 1024);
+    }
+
+    /**
+     * @return the number of seconds a user's role on an API design is cached in memory
+     *         (default: 10, 0 disables the cache)
+     */
+    public int getPermissionCacheTtl() {
+        return getIntConfigurationProperty(PERMISSION_CACHE_TTL_ENV, PERMISSION_CACHE_TTL_SYSPROP, 10);
+    }
+
+    /**
+     * @return the codec used to compress stored API design documents: "none" or "gzip" (default: none)
+     */
+    public String getContentCompression() {
+        return getConfigurationProperty(CONTENT_COMPRESSION_ENV, CONTENT_COMPRESSION_SYSPROP, "none");
+    }
+
+    /**
+     * @return true if identical document snapshots should be stored once in the shared blob table (default: true)
+     */
+    public boolean isContentDeduplication() {
+        return "true".equals(getConfigurationProperty(CONTENT_DEDUPLICATION_ENV, CONTENT_DEDUPLICATION_SYSPROP, "true"));
+    }
+
+    /**
+     * @return the number of most recent document snapshots of each API design whose commands
+     *         are kept in the content table by compaction (default: 2)
+     */
+    public int getCompactionKeepSnapshots() {
+        return getIntConfigurationProperty(COMPACTION_KEEP_SNAPSHOTS_ENV, COMPACTION_KEEP_SNAPSHOTS_SYSPROP, 2);
+    }
+
+    /**
+     * @return the number of days of commands kept in the content table by compaction, 0 to
+     *         compact based on snapshots only (default: 30)
+     */
+    public int getCompactionKeepDays() {
+        return getIntConfigurationProperty(COMPACTION_KEEP_DAYS_ENV, COMPACTION_KEEP_DAYS_SYSPROP, 30);
+    }
+
+    /**
+     * @return what compaction does with old commands: "archive" them (keeping the activity
+     *         history) or "drop" them (default: archive)
+     */
+    public String getCompactionMode() {
+        return getConfigurationProperty(COMPACTION_MODE_ENV, COMPACTION_MODE_SYSPROP, "archive");
+    }
+
+    /**
+     * @return the JNDI name of an (optional) read replica datasource used for read-only queries,
+     *         empty to send all queries to the primary datasource
+     *         (default: java:jboss/datasources/ApicurioReadDS)
+     */
+    public String getReadDataSource() {
+        return getConfigurationProperty(READ_DATASOURCE_ENV, READ_DATASOURCE_SYSPROP, "java:jboss/datasources/ApicurioReadDS");
+    }
+
+    /**
+     * @return the number of seconds after a write to an API design during which reads of that
+     *         design are still sent to the primary datasource (default: 5)
+     */
+    public int getReadDataSourceMaxLag() {
+        return getIntConfigurationProperty(READ_DATASOURCE_MAX_LAG_ENV, READ_DATASOURCE_MAX_LAG_SYSPROP, 5);
+    }
+
+    /**
+     * @return the directory of the local journal that editing commands are written to before
+     *         they are (asynchronously) stored in the database, empty to store commands in the
+     *         database directly (default: empty)
+     */
+    public String getEditingJournalDir() {
+        return getConfigurationProperty(EDITING_JOURNAL_DIR_ENV, EDITING_JOURNAL_DIR_SYSPROP, "");
+    }
+
+    /**
+     * @return the size (in megabytes) of the editing command journal file (default: 64)
+     */
+    public int getEditingJournalSize() {
+        return getIntConfigurationProperty(EDITING_JOURNAL_SIZE_ENV, EDITING_JOURNAL_SIZE_SYSPROP, 64);
+    }
+
+    /**
+     * @return the number of milliseconds between two flushes of the editing command journal to
+     *         the database (default: 200)
+     */
+    public int getEditingJournalFlushInterval() {
+        return getIntConfigurationProperty(EDITING_JOURNAL_FLUSH_INTERVAL_ENV, EDITING_JOURNAL_FLUSH_INTERVAL_SYSPROP, 200);
+    }
+
+    /**
+     * @return the number of seconds between two checks for API designs that were changed (e.g. by
+     *         another node) and need to be indexed again for searching (default: 10)
+     */
+    public int getSearchRefreshInterval() {
+        return getIntConfigurationProperty(SEARCH_REFRESH_INTERVAL_ENV, SEARCH_REFRESH_INTERVAL_SYSPROP, 10);
+    }
+
+    /**
+     * @return the number of minutes during which a deleted API design can still be restored,
+     *         before it is purged (default: 60)
+     */
+    public int getUndeleteWindow() {
+        return getIntConfigurationProperty(UNDELETE_WINDOW_ENV, UNDELETE_WINDOW_SYSPROP, 60);
+    }
+
+    /**
+     * @return the number of seconds between two checks for deleted API designs that need to
+     *         be purged (default: 60)
+     */
+    public int getPurgeInterval() {
+        return getIntConfigurationProperty(PURGE_INTERVAL_ENV, PURGE_INTERVAL_SYSPROP, 60);
+    }
+
+    /**
+     * @return a comma separated list of the JNDI names of the datasources (in addition to the
+     *         primary one) that API designs are sharded across, empty to store all API designs
+     *         in the primary datasource (default: empty)
+     */
+    public String getStorageShards() {
+        return getConfigurationProperty(STORAGE_SHARDS_ENV, STORAGE_SHARDS_SYSPROP, "");
+    }
+
+    /**
+     * @return a comma separated list of the shards that new API designs are placed on ("primary"
+     *         or one of the configured storage shards), empty to use all shards (default: empty)
+     */
+    public String getStorageNewDesignShards() {
+        return getConfigurationProperty(STORAGE_NEW_DESIGN_SHARDS_ENV, STORAGE_NEW_DESIGN_SHARDS_SYSPROP, "");
+    }
+
+    /**
+     * @return the time (in milliseconds) after which a SQL statement is logged as slow, 0 to
+     *         disable slow statement logging (default: 1000)
+     */
+    public int getStorageSlowStatementThreshold() {
+        return getIntConfigurationProperty(STORAGE_SLOW_STATEMENT_THRESHOLD_ENV, STORAGE_SLOW_STATEMENT_THRESHOLD_SYSPROP, 1000);
+    }
+
+    /**
+     * Gets a configuration property as an integer, falling back to the default value if
+     * the configured value is not a valid number.
+     * @param envKey
+     * @param sysPropKey
+     * @param defaultValue
+     */
+    private static int getIntConfigurationProperty(String envKey, String sysPropKey, int defaultValue) {
+        String value = getConfigurationProperty(envKey, sysPropKey, String.valueOf(defaultValue));
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
 }
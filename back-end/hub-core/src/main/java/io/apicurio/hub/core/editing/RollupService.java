@@ -0,0 +1,441 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.editing;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignCollaborator;
+import io.apicurio.hub.core.beans.ApiDesignCommand;
+import io.apicurio.hub.core.beans.ApiDesignContent;
+import io.apicurio.hub.core.beans.ApiDesignResourceInfo;
+import io.apicurio.hub.core.beans.BulkRollupStatus;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.js.OaiCommandException;
+import io.apicurio.hub.core.js.OaiCommandExecutor;
+import io.apicurio.hub.core.search.SearchService;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * A service used to "roll up" the commands executed against an API design into a new
+ * full content document.  A single design is rolled up whenever the last editing session
+ * for it closes.  In addition, all designs can be rolled up in bulk (e.g. after a library
+ * upgrade or when command backlogs have piled up).
+ *
+ * A bulk rollup visits every design (in order of ID) and fans the work out across a
+ * work-stealing pool that is never larger than the script engine pool.  Progress is
+ * checkpointed in the storage after each page of designs so that an interrupted run can
+ * be resumed.  Rolling up a design that has no pending commands is a no-op, so replaying
+ * a partially completed page is harmless.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class RollupService {
+
+    private static Logger logger = LoggerFactory.getLogger(RollupService.class);
+
+    static final String BULK_ROLLUP_CHECKPOINT = "bulk-rollup";
+    private static final int PAGE_SIZE = 100;
+
+    @Inject
+    private IStorage storage;
+    @Inject
+    private OaiCommandExecutor oaiCommandExecutor;
+    @Inject
+    private HubConfiguration config;
+    @Inject
+    private SearchService searchService;
+
+    private BulkRollupStatus bulkStatus;
+    private volatile boolean stopRequested;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong rolledUp = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Finds all commands executed since the last full content rollup and applies
+     * them to the API design.  This produces a "latest" version of the API
+     * and stores that as a new content entry in the storage.  Returns true if
+     * a new content entry was created.  When the commands net out to no change
+     * at all, nothing is stored (the commands are then rolled up along with the
+     * next commands that do change the API design).
+     * @param userId
+     * @param designId
+     * @throws StorageException
+     * @throws NotFoundException
+     * @throws OaiCommandException
+     */
+    public boolean rollupCommands(String userId, String designId) throws NotFoundException, StorageException, OaiCommandException {
+        logger.debug("Rolling up commands for API with ID: {}", designId);
+        // All storage calls of the rollup share a single connection
+        this.storage.beginUnitOfWork(false);
+        try {
+            if (this.storage.isContentPending(designId)) {
+                logger.debug("API {} has commands pending in an editing journal, rollup canceled.", designId);
+                return false;
+            }
+            ApiDesignContent designContent = this.storage.getLatestContentDocument(userId, designId);
+            List<ApiDesignCommand> apiCommands = this.storage.listContentCommands(userId, designId, designContent.getContentVersion());
+            if (apiCommands.isEmpty()) {
+                logger.debug("No hanging commands found, rollup of API {} canceled.", designId);
+                return false;
+            }
+            List<String> commands = new ArrayList<>(apiCommands.size());
+            for (ApiDesignCommand apiCommand : apiCommands) {
+                commands.add(apiCommand.getCommand());
+            }
+            String content = this.oaiCommandExecutor.executeCommands(designContent.getOaiDocument(), commands);
+            if (content.equals(designContent.getOaiDocument())) {
+                logger.debug("Rollup of {} commands did not change API {}, skipped.", commands.size(), designId);
+                this.skipped.incrementAndGet();
+                return false;
+            }
+            long contentVersion = addSnapshot(userId, designId, content, designContent.getContentVersion(), apiCommands);
+            if (contentVersion < 0) {
+                logger.debug("Commands were added to API {} during its rollup, rollup canceled.", designId);
+                return false;
+            }
+            logger.debug("Rollup of {} commands complete with new content version: {}", commands.size(), contentVersion);
+
+            try {
+                logger.debug("Updating meta-data for API design {} if necessary.", designId);
+                ApiDesign design = this.storage.getApiDesign(userId, designId);
+                ApiDesignResourceInfo info = ApiDesignResourceInfo.fromContent(content);
+                boolean dirty = false;
+                if (design.getName() == null || !design.getName().equals(info.getName())) {
+                    design.setName(info.getName());
+                    dirty = true;
+                }
+                if (design.getDescription() == null || !design.getDescription().equals(info.getDescription())) {
+                    design.setDescription(info.getDescription());
+                    dirty = true;
+                }
+                if (design.getTags() == null || !design.getTags().equals(info.getTags())) {
+                    design.setTags(info.getTags());
+                    dirty = true;
+                }
+                if (dirty) {
+                    logger.debug("API design {} meta-data changed, updating in storage.", designId);
+                    this.storage.updateApiDesign(userId, design);
+                }
+            } catch (Exception e) {
+                // Not the end of the world if we fail to update the API's meta-data
+                logger.error(e.getMessage(), e);
+            }
+            if (this.searchService != null) {
+                this.searchService.designChanged(designId);
+            }
+            return true;
+        } finally {
+            this.storage.endUnitOfWork(true);
+        }
+    }
+
+    /**
+     * Stores the rolled up content as a new snapshot of the API design, unless commands were
+     * added to the design (or marked as pending by an editing journal) while the rollup was in
+     * progress.  Such commands may have a lower content version than the new snapshot, which
+     * would then hide them, so the snapshot is rolled back instead.  Returns the content version
+     * of the snapshot, or -1 if it was rolled back.
+     * @param userId
+     * @param designId
+     * @param content
+     * @param sinceVersion the version of the snapshot the commands were rolled up onto
+     * @param apiCommands the commands that were rolled up
+     * @throws StorageException
+     * @throws NotFoundException
+     */
+    private long addSnapshot(String userId, String designId, String content, long sinceVersion,
+            List<ApiDesignCommand> apiCommands)
+            throws StorageException, NotFoundException {
+        this.storage.beginUnitOfWork(true);
+        boolean commit = false;
+        try {
+            long contentVersion = this.storage.addContent(userId, designId, ApiContentType.Document, content);
+            // The pending mark is set before a journal reserves its versions, so checking it after
+            // the snapshot got its version is enough to catch all commands journaled before it
+            if (this.storage.isContentPending(designId)) {
+                return -1;
+            }
+            int covered = 0;
+            for (ApiDesignCommand apiCommand : this.storage.listContentCommands(userId, designId, sinceVersion)) {
+                if (apiCommand.getContentVersion() < contentVersion) {
+                    covered++;
+                }
+            }
+            if (covered != apiCommands.size()) {
+                return -1;
+            }
+            commit = true;
+            return contentVersion;
+        } finally {
+            this.storage.endUnitOfWork(commit);
+        }
+    }
+
+    /**
+     * Starts a bulk rollup of all API designs in a background thread.  If a bulk rollup
+     * is already running, this does nothing.  When "resume" is true, the rollup starts
+     * after the last checkpoint recorded by a previous (interrupted) run.  Returns the
+     * current status of the bulk rollup.
+     * @param resume
+     * @throws StorageException
+     */
+    public synchronized BulkRollupStatus startBulkRollup(boolean resume) throws StorageException {
+        if (this.bulkStatus != null && this.bulkStatus.isRunning()) {
+            logger.info("Bulk rollup already running, ignoring request to start another.");
+            return this.getBulkRollupStatus();
+        }
+
+        String afterId = null;
+        if (resume) {
+            afterId = this.storage.getCheckpoint(BULK_ROLLUP_CHECKPOINT);
+        } else {
+            this.storage.setCheckpoint(BULK_ROLLUP_CHECKPOINT, null);
+        }
+
+        int maxEngines = this.oaiCommandExecutor.getMaxEngines();
+        int parallelism = this.config.getRollupParallelism();
+        if (parallelism <= 0 || parallelism > maxEngines) {
+            parallelism = maxEngines;
+        }
+        int rateLimit = Math.max(0, this.config.getRollupRateLimit());
+
+        logger.info("Starting bulk rollup of all API designs.");
+        logger.info("\tParallelism: {}", parallelism);
+        logger.info("\tRate limit:  {}/s", rateLimit);
+        logger.info("\tResuming at: {}", afterId);
+
+        BulkRollupStatus status = new BulkRollupStatus();
+        status.setRunning(true);
+        status.setStartedOn(new Date());
+        status.setParallelism(parallelism);
+        status.setRateLimit(rateLimit);
+        status.setCheckpoint(afterId);
+        this.bulkStatus = status;
+        this.stopRequested = false;
+        this.processed.set(0);
+        this.rolledUp.set(0);
+        this.failed.set(0);
+
+        final String fromId = afterId;
+        final int threads = parallelism;
+        Thread thread = new Thread(() -> runBulkRollup(fromId, threads, rateLimit), "apicurio-bulk-rollup");
+        thread.setDaemon(true);
+        thread.start();
+
+        return this.getBulkRollupStatus();
+    }
+
+    /**
+     * Requests that the currently running bulk rollup (if any) stop.  The rollup can later
+     * be resumed from its last checkpoint.
+     */
+    public synchronized BulkRollupStatus stopBulkRollup() {
+        if (this.bulkStatus != null && this.bulkStatus.isRunning()) {
+            logger.info("Stopping bulk rollup.");
+            this.stopRequested = true;
+        }
+        return this.getBulkRollupStatus();
+    }
+
+    /**
+     * Returns the status of the current (or most recent) bulk rollup.
+     */
+    public synchronized BulkRollupStatus getBulkRollupStatus() {
+        BulkRollupStatus status = new BulkRollupStatus();
+        if (this.bulkStatus == null) {
+            return status;
+        }
+        status.setRunning(this.bulkStatus.isRunning());
+        status.setStartedOn(this.bulkStatus.getStartedOn());
+        status.setFinishedOn(this.bulkStatus.getFinishedOn());
+        status.setParallelism(this.bulkStatus.getParallelism());
+        status.setRateLimit(this.bulkStatus.getRateLimit());
+        status.setCheckpoint(this.bulkStatus.getCheckpoint());
+        status.setDesignsProcessed(this.processed.get());
+        status.setDesignsRolledUp(this.rolledUp.get());
+        status.setDesignsFailed(this.failed.get());
+
+        Date end = status.getFinishedOn() != null ? status.getFinishedOn() : new Date();
+        long elapsed = end.getTime() - status.getStartedOn().getTime();
+        if (elapsed > 0) {
+            status.setDesignsPerSecond(status.getDesignsProcessed() * 1000.0 / elapsed);
+        }
+        return status;
+    }
+
+    /**
+     * Returns the number of rollups (since startup) that were skipped because their result
+     * was identical to the latest stored document.
+     */
+    public long getSkippedRollups() {
+        return this.skipped.get();
+    }
+
+    /**
+     * Rolls up every design (after the given ID), one page at a time.  The checkpoint is
+     * updated only once every design in a page has been processed.
+     * @param afterId
+     * @param parallelism
+     * @param rateLimit
+     */
+    private void runBulkRollup(String afterId, int parallelism, int rateLimit) {
+        ExecutorService workers = Executors.newWorkStealingPool(parallelism);
+        RateLimiter limiter = new RateLimiter(rateLimit);
+        boolean completed = false;
+        try {
+            String checkpoint = afterId;
+            List<String> designIds = this.storage.listApiDesignIds(checkpoint, PAGE_SIZE);
+            while (!designIds.isEmpty() && !this.stopRequested) {
+                List<Future<Boolean>> futures = new ArrayList<>(designIds.size());
+                for (String designId : designIds) {
+                    futures.add(workers.submit(() -> {
+                        if (this.stopRequested) {
+                            return false;
+                        }
+                        limiter.acquire();
+                        return rollupDesign(designId);
+                    }));
+                }
+                for (int idx = 0; idx < futures.size(); idx++) {
+                    try {
+                        if (futures.get(idx).get()) {
+                            this.rolledUp.incrementAndGet();
+                        }
+                    } catch (ExecutionException e) {
+                        logger.error("Failed to rollup commands for API with id: " + designIds.get(idx), e.getCause());
+                        this.failed.incrementAndGet();
+                    }
+                    this.processed.incrementAndGet();
+                }
+                if (this.stopRequested) {
+                    break;
+                }
+
+                checkpoint = designIds.get(designIds.size() - 1);
+                this.storage.setCheckpoint(BULK_ROLLUP_CHECKPOINT, checkpoint);
+                synchronized (this) {
+                    this.bulkStatus.setCheckpoint(checkpoint);
+                }
+                BulkRollupStatus status = this.getBulkRollupStatus();
+                logger.info("Bulk rollup progress: {} designs processed ({} rolled up, {} failed) at {} designs/s.",
+                        status.getDesignsProcessed(), status.getDesignsRolledUp(), status.getDesignsFailed(),
+                        String.format("%.2f", status.getDesignsPerSecond()));
+
+                designIds = this.storage.listApiDesignIds(checkpoint, PAGE_SIZE);
+            }
+            if (!this.stopRequested) {
+                this.storage.setCheckpoint(BULK_ROLLUP_CHECKPOINT, null);
+                completed = true;
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Bulk rollup interrupted.");
+        } catch (Exception e) {
+            logger.error("Bulk rollup failed.", e);
+        } finally {
+            workers.shutdown();
+            synchronized (this) {
+                this.bulkStatus.setRunning(false);
+                this.bulkStatus.setFinishedOn(new Date());
+            }
+            BulkRollupStatus status = this.getBulkRollupStatus();
+            logger.info("Bulk rollup {}: {} designs processed ({} rolled up, {} failed) at {} designs/s.",
+                    completed ? "complete" : "stopped", status.getDesignsProcessed(), status.getDesignsRolledUp(),
+                    status.getDesignsFailed(), String.format("%.2f", status.getDesignsPerSecond()));
+        }
+    }
+
+    /**
+     * Rolls up a single design on behalf of its owner.
+     * @param designId
+     * @throws Exception
+     */
+    private boolean rollupDesign(String designId) throws Exception {
+        String owner = null;
+        for (ApiDesignCollaborator collaborator : this.storage.listPermissions(designId)) {
+            if ("owner".equals(collaborator.getRole())) {
+                owner = collaborator.getUserId();
+                break;
+            }
+        }
+        if (owner == null) {
+            logger.debug("API design {} has no owner, skipping rollup.", designId);
+            return false;
+        }
+        return this.rollupCommands(owner, designId);
+    }
+
+    /**
+     * A simple rate limiter that spaces out permits evenly.  A rate of 0 means unlimited.
+     */
+    private static class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextPermit = System.nanoTime();
+
+        /**
+         * Constructor.
+         * @param permitsPerSecond
+         */
+        public RateLimiter(int permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+        }
+
+        /**
+         * Blocks until the next permit is available.
+         * @throws InterruptedException
+         */
+        public void acquire() throws InterruptedException {
+            if (this.intervalNanos == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (this.nextPermit < now) {
+                    this.nextPermit = now;
+                }
+                waitNanos = this.nextPermit - now;
+                this.nextPermit += this.intervalNanos;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.js;
+
+/**
+ * Interface used to report metrics about the pools of (Nashorn) script engines used to
+ * execute commands and generate code.  The Hub API and the Editing API both implement
+ * this (via their own metrics interfaces) so that the information shows up in their
+ * respective Prometheus endpoints.
+ * @author eric.wittmann@gmail.com
+ */
+public interface IScriptEngineMetrics {
+
+    /**
+     * Indicates that a new script engine was created (and initialized) for the given pool.
+     * @param pool
+     * @param millis
+     */
+    public void scriptEngineCreated(String pool, long millis);
+
+    /**
+     * Indicates that a script engine was borrowed from the given pool, after waiting for
+     * the given amount of time.
+     * @param pool
+     * @param waitMillis
+     */
+    public void scriptEngineBorrowed(String pool, long waitMillis);
+
+    /**
+     * Indicates that a script engine from the given pool finished executing some work.
+     * @param pool
+     * @param numCommands
+     * @param documentSize
+     * @param millis
+     */
+    public void scriptEngineExecuted(String pool, int numCommands, int documentSize, long millis);
+
+    /**
+     * Reports the current state of the given pool.
+     * @param pool
+     * @param active
+     * @param idle
+     * @param evictions total number of engines destroyed by the pool's evictor
+     */
+    public void scriptEnginePoolState(String pool, int active, int idle, long evictions);
+
+    /**
+     * Converts a number of commands into a (low cardinality) label value.
+     * @param numCommands
+     */
+    public static String commandCountRange(int numCommands) {
+        if (numCommands <= 1) {
+            return String.valueOf(Math.max(numCommands, 0));
+        } else if (numCommands <= 10) {
+            return "2-10";
+        } else if (numCommands <= 100) {
+            return "11-100";
+        } else if (numCommands <= 1000) {
+            return "101-1000";
+        }
+        return "1000+";
+    }
+
+    /**
+     * Converts a document size (in characters) into a (low cardinality) label value.
+     * @param documentSize
+     */
+    public static String documentSizeRange(int documentSize) {
+        if (documentSize < 10 * 1024) {
+            return "<10K";
+        } else if (documentSize < 100 * 1024) {
+            return "10K-100K";
+        } else if (documentSize < 1024 * 1024) {
+            return "100K-1M";
+        }
+        return "1M+";
+    }
+
+}
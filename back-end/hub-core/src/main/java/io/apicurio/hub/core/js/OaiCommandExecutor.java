@@ -20,14 +20,7 @@ import java.net.URL;
 import java.util.List;
 
 import javax.enterprise.context.ApplicationScoped;
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
 
-import org.apache.commons.pool2.BasePooledObjectFactory;
-import org.apache.commons.pool2.ObjectPool;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,24 +41,20 @@ import org.slf4j.LoggerFactory;
 public class OaiCommandExecutor {
 
     private static Logger logger = LoggerFactory.getLogger(OaiCommandExecutor.class);
-    private static ObjectPool<ScriptEngine> enginePool;
-    static {
-        enginePool = new GenericObjectPool<>(new BasePooledObjectFactory<ScriptEngine>() {
+    private static ScriptEnginePool enginePool = new ScriptEnginePool("commands", () -> {
+        URL libraryJsUrl = OaiCommandExecutor.class.getClassLoader().getResource("js-lib/core-library.js");
 
-            @Override
-            public ScriptEngine create() throws Exception {
-                URL libraryJsUrl = OaiCommandExecutor.class.getClassLoader().getResource("js-lib/core-library.js");
+        if (libraryJsUrl == null) { throw new Exception("Failed to load script: core-library.js"); }
 
-                if (libraryJsUrl == null) { throw new Exception("Failed to load script: core-library.js"); }
-                
-                return OaiScriptEngineFactory.createScriptEngine(libraryJsUrl);
-            }
-
-            @Override
-            public PooledObject<ScriptEngine> wrap(ScriptEngine obj) {
-                return new DefaultPooledObject<ScriptEngine>(obj);
-            }
-        });
+        return OaiScriptEngineFactory.createScriptEngine(libraryJsUrl);
+    });
+    
+    /**
+     * Returns the maximum number of script engines that can be in use at the same time.  Callers
+     * that want to execute commands in parallel should not use more threads than this.
+     */
+    public int getMaxEngines() {
+        return enginePool.getMaxTotal();
     }
     
     /**
@@ -79,22 +68,14 @@ public class OaiCommandExecutor {
         if (commands == null || commands.isEmpty()) {
             return oaiDocument;
         }
-        ScriptEngine engine = null;
         try {
-            engine = enginePool.borrowObject();
-            final Invocable invocable = (Invocable) engine;
-            
             String [] cmdList = commands.toArray(new String[commands.size()]);
-            String mutatedOaiDoc = invocable.invokeFunction("executeCommands", oaiDocument, cmdList).toString();
-            
-            return mutatedOaiDoc;
+            return enginePool.execute(cmdList.length, oaiDocument.length(), invocable -> {
+                return invocable.invokeFunction("executeCommands", oaiDocument, cmdList).toString();
+            });
         } catch (Exception e) {
             logger.error("Error executing commands.", e);
             throw new OaiCommandException(e);
-        } finally {
-            if (engine != null) {
-                try { enginePool.returnObject(engine); } catch (Exception e) {}
-            }
         }
     }
 
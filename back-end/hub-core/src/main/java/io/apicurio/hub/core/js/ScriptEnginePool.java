@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.js;
+
+import java.util.concurrent.Callable;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * A pool of pre-initialized (Nashorn) script engines.  Creating a script engine and loading
+ * the OAI libraries into it is expensive, so engines are pooled and reused.  The pool reports
+ * how long callers wait for an engine, how long engines take to create and to execute their
+ * work, and the active/idle/evicted counts to the registered {@link IScriptEngineMetrics}.
+ * @author eric.wittmann@gmail.com
+ */
+public class ScriptEnginePool {
+
+    private static final IScriptEngineMetrics NOOP_METRICS = new IScriptEngineMetrics() {
+        @Override
+        public void scriptEngineCreated(String pool, long millis) {
+        }
+        @Override
+        public void scriptEngineBorrowed(String pool, long waitMillis) {
+        }
+        @Override
+        public void scriptEngineExecuted(String pool, int numCommands, int documentSize, long millis) {
+        }
+        @Override
+        public void scriptEnginePoolState(String pool, int active, int idle, long evictions) {
+        }
+    };
+    private static volatile IScriptEngineMetrics metrics = NOOP_METRICS;
+
+    /**
+     * Registers the metrics implementation that all script engine pools should report to.
+     * @param scriptEngineMetrics
+     */
+    public static void setMetrics(IScriptEngineMetrics scriptEngineMetrics) {
+        metrics = scriptEngineMetrics == null ? NOOP_METRICS : scriptEngineMetrics;
+    }
+
+    private final String name;
+    private final GenericObjectPool<ScriptEngine> enginePool;
+
+    /**
+     * Constructor.
+     * @param name the name of the pool (used when reporting metrics)
+     * @param engineFactory creates and initializes a new script engine
+     */
+    public ScriptEnginePool(String name, Callable<ScriptEngine> engineFactory) {
+        this.name = name;
+        this.enginePool = new GenericObjectPool<>(new BasePooledObjectFactory<ScriptEngine>() {
+
+            @Override
+            public ScriptEngine create() throws Exception {
+                long start = System.currentTimeMillis();
+                ScriptEngine engine = engineFactory.call();
+                metrics.scriptEngineCreated(ScriptEnginePool.this.name, System.currentTimeMillis() - start);
+                return engine;
+            }
+
+            @Override
+            public PooledObject<ScriptEngine> wrap(ScriptEngine obj) {
+                return new DefaultPooledObject<ScriptEngine>(obj);
+            }
+        });
+    }
+
+    /**
+     * @return the name of the pool
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the maximum number of engines that can be in use at the same time
+     */
+    public int getMaxTotal() {
+        return this.enginePool.getMaxTotal();
+    }
+
+    /**
+     * Borrows an engine from the pool, runs the given task with it, and then returns it to
+     * the pool.  The number of commands and the size of the document being processed are
+     * only used to categorize the execution time.
+     * @param numCommands
+     * @param documentSize
+     * @param task
+     * @throws Exception
+     */
+    public <T> T execute(int numCommands, int documentSize, ScriptEngineTask<T> task) throws Exception {
+        ScriptEngine engine = null;
+        try {
+            long start = System.currentTimeMillis();
+            engine = this.enginePool.borrowObject();
+            metrics.scriptEngineBorrowed(this.name, System.currentTimeMillis() - start);
+            reportState();
+
+            start = System.currentTimeMillis();
+            T rval = task.execute((Invocable) engine);
+            metrics.scriptEngineExecuted(this.name, numCommands, documentSize, System.currentTimeMillis() - start);
+            return rval;
+        } finally {
+            if (engine != null) {
+                try { this.enginePool.returnObject(engine); } catch (Exception e) {}
+                reportState();
+            }
+        }
+    }
+
+    /**
+     * Reports the current active/idle/evicted counts.
+     */
+    private void reportState() {
+        metrics.scriptEnginePoolState(this.name, this.enginePool.getNumActive(), this.enginePool.getNumIdle(),
+                this.enginePool.getDestroyedByEvictorCount());
+    }
+
+    /**
+     * A unit of work executed using a pooled script engine.
+     * @author eric.wittmann@gmail.com
+     */
+    public static interface ScriptEngineTask<T> {
+
+        /**
+         * Executes the work.
+         * @param engine
+         * @throws Exception
+         */
+        public T execute(Invocable engine) throws Exception;
+
+    }
+
+}
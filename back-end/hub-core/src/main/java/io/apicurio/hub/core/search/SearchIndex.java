@@ -0,0 +1,366 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.search;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+
+/**
+ * An in-memory inverted index of API designs, used to search for designs by (the prefix of)
+ * any of the words in their name, description or tags, or in their content (the paths,
+ * operation IDs and summaries, and schema names of the OpenAPI document).  Every query word
+ * must match, and the results are ranked by where the words were found (a match in the name
+ * counts more than a match in the content).
+ * 
+ * The index holds a copy of each design's meta-data so that search results can be returned
+ * without reading the designs from the storage.
+ * 
+ * This class is thread safe.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class SearchIndex {
+    
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WORD_PART_SEPARATOR = Pattern.compile("(?<=\\p{Ll})(?=\\p{Lu})|(?<=\\p{L})(?=\\p{N})|(?<=\\p{N})(?=\\p{L})");
+    private static final String[] OPERATIONS = { "get", "put", "post", "delete", "options", "head", "patch", "trace" };
+    
+    private static final int NAME_WEIGHT = 8;
+    private static final int TAG_WEIGHT = 4;
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IndexedDesign> designs = new HashMap<>();
+    private final TreeMap<String, Map<String, Integer>> terms = new TreeMap<>();
+    
+    /**
+     * Adds an API design (and its content) to the index, replacing whatever was indexed for
+     * it before.
+     * @param design
+     * @param content the design's OpenAPI document, or null if the content is not known
+     */
+    public void index(ApiDesign design, String content) {
+        indexText(design, content == null ? null : extractContentText(content));
+    }
+    
+    /**
+     * Adds an API design (and its content) to the index, replacing whatever was indexed for
+     * it before.  The content is streamed from the given reader.
+     * @param design
+     * @param content the design's OpenAPI document, or null if the content is not known
+     */
+    public void index(ApiDesign design, Reader content) {
+        indexText(design, content == null ? null : extractContentText(content));
+    }
+    
+    /**
+     * Adds an API design to the index, given the searchable text extracted from its content.
+     * @param design
+     * @param contentText
+     */
+    private void indexText(ApiDesign design, String contentText) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, contentText, CONTENT_WEIGHT);
+        addTerms(weights, design.getDescription(), DESCRIPTION_WEIGHT);
+        if (design.getTags() != null) {
+            for (String tag : design.getTags()) {
+                addTerms(weights, tag, TAG_WEIGHT);
+            }
+        }
+        addTerms(weights, design.getName(), NAME_WEIGHT);
+        
+        IndexedDesign indexed = new IndexedDesign(copyOf(design), weights);
+        lock.writeLock().lock();
+        try {
+            removeTerms(design.getId());
+            this.designs.put(design.getId(), indexed);
+            for (Entry<String, Integer> entry : weights.entrySet()) {
+                this.terms.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(design.getId(), entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes an API design from the index.
+     * @param designId
+     */
+    public void remove(String designId) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(designId);
+            this.designs.remove(designId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * @return the number of API designs in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return this.designs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Searches the index, returning a single page of the (best first) matching designs.  Only
+     * the designs with one of the given IDs are returned.  The cursor of the returned page is
+     * the offset of the next page.
+     * @param query
+     * @param designIds the IDs of the designs that may be returned
+     * @param offset
+     * @param limit
+     */
+    public ApiDesignPage search(String query, Collection<String> designIds, int offset, int limit) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : WORD_SEPARATOR.split(query.toLowerCase())) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return new ApiDesignPage(new ArrayList<>(), null);
+        }
+        Set<String> allowed = designIds instanceof Set ? (Set<String>) designIds : new HashSet<>(designIds);
+        
+        List<IndexedDesign> matches = new ArrayList<>();
+        Map<String, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String word : words) {
+                // Every word is a prefix - the best matching term counts for each design
+                Map<String, Integer> wordScores = new HashMap<>();
+                for (Map<String, Integer> postings : this.terms.subMap(word, word + Character.MAX_VALUE).values()) {
+                    for (Entry<String, Integer> posting : postings.entrySet()) {
+                        if (scores == null ? allowed.contains(posting.getKey()) : scores.containsKey(posting.getKey())) {
+                            wordScores.merge(posting.getKey(), posting.getValue(), Math::max);
+                        }
+                    }
+                }
+                if (scores != null) {
+                    for (Entry<String, Integer> entry : wordScores.entrySet()) {
+                        entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                    }
+                }
+                scores = wordScores;
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            for (String designId : scores.keySet()) {
+                matches.add(this.designs.get(designId));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        Map<String, Integer> finalScores = scores;
+        matches.sort(Comparator.<IndexedDesign>comparingInt(match -> -finalScores.get(match.design.getId()))
+                .thenComparing(match -> match.design.getName(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(match -> Long.valueOf(match.design.getId())));
+        List<ApiDesign> items = new ArrayList<>();
+        for (int idx = offset; idx < matches.size() && idx < offset + limit; idx++) {
+            items.add(copyOf(matches.get(idx).design));
+        }
+        String nextCursor = matches.size() > offset + limit ? String.valueOf(offset + limit) : null;
+        return new ApiDesignPage(items, nextCursor);
+    }
+
+    /**
+     * Removes all of the terms of the given design from the index.  Must be called while
+     * holding the write lock.
+     * @param designId
+     */
+    private void removeTerms(String designId) {
+        IndexedDesign indexed = this.designs.get(designId);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed.weights.keySet()) {
+            Map<String, Integer> postings = this.terms.get(term);
+            if (postings != null) {
+                postings.remove(designId);
+                if (postings.isEmpty()) {
+                    this.terms.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the terms found in the given text to the map of term weights.  Each word in the
+     * text is a term, and so is each part of a camel-cased word (e.g. "getPetById" is indexed as
+     * "getpetbyid", "get", "pet", "by" and "id").
+     * @param weights
+     * @param text
+     * @param weight
+     */
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        if (text == null) {
+            return;
+        }
+        for (String word : WORD_SEPARATOR.split(text)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            weights.merge(word.toLowerCase(), weight, Math::max);
+            String[] parts = WORD_PART_SEPARATOR.split(word);
+            if (parts.length > 1) {
+                for (String part : parts) {
+                    weights.merge(part.toLowerCase(), weight, Math::max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the searchable text from an OpenAPI (2.0 or 3.0.x) document.  Returns an empty
+     * string if the document cannot be parsed.
+     * @param content
+     */
+    static String extractContentText(String content) {
+        return extractContentText(new StringReader(content));
+    }
+
+    /**
+     * Extracts the searchable text from an OpenAPI (2.0 or 3.0.x) document read from the given
+     * reader.  Returns an empty string if the document cannot be parsed.
+     * @param content
+     */
+    static String extractContentText(Reader content) {
+        JsonNode document;
+        try {
+            document = mapper.readTree(content);
+        } catch (IOException e) {
+            return "";
+        }
+        if (document == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        appendText(builder, document.path("info").path("title"));
+        appendText(builder, document.path("info").path("description"));
+        for (JsonNode tag : document.path("tags")) {
+            appendText(builder, tag.path("name"));
+        }
+        Iterator<Entry<String, JsonNode>> paths = document.path("paths").fields();
+        while (paths.hasNext()) {
+            Entry<String, JsonNode> path = paths.next();
+            builder.append(path.getKey()).append(' ');
+            for (String operation : OPERATIONS) {
+                JsonNode node = path.getValue().path(operation);
+                appendText(builder, node.path("operationId"));
+                appendText(builder, node.path("summary"));
+            }
+        }
+        appendFieldNames(builder, document.path("definitions"));
+        appendFieldNames(builder, document.path("components").path("schemas"));
+        return builder.toString();
+    }
+
+    /**
+     * Appends the value of a text node (if it is one).
+     * @param builder
+     * @param node
+     */
+    private static void appendText(StringBuilder builder, JsonNode node) {
+        if (node.isTextual()) {
+            builder.append(node.asText()).append(' ');
+        }
+    }
+
+    /**
+     * Appends the names of all fields of an object node.
+     * @param builder
+     * @param node
+     */
+    private static void appendFieldNames(StringBuilder builder, JsonNode node) {
+        Iterator<String> names = node.fieldNames();
+        while (names.hasNext()) {
+            builder.append(names.next()).append(' ');
+        }
+    }
+
+    /**
+     * Creates a copy of the given design's meta-data.
+     * @param design
+     */
+    private static ApiDesign copyOf(ApiDesign design) {
+        ApiDesign copy = new ApiDesign();
+        copy.setId(design.getId());
+        copy.setName(design.getName());
+        copy.setDescription(design.getDescription());
+        copy.setCreatedBy(design.getCreatedBy());
+        copy.setCreatedOn(design.getCreatedOn());
+        if (design.getTags() != null) {
+            copy.setTags(new HashSet<>(design.getTags()));
+        }
+        return copy;
+    }
+    
+    /**
+     * An API design in the index, along with the weights of all of its terms.
+     * @author eric.wittmann@gmail.com
+     */
+    private static class IndexedDesign {
+        
+        private final ApiDesign design;
+        private final Map<String, Integer> weights;
+        
+        /**
+         * Constructor.
+         * @param design
+         * @param weights
+         */
+        public IndexedDesign(ApiDesign design, Map<String, Integer> weights) {
+            this.design = design;
+            this.weights = weights;
+        }
+        
+    }
+
+}
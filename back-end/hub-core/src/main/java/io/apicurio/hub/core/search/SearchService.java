@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.search;
+
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignCollaborator;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * Keeps a {@link SearchIndex} of all API designs up to date, and searches it on behalf of a
+ * user.  The index is built (in the background) when the service is started, and is then
+ * updated whenever a design is created, changed or deleted through this node.  Designs that
+ * had content added through any other node (e.g. rolled up by the editing server) are picked
+ * up periodically.  Search results are filtered (at query time) down to the designs the
+ * user has access to.
+ * 
+ * The service does nothing until it is started, so nodes that never search (such as the
+ * editing server) do not build an index.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class SearchService {
+    
+    private static Logger logger = LoggerFactory.getLogger(SearchService.class);
+    private static final int PAGE_SIZE = 100;
+
+    @Inject
+    private HubConfiguration config;
+    @Inject
+    private IStorage storage;
+    
+    private final SearchIndex index = new SearchIndex();
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private Thread indexer;
+    
+    /**
+     * Starts the service: builds the index and keeps it up to date until the service is
+     * stopped.  Does nothing if the service was already started.
+     */
+    public synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        this.started = true;
+        int interval = config.getSearchRefreshInterval();
+        this.indexer = new Thread(() -> runIndexer(interval), "apicurio-search-index");
+        this.indexer.setDaemon(true);
+        this.indexer.start();
+    }
+    
+    @PreDestroy
+    public synchronized void stop() {
+        this.stopped = true;
+        if (this.indexer != null) {
+            this.indexer.interrupt();
+        }
+    }
+    
+    /**
+     * Searches for API designs the given user has access to.
+     * @param userId
+     * @param query
+     * @param offset
+     * @param limit
+     * @throws StorageException
+     */
+    public ApiDesignPage search(String userId, String query, int offset, int limit) throws StorageException {
+        start();
+        return this.index.search(query, storage.listAccessibleApiDesignIds(userId), offset, limit);
+    }
+    
+    /**
+     * Called when an API design was created or changed, to (re)index it.
+     * @param designId
+     */
+    public void designChanged(String designId) {
+        if (!this.started) {
+            return;
+        }
+        try {
+            indexDesign(designId);
+        } catch (StorageException e) {
+            logger.error("Error indexing API design " + designId, e);
+        }
+    }
+    
+    /**
+     * Called when an API design was deleted, to remove it from the index.
+     * @param designId
+     */
+    public void designDeleted(String designId) {
+        this.index.remove(designId);
+    }
+
+    /**
+     * Indexes all API designs, and then periodically indexes the designs that changed.
+     * @param interval
+     */
+    private void runIndexer(int interval) {
+        String since = null;
+        try {
+            since = storage.getChangeCursor();
+            long start = System.currentTimeMillis();
+            List<String> designIds = storage.listApiDesignIds(null, PAGE_SIZE);
+            while (!designIds.isEmpty() && !this.stopped) {
+                for (String designId : designIds) {
+                    indexDesign(designId);
+                }
+                designIds = storage.listApiDesignIds(designIds.get(designIds.size() - 1), PAGE_SIZE);
+            }
+            logger.info("Indexed {} API designs for searching in {}ms.", this.index.size(), System.currentTimeMillis() - start);
+        } catch (StorageException e) {
+            logger.error("Error building the search index.", e);
+        }
+        
+        while (!this.stopped) {
+            try {
+                Thread.sleep(interval * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                String latest = storage.getChangeCursor();
+                if (!latest.equals(since)) {
+                    for (String designId : storage.listApiDesignIdsChangedSince(since)) {
+                        indexDesign(designId);
+                    }
+                    since = latest;
+                }
+            } catch (StorageException e) {
+                logger.error("Error refreshing the search index.", e);
+            }
+        }
+    }
+
+    /**
+     * Reads an API design (and its latest content) from the storage and (re)indexes it, or
+     * removes it from the index if it no longer exists.
+     * @param designId
+     * @throws StorageException
+     */
+    private void indexDesign(String designId) throws StorageException {
+        String owner = null;
+        for (ApiDesignCollaborator collaborator : storage.listPermissions(designId)) {
+            if ("owner".equals(collaborator.getRole())) {
+                owner = collaborator.getUserId();
+            }
+        }
+        try {
+            if (owner == null) {
+                throw new NotFoundException();
+            }
+            ApiDesign design = storage.getApiDesign(owner, designId);
+            storage.readLatestContentDocument(owner, designId, (contentVersion, content) -> {
+                this.index.index(design, content);
+                return design;
+            });
+        } catch (NotFoundException e) {
+            this.index.remove(designId);
+        }
+    }
+
+}
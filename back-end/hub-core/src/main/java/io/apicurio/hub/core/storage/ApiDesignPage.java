@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.util.List;
+
+import io.apicurio.hub.core.beans.ApiDesign;
+
+/**
+ * A single page of API designs selected using an {@link ApiDesignQuery}.
+ * @author eric.wittmann@gmail.com
+ */
+public class ApiDesignPage {
+
+    private final List<ApiDesign> items;
+    private final String nextCursor;
+
+    /**
+     * Constructor.
+     * @param items
+     * @param nextCursor
+     */
+    public ApiDesignPage(List<ApiDesign> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the designs in the page
+     */
+    public List<ApiDesign> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the (opaque) cursor used to read the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+/**
+ * Criteria used to select a (filtered, sorted) page of the API designs a user can see.  All
+ * filters are optional.  A limit of 0 (the default) selects every matching design.
+ * @author eric.wittmann@gmail.com
+ */
+public class ApiDesignQuery {
+
+    private String namePrefix;
+    private String tag;
+    private String createdBy;
+    private ApiDesignSort sort = ApiDesignSort.NAME;
+    private boolean ascending = true;
+    private String after;
+    private int limit;
+
+    /**
+     * Constructor.
+     */
+    public ApiDesignQuery() {
+    }
+
+    /**
+     * @return the namePrefix
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /**
+     * @param namePrefix the namePrefix to set
+     */
+    public void setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * @return the tag
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @param tag the tag to set
+     */
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return the createdBy
+     */
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    /**
+     * @param createdBy the createdBy to set
+     */
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    /**
+     * @return the sort
+     */
+    public ApiDesignSort getSort() {
+        return sort;
+    }
+
+    /**
+     * @param sort the sort to set
+     */
+    public void setSort(ApiDesignSort sort) {
+        this.sort = sort;
+    }
+
+    /**
+     * @return the ascending
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * @param ascending the ascending to set
+     */
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    /**
+     * @return the cursor of the previous page (null for the first page)
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * @param after the cursor of the previous page
+     */
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    /**
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit the limit to set
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+/**
+ * The ways a list of API designs can be sorted.
+ * @author eric.wittmann@gmail.com
+ */
+public enum ApiDesignSort {
+
+    NAME, CREATED, MODIFIED;
+
+    /**
+     * Returns the sort with the given name.
+     * @param name
+     * @throws IllegalArgumentException if there is no sort with that name
+     */
+    public static ApiDesignSort fromName(String name) throws IllegalArgumentException {
+        for (ApiDesignSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(name)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Invalid sort: " + name);
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ContentCompactionStatus;
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * A service used to compact, in the background, the content history of all API designs.  Command
+ * rows that are already covered by a document snapshot (and that are older than the configured
+ * number of snapshots or days) are only needed for the activity history, so they are moved out of
+ * the (hot) content table into the content archive - or dropped entirely when the history is not
+ * needed.  Designs are visited in order of ID, a small batch of rows at a time, and progress is
+ * checkpointed in the storage so that an interrupted run can be resumed.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class ContentCompactionService {
+
+    private static Logger logger = LoggerFactory.getLogger(ContentCompactionService.class);
+
+    static final String COMPACTION_CHECKPOINT = "content-compaction";
+    private static final int PAGE_SIZE = 100;
+    private static final int ROWS_PER_BATCH = 500;
+
+    @Inject
+    private IStorage storage;
+    @Inject
+    private HubConfiguration config;
+
+    private ContentCompactionStatus status;
+    private volatile boolean stopRequested;
+
+    /**
+     * Starts compacting the content history of all API designs in a background thread.  If
+     * compaction is already running, this does nothing.  When "resume" is true, compaction
+     * starts after the last checkpoint recorded by a previous (interrupted) run.  Returns the
+     * current status.
+     * @param resume
+     * @throws StorageException
+     */
+    public synchronized ContentCompactionStatus start(boolean resume) throws StorageException {
+        if (this.status != null && this.status.isRunning()) {
+            logger.info("Content compaction already running, ignoring request to start another.");
+            return this.getStatus();
+        }
+
+        String afterId = null;
+        if (resume) {
+            afterId = this.storage.getCheckpoint(COMPACTION_CHECKPOINT);
+        } else {
+            this.storage.setCheckpoint(COMPACTION_CHECKPOINT, null);
+        }
+
+        int keepSnapshots = this.config.getCompactionKeepSnapshots();
+        int keepDays = this.config.getCompactionKeepDays();
+        String mode = this.isArchiving() ? "archive" : "drop";
+        logger.info("Starting compaction of the content history of all API designs.");
+        logger.info("\tMode:           {}", mode);
+        logger.info("\tKeep snapshots: {}", keepSnapshots);
+        logger.info("\tKeep days:      {}", keepDays);
+        logger.info("\tResuming at:    {}", afterId);
+
+        ContentCompactionStatus newStatus = new ContentCompactionStatus();
+        newStatus.setRunning(true);
+        newStatus.setStartedOn(new Date());
+        newStatus.setMode(mode);
+        newStatus.setCheckpoint(afterId);
+        this.status = newStatus;
+        this.stopRequested = false;
+
+        Date olderThan = null;
+        if (keepDays > 0) {
+            olderThan = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(keepDays));
+        }
+        final String fromId = afterId;
+        final Date cutoff = olderThan;
+        final boolean archive = this.isArchiving();
+        Thread thread = new Thread(() -> runCompaction(fromId, keepSnapshots, cutoff, archive), "apicurio-content-compaction");
+        thread.setDaemon(true);
+        thread.start();
+
+        return this.getStatus();
+    }
+
+    /**
+     * Requests that the currently running compaction (if any) stop.  It can later be resumed
+     * from its last checkpoint.
+     */
+    public synchronized ContentCompactionStatus stop() {
+        if (this.status != null && this.status.isRunning()) {
+            logger.info("Stopping content compaction.");
+            this.stopRequested = true;
+        }
+        return this.getStatus();
+    }
+
+    /**
+     * Returns the status of the current (or most recent) compaction run.
+     */
+    public synchronized ContentCompactionStatus getStatus() {
+        ContentCompactionStatus rval = new ContentCompactionStatus();
+        if (this.status == null) {
+            rval.setMode(this.isArchiving() ? "archive" : "drop");
+            return rval;
+        }
+        rval.setRunning(this.status.isRunning());
+        rval.setStartedOn(this.status.getStartedOn());
+        rval.setFinishedOn(this.status.getFinishedOn());
+        rval.setMode(this.status.getMode());
+        rval.setCheckpoint(this.status.getCheckpoint());
+        rval.setDesignsProcessed(this.status.getDesignsProcessed());
+        rval.setRowsArchived(this.status.getRowsArchived());
+        rval.setRowsDropped(this.status.getRowsDropped());
+        return rval;
+    }
+
+    /**
+     * Returns true unless compaction is configured to drop old commands.
+     */
+    private boolean isArchiving() {
+        return !"drop".equalsIgnoreCase(this.config.getCompactionMode());
+    }
+
+    /**
+     * Compacts every design (after the given design ID), one page of designs at a time.
+     * @param afterId
+     * @param keepSnapshots
+     * @param olderThan
+     * @param archive
+     */
+    private void runCompaction(String afterId, int keepSnapshots, Date olderThan, boolean archive) {
+        boolean completed = false;
+        try {
+            String checkpoint = afterId;
+            List<String> designIds = this.storage.listApiDesignIds(checkpoint, PAGE_SIZE);
+            while (!designIds.isEmpty() && !this.stopRequested) {
+                for (String designId : designIds) {
+                    long rows = 0;
+                    int count;
+                    do {
+                        count = this.storage.compactContent(designId, keepSnapshots, olderThan, archive, ROWS_PER_BATCH);
+                        rows += count;
+                    } while (count == ROWS_PER_BATCH && !this.stopRequested);
+                    if (this.stopRequested) {
+                        break;
+                    }
+                    checkpoint = designId;
+                    synchronized (this) {
+                        this.status.setCheckpoint(checkpoint);
+                        this.status.setDesignsProcessed(this.status.getDesignsProcessed() + 1);
+                        if (archive) {
+                            this.status.setRowsArchived(this.status.getRowsArchived() + rows);
+                        } else {
+                            this.status.setRowsDropped(this.status.getRowsDropped() + rows);
+                        }
+                    }
+                }
+                this.storage.setCheckpoint(COMPACTION_CHECKPOINT, checkpoint);
+                ContentCompactionStatus current = this.getStatus();
+                logger.info("Content compaction progress: {} designs processed, {} rows archived, {} rows dropped.",
+                        current.getDesignsProcessed(), current.getRowsArchived(), current.getRowsDropped());
+                designIds = this.storage.listApiDesignIds(checkpoint, PAGE_SIZE);
+            }
+            if (!this.stopRequested) {
+                this.storage.setCheckpoint(COMPACTION_CHECKPOINT, null);
+                completed = true;
+            }
+        } catch (Exception e) {
+            logger.error("Content compaction failed.", e);
+        } finally {
+            synchronized (this) {
+                this.status.setRunning(false);
+                this.status.setFinishedOn(new Date());
+            }
+            ContentCompactionStatus current = this.getStatus();
+            logger.info("Content compaction {}: {} designs processed, {} rows archived, {} rows dropped.",
+                    completed ? "complete" : "stopped", current.getDesignsProcessed(), current.getRowsArchived(),
+                    current.getRowsDropped());
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.util.Date;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ContentCompressionBatch;
+import io.apicurio.hub.core.beans.ContentCompressionStatus;
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * A service used to compress, in the background, all API design documents that were stored
+ * before content compression was enabled (or while it was disabled).  Documents are visited
+ * in order of content version, one page at a time, and progress is checkpointed in the storage
+ * after each page so that an interrupted run can be resumed.
+ *
+ * While running, the service keeps a report of the space saved and of the time spent compressing
+ * and decompressing the documents, which is the latency added to writing and reading them.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class ContentCompressionService {
+
+    private static Logger logger = LoggerFactory.getLogger(ContentCompressionService.class);
+
+    static final String COMPRESSION_CHECKPOINT = "content-compression";
+    private static final int PAGE_SIZE = 100;
+
+    @Inject
+    private IStorage storage;
+    @Inject
+    private HubConfiguration config;
+
+    private ContentCompressionStatus status;
+    private volatile boolean stopRequested;
+    private long compressNanos;
+    private long decompressNanos;
+    private long rowsMeasured;
+
+    /**
+     * Starts compressing all uncompressed API design documents in a background thread.  If
+     * compression is already running, this does nothing.  When "resume" is true, compression
+     * starts after the last checkpoint recorded by a previous (interrupted) run.  Returns the
+     * current status.
+     * @param resume
+     * @throws StorageException
+     */
+    public synchronized ContentCompressionStatus start(boolean resume) throws StorageException {
+        if (this.status != null && this.status.isRunning()) {
+            logger.info("Content compression already running, ignoring request to start another.");
+            return this.getStatus();
+        }
+
+        long afterVersion = 0;
+        if (resume) {
+            String checkpoint = this.storage.getCheckpoint(COMPRESSION_CHECKPOINT);
+            if (checkpoint != null) {
+                afterVersion = Long.parseLong(checkpoint);
+            }
+        } else {
+            this.storage.setCheckpoint(COMPRESSION_CHECKPOINT, null);
+        }
+
+        String codec = this.config.getContentCompression();
+        logger.info("Starting compression of all stored API design documents.");
+        logger.info("\tCodec:       {}", codec);
+        logger.info("\tResuming at: {}", afterVersion);
+
+        ContentCompressionStatus newStatus = new ContentCompressionStatus();
+        newStatus.setRunning(true);
+        newStatus.setStartedOn(new Date());
+        newStatus.setCodec(codec);
+        newStatus.setCheckpoint(String.valueOf(afterVersion));
+        this.status = newStatus;
+        this.stopRequested = false;
+        this.compressNanos = 0;
+        this.decompressNanos = 0;
+        this.rowsMeasured = 0;
+
+        final long fromVersion = afterVersion;
+        Thread thread = new Thread(() -> runCompression(fromVersion), "apicurio-content-compression");
+        thread.setDaemon(true);
+        thread.start();
+
+        return this.getStatus();
+    }
+
+    /**
+     * Requests that the currently running compression (if any) stop.  It can later be resumed
+     * from its last checkpoint.
+     */
+    public synchronized ContentCompressionStatus stop() {
+        if (this.status != null && this.status.isRunning()) {
+            logger.info("Stopping content compression.");
+            this.stopRequested = true;
+        }
+        return this.getStatus();
+    }
+
+    /**
+     * Returns the status of the current (or most recent) compression run.
+     */
+    public synchronized ContentCompressionStatus getStatus() {
+        ContentCompressionStatus rval = new ContentCompressionStatus();
+        if (this.status == null) {
+            rval.setCodec(this.config.getContentCompression());
+            return rval;
+        }
+        rval.setRunning(this.status.isRunning());
+        rval.setStartedOn(this.status.getStartedOn());
+        rval.setFinishedOn(this.status.getFinishedOn());
+        rval.setCodec(this.status.getCodec());
+        rval.setCheckpoint(this.status.getCheckpoint());
+        rval.setRowsProcessed(this.status.getRowsProcessed());
+        rval.setRowsCompressed(this.status.getRowsCompressed());
+        rval.setBytesBefore(this.status.getBytesBefore());
+        rval.setBytesAfter(this.status.getBytesAfter());
+        if (rval.getBytesBefore() > 0) {
+            rval.setSavingsPercent(100.0 * (rval.getBytesBefore() - rval.getBytesAfter()) / rval.getBytesBefore());
+        }
+        if (this.rowsMeasured > 0) {
+            rval.setAvgCompressMillis(this.compressNanos / 1000000.0 / this.rowsMeasured);
+            rval.setAvgDecompressMillis(this.decompressNanos / 1000000.0 / this.rowsMeasured);
+        }
+        return rval;
+    }
+
+    /**
+     * Compresses every document (after the given content version), one page at a time.
+     * @param afterVersion
+     */
+    private void runCompression(long afterVersion) {
+        boolean completed = false;
+        try {
+            long checkpoint = afterVersion;
+            ContentCompressionBatch batch = this.storage.compressContent(checkpoint, PAGE_SIZE);
+            while (batch.getLastVersion() != -1) {
+                checkpoint = batch.getLastVersion();
+                this.storage.setCheckpoint(COMPRESSION_CHECKPOINT, String.valueOf(checkpoint));
+                synchronized (this) {
+                    this.status.setCheckpoint(String.valueOf(checkpoint));
+                    this.status.setRowsProcessed(this.status.getRowsProcessed() + batch.getRowsExamined());
+                    this.status.setRowsCompressed(this.status.getRowsCompressed() + batch.getRowsCompressed());
+                    this.status.setBytesBefore(this.status.getBytesBefore() + batch.getBytesBefore());
+                    this.status.setBytesAfter(this.status.getBytesAfter() + batch.getBytesAfter());
+                    this.compressNanos += batch.getCompressNanos();
+                    this.decompressNanos += batch.getDecompressNanos();
+                    this.rowsMeasured += batch.getRowsExamined();
+                }
+                ContentCompressionStatus current = this.getStatus();
+                logger.info("Content compression progress: {} documents processed ({} compressed), {}% space saved.",
+                        current.getRowsProcessed(), current.getRowsCompressed(),
+                        String.format("%.1f", current.getSavingsPercent()));
+                if (this.stopRequested) {
+                    break;
+                }
+                batch = this.storage.compressContent(checkpoint, PAGE_SIZE);
+            }
+            if (!this.stopRequested) {
+                this.storage.setCheckpoint(COMPRESSION_CHECKPOINT, null);
+                completed = true;
+            }
+        } catch (Exception e) {
+            logger.error("Content compression failed.", e);
+        } finally {
+            synchronized (this) {
+                this.status.setRunning(false);
+                this.status.setFinishedOn(new Date());
+            }
+            ContentCompressionStatus current = this.getStatus();
+            logger.info("Content compression {}: {} documents processed ({} compressed), {} bytes -> {} bytes ({}% saved), "
+                    + "{}ms avg compress, {}ms avg decompress.",
+                    completed ? "complete" : "stopped", current.getRowsProcessed(), current.getRowsCompressed(),
+                    current.getBytesBefore(), current.getBytesAfter(), String.format("%.1f", current.getSavingsPercent()),
+                    String.format("%.3f", current.getAvgCompressMillis()),
+                    String.format("%.3f", current.getAvgDecompressMillis()));
+        }
+    }
+
+}
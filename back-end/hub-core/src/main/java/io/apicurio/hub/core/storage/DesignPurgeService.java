@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * A service used to purge, in the background, the API designs that were deleted.  Deleting a
+ * design only marks it as deleted (so that the user's request does not have to wait for its
+ * entire content history to be removed).  Once the configured undelete window has passed, this
+ * service removes the rows of those designs a small batch at a time, so that no single
+ * transaction holds locks on a large number of rows.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class DesignPurgeService {
+
+    private static Logger logger = LoggerFactory.getLogger(DesignPurgeService.class);
+
+    private static final int PAGE_SIZE = 100;
+    private static final int ROWS_PER_BATCH = 500;
+
+    @Inject
+    private IStorage storage;
+    @Inject
+    private HubConfiguration config;
+
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private Thread purger;
+
+    /**
+     * Starts periodically purging deleted API designs.  Does nothing if the service was
+     * already started.
+     */
+    public synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        this.started = true;
+        int interval = config.getPurgeInterval();
+        this.purger = new Thread(() -> runPurger(interval), "apicurio-design-purge");
+        this.purger.setDaemon(true);
+        this.purger.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        this.stopped = true;
+        if (this.purger != null) {
+            this.purger.interrupt();
+        }
+    }
+
+    /**
+     * Returns the date before which deleted designs can no longer be restored.
+     */
+    public Date getUndeleteCutoff() {
+        return new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.getUndeleteWindow()));
+    }
+
+    /**
+     * Purges all API designs deleted before the undelete window, and then deletes the stored
+     * documents no longer referenced by any design.  Returns the number of designs purged.
+     * @throws StorageException
+     */
+    public int purge() throws StorageException {
+        int purged = 0;
+        List<String> designIds = this.storage.listDeletedApiDesignIds(getUndeleteCutoff(), PAGE_SIZE);
+        while (!designIds.isEmpty() && !this.stopped) {
+            for (String designId : designIds) {
+                long rows = 0;
+                int count;
+                do {
+                    count = this.storage.purgeApiDesign(designId, ROWS_PER_BATCH);
+                    rows += count;
+                } while (count == ROWS_PER_BATCH && !this.stopped);
+                if (this.stopped) {
+                    break;
+                }
+                logger.debug("Purged API design {} ({} content rows).", designId, rows);
+                purged++;
+            }
+            designIds = this.storage.listDeletedApiDesignIds(getUndeleteCutoff(), PAGE_SIZE);
+        }
+        // Purged designs (and compacted or reverted content) may leave stored documents unreferenced
+        if (!this.stopped) {
+            int blobs = this.storage.deleteOrphanedContentBlobs();
+            if (blobs > 0) {
+                logger.debug("Deleted {} orphaned content blobs.", blobs);
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Purges deleted designs, and then keeps doing so periodically.
+     * @param interval
+     */
+    private void runPurger(int interval) {
+        while (!this.stopped) {
+            try {
+                int purged = purge();
+                if (purged > 0) {
+                    logger.info("Purged {} deleted API designs.", purged);
+                }
+            } catch (StorageException e) {
+                logger.error("Error purging deleted API designs.", e);
+            }
+            try {
+                Thread.sleep(interval * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+}
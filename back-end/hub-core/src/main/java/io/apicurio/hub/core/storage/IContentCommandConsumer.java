@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.io.IOException;
+
+import io.apicurio.hub.core.beans.ApiDesignCommand;
+
+/**
+ * Receives the content commands streamed from the storage (see
+ * {@link IStorage#streamAllContentCommands(String, String, long, IContentCommandConsumer)}),
+ * one row at a time.
+ * @author eric.wittmann@gmail.com
+ */
+@FunctionalInterface
+public interface IContentCommandConsumer {
+
+    /**
+     * Called for each content command, in content version order.
+     * @param command
+     * @throws IOException
+     */
+    public void accept(ApiDesignCommand command) throws IOException;
+
+}
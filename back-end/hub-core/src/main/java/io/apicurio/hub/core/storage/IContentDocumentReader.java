@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a content document straight from the storage (see
+ * {@link IStorage#readLatestContentDocument(String, String, IContentDocumentReader)}) without
+ * it first being loaded into memory as a whole.
+ * @author eric.wittmann@gmail.com
+ */
+@FunctionalInterface
+public interface IContentDocumentReader<T> {
+
+    /**
+     * Reads the document.  The reader is only valid for the duration of this call.
+     * @param contentVersion
+     * @param document
+     * @throws IOException
+     */
+    public T read(long contentVersion, Reader document) throws IOException;
+
+}
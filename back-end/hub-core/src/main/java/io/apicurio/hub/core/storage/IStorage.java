@@ -17,8 +17,11 @@
 package io.apicurio.hub.core.storage;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+import io.apicurio.hub.core.beans.ApiContentEntry;
 import io.apicurio.hub.core.beans.ApiContentType;
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
@@ -27,6 +30,8 @@ import io.apicurio.hub.core.beans.ApiDesignCommand;
 import io.apicurio.hub.core.beans.ApiDesignContent;
 import io.apicurio.hub.core.beans.ApiPublication;
 import io.apicurio.hub.core.beans.CodegenProject;
+import io.apicurio.hub.core.beans.ContentCompressionBatch;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
 import io.apicurio.hub.core.beans.Contributor;
 import io.apicurio.hub.core.beans.Invitation;
 import io.apicurio.hub.core.beans.LinkedAccount;
@@ -149,7 +154,8 @@ public interface IStorage {
     public ApiDesign getApiDesign(String userId, String designId) throws NotFoundException, StorageException;
 
     /**
-     * Gets the list of users who have collaborated to edit the given API design.
+     * Gets the list of users who have collaborated to edit the given API design.  Only the top
+     * contributors (those with the most edits that were not undone) are returned, most active first.
      * @param userId
      * @param designId
      * @return a collection of contributors (editors) on a given API design
@@ -173,7 +179,8 @@ public interface IStorage {
 
     /**
      * Deletes a single API Design by its unique ID.  Throws an exception if no design
-     * was found.
+     * was found.  The design is only marked as deleted (which hides it from all other
+     * methods) - its rows are removed later, in batches, by {@link #purgeApiDesign(String, int)}.
      * @param userId
      * @param designId
      * @throws NotFoundException
@@ -181,6 +188,39 @@ public interface IStorage {
      */
     public void deleteApiDesign(String userId, String designId) throws NotFoundException, StorageException;
 
+    /**
+     * Restores an API Design that was deleted after the given date.  Throws an exception if
+     * no such design was found (e.g. because it was deleted earlier, and may already have been
+     * purged).
+     * @param userId
+     * @param designId
+     * @param deletedAfter
+     * @throws NotFoundException
+     * @throws StorageException
+     */
+    public void restoreApiDesign(String userId, String designId, Date deletedAfter) throws NotFoundException, StorageException;
+
+    /**
+     * Returns (up to "limit" of) the IDs of the API Designs that were deleted before the given
+     * date, in order of ID.
+     * @param deletedBefore
+     * @param limit
+     * @throws StorageException
+     */
+    public List<String> listDeletedApiDesignIds(Date deletedBefore, int limit) throws StorageException;
+
+    /**
+     * Removes up to "limit" content rows of a deleted API Design.  Once no content is left,
+     * all other rows of the design (ACL, invitations, codegen projects, etc) and the design
+     * itself are removed too.  Returns the number of content rows removed, which is less than
+     * "limit" once the design has been completely purged.  Designs that are not deleted are
+     * left alone.
+     * @param designId
+     * @param limit
+     * @throws StorageException
+     */
+    public int purgeApiDesign(String designId, int limit) throws StorageException;
+
     /**
      * Updates a single API design.  An exception is thrown if no design for the given ID
      * was found.
@@ -200,6 +240,26 @@ public interface IStorage {
      */
     public Collection<ApiDesign> listApiDesigns(String userId) throws StorageException;
 
+    /**
+     * Returns a filtered and sorted page of the API Designs accessible by the given user.  Pass
+     * a query without a cursor to get the first page, or with the cursor of the previous page
+     * to get the next one.  A query without a limit returns every matching design.
+     * @param userId
+     * @param query
+     * @throws StorageException
+     * @throws IllegalArgumentException if the query's cursor is not valid
+     */
+    public ApiDesignPage listApiDesigns(String userId, ApiDesignQuery query) throws StorageException, IllegalArgumentException;
+
+    /**
+     * Returns the tags used by the API Designs accessible by the given user, along with the
+     * number of those designs having each tag.  The most used tags come first.  Use the tag
+     * filter of an {@link ApiDesignQuery} to list the designs with a given tag.
+     * @param userId
+     * @throws StorageException
+     */
+    public Map<String, Integer> countApiDesignTags(String userId) throws StorageException;
+
     /**
      * Returns a collection of API Designs that represent the "recent" APIs edited by the 
      * given user.
@@ -218,6 +278,30 @@ public interface IStorage {
      */
     public ApiDesignContent getLatestContentDocument(String userId, String designId) throws NotFoundException, StorageException;
 
+    /**
+     * Reads the most recent full content row for the given API Design through the given reader,
+     * streaming the document from the database rather than loading it into memory first.
+     * @param userId
+     * @param designId
+     * @param reader
+     * @return whatever the reader returns
+     * @throws NotFoundException
+     * @throws StorageException
+     */
+    public <T> T readLatestContentDocument(String userId, String designId, IContentDocumentReader<T> reader)
+            throws NotFoundException, StorageException;
+
+    /**
+     * Returns an opaque token that identifies the current state of the content of the given 
+     * API Design.  The token changes whenever content is added, undone or redone, so it can
+     * be used to decide whether previously rendered content is still up to date.
+     * @param userId
+     * @param designId
+     * @throws NotFoundException
+     * @throws StorageException
+     */
+    public String getContentETag(String userId, String designId) throws NotFoundException, StorageException;
+
     /**
      * Returns a list of commands for a given API design that have been executed since 
      * a specific content version (excludes reverted commands).
@@ -238,6 +322,20 @@ public interface IStorage {
      */
     public List<ApiDesignCommand> listAllContentCommands(String userId, String designId, long sinceVersion) throws StorageException;
 
+    /**
+     * Streams the commands for a given API design that have been executed since a specific
+     * content version (including reverted commands) to the given consumer.  Unlike
+     * {@link #listAllContentCommands(String, String, long)} the commands are fetched from the
+     * database in small batches, so a long history never has to be held in memory at once.
+     * @param userId
+     * @param designId
+     * @param sinceVersion
+     * @param consumer
+     * @throws StorageException
+     */
+    public void streamAllContentCommands(String userId, String designId, long sinceVersion, IContentCommandConsumer consumer)
+            throws StorageException;
+
     /**
      * Adds a single content row to the DB and returns a unique content version number 
      * for it.
@@ -368,6 +466,36 @@ public interface IStorage {
      * @param to
      */
     public Collection<ApiPublication> listApiDesignPublications(String designId, int from, int to) throws StorageException;
+
+    /**
+     * Returns a page of API design changes, newest first.  Pass a null cursor to get the first
+     * page, or the cursor of the previous page to get the next one.
+     * @param designId
+     * @param after
+     * @param limit
+     * @throws StorageException
+     */
+    public CursorPage<ApiDesignChange> listApiDesignActivity(String designId, PageCursor after, int limit) throws StorageException;
+
+    /**
+     * Returns a page of API design changes made by a given user, newest first.  Pass a null
+     * cursor to get the first page, or the cursor of the previous page to get the next one.
+     * @param user
+     * @param after
+     * @param limit
+     * @throws StorageException
+     */
+    public CursorPage<ApiDesignChange> listUserActivity(String user, PageCursor after, int limit) throws StorageException;
+
+    /**
+     * Returns a page of API publications, newest first.  Pass a null cursor to get the first
+     * page, or the cursor of the previous page to get the next one.
+     * @param designId
+     * @param after
+     * @param limit
+     * @throws StorageException
+     */
+    public CursorPage<ApiPublication> listApiDesignPublications(String designId, PageCursor after, int limit) throws StorageException;
     
     /**
      * Returns a collection of codegen projects for the given API design.
@@ -423,4 +551,172 @@ public interface IStorage {
      */
     public void deleteCodegenProjects(String userId, String designId) throws NotFoundException, StorageException;
 
+    /**
+     * Returns a page of API design IDs, ordered by ID, for all designs in the storage
+     * regardless of ownership.  This is intended for maintenance tasks that need to
+     * visit every design.  Pass null as the "afterId" to start from the beginning.
+     * @param afterId
+     * @param limit
+     * @throws StorageException
+     */
+    public List<String> listApiDesignIds(String afterId, int limit) throws StorageException;
+
+    /**
+     * Returns the IDs of all API designs the given user has access to.
+     * @param userId
+     * @throws StorageException
+     */
+    public Collection<String> listAccessibleApiDesignIds(String userId) throws StorageException;
+
+    /**
+     * Returns the IDs of all API designs that had content added after the given change cursor
+     * was obtained (see {@link #getChangeCursor()}), or of all API designs having content if
+     * the cursor is null.
+     * @param changeCursor
+     * @throws StorageException
+     */
+    public List<String> listApiDesignIdsChangedSince(String changeCursor) throws StorageException;
+
+    /**
+     * Returns an (opaque) cursor representing the latest content in the storage (across all
+     * API designs).  The cursor changes whenever content is added to any API design.
+     * @throws StorageException
+     */
+    public String getChangeCursor() throws StorageException;
+
+    /**
+     * Returns the value of a named checkpoint (used by long running maintenance tasks
+     * to record their progress).  Returns null if no such checkpoint exists.
+     * @param name
+     * @throws StorageException
+     */
+    public String getCheckpoint(String name) throws StorageException;
+
+    /**
+     * Stores the value of a named checkpoint.  Passing a null value removes the checkpoint.
+     * @param name
+     * @param value
+     * @throws StorageException
+     */
+    public void setCheckpoint(String name, String value) throws StorageException;
+
+    /**
+     * Compresses (using the configured content codec) up to "limit" stored API design documents
+     * that are not yet compressed and whose content version is greater than the given version.
+     * Returns the result of the batch, including the last content version examined (or -1 if no
+     * documents were left to compress, or compression is disabled).
+     * @param afterVersion
+     * @param limit
+     * @throws StorageException
+     */
+    public ContentCompressionBatch compressContent(long afterVersion, int limit) throws StorageException;
+
+    /**
+     * Reports how much space is saved by storing identical API design documents only once.
+     * @throws StorageException
+     */
+    public ContentDeduplicationReport getContentDeduplicationReport() throws StorageException;
+
+    /**
+     * Deletes the stored documents that are no longer referenced by any API design content.
+     * Returns the number of documents deleted.
+     * @throws StorageException
+     */
+    public int deleteOrphanedContentBlobs() throws StorageException;
+
+    /**
+     * Moves up to "limit" of the oldest command rows of an API design out of the content table,
+     * either into the content archive (when "archive" is true) or by deleting them.  Only commands
+     * already covered by the most recent document snapshot are considered, and of those only
+     * the ones older than the last "keepSnapshots" snapshots or created before "olderThan" (when
+     * not null).  Returns the number of rows moved, which is less than "limit" when no more rows
+     * of the design are eligible.
+     * @param designId
+     * @param keepSnapshots
+     * @param olderThan
+     * @param archive
+     * @param limit
+     * @throws StorageException
+     */
+    public int compactContent(String designId, int keepSnapshots, Date olderThan, boolean archive, int limit) throws StorageException;
+
+    /**
+     * Reserves the given number of content versions, so that content can be given its (final)
+     * version before it is stored.  Reserved versions are never assigned to any other content,
+     * and are higher than the version of any content already stored.  Returns null if the
+     * storage does not support reserving content versions.
+     * @param count
+     * @throws StorageException
+     */
+    public List<Long> reserveContentVersions(int count) throws StorageException;
+
+    /**
+     * Stores content whose versions were reserved earlier (see reserveContentVersions).  Entries
+     * whose version has already been stored are skipped, so it is safe to store the same entries
+     * again.  Entries whose API design no longer exists are logged and dropped.  Any other failure
+     * is thrown (after storing the entries that could be stored), so that the caller can try to
+     * store the entries again later.  Returns the number of entries stored.
+     * @param entries
+     * @throws StorageException
+     */
+    public int addReservedContent(List<ApiContentEntry> entries) throws StorageException;
+
+    /**
+     * Marks the given API design as having content that was given a reserved version but has
+     * not been stored yet (see addReservedContent).  The mark is owned by the given journal,
+     * and is kept until that journal clears it.  Marking a design that is already marked by
+     * the same journal does nothing.
+     * @param designId
+     * @param journalId
+     * @throws StorageException
+     */
+    public void markContentPending(String designId, String journalId) throws StorageException;
+
+    /**
+     * Clears the marks set by the given journal on the given API designs (or on all designs
+     * when designIds is null).
+     * @param journalId
+     * @param designIds
+     * @throws StorageException
+     */
+    public void clearContentPending(String journalId, Collection<String> designIds) throws StorageException;
+
+    /**
+     * Returns true if any journal has marked the given API design as having pending content.
+     * Snapshots of such a design must not be stored, since they would be given a version
+     * higher than content that has not been stored yet.
+     * @param designId
+     * @throws StorageException
+     */
+    public boolean isContentPending(String designId) throws StorageException;
+
+    /**
+     * Begins a unit of work on the current thread.  Until the matching call to endUnitOfWork, all
+     * storage calls made by that thread share a single connection (opened when first needed) and,
+     * when "transactional" is true, a single transaction.  Units of work may be nested: an inner
+     * unit joins the outer one, starting the transaction if the outer one did not.  Every call to
+     * this method must be paired with a call to endUnitOfWork (in a finally block).
+     * @param transactional
+     * @throws StorageException
+     */
+    public void beginUnitOfWork(boolean transactional) throws StorageException;
+
+    /**
+     * Ends the current unit of work.  If the unit started a transaction, that transaction is
+     * committed (when "commit" is true) or rolled back.  The connection is released when the
+     * outermost unit of work ends.
+     * @param commit
+     * @throws StorageException
+     */
+    public void endUnitOfWork(boolean commit) throws StorageException;
+
+    /**
+     * Releases the connections held by the current unit of work (if any), without ending it.  A
+     * later storage call within the unit of work simply takes a new connection.  This should be
+     * called before a slow call to another system (e.g. a source control system), so that the
+     * connection is not held for the duration of that call.  Does nothing while the unit of work
+     * has a transaction open.
+     */
+    public void releaseConnections();
+
 }
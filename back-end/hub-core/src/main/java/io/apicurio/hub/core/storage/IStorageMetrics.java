@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage;
+
+/**
+ * Interface used to report metrics about the statements executed by the storage layer, so
+ * that e.g. the split between the primary and the read replica datasource is visible.  The
+ * Hub API and the Editing API both implement this (via their own metrics interfaces).
+ * @author eric.wittmann@gmail.com
+ */
+public interface IStorageMetrics {
+
+    /**
+     * Indicates that a statement was executed against the given datasource.
+     * @param datasource either "primary" or "replica"
+     * @param kind either "read" or "write"
+     */
+    public void storageStatementExecuted(String datasource, String kind);
+
+    /**
+     * Reports the time it took to execute a statement against the given datasource.
+     * @param datasource either "primary", "replica" or the name of a shard
+     * @param statement the name of the statement (e.g. "selectContentCommands")
+     * @param nanos
+     */
+    public default void storageStatementTimed(String datasource, String statement, long nanos) {
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * An opaque position in a feed that is ordered (newest first) by creation time and content
+ * version.  A cursor identifies the last item of a page, and the next page starts with the
+ * item immediately following it.  Unlike an offset, a cursor lets the storage seek directly
+ * to the start of a page, so reading a page costs the same no matter how deep it is.
+ * 
+ * Cursors are handed to clients in their (URL safe) string form, see {@link #toString()}
+ * and {@link #parse(String)}.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class PageCursor {
+
+    private final long createdOn;
+    private final long version;
+
+    /**
+     * Constructor.
+     * @param createdOn
+     * @param version
+     */
+    public PageCursor(Date createdOn, long version) {
+        this.createdOn = createdOn.getTime();
+        this.version = version;
+    }
+
+    /**
+     * @return the creation time of the last item of the page
+     */
+    public Date getCreatedOn() {
+        return new Date(createdOn);
+    }
+
+    /**
+     * @return the content version of the last item of the page
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Parses a cursor previously produced by {@link #toString()}.
+     * @param cursor
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public static PageCursor parse(String cursor) throws IllegalArgumentException {
+        if (cursor == null || !Base64.isBase64(cursor)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String decoded = new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8);
+        String[] parts = decoded.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            return new PageCursor(new Date(Long.parseLong(parts[0])), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        String raw = createdOn + ":" + version;
+        return Base64.encodeBase64URLSafeString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(createdOn) * 31 + Long.hashCode(version);
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PageCursor)) {
+            return false;
+        }
+        PageCursor other = (PageCursor) obj;
+        return createdOn == other.createdOn && version == other.version;
+    }
+
+}
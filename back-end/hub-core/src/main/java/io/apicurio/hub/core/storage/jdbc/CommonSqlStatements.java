@@ -18,10 +18,13 @@ package io.apicurio.hub.core.storage.jdbc;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
 
 /**
  * Shared base class for all sql statements.
@@ -29,6 +32,9 @@ import io.apicurio.hub.core.config.HubConfiguration;
  */
 public abstract class CommonSqlStatements implements ISqlStatements {
 
+    private static final Pattern DROP_STATEMENT = Pattern.compile("^(DROP\\s|ALTER\\s+TABLE\\s+\\S+\\s+DROP\\s)",
+            Pattern.CASE_INSENSITIVE);
+
     private boolean shareForEveryone;
     
     /**
@@ -75,6 +81,65 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return statements;
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#createUpgradeStepsTable()
+     */
+    @Override
+    public String createUpgradeStepsTable() {
+        return "CREATE TABLE IF NOT EXISTS db_upgrade_steps (version INT NOT NULL, step INT NOT NULL, "
+                + "statement VARCHAR(255), applied_on TIMESTAMP NOT NULL, PRIMARY KEY (version, step))";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectUpgradeSteps()
+     */
+    @Override
+    public String selectUpgradeSteps() {
+        return "SELECT s.step FROM db_upgrade_steps s WHERE s.version = ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertUpgradeStep()
+     */
+    @Override
+    public String insertUpgradeStep() {
+        return "INSERT INTO db_upgrade_steps (version, step, statement, applied_on) VALUES (?, ?, ?, ?)";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#isOnlineStatement(java.lang.String)
+     */
+    @Override
+    public boolean isOnlineStatement(String statement) {
+        return false;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#cleanupOnlineStatement(java.lang.String)
+     */
+    @Override
+    public String cleanupOnlineStatement(String statement) {
+        return null;
+    }
+
+    /**
+     * DDL is transactional by default, so a statement is never applied without being recorded.
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#isUpgradeStatementApplied(java.lang.String, java.sql.SQLException)
+     */
+    @Override
+    public boolean isUpgradeStatementApplied(String statement, SQLException error) {
+        return false;
+    }
+
+    /**
+     * Returns true if the given upgrade statement removes something (e.g. drops an index or a
+     * column), in which case running it again fails because that something no longer exists.
+     * @param statement
+     */
+    protected static boolean isDropStatement(String statement) {
+        return DROP_STATEMENT.matcher(statement.trim()).find();
+    }
+
     /**
      * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#getDatabaseVersion()
      */
@@ -83,6 +148,46 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return "SELECT a.prop_value FROM apicurio a WHERE a.prop_name = ?";
     }
 
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectProperty()
+     */
+    @Override
+    public String selectProperty() {
+        return "SELECT p.prop_value FROM apicurio p WHERE p.prop_name = ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertProperty()
+     */
+    @Override
+    public String insertProperty() {
+        return "INSERT INTO apicurio (prop_name, prop_value) VALUES (?, ?)";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#updateProperty()
+     */
+    @Override
+    public String updateProperty() {
+        return "UPDATE apicurio SET prop_value = ? WHERE prop_name = ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#updatePropertyIfUnchanged()
+     */
+    @Override
+    public String updatePropertyIfUnchanged() {
+        return "UPDATE apicurio SET prop_value = ? WHERE prop_name = ? AND prop_value = ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deleteProperty()
+     */
+    @Override
+    public String deleteProperty() {
+        return "DELETE FROM apicurio WHERE prop_name = ?";
+    }
+
     /**
      * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertLinkedAccount()
      */
@@ -132,11 +237,51 @@ public abstract class CommonSqlStatements implements ISqlStatements {
     }
 
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertApiDesign()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertApiDesignWithId()
+     */
+    @Override
+    public String insertApiDesignWithId() {
+        return "INSERT INTO api_designs (name, description, created_by, created_on, tags, id) VALUES (?, ?, ?, ?, ?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectMaxApiDesignId()
+     */
+    @Override
+    public String selectMaxApiDesignId() {
+        return "SELECT MAX(d.id) FROM api_designs d";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignExists()
+     */
+    @Override
+    public String selectApiDesignExists() {
+        return "SELECT COUNT(*) FROM api_designs d WHERE d.id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectDesignShard()
      */
     @Override
-    public String insertApiDesign() {
-        return "INSERT INTO api_designs (name, description, created_by, created_on, tags) VALUES (?, ?, ?, ?, ?)";
+    public String selectDesignShard() {
+        return "SELECT s.shard FROM design_shards s WHERE s.design_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertDesignShard()
+     */
+    @Override
+    public String insertDesignShard() {
+        return "INSERT INTO design_shards (design_id, shard) VALUES (?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectMinShardedDesignId()
+     */
+    @Override
+    public String selectMinShardedDesignId() {
+        return "SELECT MIN(s.design_id) FROM design_shards s";
     }
     
     /**
@@ -147,37 +292,187 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return "DELETE FROM api_designs WHERE id = ?";
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#softDeleteApiDesign()
+     */
+    @Override
+    public String softDeleteApiDesign() {
+        return "UPDATE api_designs SET deleted_on = ? WHERE id = ? AND deleted_on IS NULL";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#restoreApiDesign()
+     */
+    @Override
+    public String restoreApiDesign() {
+        if (shareForEveryone) {
+            return "UPDATE api_designs SET deleted_on = NULL WHERE id = ? AND deleted_on > ?";
+        }
+        return "UPDATE api_designs SET deleted_on = NULL WHERE id = ? AND deleted_on > ? "
+                + "AND EXISTS (SELECT a.design_id FROM acl a "
+                + "WHERE a.design_id = ? AND a.user_id = ? AND (a.role = 'owner' OR a.role = 'collaborator'))";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectDeletedApiDesignIds()
+     */
+    @Override
+    public String selectDeletedApiDesignIds() {
+        return "SELECT d.id FROM api_designs d WHERE d.deleted_on < ? ORDER BY d.id ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#isApiDesignDeleted()
+     */
+    @Override
+    public String isApiDesignDeleted() {
+        return "SELECT COUNT(*) FROM api_designs d WHERE d.id = ? AND d.deleted_on IS NOT NULL";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectPurgeableContentVersions()
+     */
+    @Override
+    public String selectPurgeableContentVersions() {
+        return "SELECT c.version FROM api_content c WHERE c.design_id = ? ORDER BY c.version ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deletePurgedContent()
+     */
+    @Override
+    public String deletePurgedContent() {
+        return "DELETE FROM api_content WHERE design_id = ? AND version <= ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectPurgeableArchivedContentVersions()
+     */
+    @Override
+    public String selectPurgeableArchivedContentVersions() {
+        return "SELECT r.version FROM api_content_archive r WHERE r.design_id = ? ORDER BY r.version ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deletePurgedArchivedContent()
+     */
+    @Override
+    public String deletePurgedArchivedContent() {
+        return "DELETE FROM api_content_archive WHERE design_id = ? AND version <= ?";
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesigns()
      */
     @Override
     public String selectApiDesigns() {
     	if (shareForEveryone) {
-    		return "SELECT d.* FROM api_designs d";
+    		return "SELECT d.* FROM api_designs d WHERE d.deleted_on IS NULL";
     	}
-        return "SELECT d.* FROM api_designs d JOIN acl a ON a.design_id = d.id WHERE a.user_id = ?";
+        return "SELECT d.* FROM api_designs d JOIN acl a ON a.design_id = d.id WHERE a.user_id = ? AND d.deleted_on IS NULL";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesigns(io.apicurio.hub.core.storage.ApiDesignQuery, boolean)
+     */
+    @Override
+    public String selectApiDesigns(ApiDesignQuery query, boolean afterCursor) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("d.deleted_on IS NULL");
+        StringBuilder builder = new StringBuilder("SELECT d.* FROM api_designs d");
+        if (!shareForEveryone) {
+            builder.append(" JOIN acl a ON a.design_id = d.id");
+            conditions.add("a.user_id = :userId");
+        }
+        if (query.getNamePrefix() != null) {
+            conditions.add("d.name LIKE :namePrefix ESCAPE '!'");
+        }
+        if (query.getTag() != null) {
+            conditions.add("EXISTS (SELECT 1 FROM design_tags t WHERE t.design_id = d.id AND t.tag = :tag)");
+        }
+        if (query.getCreatedBy() != null) {
+            conditions.add("d.created_by = :createdBy");
+        }
+        String sortColumn;
+        switch (query.getSort()) {
+            case CREATED:
+                sortColumn = "d.created_on";
+                break;
+            case MODIFIED:
+                sortColumn = "d.last_version";
+                break;
+            default:
+                sortColumn = "d.name";
+                break;
+        }
+        String direction = query.isAscending() ? "ASC" : "DESC";
+        if (afterCursor) {
+            String op = query.isAscending() ? ">" : "<";
+            conditions.add("(" + sortColumn + " " + op + " :afterKey OR (" + sortColumn + " = :afterKey AND d.id " + op + " :afterId))");
+        }
+        builder.append(" WHERE ");
+        builder.append(String.join(" AND ", conditions));
+        builder.append(" ORDER BY " + sortColumn + " " + direction + ", d.id " + direction);
+        if (query.getLimit() > 0) {
+            builder.append(" LIMIT :limit");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignIds()
+     */
+    @Override
+    public String selectApiDesignIds() {
+        return "SELECT d.id FROM api_designs d WHERE d.id > ? AND d.deleted_on IS NULL ORDER BY d.id ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectAccessibleApiDesignIds()
+     */
+    @Override
+    public String selectAccessibleApiDesignIds() {
+        if (shareForEveryone) {
+            return "SELECT d.id FROM api_designs d WHERE d.deleted_on IS NULL";
+        }
+        return "SELECT d.id FROM acl a JOIN api_designs d ON d.id = a.design_id WHERE a.user_id = ? AND d.deleted_on IS NULL";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignIdsChangedSince()
+     */
+    @Override
+    public String selectApiDesignIdsChangedSince() {
+        return "SELECT d.id FROM api_designs d WHERE d.last_version > ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectLatestContentVersion()
+     */
+    @Override
+    public String selectLatestContentVersion() {
+        return "SELECT MAX(c.version) FROM api_content c";
     }
     
     @Override
     public String selectRecentApiDesigns() {
-        return "SELECT c.design_id, MAX(c.version) AS version "
-        		+ "FROM api_content c "
-        		+ "JOIN acl a ON a.design_id = c.design_id "
-        		+ "WHERE a.user_id = ? "
-        		+ "GROUP BY c.design_id "
-        		+ "ORDER BY version DESC "
+        return "SELECT d.* "
+        		+ "FROM api_designs d "
+        		+ "JOIN acl a ON a.design_id = d.id "
+        		+ "WHERE a.user_id = ? AND d.deleted_on IS NULL "
+        		+ "ORDER BY d.last_version DESC "
         		+ "LIMIT 5";
     }
 
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignById()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignById(boolean)
      */
     @Override
-    public String selectApiDesignById() {
-    	if (shareForEveryone) {
-    		return "SELECT d.* FROM api_designs d WHERE d.id = ?";
+    public String selectApiDesignById(boolean withAcl) {
+    	if (!withAcl) {
+    		return "SELECT d.* FROM api_designs d WHERE d.id = ? AND d.deleted_on IS NULL";
     	}
-        return "SELECT d.* FROM api_designs d JOIN acl a ON a.design_id = d.id WHERE d.id = ? AND a.user_id = ?";
+        return "SELECT d.* FROM api_designs d JOIN acl a ON a.design_id = d.id WHERE d.id = ? AND a.user_id = ? AND d.deleted_on IS NULL";
     }
     
     /**
@@ -185,7 +480,23 @@ public abstract class CommonSqlStatements implements ISqlStatements {
      */
     @Override
     public String updateApiDesign() {
-        return "UPDATE api_designs SET name = ?, description = ?, tags = ? WHERE id = ?";
+        return "UPDATE api_designs SET name = ?, description = ?, tags = ? WHERE id = ? AND deleted_on IS NULL";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#updateApiDesignLastVersion()
+     */
+    @Override
+    public String updateApiDesignLastVersion() {
+        return "UPDATE api_designs SET last_version = ? WHERE id = ? AND last_version < ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#incrementApiDesignContentRevision()
+     */
+    @Override
+    public String incrementApiDesignContentRevision() {
+        return "UPDATE api_designs SET content_revision = content_revision + 1 WHERE id = ?";
     }
     
     /**
@@ -193,7 +504,182 @@ public abstract class CommonSqlStatements implements ISqlStatements {
      */
     @Override
     public String insertContent() {
-        return "INSERT INTO api_content (design_id, type, data, created_by, created_on) VALUES (?, ?, ?, ?, ?)";
+        return "INSERT INTO api_content (design_id, type, data, created_by, created_on, codec, data_bin, blob_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+    
+    /**
+     * Content versions are generated by an auto-increment column by default, so they cannot be
+     * reserved ahead of time.
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#supportsContentVersionReservation()
+     */
+    @Override
+    public boolean supportsContentVersionReservation() {
+        return false;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentVersionSequence()
+     */
+    @Override
+    public String selectContentVersionSequence() {
+        return null;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#reserveContentVersions(java.lang.String)
+     */
+    @Override
+    public String reserveContentVersions(String sequenceName) {
+        return null;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertContentWithVersion()
+     */
+    @Override
+    public String insertContentWithVersion() {
+        return "INSERT INTO api_content (design_id, type, data, created_by, created_on, codec, data_bin, blob_hash, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertPendingContent()
+     */
+    @Override
+    public String insertPendingContent() {
+        return "INSERT INTO pending_content (design_id, journal_id, since) VALUES (?, ?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deletePendingContent()
+     */
+    @Override
+    public String deletePendingContent() {
+        return "DELETE FROM pending_content WHERE design_id = ? AND journal_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deleteAllPendingContent()
+     */
+    @Override
+    public String deleteAllPendingContent() {
+        return "DELETE FROM pending_content WHERE journal_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectPendingContentCount()
+     */
+    @Override
+    public String selectPendingContentCount() {
+        return "SELECT COUNT(*) FROM pending_content p WHERE p.design_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentVersionsBetween()
+     */
+    @Override
+    public String selectContentVersionsBetween() {
+        return "SELECT c.version FROM api_content c WHERE c.version >= ? AND c.version <= ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectUncompressedContent()
+     */
+    @Override
+    public String selectUncompressedContent() {
+        return "SELECT c.design_id, c.version, c.data "
+                + "FROM api_content c "
+                + "WHERE c.type = 0 AND c.codec = 0 AND c.blob_hash IS NULL AND c.version > ? "
+                + "ORDER BY c.version ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#compressContent()
+     */
+    @Override
+    public String compressContent() {
+        return "UPDATE api_content SET data = '', codec = ?, data_bin = ? WHERE design_id = ? AND version = ? AND codec = 0";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#touchContentBlob()
+     */
+    @Override
+    public String touchContentBlob() {
+        return "UPDATE content_blobs SET last_used_on = ? WHERE hash = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertContentBlob()
+     */
+    @Override
+    public String insertContentBlob() {
+        return "INSERT INTO content_blobs (hash, codec, data, data_bin, size, created_on, last_used_on) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deleteOrphanedContentBlobs()
+     */
+    @Override
+    public String deleteOrphanedContentBlobs() {
+        return "DELETE FROM content_blobs "
+                + "WHERE last_used_on < ? "
+                + "AND NOT EXISTS (SELECT c.version FROM api_content c WHERE c.blob_hash = content_blobs.hash)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectSharedContentStats()
+     */
+    @Override
+    public String selectSharedContentStats() {
+        return "SELECT COUNT(*) AS num_rows, SUM(b.size) AS total_size "
+                + "FROM api_content c "
+                + "JOIN content_blobs b ON b.hash = c.blob_hash";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentBlobStats()
+     */
+    @Override
+    public String selectContentBlobStats() {
+        return "SELECT COUNT(*) AS num_rows, SUM(b.size) AS total_size FROM content_blobs b";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectSnapshotVersions()
+     */
+    @Override
+    public String selectSnapshotVersions() {
+        return "SELECT c.version FROM api_content c WHERE c.design_id = ? AND c.type = 0 ORDER BY c.version DESC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectCompactableContentVersions()
+     */
+    @Override
+    public String selectCompactableContentVersions() {
+        return "SELECT c.version "
+                + "FROM api_content c "
+                + "WHERE c.design_id = ? AND c.type = 1 AND c.version < ? AND (c.version < ? OR c.created_on < ?) "
+                + "ORDER BY c.version ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#archiveContent()
+     */
+    @Override
+    public String archiveContent() {
+        return "INSERT INTO api_content_archive (design_id, version, type, data, created_by, created_on, reverted, modified_on, codec, data_bin) "
+                + "SELECT c.design_id, c.version, c.type, c.data, c.created_by, c.created_on, c.reverted, c.modified_on, c.codec, c.data_bin "
+                + "FROM api_content c "
+                + "WHERE c.design_id = ? AND c.type = 1 AND c.version <= ? AND (c.version < ? OR c.created_on < ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deleteCompactedContent()
+     */
+    @Override
+    public String deleteCompactedContent() {
+        return "DELETE FROM api_content WHERE design_id = ? AND type = 1 AND version <= ? AND (version < ? OR created_on < ?)";
     }
     
     /**
@@ -244,6 +730,76 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return "DELETE FROM api_content WHERE design_id = ?";
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#clearArchivedContent()
+     */
+    @Override
+    public String clearArchivedContent() {
+        return "DELETE FROM api_content_archive WHERE design_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectDesignTags()
+     */
+    @Override
+    public String selectDesignTags() {
+        return "SELECT t.tag FROM design_tags t WHERE t.design_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertDesignTag()
+     */
+    @Override
+    public String insertDesignTag() {
+        return "INSERT INTO design_tags (design_id, tag) VALUES (?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#deleteDesignTag()
+     */
+    @Override
+    public String deleteDesignTag() {
+        return "DELETE FROM design_tags WHERE design_id = ? AND tag = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#clearDesignTags()
+     */
+    @Override
+    public String clearDesignTags() {
+        return "DELETE FROM design_tags WHERE design_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectDesignTagCounts()
+     */
+    @Override
+    public String selectDesignTagCounts() {
+        if (shareForEveryone) {
+            return "SELECT t.tag, COUNT(*) AS designs FROM design_tags t JOIN api_designs d ON d.id = t.design_id "
+                    + "WHERE d.deleted_on IS NULL GROUP BY t.tag ORDER BY COUNT(*) DESC, t.tag ASC";
+        }
+        return "SELECT t.tag, COUNT(*) AS designs FROM design_tags t JOIN acl a ON a.design_id = t.design_id "
+                + "JOIN api_designs d ON d.id = t.design_id "
+                + "WHERE a.user_id = ? AND d.deleted_on IS NULL GROUP BY t.tag ORDER BY COUNT(*) DESC, t.tag ASC";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignTagsCsv()
+     */
+    @Override
+    public String selectApiDesignTagsCsv() {
+        return "SELECT d.id, d.tags FROM api_designs d WHERE d.id > ? ORDER BY d.id ASC LIMIT ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#clearContributors()
+     */
+    @Override
+    public String clearContributors() {
+        return "DELETE FROM design_contributors WHERE design_id = ?";
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#clearAcl()
      */
@@ -261,23 +817,24 @@ public abstract class CommonSqlStatements implements ISqlStatements {
     }
     
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#hasOwnerPermission()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#hasWritePermission()
      */
     @Override
-    public String hasOwnerPermission() {
+    public String hasWritePermission() {
         return "SELECT COUNT(*) "
                 + "FROM acl a "
-                + "WHERE a.design_id = ? AND a.user_id = ? AND a.role = 'owner'";
+                + "JOIN api_designs d ON d.id = a.design_id "
+                + "WHERE a.design_id = ? AND a.user_id = ? AND (a.role = 'owner' OR a.role = 'collaborator') "
+                + "AND d.deleted_on IS NULL";
     }
     
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#hasWritePermission()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectPermissionRole()
      */
     @Override
-    public String hasWritePermission() {
-        return "SELECT COUNT(*) "
-                + "FROM acl a "
-                + "WHERE a.design_id = ? AND a.user_id = ? AND (a.role = 'owner' OR a.role = 'collaborator')";
+    public String selectPermissionRole() {
+        return "SELECT a.role FROM acl a JOIN api_designs d ON d.id = a.design_id "
+                + "WHERE a.design_id = ? AND a.user_id = ? AND d.deleted_on IS NULL";
     }
     
     /**
@@ -293,47 +850,87 @@ public abstract class CommonSqlStatements implements ISqlStatements {
      */
     @Override
     public String selectApiDesignContributors() {
-        // TODO order by the # of edits and LIMIT the results to 5
-        return "SELECT DISTINCT COUNT(c.created_by) as edits, c.created_by "
-                + "FROM api_content c "
-                + "JOIN acl a ON a.design_id = c.design_id "
-                + "WHERE c.design_id = ? AND a.user_id = ? "
-                + "GROUP BY c.created_by";
+        return "SELECT c.edits, c.user_id AS created_by "
+                + "FROM design_contributors c "
+                + "WHERE c.design_id = ? AND c.edits > 0 "
+                + "AND EXISTS (SELECT a.design_id FROM acl a JOIN api_designs d ON d.id = a.design_id "
+                + "WHERE a.design_id = ? AND a.user_id = ? AND d.deleted_on IS NULL) "
+                + "ORDER BY c.edits DESC, c.user_id ASC "
+                + "LIMIT 5";
     }
     
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectLatestContentDocument()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#updateContributorEdits()
      */
     @Override
-    public String selectLatestContentDocument() {
-    	if (shareForEveryone) {
-    		return "SELECT c.* "
+    public String updateContributorEdits() {
+        return "UPDATE design_contributors SET edits = edits + ? WHERE design_id = ? AND user_id = ?";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#insertContributor()
+     */
+    @Override
+    public String insertContributor() {
+        return "INSERT INTO design_contributors (design_id, user_id, edits) VALUES (?, ?, ?)";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectLatestContentDocument(boolean)
+     */
+    @Override
+    public String selectLatestContentDocument(boolean withAcl) {
+    	if (!withAcl) {
+    		return "SELECT c.*, b.codec AS blob_codec, b.data AS blob_data, b.data_bin AS blob_data_bin "
                     + "FROM api_content c "
-                    + "WHERE c.design_id = ? AND c.type = 0 "
+                    + "JOIN api_designs d ON d.id = c.design_id "
+                    + "LEFT JOIN content_blobs b ON b.hash = c.blob_hash "
+                    + "WHERE c.design_id = ? AND c.type = 0 AND d.deleted_on IS NULL "
                     + "ORDER BY c.version DESC LIMIT 1";
     	}
-        return "SELECT c.* "
+        return "SELECT c.*, b.codec AS blob_codec, b.data AS blob_data, b.data_bin AS blob_data_bin "
                 + "FROM api_content c "
                 + "JOIN acl a ON a.design_id = c.design_id "
-                + "WHERE c.design_id = ? AND c.type = 0 AND a.user_id = ? "
+                + "JOIN api_designs d ON d.id = c.design_id "
+                + "LEFT JOIN content_blobs b ON b.hash = c.blob_hash "
+                + "WHERE c.design_id = ? AND c.type = 0 AND a.user_id = ? AND d.deleted_on IS NULL "
                 + "ORDER BY c.version DESC LIMIT 1";
     }
     
     /**
-     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentCommands()
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentState(boolean)
      */
     @Override
-    public String selectContentCommands() {
-    	if (shareForEveryone) {
+    public String selectContentState(boolean withAcl) {
+        if (!withAcl) {
+            return "SELECT d.last_version, d.content_revision "
+                    + "FROM api_designs d "
+                    + "WHERE d.id = ? AND d.deleted_on IS NULL";
+        }
+        return "SELECT d.last_version, d.content_revision "
+                + "FROM api_designs d "
+                + "JOIN acl a ON a.design_id = d.id "
+                + "WHERE d.id = ? AND a.user_id = ? AND d.deleted_on IS NULL";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentCommands(boolean)
+     */
+    @Override
+    public String selectContentCommands(boolean withAcl) {
+    	if (!withAcl) {
     		return "SELECT c.* "
                     + "FROM api_content c "
-                    + "WHERE c.reverted = 0 AND c.design_id = ? AND c.type = 1 AND c.version > ? "
+                    + "JOIN api_designs d ON d.id = c.design_id "
+                    + "WHERE c.reverted = 0 AND c.design_id = ? AND c.type = 1 AND c.version > ? AND d.deleted_on IS NULL "
                     + "ORDER BY c.version ASC";
     	}
         return "SELECT c.* "
                 + "FROM api_content c "
                 + "JOIN acl a ON a.design_id = c.design_id "
+                + "JOIN api_designs d ON d.id = c.design_id "
                 + "WHERE c.reverted = 0 AND c.design_id = ? AND c.type = 1 AND c.version > ? AND a.user_id = ? "
+                + "AND d.deleted_on IS NULL "
                 + "ORDER BY c.version ASC";
     }
     
@@ -345,7 +942,8 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return "SELECT c.* "
                 + "FROM api_content c "
                 + "JOIN acl a ON a.design_id = c.design_id "
-                + "WHERE c.design_id = ? AND c.type = 1 AND a.user_id = ? AND c.version > ? "
+                + "JOIN api_designs d ON d.id = c.design_id "
+                + "WHERE c.design_id = ? AND c.type = 1 AND a.user_id = ? AND c.version > ? AND d.deleted_on IS NULL "
                 + "ORDER BY c.version ASC";
     }
     
@@ -392,7 +990,8 @@ public abstract class CommonSqlStatements implements ISqlStatements {
         return "SELECT i.* "
                 + "FROM acl_invites i "
                 + "JOIN acl a ON a.design_id = i.design_id "
-                + "WHERE i.design_id = ? AND a.user_id = ?";
+                + "JOIN api_designs d ON d.id = i.design_id "
+                + "WHERE i.design_id = ? AND a.user_id = ? AND d.deleted_on IS NULL";
     }
     
     /**
@@ -419,23 +1018,52 @@ public abstract class CommonSqlStatements implements ISqlStatements {
     @Override
     public String selectApiDesignActivity() {
         return "SELECT c.*, d.name "
-        		+ "FROM api_content c "
+                + "FROM ("
+                + "(SELECT h.design_id, h.version, h.type, h.data, h.created_by, h.created_on, "
+                + "        h.reverted, h.modified_on, h.codec, h.data_bin "
+                + "   FROM api_content h "
+                + "  WHERE h.design_id = ? "
+                + "    AND (h.type = 1 OR h.type = 2) "
+                + "    AND h.reverted = 0 "
+                + "  ORDER BY h.created_on DESC, h.version DESC LIMIT ?) "
+                + "UNION ALL "
+                + "(SELECT r.design_id, r.version, r.type, r.data, r.created_by, r.created_on, "
+                + "        r.reverted, r.modified_on, r.codec, r.data_bin "
+                + "   FROM api_content_archive r "
+                + "  WHERE r.design_id = ? "
+                + "    AND r.reverted = 0 "
+                + "  ORDER BY r.created_on DESC, r.version DESC LIMIT ?) "
+                + ") c "
                 + "JOIN api_designs d ON d.id = c.design_id "
-        		+ "WHERE c.design_id = ? "
-        		+ "  AND (c.type = 1 OR c.type = 2) "
-        		+ "  AND c.reverted = 0 "
-        		+ "ORDER BY created_on DESC LIMIT ? OFFSET ?";
+                + "WHERE d.deleted_on IS NULL "
+                + "ORDER BY c.created_on DESC, c.version DESC LIMIT ? OFFSET ?";
     }
 
     @Override
     public String selectUserActivity() {
         return "SELECT c.*, d.name "
-        		+ "FROM api_content c "
+                + "FROM ("
+                + "(SELECT h.design_id, h.version, h.type, h.data, h.created_by, h.created_on, "
+                + "        h.reverted, h.modified_on, h.codec, h.data_bin "
+                + "   FROM api_content h "
+                + "   JOIN api_designs hd ON hd.id = h.design_id "
+                + "  WHERE h.created_by = ? "
+                + "    AND hd.deleted_on IS NULL "
+                + "    AND (h.type = 1 OR h.type = 2) "
+                + "    AND h.reverted = 0 "
+                + "  ORDER BY h.created_on DESC, h.version DESC LIMIT ?) "
+                + "UNION ALL "
+                + "(SELECT r.design_id, r.version, r.type, r.data, r.created_by, r.created_on, "
+                + "        r.reverted, r.modified_on, r.codec, r.data_bin "
+                + "   FROM api_content_archive r "
+                + "   JOIN api_designs rd ON rd.id = r.design_id "
+                + "  WHERE r.created_by = ? "
+                + "    AND rd.deleted_on IS NULL "
+                + "    AND r.reverted = 0 "
+                + "  ORDER BY r.created_on DESC, r.version DESC LIMIT ?) "
+                + ") c "
                 + "JOIN api_designs d ON d.id = c.design_id "
-        		+ "WHERE c.created_by = ? "
-        		+ "  AND (c.type = 1 OR c.type = 2) "
-        		+ "  AND c.reverted = 0 "
-        		+ "ORDER BY created_on DESC LIMIT ? OFFSET ?";
+                + "ORDER BY c.created_on DESC, c.version DESC LIMIT ? OFFSET ?";
     }
     
     /**
@@ -443,7 +1071,80 @@ public abstract class CommonSqlStatements implements ISqlStatements {
      */
     @Override
     public String selectApiPublicationActivity() {
-        return "SELECT c.* FROM api_content c WHERE c.design_id = ? AND c.type = 2 ORDER BY created_on DESC LIMIT ? OFFSET ?";
+        return "SELECT c.* FROM api_content c WHERE c.design_id = ? AND c.type = 2 ORDER BY c.created_on DESC, c.version DESC LIMIT ? OFFSET ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiDesignActivityAfter()
+     */
+    @Override
+    public String selectApiDesignActivityAfter() {
+        return "SELECT c.*, d.name "
+                + "FROM ("
+                + "(SELECT h.design_id, h.version, h.type, h.data, h.created_by, h.created_on, "
+                + "        h.reverted, h.modified_on, h.codec, h.data_bin "
+                + "   FROM api_content h "
+                + "  WHERE h.design_id = ? "
+                + "    AND (h.type = 1 OR h.type = 2) "
+                + "    AND h.reverted = 0 "
+                + "    AND (h.created_on < ? OR (h.created_on = ? AND h.version < ?)) "
+                + "  ORDER BY h.created_on DESC, h.version DESC LIMIT ?) "
+                + "UNION ALL "
+                + "(SELECT r.design_id, r.version, r.type, r.data, r.created_by, r.created_on, "
+                + "        r.reverted, r.modified_on, r.codec, r.data_bin "
+                + "   FROM api_content_archive r "
+                + "  WHERE r.design_id = ? "
+                + "    AND r.reverted = 0 "
+                + "    AND (r.created_on < ? OR (r.created_on = ? AND r.version < ?)) "
+                + "  ORDER BY r.created_on DESC, r.version DESC LIMIT ?) "
+                + ") c "
+                + "JOIN api_designs d ON d.id = c.design_id "
+                + "WHERE d.deleted_on IS NULL "
+                + "ORDER BY c.created_on DESC, c.version DESC LIMIT ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectUserActivityAfter()
+     */
+    @Override
+    public String selectUserActivityAfter() {
+        return "SELECT c.*, d.name "
+                + "FROM ("
+                + "(SELECT h.design_id, h.version, h.type, h.data, h.created_by, h.created_on, "
+                + "        h.reverted, h.modified_on, h.codec, h.data_bin "
+                + "   FROM api_content h "
+                + "   JOIN api_designs hd ON hd.id = h.design_id "
+                + "  WHERE h.created_by = ? "
+                + "    AND hd.deleted_on IS NULL "
+                + "    AND (h.type = 1 OR h.type = 2) "
+                + "    AND h.reverted = 0 "
+                + "    AND (h.created_on < ? OR (h.created_on = ? AND h.version < ?)) "
+                + "  ORDER BY h.created_on DESC, h.version DESC LIMIT ?) "
+                + "UNION ALL "
+                + "(SELECT r.design_id, r.version, r.type, r.data, r.created_by, r.created_on, "
+                + "        r.reverted, r.modified_on, r.codec, r.data_bin "
+                + "   FROM api_content_archive r "
+                + "   JOIN api_designs rd ON rd.id = r.design_id "
+                + "  WHERE r.created_by = ? "
+                + "    AND rd.deleted_on IS NULL "
+                + "    AND r.reverted = 0 "
+                + "    AND (r.created_on < ? OR (r.created_on = ? AND r.version < ?)) "
+                + "  ORDER BY r.created_on DESC, r.version DESC LIMIT ?) "
+                + ") c "
+                + "JOIN api_designs d ON d.id = c.design_id "
+                + "ORDER BY c.created_on DESC, c.version DESC LIMIT ?";
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectApiPublicationActivityAfter()
+     */
+    @Override
+    public String selectApiPublicationActivityAfter() {
+        return "SELECT c.* "
+                + "FROM api_content c "
+                + "WHERE c.design_id = ? AND c.type = 2 "
+                + "  AND (c.created_on < ? OR (c.created_on = ? AND c.version < ?)) "
+                + "ORDER BY c.created_on DESC, c.version DESC LIMIT ?";
     }
 
     /**
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The codecs that can be used to store content in the api_content table.  The codec of each
+ * row is recorded in its 'codec' column.  Rows stored with {@link #NONE} keep their content in
+ * the (character) 'data' column, while all other codecs store the encoded content in the
+ * (binary) 'data_bin' column.
+ * @author eric.wittmann@gmail.com
+ */
+public enum ContentCodec {
+
+    NONE(0), GZIP(1);
+
+    private final int id;
+
+    /**
+     * Constructor.
+     * @param id
+     */
+    private ContentCodec(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Encodes the given content.
+     * @param content
+     * @throws IOException
+     */
+    public byte[] encode(String content) throws IOException {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        if (this == NONE) {
+            return raw;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(baos)) {
+            out.write(raw);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes content previously encoded by {@link #encode(String)}.
+     * @param data
+     * @throws IOException
+     */
+    public String decode(byte[] data) throws IOException {
+        if (this == NONE) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns a reader that decodes (streams) content previously encoded by {@link #encode(String)}.
+     * @param data
+     * @throws IOException
+     */
+    public Reader decode(InputStream data) throws IOException {
+        InputStream in = this == NONE ? data : new GZIPInputStream(data);
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the codec with the given ID.
+     * @param id
+     */
+    public static ContentCodec fromId(int id) {
+        for (ContentCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown content codec: " + id);
+    }
+
+    /**
+     * Returns the codec with the given name (case insensitive).  An empty name means
+     * {@link #NONE}.
+     * @param name
+     */
+    public static ContentCodec fromName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return NONE;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+}
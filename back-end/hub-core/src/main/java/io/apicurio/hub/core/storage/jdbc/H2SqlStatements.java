@@ -16,6 +16,11 @@
 
 package io.apicurio.hub.core.storage.jdbc;
 
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import io.apicurio.hub.core.config.HubConfiguration;
 
 /**
@@ -25,6 +30,11 @@ import io.apicurio.hub.core.config.HubConfiguration;
  */
 public class H2SqlStatements extends CommonSqlStatements {
     
+    // Table, index and column already exist, second primary key, constraint already exists
+    private static final Set<Integer> ALREADY_EXISTS_ERRORS = new HashSet<>(Arrays.asList(42101, 42111, 42121, 90017, 90045));
+    // Table, index, column and constraint not found
+    private static final Set<Integer> NOT_FOUND_ERRORS = new HashSet<>(Arrays.asList(42102, 42112, 42122, 90057));
+    
     /**
      * Constructor.
      * @param config
@@ -48,5 +58,39 @@ public class H2SqlStatements extends CommonSqlStatements {
     public String isDatabaseInitialized() {
         return "SELECT COUNT(*) AS count FROM information_schema.tables WHERE table_name = 'API_DESIGNS'";
     }
-
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#supportsContentVersionReservation()
+     */
+    @Override
+    public boolean supportsContentVersionReservation() {
+        return true;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentVersionSequence()
+     */
+    @Override
+    public String selectContentVersionSequence() {
+        return "SELECT c.sequence_name FROM information_schema.columns c WHERE c.table_name = 'API_CONTENT' AND c.column_name = 'VERSION'";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#reserveContentVersions(java.lang.String)
+     */
+    @Override
+    public String reserveContentVersions(String sequenceName) {
+        return "SELECT NEXT VALUE FOR " + sequenceName + " FROM system_range(1, ?)";
+    }
+    
+    /**
+     * DDL is not transactional in H2 (it commits the current transaction).
+     * @see io.apicurio.hub.core.storage.jdbc.CommonSqlStatements#isUpgradeStatementApplied(java.lang.String, java.sql.SQLException)
+     */
+    @Override
+    public boolean isUpgradeStatementApplied(String statement, SQLException error) {
+        Set<Integer> errors = isDropStatement(statement) ? NOT_FOUND_ERRORS : ALREADY_EXISTS_ERRORS;
+        return errors.contains(error.getErrorCode());
+    }
+    
 }
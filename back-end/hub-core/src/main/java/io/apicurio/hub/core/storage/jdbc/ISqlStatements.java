@@ -16,8 +16,11 @@
 
 package io.apicurio.hub.core.storage.jdbc;
 
+import java.sql.SQLException;
 import java.util.List;
 
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+
 /**
  * Returns SQL statements used by the JDB storage implementation.  There are different
  * implementations of this interface depending on the database being used.
@@ -42,12 +45,79 @@ public interface ISqlStatements {
      */
     public List<String> databaseUpgrade(int fromVersion, int toVersion);
 
+    /**
+     * A statement used to create the table that records the applied DB upgrade steps (if it
+     * does not exist yet).
+     */
+    public String createUpgradeStepsTable();
+
+    /**
+     * A statement used to select the steps of a DB upgrade (version) that were already applied.
+     */
+    public String selectUpgradeSteps();
+
+    /**
+     * A statement used to record that a step of a DB upgrade was applied.
+     */
+    public String insertUpgradeStep();
+
+    /**
+     * Returns true if the given upgrade statement runs "online" (i.e. without blocking writes
+     * to the table it changes), which means it cannot be run in a transaction.
+     * @param statement
+     */
+    public boolean isOnlineStatement(String statement);
+
+    /**
+     * Returns a statement that cleans up after an online upgrade statement that was interrupted
+     * (e.g. dropping a partially built index), or null if no clean up is needed.
+     * @param statement
+     */
+    public String cleanupOnlineStatement(String statement);
+
+    /**
+     * Returns true if the given error, raised by an upgrade statement, shows that the change made
+     * by the statement is already in place (e.g. the column it adds already exists, or the index
+     * it drops is already gone).  On databases where DDL is not transactional, an upgrade that
+     * was interrupted between applying a statement and recording it runs the statement again
+     * when it resumes.
+     * @param statement
+     * @param error
+     */
+    public boolean isUpgradeStatementApplied(String statement, SQLException error);
+
 
     /**
      * A statement that returns the current DB version (pulled from the "apicurio" attribute table).
      */
     public String getDatabaseVersion();
 
+    /**
+     * A statement used to select the value of a row in the "apicurio" attribute table.
+     */
+    public String selectProperty();
+
+    /**
+     * A statement used to insert a row into the "apicurio" attribute table.
+     */
+    public String insertProperty();
+
+    /**
+     * A statement used to update the value of a row in the "apicurio" attribute table.
+     */
+    public String updateProperty();
+
+    /**
+     * A statement used to update the value of a row in the "apicurio" attribute table, but only
+     * if it still has the given (expected) value.
+     */
+    public String updatePropertyIfUnchanged();
+
+    /**
+     * A statement used to delete a row from the "apicurio" attribute table.
+     */
+    public String deleteProperty();
+
     /**
      * A statement used to insert a row into the accounts table.
      */
@@ -79,30 +149,142 @@ public interface ISqlStatements {
     public String updateLinkedAccount();
 
     /**
-     * A statement used to insert a row into the api_designs table.
+     * A statement used to insert a row (with a given id) into the api_designs table.
+     */
+    public String insertApiDesignWithId();
+
+    /**
+     * A statement used to select the highest id of all api_designs rows.
      */
-    public String insertApiDesign();
+    public String selectMaxApiDesignId();
+
+    /**
+     * A statement that counts the api_designs rows (deleted or not) with a given id.
+     */
+    public String selectApiDesignExists();
+
+    /**
+     * A statement used to select the shard that owns a given API design.
+     */
+    public String selectDesignShard();
+
+    /**
+     * A statement used to insert a row into the design_shards table.
+     */
+    public String insertDesignShard();
+
+    /**
+     * A statement used to select the lowest design id in the design_shards table.
+     */
+    public String selectMinShardedDesignId();
 
     /**
      * A statement used to delete a row from the api_designs table.
      */
     public String deleteApiDesign();
 
+    /**
+     * A statement used to mark a row in the api_designs table as deleted.
+     */
+    public String softDeleteApiDesign();
+
+    /**
+     * A statement used to clear the deleted mark of a (recently deleted) row in the api_designs
+     * table.
+     */
+    public String restoreApiDesign();
+
+    /**
+     * A statement used to select the IDs of the API designs deleted before a given date.
+     */
+    public String selectDeletedApiDesignIds();
+
+    /**
+     * A statement used to check whether an API design is marked as deleted.
+     */
+    public String isApiDesignDeleted();
+
+    /**
+     * A statement used to select (a page of) the oldest content versions of an API design.
+     */
+    public String selectPurgeableContentVersions();
+
+    /**
+     * A statement used to delete the api_content rows of an API design up to a given version.
+     */
+    public String deletePurgedContent();
+
+    /**
+     * A statement used to select (a page of) the oldest archived content versions of an API design.
+     */
+    public String selectPurgeableArchivedContentVersions();
+
+    /**
+     * A statement used to delete the api_content_archive rows of an API design up to a given version.
+     */
+    public String deletePurgedArchivedContent();
+
     /**
      * A statement used to select all API designs.
      */
     public String selectApiDesigns();
 
+    /**
+     * A statement used to select a filtered, sorted page of API designs.  The statement uses
+     * named parameters: userId (unless shared for everyone), namePrefix, tag and createdBy (only
+     * for the filters present in the query), afterKey and afterId (only when selecting a page
+     * after a cursor) and limit (only when the query has a limit).
+     * @param query
+     * @param afterCursor
+     */
+    public String selectApiDesigns(ApiDesignQuery query, boolean afterCursor);
+
+    /**
+     * A statement used to select a page of API design IDs (ordered by ID) without
+     * regard to ownership.
+     */
+    public String selectApiDesignIds();
+
+    /**
+     * A statement used to select the IDs of all API designs a user has access to.
+     */
+    public String selectAccessibleApiDesignIds();
+
+    /**
+     * A statement used to select the IDs of all API designs whose latest content version
+     * is higher than a given version.
+     */
+    public String selectApiDesignIdsChangedSince();
+
+    /**
+     * A statement used to select the highest content version of all api_content rows.
+     */
+    public String selectLatestContentVersion();
+
     /**
      * A statement used to select a single API design by its unique id.
+     * The ACL check (a join with the acl table, binding the user id as the last
+     * parameter) is left out when "withAcl" is false.
+     * @param withAcl
      */
-    public String selectApiDesignById();
+    public String selectApiDesignById(boolean withAcl);
 
     /**
      * A statement used to update a single API design.
      */
     public String updateApiDesign();
 
+    /**
+     * A statement used to record the latest content version of an API design.
+     */
+    public String updateApiDesignLastVersion();
+
+    /**
+     * A statement used to increment the content revision of an API design, which changes
+     * whenever its content changes without its latest content version changing (e.g. on undo).
+     */
+    public String incrementApiDesignContentRevision();
+
     /**
      * A statement used to update the status of an invitation.
      */
@@ -128,6 +310,115 @@ public interface ISqlStatements {
      */
     public String insertContent();
     
+    /**
+     * Returns true if the database generates content versions from a sequence, so that they can
+     * be reserved ahead of time (see selectContentVersionSequence and reserveContentVersions).
+     */
+    public boolean supportsContentVersionReservation();
+    
+    /**
+     * A statement used to select the name of the sequence that generates content versions.  Only
+     * used when supportsContentVersionReservation returns true.
+     */
+    public String selectContentVersionSequence();
+    
+    /**
+     * A statement used to reserve a number of content versions (from the given sequence).  Only
+     * used when supportsContentVersionReservation returns true.
+     * @param sequenceName
+     */
+    public String reserveContentVersions(String sequenceName);
+    
+    /**
+     * A statement used to insert a content row with an already reserved version.
+     */
+    public String insertContentWithVersion();
+    
+    /**
+     * A statement used to insert a row into the pending_content table.
+     */
+    public String insertPendingContent();
+    
+    /**
+     * A statement used to delete the pending_content row of a single design and journal.
+     */
+    public String deletePendingContent();
+    
+    /**
+     * A statement used to delete all pending_content rows of a journal.
+     */
+    public String deleteAllPendingContent();
+    
+    /**
+     * A statement used to count the pending_content rows of a design.
+     */
+    public String selectPendingContentCount();
+    
+    /**
+     * A statement used to select the versions of all content rows within a range of versions.
+     */
+    public String selectContentVersionsBetween();
+    
+    /**
+     * A statement used to select a page of (full document) content rows that are not compressed.
+     */
+    public String selectUncompressedContent();
+    
+    /**
+     * A statement used to replace the data of a content row with compressed data.
+     */
+    public String compressContent();
+
+    /**
+     * A statement used to mark a (shared) content blob as used, returning the number of rows
+     * updated (0 if there is no blob with the given hash yet).
+     */
+    public String touchContentBlob();
+
+    /**
+     * A statement used to insert a row into the content_blobs table.
+     */
+    public String insertContentBlob();
+
+    /**
+     * A statement used to delete the content blobs that are no longer referenced by any content
+     * row (and that have not been used recently).
+     */
+    public String deleteOrphanedContentBlobs();
+
+    /**
+     * A statement used to count the content rows that reference a content blob, and to sum up
+     * the (uncompressed) size of the content they reference.
+     */
+    public String selectSharedContentStats();
+
+    /**
+     * A statement used to count the content blobs, and to sum up their (uncompressed) size.
+     */
+    public String selectContentBlobStats();
+
+    /**
+     * A statement used to select the versions of the most recent document snapshots of an API design.
+     */
+    public String selectSnapshotVersions();
+
+    /**
+     * A statement used to select (in order) the versions of a batch of command rows that can be
+     * moved out of the api_content table.
+     */
+    public String selectCompactableContentVersions();
+
+    /**
+     * A statement used to copy a batch of command rows from the api_content table to the
+     * api_content_archive table.
+     */
+    public String archiveContent();
+
+    /**
+     * A statement used to delete a batch of (compacted) command rows from the api_content table.
+     */
+    public String deleteCompactedContent();
+    
     /**
      * A statement used to undo some content.
      */
@@ -154,9 +445,10 @@ public interface ISqlStatements {
     public String clearContent();
 
     /**
-     * A statement used to determine if a user has ownership permission on an API design.
+     * A statement used to delete all api_content_archive rows for a given api design.
      */
-    public String hasOwnerPermission();
+    public String clearArchivedContent();
+
     
     /**
      * A statement used to return all rows in the ACL table for a given API design.
@@ -169,21 +461,88 @@ public interface ISqlStatements {
     public String hasWritePermission();
 
     /**
-     * A statement used to return all contributors (editors) of a given API Design.
+     * A statement used to select the role a user has on an API design.
+     */
+    public String selectPermissionRole();
+
+    /**
+     * A statement used to return the top contributors (editors) of a given API Design, ordered
+     * by their number of edits.
      */
     public String selectApiDesignContributors();
 
+    /**
+     * A statement used to add to the number of edits a user made to an API Design.
+     */
+    public String updateContributorEdits();
+
+    /**
+     * A statement used to select the tags of a single API design from the design_tags table.
+     */
+    public String selectDesignTags();
+
+    /**
+     * A statement used to insert a row into the design_tags table.
+     */
+    public String insertDesignTag();
+
+    /**
+     * A statement used to delete a single row from the design_tags table.
+     */
+    public String deleteDesignTag();
+
+    /**
+     * A statement used to delete all design_tags rows for a given api design.
+     */
+    public String clearDesignTags();
+
+    /**
+     * A statement used to count, for every tag, the number of API designs (accessible by a
+     * given user) having that tag.
+     */
+    public String selectDesignTagCounts();
+
+    /**
+     * A statement used to select a page of API designs (id and CSV tags only) ordered by id.
+     */
+    public String selectApiDesignTagsCsv();
+
+    /**
+     * A statement used to insert a row into the design_contributors table.
+     */
+    public String insertContributor();
+
+    /**
+     * A statement used to delete all design_contributors rows for a given api design.
+     */
+    public String clearContributors();
+
     /**
      * A statement used to return the latest 'document' style api_content row for
      * a given API design.
+     * The ACL check (a join with the acl table, binding the user id as the last
+     * parameter) is left out when "withAcl" is false.
+     * @param withAcl
+     */
+    public String selectLatestContentDocument(boolean withAcl);
+
+    /**
+     * A statement used to select the latest content version and the content revision of a
+     * single API design.
+     * The ACL check (a join with the acl table, binding the user id as the last
+     * parameter) is left out when "withAcl" is false.
+     * @param withAcl
      */
-    public String selectLatestContentDocument();
+    public String selectContentState(boolean withAcl);
 
     /**
      * A statement used to return all of the 'command' style api_content rows for
      * a given API Design (excludes reverted commands).
+     * The ACL check (a join with the acl table, binding the user id as the last
+     * parameter) is left out when "withAcl" is false.
+     * @param withAcl
      */
-    public String selectContentCommands();
+    public String selectContentCommands(boolean withAcl);
 
     /**
      * A statement used to return all of the 'command' style api_content rows for
@@ -223,12 +582,14 @@ public interface ISqlStatements {
     public String deleteEditingSessionUuid();
 
     /**
-     * A statement used to select rows from the api_content table (limited by a range) per API.
+     * A statement used to select rows from the api_content (and api_content_archive) tables
+     * (limited by a range) per API.
      */
     public String selectApiDesignActivity();
 
     /**
-     * A statement used to select rows from the api_content table (limited by a range) per user.
+     * A statement used to select rows from the api_content (and api_content_archive) tables
+     * (limited by a range) per user.
      */
 	public String selectUserActivity();
 
@@ -238,6 +599,22 @@ public interface ISqlStatements {
      */
     public String selectApiPublicationActivity();
 
+
+    /**
+     * A statement used to select a page of the activity of an API design, following a cursor.
+     */
+    public String selectApiDesignActivityAfter();
+
+    /**
+     * A statement used to select a page of the activity of a user, following a cursor.
+     */
+    public String selectUserActivityAfter();
+
+    /**
+     * A statement used to select a page of the publications of an API design, following a cursor.
+     */
+    public String selectApiPublicationActivityAfter();
+
     /**
      * A statement used to select the most recent 5 APIs for a given user.
      */
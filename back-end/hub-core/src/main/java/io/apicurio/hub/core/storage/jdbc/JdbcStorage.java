@@ -18,39 +18,60 @@ package io.apicurio.hub.core.storage.jdbc;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.inject.Default;
+import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.sql.DataSource;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.argument.CharacterStreamArgument;
 import org.jdbi.v3.core.mapper.ColumnMapper;
 import org.jdbi.v3.core.mapper.RowMapper;
 import org.jdbi.v3.core.mapper.SingleColumnMapper;
 import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.core.result.ResultIterator;
+import org.jdbi.v3.core.statement.PreparedBatch;
 import org.jdbi.v3.core.statement.Query;
+import org.jdbi.v3.core.statement.SqlStatement;
+import org.jdbi.v3.core.statement.SqlStatements;
 import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.core.statement.Update;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.apicurio.hub.core.beans.ApiContentEntry;
 import io.apicurio.hub.core.beans.ApiContentType;
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
@@ -60,14 +81,26 @@ import io.apicurio.hub.core.beans.ApiDesignContent;
 import io.apicurio.hub.core.beans.ApiPublication;
 import io.apicurio.hub.core.beans.CodegenProject;
 import io.apicurio.hub.core.beans.CodegenProjectType;
+import io.apicurio.hub.core.beans.ContentCompressionBatch;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
 import io.apicurio.hub.core.beans.Contributor;
 import io.apicurio.hub.core.beans.Invitation;
 import io.apicurio.hub.core.beans.LinkedAccount;
 import io.apicurio.hub.core.beans.LinkedAccountType;
+import io.apicurio.hub.core.cache.ContentCache;
+import io.apicurio.hub.core.cache.PermissionCache;
 import io.apicurio.hub.core.config.HubConfiguration;
 import io.apicurio.hub.core.exceptions.AlreadyExistsException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.CursorPage;
+import io.apicurio.hub.core.storage.IContentCommandConsumer;
+import io.apicurio.hub.core.storage.IContentDocumentReader;
 import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.IStorageMetrics;
+import io.apicurio.hub.core.storage.PageCursor;
 import io.apicurio.hub.core.storage.StorageException;
 
 /**
@@ -75,37 +108,134 @@ import io.apicurio.hub.core.storage.StorageException;
  * @author eric.wittmann@gmail.com
  */
 @ApplicationScoped
-@Default
+@Typed(JdbcStorage.class)
 public class JdbcStorage implements IStorage {
     
     private static Logger logger = LoggerFactory.getLogger(JdbcStorage.class);
-    private static int DB_VERSION = 6;
+    private static int DB_VERSION = 19;
     private static Object dbMutex = new Object();
+    private static final long DB_INIT_WAIT = TimeUnit.SECONDS.toMillis(30);
+    /* Content blobs are only swept up when they have not been used for at least this long. */
+    private static final long ORPHANED_BLOB_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+    private static final String CONTENT_BLOB_SAVEPOINT = "content_blob";
+
+    private static final IStorageMetrics NOOP_METRICS = new IStorageMetrics() {
+        @Override
+        public void storageStatementExecuted(String datasource, String kind) {
+        }
+    };
+    private static volatile IStorageMetrics metrics = NOOP_METRICS;
+
+    /**
+     * Registers the metrics implementation that the storage layer should report to.
+     * @param storageMetrics
+     */
+    public static void setMetrics(IStorageMetrics storageMetrics) {
+        metrics = storageMetrics == null ? NOOP_METRICS : storageMetrics;
+    }
+
+    /**
+     * Returns the metrics implementation that the storage layer currently reports to.
+     */
+    static IStorageMetrics getMetrics() {
+        return metrics;
+    }
+    private static final String CHECKPOINT_PREFIX = "checkpoint.";
+    private static final String TAGS_BACKFILL_CHECKPOINT = "design-tags-backfill";
+    private static final int TAGS_BACKFILL_PAGE_SIZE = 100;
+    private static final String LAST_DESIGN_ID = "last_design_id";
+    private static final int STREAM_FETCH_SIZE = 100;
 
     @Inject
     private HubConfiguration config;
     @Inject
     private ISqlStatements sqlStatements;
+    @Inject
+    private ContentCache contentCache;
+    @Inject
+    private PermissionCache permissionCache;
     @Resource(mappedName="java:jboss/datasources/ApicurioDS")
     private DataSource dataSource;
+    private DataSource readDataSource;
+    private String name = ShardedStorage.PRIMARY_SHARD;
+    private boolean shard;
 
     private Jdbi jdbi;
+    private Jdbi readJdbi;
+    private WriteWatermarks watermarks;
+    private final ThreadLocal<UnitOfWork> unitOfWork = new ThreadLocal<>();
     
     private boolean shareForEveryone;
+    private ContentCodec contentCodec;
+    private boolean contentDeduplication;
+    private String contentVersionSequence;
+
+    /**
+     * Constructor.
+     */
+    public JdbcStorage() {
+    }
+
+    /**
+     * Constructor used for the storage of one of the (additional) shards that API designs are
+     * spread across (see {@link ShardedStorage}).  Shards never use a read replica.
+     * @param name
+     * @param config
+     * @param sqlStatements
+     * @param contentCache
+     * @param permissionCache
+     * @param dataSource
+     */
+    JdbcStorage(String name, HubConfiguration config, ISqlStatements sqlStatements, ContentCache contentCache,
+            PermissionCache permissionCache, DataSource dataSource) {
+        this.name = name;
+        this.shard = true;
+        this.config = config;
+        this.sqlStatements = sqlStatements;
+        this.contentCache = contentCache;
+        this.permissionCache = permissionCache;
+        this.dataSource = dataSource;
+    }
     
     @PostConstruct
     public void postConstruct() {
         logger.debug("JDBC Storage constructed successfully.");
 
         jdbi = Jdbi.create(dataSource);
+        jdbi.getConfig(SqlStatements.class).setTimingCollector(createStatementTimer(name));
+        
+        if (readDataSource == null && !shard) {
+            readDataSource = lookupReadDataSource();
+        }
+        if (readDataSource != null) {
+            readJdbi = Jdbi.create(readDataSource);
+            readJdbi.getConfig(SqlStatements.class).setTimingCollector(createStatementTimer("replica"));
+        }
+        watermarks = new WriteWatermarks(TimeUnit.SECONDS.toMillis(config.getReadDataSourceMaxLag()));
         
         this.shareForEveryone = config.isShareForEveryone();
+        try {
+            this.contentCodec = ContentCodec.fromName(config.getContentCompression());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unsupported content compression '{}', API documents will be stored uncompressed.", config.getContentCompression());
+            this.contentCodec = ContentCodec.NONE;
+        }
+        this.contentDeduplication = config.isContentDeduplication();
         
         if (config.isJdbcInit()) {
             synchronized (dbMutex) {
                 if (!isDatabaseInitialized()) {
                     logger.debug("Database not initialized.");
-                    initializeDatabase();
+                    try {
+                        initializeDatabase();
+                    } catch (RuntimeException e) {
+                        // Another process sharing the database (e.g. an embedded H2 database in
+                        // AUTO_SERVER mode) may have initialized it at the same time
+                        if (!awaitDatabaseInitialized()) {
+                            throw e;
+                        }
+                        logger.info("Database was initialized by another process.");
+                    }
                 } else {
                     logger.debug("Database was already initialized, skipping.");
                 }
@@ -126,6 +256,91 @@ public class JdbcStorage implements IStorage {
                 throw new RuntimeException("Database not upgraded.");
             }
         }
+        
+        startBackfills();
+    }
+
+    /**
+     * Starts the data backfills left to do by DB upgrades (if any) in the background, so that
+     * the application can serve requests while they run.  Each backfill is signalled by the
+     * upgrade script creating its checkpoint.
+     */
+    private void startBackfills() {
+        try {
+            if (getCheckpoint(TAGS_BACKFILL_CHECKPOINT) == null) {
+                return;
+            }
+        } catch (StorageException e) {
+            logger.error("Error checking for backfills left to do.", e);
+            return;
+        }
+        Thread backfill = new Thread(this::backfillDesignTags, "apicurio-db-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Fills the design_tags table from the (CSV) tags of the existing API designs.  This is
+     * needed once after upgrading from a DB version older than 14, which is signalled by the
+     * upgrade script creating the backfill checkpoint.  The checkpoint holds the id of the last
+     * design processed, so that an interrupted backfill resumes where it left off.  Until the
+     * backfill completes, tag queries may be incomplete.
+     */
+    private void backfillDesignTags() {
+        try {
+            String checkpoint = getCheckpoint(TAGS_BACKFILL_CHECKPOINT);
+            if (checkpoint == null) {
+                return;
+            }
+            logger.info("Populating the design_tags table.");
+            long afterId = Long.parseLong(checkpoint);
+            while (afterId >= 0) {
+                final long fromId = afterId;
+                afterId = inTransaction( handle -> {
+                    List<Entry<Long, String>> rows = handle.createQuery(sqlStatements.selectApiDesignTagsCsv())
+                            .bind(0, fromId)
+                            .bind(1, TAGS_BACKFILL_PAGE_SIZE)
+                            .map((rs, ctx) -> (Entry<Long, String>) new SimpleImmutableEntry<>(rs.getLong("id"), rs.getString("tags")))
+                            .list();
+                    long lastId = -1;
+                    for (Entry<Long, String> row : rows) {
+                        lastId = row.getKey();
+                        updateDesignTags(handle, lastId, ApiDesignRowMapper.toSet(row.getValue()));
+                    }
+                    return rows.size() < TAGS_BACKFILL_PAGE_SIZE ? -1 : lastId;
+                });
+                setCheckpoint(TAGS_BACKFILL_CHECKPOINT, afterId < 0 ? null : String.valueOf(afterId));
+            }
+        } catch (StorageException | RuntimeException e) {
+            logger.error("Error populating the design_tags table, tag queries may be incomplete.", e);
+        }
+    }
+
+    /**
+     * Creates the timing collector that reports the statements executed against the given
+     * datasource to the metrics (and logs the slow ones).
+     * @param datasource
+     */
+    private StatementTimer createStatementTimer(String datasource) {
+        return new StatementTimer(datasource, sqlStatements, JdbcStorage::getMetrics, config.getStorageSlowStatementThreshold());
+    }
+
+    /**
+     * Looks up the (optional) read replica datasource.  Returns null if none is configured.
+     */
+    private DataSource lookupReadDataSource() {
+        String jndiName = config.getReadDataSource();
+        if (jndiName == null || jndiName.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            DataSource ds = (DataSource) new InitialContext().lookup(jndiName);
+            logger.info("Routing read-only queries to datasource: {}", jndiName);
+            return ds;
+        } catch (NamingException | ClassCastException e) {
+            logger.debug("Read datasource {} not found, all queries will use the primary datasource.", jndiName);
+            return null;
+        }
     }
 
     /**
@@ -133,7 +348,7 @@ public class JdbcStorage implements IStorage {
      */
     private boolean isDatabaseInitialized() {
         logger.debug("Checking to see if the DB is initialized.");
-        return this.jdbi.withHandle(handle -> {
+        return withHandle(handle -> {
             ResultIterable<Integer> result = handle.createQuery(this.sqlStatements.isDatabaseInitialized()).mapTo(Integer.class);
             return result.findOnly().intValue() > 0;
         });
@@ -148,6 +363,30 @@ public class JdbcStorage implements IStorage {
         return version == DB_VERSION;
     }
 
+    /**
+     * Waits (for a little while) for the database to be initialized by some other process.
+     * Returns false if that does not happen.
+     */
+    private boolean awaitDatabaseInitialized() {
+        long giveUpAt = System.currentTimeMillis() + DB_INIT_WAIT;
+        while (System.currentTimeMillis() < giveUpAt) {
+            try {
+                if (isDatabaseInitialized() && isDatabaseCurrent()) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Database not (yet) initialized by another process: {}", e.getMessage());
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
     /**
      * Initializes the database by executing a number of DDL statements.
      */
@@ -157,10 +396,10 @@ public class JdbcStorage implements IStorage {
         
         final List<String> statements = this.sqlStatements.databaseInitialization();
         logger.debug("---");
-        this.jdbi.withHandle( handle -> {
+        withHandle( handle -> {
             statements.forEach( statement -> {
                 logger.debug(statement);
-                handle.createUpdate(statement).execute();
+                handle.createUpdate(statement).define(StatementTimer.STATEMENT_NAME, "databaseUpgrade").execute();
             });
             return null;
         });
@@ -169,7 +408,8 @@ public class JdbcStorage implements IStorage {
 
     /**
      * Upgrades the database by executing a number of DDL statements found in DB-specific
-     * DDL upgrade scripts.
+     * DDL upgrade scripts.  Every statement applied is recorded, so that an interrupted
+     * upgrade resumes where it left off.
      */
     private void upgradeDatabase() {
         logger.info("Upgrading the Apicurio Hub API database.");
@@ -181,23 +421,17 @@ public class JdbcStorage implements IStorage {
         logger.info("\tFrom Version:  {}", fromVersion);
         logger.info("\tTo Version:    {}", toVersion);
 
-        final List<String> statements = this.sqlStatements.databaseUpgrade(fromVersion, toVersion);
         logger.debug("---");
-        this.jdbi.withHandle( handle -> {
-            statements.forEach( statement -> {
-                logger.debug(statement);
-                handle.createUpdate(statement).execute();
-            });
-            return null;
-        });
+        int steps = new SchemaMigrator(this.jdbi, this.sqlStatements).migrate(fromVersion, toVersion);
         logger.debug("---");
+        logger.info("\tApplied {} upgrade steps.", steps);
     }
     
     /**
      * Reuturns the current DB version by selecting the value in the 'apicurio' table.
      */
     private int getDatabaseVersion() {
-        return this.jdbi.withHandle(handle -> {
+        return withHandle(handle -> {
             ResultIterable<String> result = handle.createQuery(this.sqlStatements.getDatabaseVersion())
                     .bind(0, "db_version")
                     .mapTo(String.class);
@@ -212,24 +446,217 @@ public class JdbcStorage implements IStorage {
     }
     
     /**
-     * @see io.apicurio.hub.core.storage.IStorage#hasOwnerPermission(java.lang.String, java.lang.String)
+     * Discards any rendered content cached (in this process) for the given API design.
+     * @param designId
+     */
+    private void invalidateContentCache(String designId) {
+        if (this.contentCache != null) {
+            this.contentCache.invalidate(designId);
+        }
+    }
+    
+    /**
+     * Runs the given callback with a handle to the primary database.  When called as part of a
+     * unit of work, the unit's handle is used.  Otherwise a handle is opened for the duration of
+     * the callback, and any storage calls nested in the callback share it.
+     * @param callback
+     * @throws X
+     */
+    private <T, X extends Exception> T withHandle(HandleCallback<T, X> callback) throws X {
+        return useHandle(this.jdbi, callback);
+    }
+
+    /**
+     * Runs the given callback in a transaction on the primary database.  If the current unit of
+     * work already has a transaction open, the callback simply joins it.
+     * @param callback
+     * @throws X
+     */
+    private <T, X extends Exception> T inTransaction(HandleCallback<T, X> callback) throws X {
+        return useHandle(this.jdbi, handle -> {
+            if (handle.isInTransaction()) {
+                return callback.withHandle(handle);
+            }
+            return handle.inTransaction(callback);
+        });
+    }
+
+    /**
+     * Runs a read-only query that is not about a single API design (e.g. listing a user's designs
+     * or activity).  Those go to the read replica, if there is one, even though it may lag
+     * slightly behind the primary.
+     * @param callback
+     * @throws X
+     */
+    private <T, X extends Exception> T withReadHandle(HandleCallback<T, X> callback) throws X {
+        return useHandle(this.readJdbi == null ? this.jdbi : this.readJdbi, callback);
+    }
+
+    /**
+     * Runs a read-only query about a single API design.  The query goes to the read replica
+     * (if there is one), unless this node wrote to the design so recently that the replica may
+     * not have the change yet.  If the result from the replica is found to be behind (based on
+     * the content versions this node has written) the query is repeated on the primary.
+     * @param designId
+     * @param callback
+     * @param isBehind tests whether a result is older than the recorded watermark (optional)
+     * @throws Exception
+     */
+    private <T> T withReadHandle(String designId, HandleCallback<T, Exception> callback, Predicate<T> isBehind)
+            throws Exception {
+        if (this.readJdbi == null || this.watermarks.isRecentlyWritten(designId)) {
+            return useHandle(this.jdbi, callback);
+        }
+        T result = useHandle(this.readJdbi, callback);
+        if (isBehind != null && isBehind.test(result)) {
+            logger.debug("Read replica is behind for API design {}, reading from the primary instead.", designId);
+            result = useHandle(this.jdbi, callback);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a read-only query about a single API design whose results are streamed to the caller
+     * rather than collected.  Streamed results cannot be checked against the watermarks (and
+     * re-read) once consumed, so the query goes to the primary whenever this node wrote to the
+     * design recently.  The query runs in a transaction, since some drivers (e.g. PostgreSQL)
+     * only honor the fetch size of a query inside one.
+     * @param designId
+     * @param callback
+     * @throws Exception
+     */
+    private <T> T withStreamingHandle(String designId, HandleCallback<T, Exception> callback) throws Exception {
+        Jdbi target = this.readJdbi == null || this.watermarks.isRecentlyWritten(designId) ? this.jdbi : this.readJdbi;
+        return useHandle(target, handle -> {
+            if (handle.isInTransaction()) {
+                return callback.withHandle(handle);
+            }
+            return handle.inTransaction(callback);
+        });
+    }
+
+    /**
+     * Runs the given callback with a handle to the given database (the primary or the read
+     * replica), taken from the current unit of work.  If there is no current unit of work, one
+     * is started just for the duration of the callback.  Note that a transactional unit of work
+     * always uses the primary, so that all its reads see the same data as its writes.
+     * @param target
+     * @param callback
+     * @throws X
+     */
+    private <T, X extends Exception> T useHandle(Jdbi target, HandleCallback<T, X> callback) throws X {
+        UnitOfWork uow = this.unitOfWork.get();
+        boolean implicit = uow == null;
+        if (implicit) {
+            uow = new UnitOfWork();
+            this.unitOfWork.set(uow);
+        }
+        try {
+            Handle handle;
+            if (target == this.readJdbi && !uow.isTransactional()) {
+                if (uow.readHandle == null) {
+                    uow.readHandle = this.readJdbi.open();
+                }
+                handle = uow.readHandle;
+            } else {
+                if (uow.handle == null) {
+                    uow.handle = this.jdbi.open();
+                }
+                handle = uow.handle;
+            }
+            return callback.withHandle(handle);
+        } finally {
+            if (implicit) {
+                this.unitOfWork.remove();
+                uow.close();
+            }
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#beginUnitOfWork(boolean)
      */
     @Override
-    public boolean hasOwnerPermission(String userId, String designId) throws StorageException {
+    public void beginUnitOfWork(boolean transactional) throws StorageException {
+        UnitOfWork uow = this.unitOfWork.get();
+        if (uow == null) {
+            uow = new UnitOfWork();
+            this.unitOfWork.set(uow);
+        }
+        uow.depth++;
+        if (transactional && !uow.isTransactional()) {
+            try {
+                if (uow.handle == null) {
+                    uow.handle = this.jdbi.open();
+                }
+                uow.handle.begin();
+                uow.transactionDepth = uow.depth;
+            } catch (Exception e) {
+                releaseUnitOfWork(uow);
+                throw new StorageException("Error starting a transaction.", e);
+            }
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#endUnitOfWork(boolean)
+     */
+    @Override
+    public void endUnitOfWork(boolean commit) throws StorageException {
+        UnitOfWork uow = this.unitOfWork.get();
+        if (uow == null) {
+            return;
+        }
         try {
-            return this.jdbi.withHandle( handle -> {
-                // Check for permissions first
-                String statement = sqlStatements.hasOwnerPermission();
-                Long did = Long.valueOf(designId);
-                int count = handle.createQuery(statement)
-                    .bind(0, did)
-                    .bind(1, userId)
-                    .mapTo(Integer.class).findOnly();
-                return count == 1;
-            });
+            if (uow.transactionDepth == uow.depth) {
+                uow.transactionDepth = 0;
+                if (commit) {
+                    uow.handle.commit();
+                } else {
+                    uow.handle.rollback();
+                }
+            }
         } catch (Exception e) {
-            throw new StorageException("Error checking permission.", e);
-        }        
+            throw new StorageException("Error ending a transaction.", e);
+        } finally {
+            releaseUnitOfWork(uow);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#releaseConnections()
+     */
+    @Override
+    public void releaseConnections() {
+        UnitOfWork uow = this.unitOfWork.get();
+        if (uow == null || uow.isTransactional()) {
+            return;
+        }
+        try {
+            uow.close();
+        } catch (Exception e) {
+            logger.error("Error releasing the connections of a unit of work.", e);
+        }
+    }
+
+    /**
+     * Leaves one level of the given unit of work, closing it when it was the outermost one.
+     * @param uow
+     */
+    private void releaseUnitOfWork(UnitOfWork uow) {
+        uow.depth--;
+        if (uow.depth <= 0) {
+            this.unitOfWork.remove();
+            uow.close();
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#hasOwnerPermission(java.lang.String, java.lang.String)
+     */
+    @Override
+    public boolean hasOwnerPermission(String userId, String designId) throws StorageException {
+        return "owner".equals(getRole(userId, designId));
     }
     
     /**
@@ -237,22 +664,72 @@ public class JdbcStorage implements IStorage {
      */
     @Override
     public boolean hasWritePermission(String userId, String designId) throws StorageException {
+        String role = getRole(userId, designId);
+        return "owner".equals(role) || "collaborator".equals(role);
+    }
+    
+    /**
+     * Returns the role the given user has on the given API design (or null if the user has
+     * no access to it).  Verified roles are cached for a short time.
+     * @param userId
+     * @param designId
+     * @throws StorageException
+     */
+    private String getRole(String userId, String designId) throws StorageException {
+        if (this.permissionCache != null) {
+            String role = this.permissionCache.getRole(userId, designId);
+            if (role != null) {
+                return role;
+            }
+        }
         try {
-            return this.jdbi.withHandle( handle -> {
-                // Check for permissions first
-                String statement = sqlStatements.hasWritePermission();
-                Long did = Long.valueOf(designId);
-                int count = handle.createQuery(statement)
-                    .bind(0, did)
+            String role = withHandle( handle -> {
+                String statement = sqlStatements.selectPermissionRole();
+                return handle.createQuery(statement)
+                    .bind(0, Long.valueOf(designId))
                     .bind(1, userId)
-                    .mapTo(Integer.class).findOnly();
-                return count == 1;
+                    .mapTo(String.class).findFirst().orElse(null);
             });
+            if (role != null && this.permissionCache != null) {
+                this.permissionCache.putRole(userId, designId, role);
+            }
+            return role;
         } catch (Exception e) {
             throw new StorageException("Error checking permission.", e);
         }        
     }
     
+    /**
+     * Returns true if reading the content of the given API design must (also) check that the
+     * user has access to it.  That is not needed when designs are shared with everyone, or when
+     * the user's role on the design has recently been verified.
+     * @param userId
+     * @param designId
+     */
+    private boolean isAclCheckNeeded(String userId, String designId) {
+        if (shareForEveryone) {
+            return false;
+        }
+        return this.permissionCache == null || this.permissionCache.getRole(userId, designId) == null;
+    }
+    
+    /**
+     * Discards the cached role(s) on the given API design - of a single user, or of all users
+     * when the user is null.
+     * @param userId
+     * @param designId
+     */
+    private void invalidatePermissionCache(String userId, String designId) {
+        if (this.permissionCache == null) {
+            return;
+        }
+        if (userId == null) {
+            this.permissionCache.invalidate(designId);
+        } else {
+            this.permissionCache.invalidate(userId, designId);
+        }
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.IStorage#listPermissions(java.lang.String)
      */
@@ -260,7 +737,7 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiDesignCollaborator> listPermissions(String designId) throws StorageException {
         logger.debug("Getting a list of all permissions (collaborators) for API: {}.", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectPermissions();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -279,7 +756,7 @@ public class JdbcStorage implements IStorage {
     public void createPermission(String designId, String userId, String permission) throws StorageException {
         logger.debug("Inserting an ACL row for: {}", designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.insertAcl();
                 Long did = Long.valueOf(designId);
                 handle.createUpdate(statement)
@@ -291,6 +768,9 @@ public class JdbcStorage implements IStorage {
             });
         } catch (Exception e) {
             throw new StorageException("Error inserting ACL row.", e);
+        } finally {
+            invalidatePermissionCache(userId, designId);
+            this.watermarks.record(designId, null, 0);
         }
     }
     
@@ -301,7 +781,7 @@ public class JdbcStorage implements IStorage {
     public void deletePermission(String designId, String userId) throws StorageException {
         logger.debug("Deleting an ACL row for: {}", designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.deleteAcl();
                 Long did = Long.valueOf(designId);
                 handle.createUpdate(statement)
@@ -312,6 +792,9 @@ public class JdbcStorage implements IStorage {
             });
         } catch (Exception e) {
             throw new StorageException("Error deleting ACL row.", e);
+        } finally {
+            invalidatePermissionCache(userId, designId);
+            this.watermarks.record(designId, null, 0);
         }
     }
     
@@ -322,7 +805,7 @@ public class JdbcStorage implements IStorage {
     public void updatePermission(String designId, String userId, String permission) throws StorageException {
         logger.debug("Updating an ACL row for: {}", designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.updateAcl();
                 Long did = Long.valueOf(designId);
                 handle.createUpdate(statement)
@@ -334,6 +817,9 @@ public class JdbcStorage implements IStorage {
             });
         } catch (Exception e) {
             throw new StorageException("Error deleting ACL row.", e);
+        } finally {
+            invalidatePermissionCache(userId, designId);
+            this.watermarks.record(designId, null, 0);
         }
     }
     
@@ -345,7 +831,7 @@ public class JdbcStorage implements IStorage {
             throws AlreadyExistsException, StorageException {
         logger.debug("Inserting a Linked Account {} for {}", account.getType().name(), userId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.insertLinkedAccount();
                 handle.createUpdate(statement)
                       .bind(0, userId)
@@ -373,7 +859,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException, NotFoundException {
         logger.debug("Selecting a single Linked Account: {}::{}", userId, type.name());
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectLinkedAccountByType();
                 return handle.createQuery(statement)
                         .bind(0, userId)
@@ -395,7 +881,7 @@ public class JdbcStorage implements IStorage {
     public Collection<LinkedAccount> listLinkedAccounts(String userId) throws StorageException {
         logger.debug("Getting a list of all Linked Accouts for {}.", userId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectLinkedAccounts();
                 return handle.createQuery(statement)
                         .bind(0, userId)
@@ -415,7 +901,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException, NotFoundException {
         logger.debug("Deleting a Linked Account: {}::{}", userId, type.name());
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.deleteLinkedAccount();
                 int rowCount = handle.createUpdate(statement)
                       .bind(0, userId)
@@ -440,7 +926,7 @@ public class JdbcStorage implements IStorage {
     public void deleteLinkedAccounts(String userId) throws StorageException {
         logger.debug("Deleting all Linked Accounts for {}", userId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.deleteLinkedAccounts();
                 handle.createUpdate(statement)
                       .bind(0, userId)
@@ -459,7 +945,7 @@ public class JdbcStorage implements IStorage {
     public void updateLinkedAccount(String userId, LinkedAccount account) throws NotFoundException, StorageException {
         logger.debug("Updating a Linked Account: {}::{}", userId, account.getType().name());
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.updateLinkedAccount();
                 int rowCount = handle.createUpdate(statement)
                         .bind(0, account.getUsedOn())
@@ -488,14 +974,15 @@ public class JdbcStorage implements IStorage {
             throws NotFoundException, StorageException {
         logger.debug("Selecting all contributors for API Design: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle(designId, handle -> {
                 String statement = sqlStatements.selectApiDesignContributors();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
-                        .bind(1, userId)
+                        .bind(1, Long.valueOf(designId))
+                        .bind(2, userId)
                         .map(ConstributorRowMapper.instance)
                         .list();
-            });
+            }, null);
         } catch (IllegalStateException e) {
             throw new NotFoundException();
         } catch (Exception e) {
@@ -510,19 +997,14 @@ public class JdbcStorage implements IStorage {
     public long addContent(String userId, String designId, ApiContentType type, String data) throws StorageException {
         logger.debug("Inserting a 'command' content row for: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return inTransaction( handle -> {
                 // Insert a row in the api_content table.  Retrieve the ID.
-                String statement = sqlStatements.insertContent();
-                CharacterStreamArgument contentClob = new CharacterStreamArgument(new StringReader(data), data.length());
-                Long contentVersion = handle.createUpdate(statement)
-                      .bind(0, Long.parseLong(designId))
-                      .bind(1, type.getId())
-                      .bind(2, contentClob)
-                      .bind(3, userId)
-                      .bind(4, new Date())
-                      .executeAndReturnGeneratedKeys("version")
-                      .mapTo(Long.class)
-                      .findOnly();
+                Date now = new Date();
+                long contentVersion = insertContent(handle, Long.parseLong(designId), type, data, userId, now);
+                updateLastVersion(handle, Long.parseLong(designId), contentVersion);
+                addContributorEdits(handle, Long.parseLong(designId), userId, 1);
+                invalidateContentCache(designId);
+                this.watermarks.record(designId, type, contentVersion);
                 return contentVersion;
             });
         } catch (Exception e) {
@@ -537,7 +1019,7 @@ public class JdbcStorage implements IStorage {
     public boolean undoContent(String user, String designId, long contentVersion) throws StorageException {
         logger.debug("Undoing a content row for: {}  version: {}", designId, contentVersion);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return inTransaction( handle -> {
                 String statement = sqlStatements.undoContent();
                 long updateCount = handle.createUpdate(statement)
                         .bind(0, new Date())
@@ -545,6 +1027,12 @@ public class JdbcStorage implements IStorage {
                         .bind(2, Long.parseLong(designId))
                         .bind(3, contentVersion)
                         .execute();
+                if (updateCount > 0) {
+                    incrementContentRevision(handle, Long.parseLong(designId));
+                    addContributorEdits(handle, Long.parseLong(designId), user, -1);
+                    invalidateContentCache(designId);
+                    this.watermarks.record(designId, null, 0);
+                }
                 return updateCount > 0;
             });
         } catch (Exception e) {
@@ -559,7 +1047,7 @@ public class JdbcStorage implements IStorage {
     public boolean redoContent(String user, String designId, long contentVersion) throws StorageException {
         logger.debug("Undoing a content row for: {}  version: {}", designId, contentVersion);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return inTransaction( handle -> {
                 String statement = sqlStatements.redoContent();
                 long updateCount = handle.createUpdate(statement)
                         .bind(0, new Date())
@@ -567,6 +1055,12 @@ public class JdbcStorage implements IStorage {
                         .bind(2, Long.parseLong(designId))
                         .bind(3, contentVersion)
                         .execute();
+                if (updateCount > 0) {
+                    incrementContentRevision(handle, Long.parseLong(designId));
+                    addContributorEdits(handle, Long.parseLong(designId), user, 1);
+                    invalidateContentCache(designId);
+                    this.watermarks.record(designId, null, 0);
+                }
                 return updateCount > 0;
             });
         } catch (Exception e) {
@@ -581,15 +1075,16 @@ public class JdbcStorage implements IStorage {
     public ApiDesign getApiDesign(String userId, String designId) throws NotFoundException, StorageException {
         logger.debug("Selecting a single API Design: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
-                String statement = sqlStatements.selectApiDesignById();
+            return withReadHandle(designId, handle -> {
+                boolean withAcl = isAclCheckNeeded(userId, designId);
+                String statement = sqlStatements.selectApiDesignById(withAcl);
                 Query query = handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId));
-                if (!shareForEveryone) {
+                if (withAcl) {
                     query = query.bind(1, userId);
                 }
                 return query.map(ApiDesignRowMapper.instance).findOnly();
-            });
+            }, null);
         } catch (IllegalStateException e) {
             throw new NotFoundException();
         } catch (Exception e) {
@@ -605,21 +1100,86 @@ public class JdbcStorage implements IStorage {
             throws NotFoundException, StorageException {
         logger.debug("Selecting the most recent api_content row of type 'document' for: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
-                String statement = sqlStatements.selectLatestContentDocument();
+            return withReadHandle(designId, handle -> {
+                boolean withAcl = isAclCheckNeeded(userId, designId);
+                String statement = sqlStatements.selectLatestContentDocument(withAcl);
                 Query query = handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId));
-                if (!shareForEveryone) {
+                if (withAcl) {
                     query = query.bind(1, userId);
                 }
                 return query.map(ApiDesignContentRowMapper.instance).findOnly();
-            });
+            }, content -> this.watermarks.isBehind(designId, ApiContentType.Document, content.getContentVersion()));
         } catch (IllegalStateException e) {
             throw new NotFoundException();
         } catch (Exception e) {
             throw new StorageException("Error getting content document.", e);
         }
     }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#readLatestContentDocument(java.lang.String, java.lang.String, io.apicurio.hub.core.storage.IContentDocumentReader)
+     */
+    @Override
+    public <T> T readLatestContentDocument(String userId, String designId, IContentDocumentReader<T> reader)
+            throws NotFoundException, StorageException {
+        logger.debug("Streaming the most recent api_content row of type 'document' for: {}", designId);
+        try {
+            return withStreamingHandle(designId, handle -> {
+                boolean withAcl = isAclCheckNeeded(userId, designId);
+                String statement = sqlStatements.selectLatestContentDocument(withAcl);
+                Query query = handle.createQuery(statement)
+                        .bind(0, Long.valueOf(designId));
+                if (withAcl) {
+                    query = query.bind(1, userId);
+                }
+                return query.map(new RowMapper<T>() {
+                    @Override
+                    public T map(ResultSet rs, StatementContext ctx) throws SQLException {
+                        try (Reader document = openDocumentData(rs)) {
+                            return reader.read(rs.getLong("version"), document);
+                        } catch (IOException e) {
+                            throw new SQLException(e);
+                        }
+                    }
+                }).findOnly();
+            });
+        } catch (IllegalStateException e) {
+            throw new NotFoundException();
+        } catch (Exception e) {
+            throw new StorageException("Error reading content document.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getContentETag(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getContentETag(String userId, String designId) throws NotFoundException, StorageException {
+        logger.debug("Selecting the content state for: {}", designId);
+        try {
+            String etag = withReadHandle(designId, handle -> {
+                boolean withAcl = isAclCheckNeeded(userId, designId);
+                String statement = sqlStatements.selectContentState(withAcl);
+                Query query = handle.createQuery(statement)
+                        .bind(0, Long.valueOf(designId));
+                if (withAcl) {
+                    query = query.bind(1, userId);
+                }
+                return query.map(new RowMapper<String>() {
+                    @Override
+                    public String map(ResultSet rs, StatementContext ctx) throws SQLException {
+                        return rs.getLong("last_version") + "-" + rs.getLong("content_revision");
+                    }
+                }).findOnly();
+            }, null);
+            return etag;
+        } catch (IllegalStateException e) {
+            throw new NotFoundException();
+        } catch (Exception e) {
+            throw new StorageException("Error getting content state.", e);
+        }
+    }
     
     /**
      * @see io.apicurio.hub.core.storage.IStorage#listContentCommands(java.lang.String, java.lang.String, long)
@@ -629,16 +1189,18 @@ public class JdbcStorage implements IStorage {
             throws StorageException {
         logger.debug("Selecting the content 'command' rows for API {} since content version {}", designId, sinceVersion);
         try {
-            return this.jdbi.withHandle( handle -> {
-                String statement = sqlStatements.selectContentCommands();
+            return withReadHandle(designId, handle -> {
+                boolean withAcl = isAclCheckNeeded(userId, designId);
+                String statement = sqlStatements.selectContentCommands(withAcl);
                 
                 Query query = handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId));
-                if (!shareForEveryone) {
+                if (withAcl) {
                     query = query.bind(2, userId);
                 }
                 return query.bind(1, sinceVersion).map(ApiDesignCommandRowMapper.instance).list();
-            });
+            }, commands -> this.watermarks.isBehind(designId, ApiContentType.Command,
+                    commands.isEmpty() ? sinceVersion : commands.get(commands.size() - 1).getContentVersion()));
         } catch (Exception e) {
             throw new StorageException("Error getting content commands.", e);
         }
@@ -652,7 +1214,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException {
         logger.debug("Selecting ALL content 'command' rows for API {} since content version {}", designId, sinceVersion);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle(designId, handle -> {
                 String statement = sqlStatements.selectAllContentCommands();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -660,36 +1222,89 @@ public class JdbcStorage implements IStorage {
                         .bind(2, sinceVersion)
                         .map(ApiDesignCommandRowMapper.instance)
                         .list();
-            });
+            }, commands -> this.watermarks.isBehind(designId, ApiContentType.Command,
+                    commands.isEmpty() ? sinceVersion : commands.get(commands.size() - 1).getContentVersion()));
         } catch (Exception e) {
             throw new StorageException("Error getting content commands.", e);
         }
     }
 
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#streamAllContentCommands(java.lang.String, java.lang.String, long, io.apicurio.hub.core.storage.IContentCommandConsumer)
+     */
+    @Override
+    public void streamAllContentCommands(String userId, String designId, long sinceVersion, IContentCommandConsumer consumer)
+            throws StorageException {
+        logger.debug("Streaming ALL content 'command' rows for API {} since content version {}", designId, sinceVersion);
+        try {
+            withStreamingHandle(designId, handle -> {
+                String statement = sqlStatements.selectAllContentCommands();
+                try (ResultIterator<ApiDesignCommand> commands = handle.createQuery(statement)
+                        .setFetchSize(STREAM_FETCH_SIZE)
+                        .bind(0, Long.valueOf(designId))
+                        .bind(1, userId)
+                        .bind(2, sinceVersion)
+                        .map(ApiDesignCommandRowMapper.instance)
+                        .iterator()) {
+                    while (commands.hasNext()) {
+                        consumer.accept(commands.next());
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error streaming content commands.", e);
+        }
+    }
+
     /**
      * @see io.apicurio.hub.core.storage.IStorage#createApiDesign(java.lang.String, io.apicurio.hub.api.beans.ApiDesign)
      */
     @Override
     public String createApiDesign(String userId, ApiDesign design, String initialContent) throws StorageException {
-        logger.debug("Inserting an API Design: {}", design.getName());
-        try {
-            return this.jdbi.withHandle( handle -> {
-                // Insert a row in the api_designs table first.  Retrieve the ID.
-                String statement = sqlStatements.insertApiDesign();
-                String designId = handle.createUpdate(statement)
+        // The id always comes from the allocator, so that it can never collide with an id that
+        // was allocated for a design on another shard
+        return insertApiDesign(userId, design, initialContent, allocateDesignId());
+    }
+
+    /**
+     * Creates an API design with a given (already allocated) id.
+     * @param userId
+     * @param design
+     * @param initialContent
+     * @param designId
+     * @throws StorageException
+     */
+    public String createApiDesign(String userId, ApiDesign design, String initialContent, long designId) throws StorageException {
+        return insertApiDesign(userId, design, initialContent, designId);
+    }
+
+    /**
+     * Inserts an API design (and its initial content) with the given id.  The design, its ACL
+     * and its initial content are all inserted in a single transaction.
+     * @param userId
+     * @param design
+     * @param initialContent
+     * @param did
+     * @throws StorageException
+     */
+    private String insertApiDesign(String userId, ApiDesign design, String initialContent, long did) throws StorageException {
+        logger.debug("Inserting an API Design: {}", design.getName());
+        try {
+            return inTransaction( handle -> {
+                // Insert a row in the api_designs table first
+                handle.createUpdate(sqlStatements.insertApiDesignWithId())
                       .bind(0, design.getName())
                       .bind(1, trimTo255(design.getDescription()))
                       .bind(2, design.getCreatedBy())
                       .bind(3, design.getCreatedOn())
                       .bind(4, asCsv(design.getTags()))
-                      .executeAndReturnGeneratedKeys("id")
-                      .mapTo(String.class)
-                      .findOnly();
-                
-                long did = Long.parseLong(designId);
+                      .bind(5, did)
+                      .execute();
+                String designId = String.valueOf(did);
                 
                 // Insert a row in the ACL table with role 'owner' for this API
-                statement = sqlStatements.insertAcl();
+                String statement = sqlStatements.insertAcl();
                 handle.createUpdate(statement)
                       .bind(0, userId)
                       .bind(1, did)
@@ -697,15 +1312,11 @@ public class JdbcStorage implements IStorage {
                       .execute();
                 
                 // Insert a row in the api_content table (initial value)
-                statement = sqlStatements.insertContent();
-                CharacterStreamArgument contentClob = new CharacterStreamArgument(new StringReader(initialContent), initialContent.length());
-                handle.createUpdate(statement)
-                      .bind(0, did)
-                      .bind(1, ApiContentType.Document.getId())
-                      .bind(2, contentClob)
-                      .bind(3, userId)
-                      .bind(4, design.getCreatedOn())
-                      .execute();
+                long contentVersion = insertContent(handle, did, ApiContentType.Document, initialContent, userId, design.getCreatedOn());
+                updateLastVersion(handle, did, contentVersion);
+                addContributorEdits(handle, did, userId, 1);
+                updateDesignTags(handle, did, design.getTags());
+                this.watermarks.record(designId, ApiContentType.Document, contentVersion);
                 
                 return designId;
             });
@@ -714,6 +1325,276 @@ public class JdbcStorage implements IStorage {
         }
     }
 
+    /**
+     * Inserts a row into the api_content table and returns its (generated) version.  Full
+     * documents are encoded using the configured content codec, while all other types of
+     * content are always stored as-is.
+     * @param handle
+     * @param designId
+     * @param type
+     * @param data
+     * @param userId
+     * @param createdOn
+     * @throws IOException
+     */
+    private long insertContent(Handle handle, long designId, ApiContentType type, String data, String userId,
+            Date createdOn) throws IOException {
+        Update update = handle.createUpdate(sqlStatements.insertContent());
+        return bindContent(handle, update, designId, type, data, userId, createdOn)
+              .executeAndReturnGeneratedKeys("version")
+              .mapTo(Long.class)
+              .findOnly();
+    }
+
+    /**
+     * Records the latest content version of an API design (used to quickly find the designs a
+     * user has most recently worked on).  The version only ever moves forward.
+     * @param handle
+     * @param designId
+     * @param contentVersion
+     */
+    private void updateLastVersion(Handle handle, long designId, long contentVersion) {
+        handle.createUpdate(sqlStatements.updateApiDesignLastVersion())
+              .bind(0, contentVersion)
+              .bind(1, designId)
+              .bind(2, contentVersion)
+              .execute();
+    }
+
+    /**
+     * Increments the content revision of an API design.  Must be called whenever its content
+     * changes without a new (highest) content version being stored, since the content ETag is
+     * made of the two.
+     * @param handle
+     * @param designId
+     */
+    private void incrementContentRevision(Handle handle, long designId) {
+        handle.createUpdate(sqlStatements.incrementApiDesignContentRevision())
+              .bind(0, designId)
+              .execute();
+    }
+
+    /**
+     * Adds to (or, when negative, subtracts from) the number of edits the given user has made
+     * to an API design.  These counts are kept up to date with the api_content table so that
+     * the contributors of a design can be listed without scanning all of its content.
+     * @param handle
+     * @param designId
+     * @param userId
+     * @param edits
+     */
+    private void addContributorEdits(Handle handle, long designId, String userId, int edits) {
+        int rowCount = handle.createUpdate(sqlStatements.updateContributorEdits())
+              .bind(0, edits)
+              .bind(1, designId)
+              .bind(2, userId)
+              .execute();
+        if (rowCount == 0 && edits > 0) {
+            handle.createUpdate(sqlStatements.insertContributor())
+                  .bind(0, designId)
+                  .bind(1, userId)
+                  .bind(2, edits)
+                  .execute();
+        }
+    }
+
+    /**
+     * Brings the design_tags rows of an API design in line with the given set of tags.  Only
+     * the tags that were added or removed are touched, so that saving a design with unchanged
+     * tags costs a single (indexed) select.
+     * @param handle
+     * @param designId
+     * @param tags
+     */
+    private void updateDesignTags(Handle handle, long designId, Set<String> tags) {
+        Set<String> newTags = new HashSet<>();
+        for (String tag : tags) {
+            if (tag != null && !tag.trim().isEmpty()) {
+                newTags.add(trimTo255(tag.trim()));
+            }
+        }
+        Set<String> oldTags = new HashSet<>(handle.createQuery(sqlStatements.selectDesignTags())
+                .bind(0, designId)
+                .mapTo(String.class).list());
+        for (String tag : oldTags) {
+            if (!newTags.contains(tag)) {
+                handle.createUpdate(sqlStatements.deleteDesignTag())
+                      .bind(0, designId)
+                      .bind(1, tag)
+                      .execute();
+            }
+        }
+        for (String tag : newTags) {
+            if (!oldTags.contains(tag)) {
+                handle.createUpdate(sqlStatements.insertDesignTag())
+                      .bind(0, designId)
+                      .bind(1, tag)
+                      .execute();
+            }
+        }
+    }
+
+    /**
+     * Binds the parameters of the insertContent statement (either a single update or one
+     * entry of a batch).  When deduplication is enabled, full documents are stored in the
+     * content_blobs table (keyed by their hash) and the api_content row only references them.
+     * @param handle
+     * @param statement
+     * @param designId
+     * @param type
+     * @param data
+     * @param userId
+     * @param createdOn
+     * @throws IOException
+     */
+    private <T extends SqlStatement<T>> T bindContent(Handle handle, T statement, long designId, ApiContentType type,
+            String data, String userId, Date createdOn) throws IOException {
+        statement.bind(0, designId)
+              .bind(1, type.getId())
+              .bind(3, userId)
+              .bind(4, createdOn);
+        if (type == ApiContentType.Document && this.contentDeduplication) {
+            return statement.bind(2, "")
+                  .bind(5, ContentCodec.NONE.getId())
+                  .bindNull(6, Types.VARBINARY)
+                  .bind(7, storeContentBlob(handle, data));
+        }
+        ContentCodec codec = type == ApiContentType.Document ? this.contentCodec : ContentCodec.NONE;
+        statement.bind(5, codec.getId())
+              .bindNull(7, Types.VARCHAR);
+        if (codec == ContentCodec.NONE) {
+            statement.bind(2, new CharacterStreamArgument(new StringReader(data), data.length()))
+                  .bindNull(6, Types.VARBINARY);
+        } else {
+            statement.bind(2, "")
+                  .bind(6, codec.encode(data));
+        }
+        return statement;
+    }
+
+    /**
+     * Makes sure the given document is stored in the content_blobs table and returns its hash.
+     * A document that is already stored is only marked as used (so that it is not swept up as
+     * an orphan while the referencing api_content row is being inserted).
+     * @param handle
+     * @param data
+     * @throws IOException
+     */
+    private String storeContentBlob(Handle handle, String data) throws IOException {
+        byte[] raw = data.getBytes(StandardCharsets.UTF_8);
+        String hash = DigestUtils.sha256Hex(raw);
+        Date now = new Date();
+        int rowCount = handle.createUpdate(sqlStatements.touchContentBlob())
+              .bind(0, now)
+              .bind(1, hash)
+              .execute();
+        if (rowCount == 0) {
+            ContentCodec codec = this.contentCodec;
+            Update insert = handle.createUpdate(sqlStatements.insertContentBlob())
+                  .bind(0, hash)
+                  .bind(1, codec.getId())
+                  .bind(4, (long) raw.length)
+                  .bind(5, now)
+                  .bind(6, now);
+            if (codec == ContentCodec.NONE) {
+                insert.bind(2, new CharacterStreamArgument(new StringReader(data), data.length()))
+                      .bindNull(3, Types.VARBINARY);
+            } else {
+                insert.bind(2, "")
+                      .bind(3, codec.encode(data));
+            }
+            // Another transaction may be storing the same document concurrently, in which case
+            // the insert fails and the (now existing) blob is used instead.
+            boolean inTransaction = handle.isInTransaction();
+            if (inTransaction) {
+                handle.savepoint(CONTENT_BLOB_SAVEPOINT);
+            }
+            try {
+                insert.execute();
+            } catch (UnableToExecuteStatementException e) {
+                if (inTransaction) {
+                    handle.rollbackToSavepoint(CONTENT_BLOB_SAVEPOINT);
+                }
+                rowCount = handle.createUpdate(sqlStatements.touchContentBlob())
+                      .bind(0, now)
+                      .bind(1, hash)
+                      .execute();
+                if (rowCount == 0) {
+                    throw e;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the (decoded) data of a row from the api_content table.
+     * @param rs
+     * @throws SQLException
+     * @throws IOException
+     */
+    private static String readContentData(ResultSet rs) throws SQLException, IOException {
+        ContentCodec codec = ContentCodec.fromId(rs.getInt("codec"));
+        if (codec == ContentCodec.NONE) {
+            return IOUtils.toString(rs.getCharacterStream("data"));
+        }
+        return codec.decode(rs.getBytes("data_bin"));
+    }
+
+    /**
+     * Reads the (decoded) data of a 'document' row from the api_content table.  The row must
+     * have been selected along with its (optional) content_blobs row, whose columns are
+     * prefixed with "blob_".
+     * @param rs
+     * @throws SQLException
+     * @throws IOException
+     */
+    private static String readDocumentData(ResultSet rs) throws SQLException, IOException {
+        if (rs.getString("blob_hash") == null) {
+            return readContentData(rs);
+        }
+        ContentCodec codec = blobCodec(rs);
+        if (codec == ContentCodec.NONE) {
+            return IOUtils.toString(rs.getCharacterStream("blob_data"));
+        }
+        return codec.decode(rs.getBytes("blob_data_bin"));
+    }
+
+    /**
+     * Opens a reader over the (decoded) data of a 'document' row from the api_content table,
+     * so that the data can be streamed rather than read into memory as a whole.
+     * @param rs
+     * @throws SQLException
+     * @throws IOException
+     */
+    private static Reader openDocumentData(ResultSet rs) throws SQLException, IOException {
+        String prefix = "";
+        ContentCodec codec;
+        if (rs.getString("blob_hash") == null) {
+            codec = ContentCodec.fromId(rs.getInt("codec"));
+        } else {
+            prefix = "blob_";
+            codec = blobCodec(rs);
+        }
+        if (codec == ContentCodec.NONE) {
+            return rs.getCharacterStream(prefix + "data");
+        }
+        return codec.decode(rs.getBinaryStream(prefix + "data_bin"));
+    }
+
+    /**
+     * Returns the codec of the content_blobs row joined to the current api_content row.
+     * @param rs
+     * @throws SQLException
+     */
+    private static ContentCodec blobCodec(ResultSet rs) throws SQLException {
+        int codecId = rs.getInt("blob_codec");
+        if (rs.wasNull()) {
+            throw new SQLException("Missing content blob: " + rs.getString("blob_hash"));
+        }
+        return ContentCodec.fromId(codecId);
+    }
+
     /**
      * Converts from a Set of tags to a CSV of those tags.
      * @param tags
@@ -738,7 +1619,7 @@ public class JdbcStorage implements IStorage {
     public void deleteApiDesign(String userId, String designId) throws NotFoundException, StorageException {
         logger.debug("Deleting an API Design: {}", designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 // Check for permissions first
                 String statement = sqlStatements.hasWritePermission();
                 Long did = Long.valueOf(designId);
@@ -750,31 +1631,18 @@ public class JdbcStorage implements IStorage {
                     throw new NotFoundException();
                 }
 
-                // If OK then delete ACL entries
-                statement = sqlStatements.clearAcl();
-                handle.createUpdate(statement).bind(0, did).execute();
-
-                // And also delete any invitations
-                statement = sqlStatements.clearInvitations();
-                handle.createUpdate(statement).bind(0, did).execute();
-
-                // And also delete the api_content rows
-                statement = sqlStatements.clearContent();
-                handle.createUpdate(statement).bind(0, did).execute();
-
-                // And also delete the codegen rows
-                statement = sqlStatements.deleteCodegenProjects();
-                handle.createUpdate(statement).bind(0, did).execute();
-
-                // Then delete the api design itself
-                statement = sqlStatements.deleteApiDesign();
+                // Then mark the design as deleted - the purger removes its rows later on
+                statement = sqlStatements.softDeleteApiDesign();
                 int rowCount = handle.createUpdate(statement)
-                      .bind(0, did)
-                      .bind(1, userId)
+                      .bind(0, new Date())
+                      .bind(1, did)
                       .execute();
                 if (rowCount == 0) {
                     throw new NotFoundException();
                 }
+                invalidatePermissionCache(null, designId);
+                invalidateContentCache(designId);
+                this.watermarks.record(designId, null, 0);
                 return null;
             });
         } catch (NotFoundException e) {
@@ -784,6 +1652,119 @@ public class JdbcStorage implements IStorage {
         }
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#restoreApiDesign(java.lang.String, java.lang.String, java.util.Date)
+     */
+    @Override
+    public void restoreApiDesign(String userId, String designId, Date deletedAfter) throws NotFoundException, StorageException {
+        logger.debug("Restoring an API Design: {}", designId);
+        try {
+            withHandle( handle -> {
+                Long did = Long.valueOf(designId);
+                Update update = handle.createUpdate(sqlStatements.restoreApiDesign())
+                      .bind(0, did)
+                      .bind(1, deletedAfter);
+                if (!shareForEveryone) {
+                    update.bind(2, did).bind(3, userId);
+                }
+                if (update.execute() == 0) {
+                    throw new NotFoundException();
+                }
+                invalidatePermissionCache(null, designId);
+                this.watermarks.record(designId, null, 0);
+                return null;
+            });
+        } catch (NotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new StorageException("Error restoring an API design.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listDeletedApiDesignIds(java.util.Date, int)
+     */
+    @Override
+    public List<String> listDeletedApiDesignIds(Date deletedBefore, int limit) throws StorageException {
+        logger.debug("Listing up to {} API designs deleted before: {}", limit, deletedBefore);
+        try {
+            return withHandle( handle -> {
+                return handle.createQuery(sqlStatements.selectDeletedApiDesignIds())
+                        .bind(0, deletedBefore)
+                        .bind(1, limit)
+                        .map(DesignIdMapper.instance)
+                        .list();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error listing deleted API designs.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#purgeApiDesign(java.lang.String, int)
+     */
+    @Override
+    public int purgeApiDesign(String designId, int limit) throws StorageException {
+        logger.debug("Purging up to {} content rows of API Design: {}", limit, designId);
+        long did = Long.parseLong(designId);
+        try {
+            return inTransaction( handle -> {
+                int deleted = handle.createQuery(sqlStatements.isApiDesignDeleted())
+                        .bind(0, did)
+                        .mapTo(Integer.class).findOnly();
+                if (deleted == 0) {
+                    return 0;
+                }
+
+                // Remove a batch of the (live, then archived) content first
+                int rowCount = purgeContentRows(handle, did, sqlStatements.selectPurgeableContentVersions(),
+                        sqlStatements.deletePurgedContent(), limit);
+                if (rowCount < limit) {
+                    rowCount += purgeContentRows(handle, did, sqlStatements.selectPurgeableArchivedContentVersions(),
+                            sqlStatements.deletePurgedArchivedContent(), limit - rowCount);
+                }
+                if (rowCount == limit) {
+                    return rowCount;
+                }
+
+                // No content left - delete everything else
+                handle.createUpdate(sqlStatements.clearAcl()).bind(0, did).execute();
+                handle.createUpdate(sqlStatements.clearInvitations()).bind(0, did).execute();
+                handle.createUpdate(sqlStatements.clearContributors()).bind(0, did).execute();
+                handle.createUpdate(sqlStatements.clearDesignTags()).bind(0, did).execute();
+                handle.createUpdate(sqlStatements.deleteCodegenProjects()).bind(0, did).execute();
+                handle.createUpdate(sqlStatements.deleteApiDesign()).bind(0, did).execute();
+                return rowCount;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error purging an API design.", e);
+        }
+    }
+
+    /**
+     * Deletes up to "limit" of the oldest content rows of a design (from either the content
+     * table or the content archive, depending on the statements given).
+     * @param handle
+     * @param designId
+     * @param selectStatement
+     * @param deleteStatement
+     * @param limit
+     */
+    private static int purgeContentRows(Handle handle, long designId, String selectStatement, String deleteStatement, int limit) {
+        List<Long> versions = handle.createQuery(selectStatement)
+                .bind(0, designId)
+                .bind(1, limit)
+                .mapTo(Long.class)
+                .list();
+        if (versions.isEmpty()) {
+            return 0;
+        }
+        return handle.createUpdate(deleteStatement)
+                .bind(0, designId)
+                .bind(1, versions.get(versions.size() - 1))
+                .execute();
+    }
+    
     /**
      * @see io.apicurio.hub.core.storage.IStorage#updateApiDesign(java.lang.String, io.apicurio.hub.api.beans.ApiDesign)
      */
@@ -791,7 +1772,7 @@ public class JdbcStorage implements IStorage {
     public void updateApiDesign(String userId, ApiDesign design) throws NotFoundException, StorageException {
         logger.debug("Updating an API Design: {}", design.getId());
         try {
-            this.jdbi.withHandle( handle -> {
+            inTransaction( handle -> {
                 // Check for permissions first
                 if (!shareForEveryone) {
                     String statementPerms = sqlStatements.hasWritePermission();
@@ -815,6 +1796,8 @@ public class JdbcStorage implements IStorage {
                 if (rowCount == 0) {
                     throw new NotFoundException();
                 }
+                updateDesignTags(handle, Long.valueOf(design.getId()), design.getTags());
+                this.watermarks.record(design.getId(), null, 0);
                 return null;
             });
         } catch (NotFoundException e) {
@@ -842,7 +1825,7 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiDesign> listApiDesigns(String userId) throws StorageException {
         logger.debug("Getting a list of all API designs.");
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle( handle -> {
                 String statement = sqlStatements.selectApiDesigns();
                 Query query = handle.createQuery(statement);
                 if (!shareForEveryone) {
@@ -854,6 +1837,154 @@ public class JdbcStorage implements IStorage {
             throw new StorageException("Error listing API designs.", e);
         }
     }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesigns(java.lang.String, io.apicurio.hub.core.storage.ApiDesignQuery)
+     */
+    @Override
+    public ApiDesignPage listApiDesigns(String userId, ApiDesignQuery query) throws StorageException, IllegalArgumentException {
+        return listApiDesigns(userId, query, null);
+    }
+
+    /**
+     * Gets a page of API designs, optionally also returning the cursor of every design on the
+     * page (used to merge the pages of multiple shards).
+     * @param userId
+     * @param query
+     * @param itemCursors
+     * @throws StorageException
+     * @throws IllegalArgumentException
+     */
+    public ApiDesignPage listApiDesigns(String userId, ApiDesignQuery query, List<String> itemCursors)
+            throws StorageException, IllegalArgumentException {
+        logger.debug("Getting a page of API designs.");
+        String[] after = query.getAfter() == null ? null : parseDesignCursor(query.getAfter(), query.getSort());
+        try {
+            return withReadHandle( handle -> {
+                String statement = sqlStatements.selectApiDesigns(query, after != null);
+                Query q = handle.createQuery(statement).define(StatementTimer.STATEMENT_NAME, "selectApiDesigns");
+                if (!shareForEveryone) {
+                    q.bind("userId", userId);
+                }
+                if (query.getNamePrefix() != null) {
+                    q.bind("namePrefix", escapeLike(query.getNamePrefix()) + "%");
+                }
+                if (query.getTag() != null) {
+                    q.bind("tag", query.getTag().trim());
+                }
+                if (query.getCreatedBy() != null) {
+                    q.bind("createdBy", query.getCreatedBy());
+                }
+                if (after != null) {
+                    switch (query.getSort()) {
+                        case CREATED:
+                            q.bind("afterKey", new Timestamp(Long.parseLong(after[1])));
+                            break;
+                        case MODIFIED:
+                            q.bind("afterKey", Long.parseLong(after[1]));
+                            break;
+                        default:
+                            q.bind("afterKey", after[1]);
+                            break;
+                    }
+                    q.bind("afterId", Long.parseLong(after[0]));
+                }
+                if (query.getLimit() > 0) {
+                    q.bind("limit", query.getLimit() + 1);
+                }
+                List<String> cursors = new ArrayList<>();
+                List<ApiDesign> designs = q.map(new RowMapper<ApiDesign>() {
+                    @Override
+                    public ApiDesign map(ResultSet rs, StatementContext ctx) throws SQLException {
+                        String key;
+                        switch (query.getSort()) {
+                            case CREATED:
+                                key = String.valueOf(rs.getTimestamp("created_on").getTime());
+                                break;
+                            case MODIFIED:
+                                key = String.valueOf(rs.getLong("last_version"));
+                                break;
+                            default:
+                                key = rs.getString("name");
+                                break;
+                        }
+                        cursors.add(rs.getLong("id") + ":" + key);
+                        return ApiDesignRowMapper.instance.map(rs, ctx);
+                    }
+                }).list();
+                if (itemCursors != null) {
+                    int count = query.getLimit() <= 0 ? designs.size() : Math.min(designs.size(), query.getLimit());
+                    for (String cursor : cursors.subList(0, count)) {
+                        itemCursors.add(Base64.encodeBase64URLSafeString(cursor.getBytes(StandardCharsets.UTF_8)));
+                    }
+                }
+                if (query.getLimit() <= 0 || designs.size() <= query.getLimit()) {
+                    return new ApiDesignPage(designs, null);
+                }
+                String cursor = Base64.encodeBase64URLSafeString(cursors.get(query.getLimit() - 1).getBytes(StandardCharsets.UTF_8));
+                return new ApiDesignPage(new ArrayList<>(designs.subList(0, query.getLimit())), cursor);
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error listing API designs.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#countApiDesignTags(java.lang.String)
+     */
+    @Override
+    public Map<String, Integer> countApiDesignTags(String userId) throws StorageException {
+        logger.debug("Counting the API design tags for user: {}", userId);
+        try {
+            return withReadHandle( handle -> {
+                Query query = handle.createQuery(sqlStatements.selectDesignTagCounts());
+                if (!shareForEveryone) {
+                    query.bind(0, userId);
+                }
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                query.map((rs, ctx) -> new SimpleImmutableEntry<>(rs.getString("tag"), rs.getInt("designs")))
+                     .forEach(entry -> counts.put(entry.getKey(), entry.getValue()));
+                return counts;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error counting API design tags.", e);
+        }
+    }
+
+    /**
+     * Parses a design list cursor (the base64 encoded "id:sortKey" of the last design of
+     * the previous page) into its id and sort key.
+     * @param cursor
+     * @param sort
+     * @throws IllegalArgumentException
+     */
+    static String[] parseDesignCursor(String cursor, ApiDesignSort sort) throws IllegalArgumentException {
+        if (!Base64.isBase64(cursor)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String[] parts = new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8).split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            Long.parseLong(parts[0]);
+            if (sort != ApiDesignSort.NAME) {
+                Long.parseLong(parts[1]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return parts;
+    }
+
+    /**
+     * Escapes the wildcard characters of a value used in a LIKE expression (the statements
+     * use '!' as the escape character).
+     * @param value
+     */
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
     
     /**
      * @see io.apicurio.hub.core.storage.IStorage#getRecentApiDesigns(java.lang.String)
@@ -862,22 +1993,12 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiDesign> getRecentApiDesigns(String userId) throws StorageException {
         logger.debug("Getting a list of the user's recent APIs.");
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle( handle -> {
                 String statement = sqlStatements.selectRecentApiDesigns();
-                Collection<ApiDesign> designs = new ArrayList<>();
-                Collection<Long> recentApiIds = handle.createQuery(statement)
+                return handle.createQuery(statement)
                         .bind(0, userId)
-                        .map(new SingleColumnMapper<Long>(new ColumnMapper<Long>() {
-                            @Override
-                            public Long map(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException {
-                                return r.getLong(columnNumber);
-                            }
-                        }, "design_id"))
+                        .map(ApiDesignRowMapper.instance)
                         .list();
-                for (Long did : recentApiIds) {
-                    designs.add(this.getApiDesign(userId, String.valueOf(did)));
-                }
-                return designs;
             });
         } catch (Exception e) {
             throw new StorageException("Error listing API designs.", e);
@@ -892,7 +2013,7 @@ public class JdbcStorage implements IStorage {
             long expiresOn) throws StorageException {
         logger.debug("Inserting an Editing Session UUID row: {}", uuid);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.insertEditingSessionUuid();
                 handle.createUpdate(statement)
                       .bind(0, uuid)
@@ -918,7 +2039,7 @@ public class JdbcStorage implements IStorage {
         logger.debug("Looking up an editing session UUID: {}", uuid);
         long now = System.currentTimeMillis();
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectEditingSessionUuid();
                 Long contentVersion = handle.createQuery(statement)
                         .bind(0, uuid)
@@ -948,7 +2069,7 @@ public class JdbcStorage implements IStorage {
         logger.debug("Consuming/Deleting an editing session UUID: {}", uuid);
         long now = System.currentTimeMillis();
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.deleteEditingSessionUuid();
                 int rowCount = handle.createUpdate(statement)
                         .bind(0, uuid)
@@ -974,7 +2095,7 @@ public class JdbcStorage implements IStorage {
             String subject) throws StorageException {
         logger.debug("Inserting a collaboration invitation row: {}  for design: {}", inviteId, designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.insertCollaborationInvitation();
                 handle.createUpdate(statement)
                       .bind(0, userId)
@@ -1001,7 +2122,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException {
         logger.debug("Updating the status of an invitation: {}  from: {}  to: {}", inviteId, fromStatus, toStatus);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.updateCollaborationInvitationStatus();
                 int rowCount = handle.createUpdate(statement)
                         .bind(0, toStatus)
@@ -1027,7 +2148,7 @@ public class JdbcStorage implements IStorage {
     public List<Invitation> listCollaborationInvites(String designId, String userId) throws StorageException {
         logger.debug("Selecting all invitations for API Design: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectCollaborationInvitations();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -1048,7 +2169,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException, NotFoundException {
         logger.debug("Selecting a single invitation for API Design: {}  with inviteId: {}", designId, inviteId);
         try {
-            return (Invitation) this.jdbi.withHandle( handle -> {
+            return (Invitation) withHandle( handle -> {
                 String statement = sqlStatements.selectCollaborationInvitation();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -1068,15 +2189,19 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiDesignChange> listApiDesignActivity(String designId, int from, int to) throws StorageException {
         logger.debug("Selecting activity for API Design: {} from {} to {}", designId, from, to);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle(designId, handle -> {
+                // Both the api_content and the api_content_archive rows are selected
                 String statement = sqlStatements.selectApiDesignActivity();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
-                        .bind(1, to - from)
-                        .bind(2, from)
+                        .bind(1, to)
+                        .bind(2, Long.valueOf(designId))
+                        .bind(3, to)
+                        .bind(4, to - from)
+                        .bind(5, from)
                         .map(ApiDesignChangeRowMapper.instance)
                         .list();
-            });
+            }, null);
         } catch (Exception e) {
             throw new StorageException("Error getting contributors.", e);
         }
@@ -1089,12 +2214,16 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiDesignChange> listUserActivity(String user, int from, int to) throws StorageException {
         logger.debug("Selecting activity for User: {} from {} to {}", user, from, to);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle( handle -> {
+                // Both the api_content and the api_content_archive rows are selected
                 String statement = sqlStatements.selectUserActivity();
                 return handle.createQuery(statement)
                         .bind(0, user)
-                        .bind(1, to - from)
-                        .bind(2, from)
+                        .bind(1, to)
+                        .bind(2, user)
+                        .bind(3, to)
+                        .bind(4, to - from)
+                        .bind(5, from)
                         .map(ApiDesignChangeRowMapper.instance)
                         .list();
             });
@@ -1110,7 +2239,7 @@ public class JdbcStorage implements IStorage {
     public Collection<ApiPublication> listApiDesignPublications(String designId, int from, int to) throws StorageException {
         logger.debug("Selecting publication activity for API Design: {} from {} to {}", designId, from, to);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withReadHandle(designId, handle -> {
                 String statement = sqlStatements.selectApiPublicationActivity();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -1118,11 +2247,122 @@ public class JdbcStorage implements IStorage {
                         .bind(2, from)
                         .map(ApiPublicationRowMapper.instance)
                         .list();
-            });
+            }, null);
         } catch (Exception e) {
             throw new StorageException("Error getting contributors.", e);
         }
     }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listApiDesignActivity(String designId, PageCursor after, int limit)
+            throws StorageException {
+        logger.debug("Selecting activity for API Design: {} after {} (limit {})", designId, after, limit);
+        try {
+            return withReadHandle(designId, handle -> {
+                return selectPage(handle, sqlStatements.selectApiDesignActivity(),
+                        sqlStatements.selectApiDesignActivityAfter(), Long.valueOf(designId), after, limit,
+                        true, ApiDesignChangeRowMapper.instance);
+            }, null);
+        } catch (Exception e) {
+            throw new StorageException("Error getting API design activity.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listUserActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listUserActivity(String user, PageCursor after, int limit)
+            throws StorageException {
+        logger.debug("Selecting activity for User: {} after {} (limit {})", user, after, limit);
+        try {
+            return withReadHandle( handle -> {
+                return selectPage(handle, sqlStatements.selectUserActivity(),
+                        sqlStatements.selectUserActivityAfter(), user, after, limit,
+                        true, ApiDesignChangeRowMapper.instance);
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error getting user activity.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignPublications(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiPublication> listApiDesignPublications(String designId, PageCursor after, int limit)
+            throws StorageException {
+        logger.debug("Selecting publication activity for API Design: {} after {} (limit {})", designId, after, limit);
+        try {
+            return withReadHandle(designId, handle -> {
+                return selectPage(handle, sqlStatements.selectApiPublicationActivity(),
+                        sqlStatements.selectApiPublicationActivityAfter(), Long.valueOf(designId), after, limit,
+                        false, ApiPublicationRowMapper.instance);
+            }, null);
+        } catch (Exception e) {
+            throw new StorageException("Error getting API design publications.", e);
+        }
+    }
+
+    /**
+     * Selects a single page of a feed ordered by (created_on, version), newest first.  The first
+     * page is selected using the given (offset based) statement, subsequent pages by seeking
+     * past the cursor.  One extra row is selected to find out if there is a next page.  When
+     * "archived" is true the statements also select from the api_content_archive table (which
+     * repeats the parameters of the api_content part of the statement).
+     * @param handle
+     * @param firstPageStatement
+     * @param nextPageStatement
+     * @param key
+     * @param after
+     * @param limit
+     * @param archived
+     * @param mapper
+     */
+    private static <T> CursorPage<T> selectPage(Handle handle, String firstPageStatement, String nextPageStatement,
+            Object key, PageCursor after, int limit, boolean archived, RowMapper<T> mapper) {
+        Query query;
+        int idx = 0;
+        int tables = archived ? 2 : 1;
+        if (after == null) {
+            query = handle.createQuery(firstPageStatement);
+            for (int table = 0; table < tables; table++) {
+                query.bind(idx++, key);
+                if (archived) {
+                    query.bind(idx++, limit + 1);
+                }
+            }
+            query.bind(idx++, limit + 1)
+                 .bind(idx++, 0);
+        } else {
+            query = handle.createQuery(nextPageStatement);
+            for (int table = 0; table < tables; table++) {
+                query.bind(idx++, key)
+                     .bind(idx++, after.getCreatedOn())
+                     .bind(idx++, after.getCreatedOn())
+                     .bind(idx++, after.getVersion());
+                if (archived) {
+                    query.bind(idx++, limit + 1);
+                }
+            }
+            query.bind(idx++, limit + 1);
+        }
+        List<PageCursor> cursors = new ArrayList<>();
+        List<T> items = query.map(new RowMapper<T>() {
+            @Override
+            public T map(ResultSet rs, StatementContext ctx) throws SQLException {
+                cursors.add(new PageCursor(rs.getTimestamp("created_on"), rs.getLong("version")));
+                return mapper.map(rs, ctx);
+            }
+        }).list();
+        if (items.size() <= limit) {
+            return new CursorPage<>(items, null);
+        }
+        return new CursorPage<>(new ArrayList<>(items.subList(0, limit)), cursors.get(limit - 1));
+    }
     
     /**
      * @see io.apicurio.hub.core.storage.IStorage#listCodegenProjects(java.lang.String, java.lang.String)
@@ -1132,7 +2372,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException {
         logger.debug("Selecting codegen projects for API Design: {}", designId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectCodegenProjects();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -1151,7 +2391,7 @@ public class JdbcStorage implements IStorage {
     public String createCodegenProject(String userId, CodegenProject project) throws StorageException {
         logger.debug("Inserting a codegen project: {}", project.getType());
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.insertCodegenProject();
                 String attrs = CodegenProjectRowMapper.toString(project.getAttributes());
                 CharacterStreamArgument attributesClob = new CharacterStreamArgument(new StringReader(attrs), attrs.length());
@@ -1181,7 +2421,7 @@ public class JdbcStorage implements IStorage {
             throws StorageException, NotFoundException {
         logger.debug("Selecting a single codegen project for API Design: {}  with projectId: {}", designId, projectId);
         try {
-            return this.jdbi.withHandle( handle -> {
+            return withHandle( handle -> {
                 String statement = sqlStatements.selectCodegenProject();
                 return handle.createQuery(statement)
                         .bind(0, Long.valueOf(designId))
@@ -1201,7 +2441,7 @@ public class JdbcStorage implements IStorage {
     public void updateCodegenProject(String userId, CodegenProject project) throws StorageException, NotFoundException {
         logger.debug("Updating a codegen project: {}", project.getId());
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.updateCodegenProject();
                 String attrs = CodegenProjectRowMapper.toString(project.getAttributes());
                 CharacterStreamArgument attributesClob = new CharacterStreamArgument(new StringReader(attrs), attrs.length());
@@ -1232,7 +2472,7 @@ public class JdbcStorage implements IStorage {
             throws NotFoundException, StorageException {
         logger.debug("Deleting a codegen project: {}", projectId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.deleteCodegenProject();
                 handle.createUpdate(statement)
                       .bind(0, Long.valueOf(projectId))
@@ -1253,7 +2493,7 @@ public class JdbcStorage implements IStorage {
             throws NotFoundException, StorageException {
         logger.debug("Deleting all codegen projects for: {}", designId);
         try {
-            this.jdbi.withHandle( handle -> {
+            withHandle( handle -> {
                 String statement = sqlStatements.deleteCodegenProjects();
                 handle.createUpdate(statement)
                       .bind(0, Long.valueOf(designId))
@@ -1264,16 +2504,742 @@ public class JdbcStorage implements IStorage {
             throw new StorageException("Error deleting a codegen project.", e);
         }
     }
-
     
     /**
-     * A row mapper to read an api design from the DB (as a single row in a SELECT)
-     * and return an ApiDesign instance.
-     * @author eric.wittmann@gmail.com
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIds(java.lang.String, int)
      */
-    private static class ApiDesignRowMapper implements RowMapper<ApiDesign> {
-        
-        public static final ApiDesignRowMapper instance = new ApiDesignRowMapper();
+    @Override
+    public List<String> listApiDesignIds(String afterId, int limit) throws StorageException {
+        logger.debug("Getting a page of API design IDs after: {}", afterId);
+        try {
+            return withHandle( handle -> {
+                String statement = sqlStatements.selectApiDesignIds();
+                long from = afterId == null ? 0 : Long.valueOf(afterId);
+                return handle.createQuery(statement)
+                        .bind(0, from)
+                        .bind(1, limit)
+                        .map(DesignIdMapper.instance)
+                        .list();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error listing API design IDs.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listAccessibleApiDesignIds(java.lang.String)
+     */
+    @Override
+    public Collection<String> listAccessibleApiDesignIds(String userId) throws StorageException {
+        logger.debug("Getting the IDs of all API designs accessible to: {}", userId);
+        try {
+            return withReadHandle( handle -> {
+                Query query = handle.createQuery(sqlStatements.selectAccessibleApiDesignIds());
+                if (!shareForEveryone) {
+                    query = query.bind(0, userId);
+                }
+                return query.map(DesignIdMapper.instance).list();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error listing accessible API design IDs.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIdsChangedSince(java.lang.String)
+     */
+    @Override
+    public List<String> listApiDesignIdsChangedSince(String changeCursor) throws StorageException {
+        logger.debug("Getting the IDs of all API designs changed since: {}", changeCursor);
+        try {
+            long contentVersion = changeCursor == null ? 0 : Long.parseLong(changeCursor);
+            return withHandle( handle -> {
+                return handle.createQuery(sqlStatements.selectApiDesignIdsChangedSince())
+                        .bind(0, contentVersion)
+                        .map(DesignIdMapper.instance)
+                        .list();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error listing changed API design IDs.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getChangeCursor()
+     */
+    @Override
+    public String getChangeCursor() throws StorageException {
+        try {
+            return withHandle( handle -> {
+                Long version = handle.createQuery(sqlStatements.selectLatestContentVersion())
+                        .mapTo(Long.class)
+                        .findOnly();
+                return String.valueOf(version == null ? 0 : version.longValue());
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error getting the latest content version.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getCheckpoint(java.lang.String)
+     */
+    @Override
+    public String getCheckpoint(String name) throws StorageException {
+        logger.debug("Getting checkpoint: {}", name);
+        try {
+            return withHandle( handle -> {
+                String statement = sqlStatements.selectProperty();
+                return handle.createQuery(statement)
+                        .bind(0, CHECKPOINT_PREFIX + name)
+                        .mapTo(String.class)
+                        .findFirst().orElse(null);
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error getting checkpoint.", e);
+        }
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#setCheckpoint(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void setCheckpoint(String name, String value) throws StorageException {
+        logger.debug("Setting checkpoint {} to: {}", name, value);
+        try {
+            withHandle( handle -> {
+                String propName = CHECKPOINT_PREFIX + name;
+                if (value == null) {
+                    handle.createUpdate(sqlStatements.deleteProperty())
+                          .bind(0, propName)
+                          .execute();
+                    return null;
+                }
+                int rowCount = handle.createUpdate(sqlStatements.updateProperty())
+                      .bind(0, value)
+                      .bind(1, propName)
+                      .execute();
+                if (rowCount == 0) {
+                    handle.createUpdate(sqlStatements.insertProperty())
+                          .bind(0, propName)
+                          .bind(1, value)
+                          .execute();
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error setting checkpoint.", e);
+        }
+    }
+
+    /**
+     * Allocates a new (unique) API design id.  All API designs get their id from here rather
+     * than from the database's identity column, since once designs are spread across multiple
+     * shards the ids can no longer be generated by the database of a shard - and a node that is
+     * not (yet) configured for sharding must not reuse an id allocated for another shard.  The
+     * last allocated id is kept in the "apicurio" attribute table and is advanced using an
+     * optimistic compare-and-set, so that multiple nodes can safely allocate ids concurrently.
+     * The ids never collide with the ids of designs created before the allocator was used.
+     * @throws StorageException
+     */
+    public long allocateDesignId() throws StorageException {
+        try {
+            while (true) {
+                Long designId = withHandle( handle -> {
+                    String lastId = handle.createQuery(sqlStatements.selectProperty())
+                            .bind(0, LAST_DESIGN_ID)
+                            .mapTo(String.class)
+                            .findFirst().orElse(null);
+                    Long maxId = handle.createQuery(sqlStatements.selectMaxApiDesignId())
+                            .mapTo(Long.class)
+                            .findOnly();
+                    long nextId = Math.max(lastId == null ? 0 : Long.parseLong(lastId), maxId == null ? 0 : maxId) + 1;
+                    int rowCount;
+                    if (lastId == null) {
+                        try {
+                            rowCount = handle.createUpdate(sqlStatements.insertProperty())
+                                    .bind(0, LAST_DESIGN_ID)
+                                    .bind(1, String.valueOf(nextId))
+                                    .execute();
+                        } catch (RuntimeException e) {
+                            // Inserted by another node in the meantime
+                            rowCount = 0;
+                        }
+                    } else {
+                        rowCount = handle.createUpdate(sqlStatements.updatePropertyIfUnchanged())
+                                .bind(0, String.valueOf(nextId))
+                                .bind(1, LAST_DESIGN_ID)
+                                .bind(2, lastId)
+                                .execute();
+                    }
+                    return rowCount == 1 ? nextId : null;
+                });
+                if (designId != null) {
+                    return designId;
+                }
+                logger.debug("Concurrent API design id allocation detected, retrying.");
+            }
+        } catch (Exception e) {
+            throw new StorageException("Error allocating an API design id.", e);
+        }
+    }
+
+    /**
+     * Returns the highest id of the API designs that were created before API designs were
+     * spread across shards.  Those designs are not in the design_shards directory (all designs
+     * created since are) and always live in the primary datasource.
+     * @throws StorageException
+     */
+    public long getUnshardedDesignIdLimit() throws StorageException {
+        try {
+            return withHandle( handle -> {
+                Long minShardedId = handle.createQuery(sqlStatements.selectMinShardedDesignId())
+                        .mapTo(Long.class)
+                        .findOnly();
+                if (minShardedId != null) {
+                    return minShardedId - 1;
+                }
+                String lastId = handle.createQuery(sqlStatements.selectProperty())
+                        .bind(0, LAST_DESIGN_ID)
+                        .mapTo(String.class)
+                        .findFirst().orElse(null);
+                Long maxId = handle.createQuery(sqlStatements.selectMaxApiDesignId())
+                        .mapTo(Long.class)
+                        .findOnly();
+                return Math.max(lastId == null ? 0 : Long.parseLong(lastId), maxId == null ? 0 : maxId);
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error getting the highest unsharded API design id.", e);
+        }
+    }
+
+    /**
+     * Returns the name of the shard that owns the given API design, or null if the design is
+     * not in the design_shards directory.
+     * @param designId
+     * @throws StorageException
+     */
+    public String getDesignShard(long designId) throws StorageException {
+        try {
+            return withHandle( handle -> {
+                return handle.createQuery(sqlStatements.selectDesignShard())
+                        .bind(0, designId)
+                        .mapTo(String.class)
+                        .findFirst().orElse(null);
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error getting the shard of an API design.", e);
+        }
+    }
+
+    /**
+     * Records (in the design_shards directory) the shard that owns the given API design.
+     * @param designId
+     * @param shardName
+     * @throws StorageException
+     */
+    public void setDesignShard(long designId, String shardName) throws StorageException {
+        try {
+            withHandle( handle -> {
+                return handle.createUpdate(sqlStatements.insertDesignShard())
+                        .bind(0, designId)
+                        .bind(1, shardName)
+                        .execute();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error setting the shard of an API design.", e);
+        }
+    }
+
+    /**
+     * @return the name of the datasource of this storage
+     */
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#compressContent(long, int)
+     */
+    @Override
+    public ContentCompressionBatch compressContent(long afterVersion, int limit) throws StorageException {
+        logger.debug("Compressing up to {} documents after content version: {}", limit, afterVersion);
+        ContentCompressionBatch batch = new ContentCompressionBatch();
+        batch.setLastVersion(-1);
+        final ContentCodec codec = this.contentCodec;
+        if (codec == ContentCodec.NONE) {
+            return batch;
+        }
+        try {
+            return withHandle( handle -> {
+                List<String[]> rows = handle.createQuery(sqlStatements.selectUncompressedContent())
+                        .bind(0, afterVersion)
+                        .bind(1, limit)
+                        .map(new RowMapper<String[]>() {
+                            @Override
+                            public String[] map(ResultSet rs, StatementContext ctx) throws SQLException {
+                                try {
+                                    return new String[] {
+                                        rs.getString("design_id"),
+                                        rs.getString("version"),
+                                        IOUtils.toString(rs.getCharacterStream("data"))
+                                    };
+                                } catch (IOException e) {
+                                    throw new SQLException(e);
+                                }
+                            }
+                        }).list();
+                for (String[] row : rows) {
+                    String data = row[2];
+                    batch.setLastVersion(Long.parseLong(row[1]));
+                    batch.setRowsExamined(batch.getRowsExamined() + 1);
+
+                    long start = System.nanoTime();
+                    byte[] encoded = codec.encode(data);
+                    batch.setCompressNanos(batch.getCompressNanos() + System.nanoTime() - start);
+                    start = System.nanoTime();
+                    String decoded = codec.decode(encoded);
+                    batch.setDecompressNanos(batch.getDecompressNanos() + System.nanoTime() - start);
+
+                    int size = data.getBytes(StandardCharsets.UTF_8).length;
+                    if (!decoded.equals(data)) {
+                        logger.warn("Content version {} did not survive a compression round trip, leaving it uncompressed.", row[1]);
+                        continue;
+                    }
+                    if (encoded.length >= size) {
+                        continue;
+                    }
+                    int rowCount = handle.createUpdate(sqlStatements.compressContent())
+                          .bind(0, codec.getId())
+                          .bind(1, encoded)
+                          .bind(2, Long.parseLong(row[0]))
+                          .bind(3, Long.parseLong(row[1]))
+                          .execute();
+                    if (rowCount > 0) {
+                        batch.setRowsCompressed(batch.getRowsCompressed() + 1);
+                        batch.setBytesBefore(batch.getBytesBefore() + size);
+                        batch.setBytesAfter(batch.getBytesAfter() + encoded.length);
+                    }
+                }
+                return batch;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error compressing content.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getContentDeduplicationReport()
+     */
+    @Override
+    public ContentDeduplicationReport getContentDeduplicationReport() throws StorageException {
+        logger.debug("Reporting on the deduplication of content.");
+        try {
+            return withHandle( handle -> {
+                ContentDeduplicationReport report = new ContentDeduplicationReport();
+                handle.createQuery(sqlStatements.selectSharedContentStats())
+                      .map(new RowMapper<Void>() {
+                          @Override
+                          public Void map(ResultSet rs, StatementContext ctx) throws SQLException {
+                              report.setSharedDocuments(rs.getLong("num_rows"));
+                              report.setLogicalBytes(rs.getLong("total_size"));
+                              return null;
+                          }
+                      }).findFirst();
+                handle.createQuery(sqlStatements.selectContentBlobStats())
+                      .map(new RowMapper<Void>() {
+                          @Override
+                          public Void map(ResultSet rs, StatementContext ctx) throws SQLException {
+                              report.setBlobs(rs.getLong("num_rows"));
+                              report.setStoredBytes(rs.getLong("total_size"));
+                              return null;
+                          }
+                      }).findFirst();
+                report.setSavedBytes(Math.max(0, report.getLogicalBytes() - report.getStoredBytes()));
+                if (report.getLogicalBytes() > 0) {
+                    report.setSavingsPercent(100.0 * report.getSavedBytes() / report.getLogicalBytes());
+                }
+                return report;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error reporting on content deduplication.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteOrphanedContentBlobs()
+     */
+    @Override
+    public int deleteOrphanedContentBlobs() throws StorageException {
+        logger.debug("Deleting orphaned content blobs.");
+        try {
+            return withHandle( handle -> {
+                return handle.createUpdate(sqlStatements.deleteOrphanedContentBlobs())
+                      .bind(0, new Date(System.currentTimeMillis() - ORPHANED_BLOB_GRACE_PERIOD))
+                      .execute();
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error deleting orphaned content blobs.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#compactContent(java.lang.String, int, java.util.Date, boolean, int)
+     */
+    @Override
+    public int compactContent(String designId, int keepSnapshots, Date olderThan, boolean archive, int limit)
+            throws StorageException {
+        logger.debug("Compacting up to {} content rows of API Design: {}", limit, designId);
+        long did = Long.parseLong(designId);
+        // When compacting by snapshots only, no row is older than the epoch
+        Date cutoff = olderThan == null ? new Date(0) : olderThan;
+        try {
+            return inTransaction( handle -> {
+                List<Long> snapshots = handle.createQuery(sqlStatements.selectSnapshotVersions())
+                        .bind(0, did)
+                        .bind(1, Math.max(1, keepSnapshots))
+                        .mapTo(Long.class)
+                        .list();
+                if (snapshots.isEmpty()) {
+                    return 0;
+                }
+                long latestSnapshot = snapshots.get(0);
+                long oldestKeptSnapshot = 0;
+                if (snapshots.size() >= keepSnapshots) {
+                    oldestKeptSnapshot = snapshots.get(snapshots.size() - 1);
+                }
+                List<Long> versions = handle.createQuery(sqlStatements.selectCompactableContentVersions())
+                        .bind(0, did)
+                        .bind(1, latestSnapshot)
+                        .bind(2, oldestKeptSnapshot)
+                        .bind(3, cutoff)
+                        .bind(4, limit)
+                        .mapTo(Long.class)
+                        .list();
+                if (versions.isEmpty()) {
+                    return 0;
+                }
+                long lastVersion = versions.get(versions.size() - 1);
+                if (archive) {
+                    handle.createUpdate(sqlStatements.archiveContent())
+                          .bind(0, did)
+                          .bind(1, lastVersion)
+                          .bind(2, oldestKeptSnapshot)
+                          .bind(3, cutoff)
+                          .execute();
+                }
+                int rowCount = handle.createUpdate(sqlStatements.deleteCompactedContent())
+                      .bind(0, did)
+                      .bind(1, lastVersion)
+                      .bind(2, oldestKeptSnapshot)
+                      .bind(3, cutoff)
+                      .execute();
+                return rowCount;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error compacting content.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#reserveContentVersions(int)
+     */
+    @Override
+    public List<Long> reserveContentVersions(int count) throws StorageException {
+        if (!sqlStatements.supportsContentVersionReservation()) {
+            return null;
+        }
+        logger.debug("Reserving {} content versions.", count);
+        try {
+            return withHandle( handle -> {
+                if (this.contentVersionSequence == null) {
+                    this.contentVersionSequence = handle.createQuery(sqlStatements.selectContentVersionSequence())
+                            .mapTo(String.class)
+                            .findOnly();
+                }
+                List<Long> versions = new ArrayList<>(handle.createQuery(sqlStatements.reserveContentVersions(this.contentVersionSequence))
+                        .define(StatementTimer.STATEMENT_NAME, "reserveContentVersions")
+                        .bind(0, count)
+                        .mapTo(Long.class)
+                        .list());
+                Collections.sort(versions);
+                return versions;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error reserving content versions.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#addReservedContent(java.util.List)
+     */
+    @Override
+    public int addReservedContent(List<ApiContentEntry> entries) throws StorageException {
+        logger.debug("Inserting {} content rows with reserved versions.", entries.size());
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        try {
+            // Skip the entries that were already stored (e.g. when replaying entries after a crash)
+            List<ApiContentEntry> newEntries = withHandle( handle -> {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (ApiContentEntry entry : entries) {
+                    min = Math.min(min, entry.getContentVersion());
+                    max = Math.max(max, entry.getContentVersion());
+                }
+                Set<Long> existing = new HashSet<>(handle.createQuery(sqlStatements.selectContentVersionsBetween())
+                        .bind(0, min)
+                        .bind(1, max)
+                        .mapTo(Long.class)
+                        .list());
+                List<ApiContentEntry> rval = new ArrayList<>();
+                for (ApiContentEntry entry : entries) {
+                    if (!existing.contains(entry.getContentVersion())) {
+                        rval.add(entry);
+                    }
+                }
+                return rval;
+            });
+            
+            List<ApiContentEntry> added = new ArrayList<>(newEntries);
+            StorageException failure = null;
+            try {
+                inTransaction( handle -> {
+                    PreparedBatch batch = handle.prepareBatch(sqlStatements.insertContentWithVersion());
+                    Map<String, Integer> edits = new HashMap<>();
+                    for (ApiContentEntry entry : newEntries) {
+                        bindReservedContent(handle, batch, entry).add();
+                        edits.merge(entry.getDesignId() + "/" + entry.getCreatedBy(), 1, Integer::sum);
+                    }
+                    batch.execute();
+                    for (ApiContentEntry entry : newEntries) {
+                        Integer count = edits.remove(entry.getDesignId() + "/" + entry.getCreatedBy());
+                        if (count != null) {
+                            addContributorEdits(handle, Long.parseLong(entry.getDesignId()), entry.getCreatedBy(), count);
+                        }
+                    }
+                    for (ApiContentEntry entry : latestEntries(newEntries)) {
+                        updateReservedLastVersion(handle, entry);
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                // Possibly an API design was deleted in the meantime - store the entries one by one
+                logger.warn("Error inserting a batch of content rows, inserting them one at a time instead.", e);
+                added.clear();
+                for (ApiContentEntry entry : newEntries) {
+                    try {
+                        inTransaction( handle -> {
+                            bindReservedContent(handle, handle.createUpdate(sqlStatements.insertContentWithVersion()), entry).execute();
+                            addContributorEdits(handle, Long.parseLong(entry.getDesignId()), entry.getCreatedBy(), 1);
+                            updateReservedLastVersion(handle, entry);
+                            return null;
+                        });
+                        added.add(entry);
+                    } catch (Exception e1) {
+                        // Only entries of API designs that no longer exist are dropped - any other
+                        // failure (e.g. a lost connection) must leave the entries to be stored again
+                        if (isApiDesignGone(entry.getDesignId())) {
+                            logger.warn("Dropping content version {} of deleted API design {}.", entry.getContentVersion(),
+                                    entry.getDesignId());
+                        } else {
+                            failure = new StorageException("Error adding content entry with reserved version "
+                                    + entry.getContentVersion() + ".", e1);
+                            break;
+                        }
+                    }
+                }
+            }
+            
+            for (ApiContentEntry entry : latestEntries(added)) {
+                invalidateContentCache(entry.getDesignId());
+                this.watermarks.record(entry.getDesignId(), entry.getType(), entry.getContentVersion());
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return added.size();
+        } catch (StorageException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new StorageException("Error adding content entries with reserved versions.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#markContentPending(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void markContentPending(String designId, String journalId) throws StorageException {
+        logger.debug("Marking API design {} as having content pending in journal {}.", designId, journalId);
+        try {
+            // Replacing the mark (rather than checking for it) keeps the design marked at all times
+            inTransaction( handle -> {
+                handle.createUpdate(sqlStatements.deletePendingContent())
+                      .bind(0, Long.valueOf(designId))
+                      .bind(1, journalId)
+                      .execute();
+                handle.createUpdate(sqlStatements.insertPendingContent())
+                      .bind(0, Long.valueOf(designId))
+                      .bind(1, journalId)
+                      .bind(2, new Date())
+                      .execute();
+                return null;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error marking content as pending.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#clearContentPending(java.lang.String, java.util.Collection)
+     */
+    @Override
+    public void clearContentPending(String journalId, Collection<String> designIds) throws StorageException {
+        logger.debug("Clearing the pending content marks of journal {}.", journalId);
+        try {
+            withHandle( handle -> {
+                if (designIds == null) {
+                    handle.createUpdate(sqlStatements.deleteAllPendingContent())
+                          .bind(0, journalId)
+                          .execute();
+                } else if (!designIds.isEmpty()) {
+                    PreparedBatch batch = handle.prepareBatch(sqlStatements.deletePendingContent());
+                    for (String designId : designIds) {
+                        batch.bind(0, Long.valueOf(designId)).bind(1, journalId).add();
+                    }
+                    batch.execute();
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            throw new StorageException("Error clearing pending content marks.", e);
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#isContentPending(java.lang.String)
+     */
+    @Override
+    public boolean isContentPending(String designId) throws StorageException {
+        try {
+            return withHandle( handle -> handle.createQuery(sqlStatements.selectPendingContentCount())
+                    .bind(0, Long.valueOf(designId))
+                    .mapTo(Integer.class)
+                    .findOnly() > 0);
+        } catch (Exception e) {
+            throw new StorageException("Error checking for pending content.", e);
+        }
+    }
+
+    /**
+     * Returns the entry with the highest version for each of the API designs in the given entries.
+     * @param entries
+     */
+    private static Collection<ApiContentEntry> latestEntries(List<ApiContentEntry> entries) {
+        Map<String, ApiContentEntry> latest = new HashMap<>();
+        for (ApiContentEntry entry : entries) {
+            ApiContentEntry current = latest.get(entry.getDesignId());
+            if (current == null || current.getContentVersion() < entry.getContentVersion()) {
+                latest.put(entry.getDesignId(), entry);
+            }
+        }
+        return latest.values();
+    }
+
+    /**
+     * Records the version of content stored with a reserved version as the latest content version
+     * of its API design.  Since another writer may already have stored content with a higher
+     * version, the content revision is incremented as well, so that the content ETag changes.
+     * @param handle
+     * @param entry
+     */
+    private void updateReservedLastVersion(Handle handle, ApiContentEntry entry) {
+        long designId = Long.parseLong(entry.getDesignId());
+        updateLastVersion(handle, designId, entry.getContentVersion());
+        incrementContentRevision(handle, designId);
+    }
+
+    /**
+     * Returns true if the given API design no longer exists at all (i.e. it has been purged).
+     * Any error checking the design is propagated, so that content is never dropped because of
+     * e.g. a lost connection.
+     * @param designId
+     */
+    private boolean isApiDesignGone(String designId) {
+        return withHandle( handle -> handle.createQuery(sqlStatements.selectApiDesignExists())
+                .bind(0, Long.valueOf(designId))
+                .mapTo(Integer.class)
+                .findOnly() == 0);
+    }
+
+    /**
+     * Binds the parameters of the insertContentWithVersion statement.
+     * @param handle
+     * @param statement
+     * @param entry
+     * @throws IOException
+     */
+    private <T extends SqlStatement<T>> T bindReservedContent(Handle handle, T statement, ApiContentEntry entry)
+            throws IOException {
+        return bindContent(handle, statement, Long.parseLong(entry.getDesignId()), entry.getType(), entry.getData(),
+                entry.getCreatedBy(), entry.getCreatedOn())
+              .bind(8, entry.getContentVersion());
+    }
+
+    
+    /**
+     * The handles (opened on demand) shared by all storage calls a thread makes during a unit
+     * of work.
+     */
+    private static class UnitOfWork {
+        
+        private int depth;
+        private int transactionDepth;
+        private Handle handle;
+        private Handle readHandle;
+        
+        /**
+         * @return true if a transaction was started by this unit of work
+         */
+        public boolean isTransactional() {
+            return this.transactionDepth > 0;
+        }
+        
+        /**
+         * Closes the handles, rolling back any transaction that was left open.  New handles are
+         * opened if the unit of work is used again.
+         */
+        public void close() {
+            Handle handle = this.handle;
+            Handle readHandle = this.readHandle;
+            this.handle = null;
+            this.readHandle = null;
+            if (handle != null) {
+                try {
+                    if (handle.isInTransaction()) {
+                        logger.warn("Unit of work ended with an open transaction, rolling it back.");
+                        handle.rollback();
+                    }
+                } finally {
+                    handle.close();
+                }
+            }
+            if (readHandle != null) {
+                readHandle.close();
+            }
+        }
+    }
+
+    /**
+     * A row mapper to read an api design from the DB (as a single row in a SELECT)
+     * and return an ApiDesign instance.
+     * @author eric.wittmann@gmail.com
+     */
+    private static class ApiDesignRowMapper implements RowMapper<ApiDesign> {
+        
+        public static final ApiDesignRowMapper instance = new ApiDesignRowMapper();
 
         /**
          * @see org.jdbi.v3.core.mapper.RowMapper#map(java.sql.ResultSet, org.jdbi.v3.core.statement.StatementContext)
@@ -1295,7 +3261,7 @@ public class JdbcStorage implements IStorage {
          * Read CSV data and convert to a set of strings.
          * @param tags
          */
-        private Set<String> toSet(String tags) {
+        static Set<String> toSet(String tags) {
             Set<String> rval = new HashSet<String>();
             if (tags != null && tags.length() > 0) {
                 String[] split = tags.split(",");
@@ -1308,6 +3274,29 @@ public class JdbcStorage implements IStorage {
 
     }
 
+    /**
+     * A mapper to read an API design ID (stored as a number) from the 'id' column of a
+     * result set.
+     * @author eric.wittmann@gmail.com
+     */
+    private static class DesignIdMapper extends SingleColumnMapper<String> {
+        
+        public static final DesignIdMapper instance = new DesignIdMapper();
+        
+        /**
+         * Constructor.
+         */
+        private DesignIdMapper() {
+            super(new ColumnMapper<String>() {
+                @Override
+                public String map(ResultSet r, int columnNumber, StatementContext ctx) throws SQLException {
+                    return String.valueOf(r.getLong(columnNumber));
+                }
+            }, "id");
+        }
+        
+    }
+
     /**
      * A row mapper to read contributor information from a result set.  Each row in 
      * the result set must have a 'created_by' column and an 'edits' column.
@@ -1346,7 +3335,7 @@ public class JdbcStorage implements IStorage {
             try {
                 ApiDesignContent content = new ApiDesignContent();
                 content.setContentVersion(rs.getLong("version"));
-                content.setOaiDocument(IOUtils.toString(rs.getCharacterStream("data")));
+                content.setOaiDocument(readDocumentData(rs));
                 return content;
             } catch (IOException e) {
                 throw new SQLException(e);
@@ -1371,7 +3360,7 @@ public class JdbcStorage implements IStorage {
             try {
                 ApiDesignCommand cmd = new ApiDesignCommand();
                 cmd.setContentVersion(rs.getLong("version"));
-                cmd.setCommand(IOUtils.toString(rs.getCharacterStream("data")));
+                cmd.setCommand(readContentData(rs));
                 cmd.setAuthor(rs.getString("created_by"));
                 cmd.setReverted(rs.getInt("reverted") > 0);
                 return cmd;
@@ -1450,7 +3439,7 @@ public class JdbcStorage implements IStorage {
                 change.setApiId(rs.getString("design_id"));
                 change.setApiName(rs.getString("name"));
                 change.setBy(rs.getString("created_by"));
-                change.setData(IOUtils.toString(rs.getCharacterStream("data")));
+                change.setData(readContentData(rs));
                 change.setOn(rs.getDate("created_on"));
                 change.setType(ApiContentType.fromId(rs.getInt("type")));
                 change.setVersion(rs.getLong("version"));
@@ -1478,7 +3467,7 @@ public class JdbcStorage implements IStorage {
             try {
                 ApiPublication change = new ApiPublication();
                 change.setBy(rs.getString("created_by"));
-                change.setInfo(IOUtils.toString(rs.getCharacterStream("data")));
+                change.setInfo(readContentData(rs));
                 change.setOn(rs.getDate("created_on"));
                 return change;
             } catch (IOException e) {
@@ -16,6 +16,11 @@
 
 package io.apicurio.hub.core.storage.jdbc;
 
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import io.apicurio.hub.core.config.HubConfiguration;
 
 /**
@@ -25,6 +30,11 @@ import io.apicurio.hub.core.config.HubConfiguration;
  */
 public class MySQL5SqlStatements extends CommonSqlStatements {
     
+    // ER_TABLE_EXISTS_ERROR, ER_DUP_FIELDNAME, ER_DUP_KEYNAME, ER_MULTIPLE_PRI_KEY, ER_FK_DUP_NAME
+    private static final Set<Integer> ALREADY_EXISTS_ERRORS = new HashSet<>(Arrays.asList(1050, 1060, 1061, 1068, 1826));
+    // ER_BAD_TABLE_ERROR, ER_CANT_DROP_FIELD_OR_KEY
+    private static final Set<Integer> NOT_FOUND_ERRORS = new HashSet<>(Arrays.asList(1051, 1091));
+    
     /**
      * Constructor.
      * @param config
@@ -49,4 +59,14 @@ public class MySQL5SqlStatements extends CommonSqlStatements {
         return "SELECT count(*) AS count FROM information_schema.tables WHERE table_name = 'api_designs' LIMIT 1";
     }
 
+    /**
+     * DDL is not transactional in MySQL (it commits the current transaction).
+     * @see io.apicurio.hub.core.storage.jdbc.CommonSqlStatements#isUpgradeStatementApplied(java.lang.String, java.sql.SQLException)
+     */
+    @Override
+    public boolean isUpgradeStatementApplied(String statement, SQLException error) {
+        Set<Integer> errors = isDropStatement(statement) ? NOT_FOUND_ERRORS : ALREADY_EXISTS_ERRORS;
+        return errors.contains(error.getErrorCode());
+    }
+
 }
@@ -16,6 +16,9 @@
 
 package io.apicurio.hub.core.storage.jdbc;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import io.apicurio.hub.core.config.HubConfiguration;
 
 /**
@@ -25,6 +28,9 @@ import io.apicurio.hub.core.config.HubConfiguration;
  */
 public class PostgreSQL9SqlStatements extends CommonSqlStatements {
     
+    private static final Pattern CONCURRENT_INDEX = Pattern.compile(
+            "^CREATE\\s+(UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+(IF\\s+NOT\\s+EXISTS\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
     /**
      * Constructor.
      * @param config
@@ -49,4 +55,51 @@ public class PostgreSQL9SqlStatements extends CommonSqlStatements {
         return "SELECT count(*) AS count FROM information_schema.tables WHERE table_name = 'api_designs' LIMIT 1";
     }
     
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#supportsContentVersionReservation()
+     */
+    @Override
+    public boolean supportsContentVersionReservation() {
+        return true;
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#selectContentVersionSequence()
+     */
+    @Override
+    public String selectContentVersionSequence() {
+        return "SELECT pg_get_serial_sequence('api_content', 'version')";
+    }
+    
+    /**
+     * @see io.apicurio.hub.core.storage.jdbc.ISqlStatements#reserveContentVersions(java.lang.String)
+     */
+    @Override
+    public String reserveContentVersions(String sequenceName) {
+        return "SELECT nextval('" + sequenceName + "') FROM generate_series(1, ?)";
+    }
+
+    /**
+     * Indexes built concurrently do not block writes, but cannot be built in a transaction.
+     * @see io.apicurio.hub.core.storage.jdbc.CommonSqlStatements#isOnlineStatement(java.lang.String)
+     */
+    @Override
+    public boolean isOnlineStatement(String statement) {
+        return CONCURRENT_INDEX.matcher(statement.trim()).find();
+    }
+
+    /**
+     * An interrupted concurrent index build leaves an invalid index behind, which must be
+     * dropped before the index can be built again.
+     * @see io.apicurio.hub.core.storage.jdbc.CommonSqlStatements#cleanupOnlineStatement(java.lang.String)
+     */
+    @Override
+    public String cleanupOnlineStatement(String statement) {
+        Matcher matcher = CONCURRENT_INDEX.matcher(statement.trim());
+        if (!matcher.find()) {
+            return null;
+        }
+        return "DROP INDEX CONCURRENTLY IF EXISTS " + matcher.group(3);
+    }
+    
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the DB upgrade scripts one statement ("step") at a time, recording every applied step
+ * in the db_upgrade_steps table.  An upgrade that is interrupted (e.g. by a crash) therefore
+ * resumes with the first step that was not applied.  The statement that bumps the DB version
+ * is always applied last, so that a partially upgraded database is never mistaken for an
+ * up-to-date one.
+ * 
+ * Regular steps are applied in a transaction together with their record (which makes them
+ * atomic on databases with transactional DDL).  Where DDL is not transactional (e.g. MySQL), a
+ * step may have been applied without being recorded - when re-running such a step fails because
+ * its change is already in place, the step is simply recorded.  Online steps (e.g. concurrent
+ * index builds on PostgreSQL) cannot run in a transaction - they are cleaned up and re-run when
+ * interrupted.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class SchemaMigrator {
+
+    private static Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final Pattern VERSION_STATEMENT = Pattern.compile(
+            "^UPDATE\\s+apicurio\\s+SET\\s+prop_value\\s*=\\s*\\d+\\s+WHERE\\s+prop_name\\s*=\\s*'db_version'$", Pattern.CASE_INSENSITIVE);
+
+    private final Jdbi jdbi;
+    private final ISqlStatements sqlStatements;
+
+    /**
+     * Constructor.
+     * @param jdbi
+     * @param sqlStatements
+     */
+    public SchemaMigrator(Jdbi jdbi, ISqlStatements sqlStatements) {
+        this.jdbi = jdbi;
+        this.sqlStatements = sqlStatements;
+    }
+
+    /**
+     * Upgrades the database from one version to another.  Returns the number of steps applied
+     * (steps applied by an earlier, interrupted, upgrade are skipped).
+     * @param fromVersion
+     * @param toVersion
+     */
+    public int migrate(int fromVersion, int toVersion) {
+        this.jdbi.useHandle(handle -> handle.createUpdate(sqlStatements.createUpgradeStepsTable()).execute());
+        int applied = 0;
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            applied += migrateVersion(version);
+        }
+        return applied;
+    }
+
+    /**
+     * Applies the (remaining) steps of the upgrade to the given version.
+     * @param version
+     */
+    private int migrateVersion(int version) {
+        List<String> statements = this.sqlStatements.databaseUpgrade(version - 1, version);
+        Set<Integer> done = new HashSet<>(this.jdbi.withHandle(handle -> handle.createQuery(sqlStatements.selectUpgradeSteps())
+                .bind(0, version)
+                .mapTo(Integer.class)
+                .list()));
+        if (!done.isEmpty()) {
+            logger.info("Resuming the upgrade to DB version {} ({} of {} steps already applied).", version,
+                    done.size(), statements.size());
+        }
+        int applied = 0;
+        int versionStep = -1;
+        for (int step = 0; step < statements.size(); step++) {
+            String statement = statements.get(step);
+            if (done.contains(step)) {
+                continue;
+            }
+            if (VERSION_STATEMENT.matcher(statement.trim()).matches()) {
+                versionStep = step;
+                continue;
+            }
+            applyStep(version, step, statement);
+            applied++;
+        }
+        if (versionStep != -1) {
+            applyStep(version, versionStep, statements.get(versionStep));
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Applies a single step of an upgrade, and records it.
+     * @param version
+     * @param step
+     * @param statement
+     */
+    private void applyStep(int version, int step, String statement) {
+        logger.debug(statement);
+        long start = System.nanoTime();
+        if (this.sqlStatements.isOnlineStatement(statement)) {
+            this.jdbi.useHandle(handle -> {
+                String cleanup = this.sqlStatements.cleanupOnlineStatement(statement);
+                if (cleanup != null) {
+                    execute(handle, cleanup);
+                }
+                execute(handle, statement);
+                recordStep(handle, version, step, statement);
+            });
+        } else {
+            try {
+                this.jdbi.useTransaction(handle -> {
+                    execute(handle, statement);
+                    recordStep(handle, version, step, statement);
+                });
+            } catch (RuntimeException e) {
+                SQLException error = findSqlException(e);
+                if (error == null || !this.sqlStatements.isUpgradeStatementApplied(statement, error)) {
+                    throw e;
+                }
+                logger.warn("Step {} of the upgrade to DB version {} was already applied (by an interrupted upgrade): {}",
+                        step + 1, version, error.getMessage());
+                this.jdbi.useHandle(handle -> recordStep(handle, version, step, statement));
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("\tApplied step {} of the upgrade to DB version {} in {}ms.", step + 1, version, millis);
+    }
+
+    /**
+     * Returns the SQL error that caused the given exception (if any).
+     * @param e
+     */
+    private static SQLException findSqlException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return (SQLException) cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Executes an upgrade statement.
+     * @param handle
+     * @param statement
+     */
+    private static void execute(Handle handle, String statement) {
+        handle.createUpdate(statement).define(StatementTimer.STATEMENT_NAME, "databaseUpgrade").execute();
+    }
+
+    /**
+     * Records that a step of an upgrade was applied.
+     * @param handle
+     * @param version
+     * @param step
+     * @param statement
+     */
+    private void recordStep(Handle handle, int version, int step, String statement) {
+        handle.createUpdate(this.sqlStatements.insertUpgradeStep())
+              .bind(0, version)
+              .bind(1, step)
+              .bind(2, statement.length() > 255 ? statement.substring(0, 255) : statement)
+              .bind(3, new Date())
+              .execute();
+    }
+
+}
@@ -0,0 +1,1064 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ApiContentEntry;
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignChange;
+import io.apicurio.hub.core.beans.ApiDesignCollaborator;
+import io.apicurio.hub.core.beans.ApiDesignCommand;
+import io.apicurio.hub.core.beans.ApiDesignContent;
+import io.apicurio.hub.core.beans.ApiPublication;
+import io.apicurio.hub.core.beans.CodegenProject;
+import io.apicurio.hub.core.beans.ContentCompressionBatch;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
+import io.apicurio.hub.core.beans.Contributor;
+import io.apicurio.hub.core.beans.Invitation;
+import io.apicurio.hub.core.beans.LinkedAccount;
+import io.apicurio.hub.core.beans.LinkedAccountType;
+import io.apicurio.hub.core.exceptions.AlreadyExistsException;
+import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.CursorPage;
+import io.apicurio.hub.core.storage.IContentCommandConsumer;
+import io.apicurio.hub.core.storage.IContentDocumentReader;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.PageCursor;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * A storage implementation that spreads API designs across multiple datasources (shards), each
+ * of which holds a complete Apicurio schema managed by its own {@link JdbcStorage}.  A design
+ * (along with its content, ACL, invites, codegen projects, etc) always lives entirely on one
+ * shard, recorded in the design_shards directory table of the primary datasource.  Designs that
+ * are not in the directory were created before sharding was enabled and live on the primary.
+ * <br/>
+ * Operations on a single design are routed to the shard that owns it.  Listings that span all
+ * designs are sent to every shard in parallel and the results are merged.  Linked accounts and
+ * checkpoints are always stored on the primary.  New design ids are allocated by the primary
+ * and new designs are spread (by id) across the shards configured to accept new designs, so a
+ * shard can be added by first configuring it on every node and only then allowing new designs
+ * to be placed on it.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+public class ShardedStorage implements IStorage {
+
+    private static Logger logger = LoggerFactory.getLogger(ShardedStorage.class);
+
+    public static final String PRIMARY_SHARD = "primary";
+
+    private static final String CURSOR_NOT_STARTED = "";
+    private static final String CURSOR_EXHAUSTED = "*";
+    private static final int SHARD_VERSION_BITS = 48;
+    private static final long SHARD_VERSION_MASK = (1L << SHARD_VERSION_BITS) - 1;
+    private static final int RECENT_DESIGNS = 5;
+    private static final Comparator<ApiDesignChange> ACTIVITY_ORDER = Comparator
+            .comparing(ApiDesignChange::getOn, Comparator.reverseOrder())
+            .thenComparing(ApiDesignChange::getVersion, Comparator.reverseOrder());
+
+    private final JdbcStorage primary;
+    private final List<JdbcStorage> shards = new ArrayList<>();
+    private final Map<String, JdbcStorage> shardsByName = new HashMap<>();
+    private final List<JdbcStorage> newDesignShards = new ArrayList<>();
+    private final Map<Long, JdbcStorage> designShards = new ConcurrentHashMap<>();
+    private final long unshardedDesignIdLimit;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param primary
+     * @param additionalShards
+     * @param newDesignShardNames the shards that new API designs are placed on (all if empty)
+     * @throws StorageException
+     */
+    ShardedStorage(JdbcStorage primary, List<JdbcStorage> additionalShards, Collection<String> newDesignShardNames)
+            throws StorageException {
+        this.primary = primary;
+        this.shards.add(primary);
+        this.shards.addAll(additionalShards);
+        for (JdbcStorage shard : this.shards) {
+            this.shardsByName.put(shard.getName(), shard);
+        }
+        for (String name : newDesignShardNames) {
+            JdbcStorage shard = this.shardsByName.get(name);
+            if (shard == null) {
+                logger.warn("Unknown storage shard '{}' configured for new API designs, ignoring it.", name);
+            } else if (!this.newDesignShards.contains(shard)) {
+                this.newDesignShards.add(shard);
+            }
+        }
+        if (this.newDesignShards.isEmpty()) {
+            this.newDesignShards.addAll(this.shards);
+        }
+        this.unshardedDesignIdLimit = primary.getUnshardedDesignIdLimit();
+        this.executor = Executors.newFixedThreadPool(this.shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "apicurio-storage-shards");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Spreading API designs across {} storage shards (new designs go to: {}).", this.shards.size(),
+                this.newDesignShards.stream().map(JdbcStorage::getName).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Stops the threads used to query the shards in parallel.
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Returns the shard that owns the given API design.  Designs that are not in the directory
+     * live on the primary.  Lookups are cached, except for (unknown) ids that might still be
+     * allocated to a design on another shard.
+     * @param designId
+     * @throws StorageException
+     */
+    private JdbcStorage shardOf(String designId) throws StorageException {
+        long id;
+        try {
+            id = Long.parseLong(designId);
+        } catch (NumberFormatException | NullPointerException e) {
+            // Let the primary report the (invalid) design as not found
+            return this.primary;
+        }
+        JdbcStorage shard = this.designShards.get(id);
+        if (shard != null) {
+            return shard;
+        }
+        String name = this.primary.getDesignShard(id);
+        if (name == null) {
+            if (id <= this.unshardedDesignIdLimit) {
+                this.designShards.put(id, this.primary);
+            }
+            return this.primary;
+        }
+        shard = this.shardsByName.get(name);
+        if (shard == null) {
+            throw new StorageException("API design " + designId + " is stored on unknown shard: " + name);
+        }
+        this.designShards.put(id, shard);
+        return shard;
+    }
+
+    /**
+     * Calls every shard in parallel and returns the results (in shard order).  Note that the
+     * calls are made from other threads, so they do not take part in the unit of work of the
+     * calling thread.
+     * @param call
+     * @throws StorageException
+     */
+    private <T> List<T> fanOut(ShardCall<T> call) throws StorageException {
+        List<Future<T>> futures = new ArrayList<>(this.shards.size());
+        for (int idx = 0; idx < this.shards.size(); idx++) {
+            final int shardIdx = idx;
+            futures.add(this.executor.submit(() -> call.call(this.shards.get(shardIdx), shardIdx)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while querying the storage shards.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StorageException) {
+                throw (StorageException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new StorageException("Error querying the storage shards.", cause);
+        }
+        return results;
+    }
+
+    /**
+     * A call made to a single shard.
+     */
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T call(JdbcStorage shard, int shardIdx) throws Exception;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#hasOwnerPermission(java.lang.String, java.lang.String)
+     */
+    @Override
+    public boolean hasOwnerPermission(String userId, String designId) throws StorageException {
+        return shardOf(designId).hasOwnerPermission(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#hasWritePermission(java.lang.String, java.lang.String)
+     */
+    @Override
+    public boolean hasWritePermission(String userId, String designId) throws StorageException {
+        return shardOf(designId).hasWritePermission(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listPermissions(java.lang.String)
+     */
+    @Override
+    public Collection<ApiDesignCollaborator> listPermissions(String designId) throws StorageException {
+        return shardOf(designId).listPermissions(designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createPermission(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void createPermission(String designId, String userId, String permission) throws StorageException {
+        shardOf(designId).createPermission(designId, userId, permission);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#updatePermission(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void updatePermission(String designId, String userId, String permission) throws StorageException {
+        shardOf(designId).updatePermission(designId, userId, permission);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deletePermission(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void deletePermission(String designId, String userId) throws StorageException {
+        shardOf(designId).deletePermission(designId, userId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createLinkedAccount(java.lang.String, io.apicurio.hub.core.beans.LinkedAccount)
+     */
+    @Override
+    public void createLinkedAccount(String userId, LinkedAccount account) throws AlreadyExistsException, StorageException {
+        this.primary.createLinkedAccount(userId, account);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listLinkedAccounts(java.lang.String)
+     */
+    @Override
+    public Collection<LinkedAccount> listLinkedAccounts(String userId) throws StorageException {
+        return this.primary.listLinkedAccounts(userId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteLinkedAccount(java.lang.String, io.apicurio.hub.core.beans.LinkedAccountType)
+     */
+    @Override
+    public void deleteLinkedAccount(String userId, LinkedAccountType type) throws StorageException, NotFoundException {
+        this.primary.deleteLinkedAccount(userId, type);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteLinkedAccounts(java.lang.String)
+     */
+    @Override
+    public void deleteLinkedAccounts(String userId) throws StorageException {
+        this.primary.deleteLinkedAccounts(userId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getLinkedAccount(java.lang.String, io.apicurio.hub.core.beans.LinkedAccountType)
+     */
+    @Override
+    public LinkedAccount getLinkedAccount(String userId, LinkedAccountType type) throws StorageException, NotFoundException {
+        return this.primary.getLinkedAccount(userId, type);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#updateLinkedAccount(java.lang.String, io.apicurio.hub.core.beans.LinkedAccount)
+     */
+    @Override
+    public void updateLinkedAccount(String userId, LinkedAccount account) throws NotFoundException, StorageException {
+        this.primary.updateLinkedAccount(userId, account);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getApiDesign(java.lang.String, java.lang.String)
+     */
+    @Override
+    public ApiDesign getApiDesign(String userId, String designId) throws NotFoundException, StorageException {
+        return shardOf(designId).getApiDesign(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listContributors(java.lang.String, java.lang.String)
+     */
+    @Override
+    public Collection<Contributor> listContributors(String userId, String designId) throws NotFoundException, StorageException {
+        return shardOf(designId).listContributors(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createApiDesign(java.lang.String, io.apicurio.hub.core.beans.ApiDesign, java.lang.String)
+     */
+    @Override
+    public String createApiDesign(String userId, ApiDesign design, String initialApiDocument) throws StorageException {
+        long designId = this.primary.allocateDesignId();
+        JdbcStorage shard = this.newDesignShards.get((int) (designId % this.newDesignShards.size()));
+        // Record the owner first, a directory row without a design is harmless
+        this.primary.setDesignShard(designId, shard.getName());
+        String id = shard.createApiDesign(userId, design, initialApiDocument, designId);
+        this.designShards.put(designId, shard);
+        return id;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteApiDesign(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void deleteApiDesign(String userId, String designId) throws NotFoundException, StorageException {
+        shardOf(designId).deleteApiDesign(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#restoreApiDesign(java.lang.String, java.lang.String, java.util.Date)
+     */
+    @Override
+    public void restoreApiDesign(String userId, String designId, Date deletedAfter) throws NotFoundException, StorageException {
+        shardOf(designId).restoreApiDesign(userId, designId, deletedAfter);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listDeletedApiDesignIds(java.util.Date, int)
+     */
+    @Override
+    public List<String> listDeletedApiDesignIds(Date deletedBefore, int limit) throws StorageException {
+        List<String> rval = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listDeletedApiDesignIds(deletedBefore, limit)).forEach(rval::addAll);
+        return sortIds(rval, limit);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#purgeApiDesign(java.lang.String, int)
+     */
+    @Override
+    public int purgeApiDesign(String designId, int limit) throws StorageException {
+        return shardOf(designId).purgeApiDesign(designId, limit);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#updateApiDesign(java.lang.String, io.apicurio.hub.core.beans.ApiDesign)
+     */
+    @Override
+    public void updateApiDesign(String userId, ApiDesign design) throws NotFoundException, StorageException {
+        shardOf(design.getId()).updateApiDesign(userId, design);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesigns(java.lang.String)
+     */
+    @Override
+    public Collection<ApiDesign> listApiDesigns(String userId) throws StorageException {
+        List<ApiDesign> rval = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listApiDesigns(userId)).forEach(rval::addAll);
+        return rval;
+    }
+
+    /**
+     * Every shard is asked for a page of designs (each continuing from its own position, which
+     * the cursor keeps track of) and the pages are merged on the sort key.  Note that sorting
+     * by modification is only approximate across shards, as every shard has its own sequence
+     * of content versions.
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesigns(java.lang.String, io.apicurio.hub.core.storage.ApiDesignQuery)
+     */
+    @Override
+    public ApiDesignPage listApiDesigns(String userId, ApiDesignQuery query) throws StorageException, IllegalArgumentException {
+        String[] shardCursors = parseShardCursors(query.getAfter());
+        List<ShardedDesign> designs = new ArrayList<>();
+        List<ApiDesignPage> pages = fanOut((shard, shardIdx) -> {
+            if (CURSOR_EXHAUSTED.equals(shardCursors[shardIdx])) {
+                return null;
+            }
+            ApiDesignQuery shardQuery = copyQuery(query);
+            shardQuery.setAfter(CURSOR_NOT_STARTED.equals(shardCursors[shardIdx]) ? null : shardCursors[shardIdx]);
+            List<String> itemCursors = new ArrayList<>();
+            ApiDesignPage page = shard.listApiDesigns(userId, shardQuery, itemCursors);
+            synchronized (designs) {
+                for (int idx = 0; idx < page.getItems().size(); idx++) {
+                    designs.add(new ShardedDesign(shardIdx, page.getItems().get(idx), itemCursors.get(idx), query.getSort()));
+                }
+            }
+            return page;
+        });
+
+        Comparator<ShardedDesign> comparator = query.getSort() == ApiDesignSort.NAME
+                ? Comparator.comparing(design -> design.key)
+                : Comparator.comparingLong(design -> Long.parseLong(design.key));
+        comparator = comparator.thenComparingLong(design -> design.id);
+        designs.sort(query.isAscending() ? comparator : comparator.reversed());
+
+        if (query.getLimit() <= 0) {
+            return new ApiDesignPage(designs.stream().map(design -> design.design).collect(Collectors.toList()), null);
+        }
+
+        List<ApiDesign> items = new ArrayList<>();
+        int[] consumed = new int[this.shards.size()];
+        for (ShardedDesign design : designs.subList(0, Math.min(designs.size(), query.getLimit()))) {
+            items.add(design.design);
+            consumed[design.shardIdx]++;
+            shardCursors[design.shardIdx] = design.cursor;
+        }
+        boolean exhausted = true;
+        for (int idx = 0; idx < this.shards.size(); idx++) {
+            ApiDesignPage page = pages.get(idx);
+            if (page != null && page.getNextCursor() == null && consumed[idx] == page.getItems().size()) {
+                shardCursors[idx] = CURSOR_EXHAUSTED;
+            }
+            exhausted &= CURSOR_EXHAUSTED.equals(shardCursors[idx]);
+        }
+        String nextCursor = exhausted ? null
+                : Base64.encodeBase64URLSafeString(String.join(",", shardCursors).getBytes(StandardCharsets.UTF_8));
+        return new ApiDesignPage(items, nextCursor);
+    }
+
+    /**
+     * Parses a design list cursor into the cursor of every shard.
+     * @param cursor
+     * @throws IllegalArgumentException
+     */
+    private String[] parseShardCursors(String cursor) throws IllegalArgumentException {
+        String[] shardCursors = new String[this.shards.size()];
+        if (cursor == null) {
+            Arrays.fill(shardCursors, CURSOR_NOT_STARTED);
+            return shardCursors;
+        }
+        if (!Base64.isBase64(cursor)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String[] parts = new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8).split(",", -1);
+        if (parts.length != shardCursors.length) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return parts;
+    }
+
+    /**
+     * Creates a copy of the given design query.
+     * @param query
+     */
+    private static ApiDesignQuery copyQuery(ApiDesignQuery query) {
+        ApiDesignQuery copy = new ApiDesignQuery();
+        copy.setNamePrefix(query.getNamePrefix());
+        copy.setTag(query.getTag());
+        copy.setCreatedBy(query.getCreatedBy());
+        copy.setSort(query.getSort());
+        copy.setAscending(query.isAscending());
+        copy.setAfter(query.getAfter());
+        copy.setLimit(query.getLimit());
+        return copy;
+    }
+
+    /**
+     * An API design returned by one of the shards, along with its cursor and sort key.
+     */
+    private static class ShardedDesign {
+
+        final int shardIdx;
+        final ApiDesign design;
+        final String cursor;
+        final long id;
+        final String key;
+
+        ShardedDesign(int shardIdx, ApiDesign design, String cursor, ApiDesignSort sort) {
+            this.shardIdx = shardIdx;
+            this.design = design;
+            this.cursor = cursor;
+            String[] parts = JdbcStorage.parseDesignCursor(cursor, sort);
+            this.id = Long.parseLong(parts[0]);
+            this.key = parts[1];
+        }
+
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#countApiDesignTags(java.lang.String)
+     */
+    @Override
+    public Map<String, Integer> countApiDesignTags(String userId) throws StorageException {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map<String, Integer> shardCounts : fanOut((shard, shardIdx) -> shard.countApiDesignTags(userId))) {
+            shardCounts.forEach((tag, count) -> counts.merge(tag, count, Integer::sum));
+        }
+        Map<String, Integer> rval = new LinkedHashMap<>();
+        counts.entrySet().stream()
+            .sorted(Comparator.comparing((Entry<String, Integer> entry) -> entry.getValue()).reversed()
+                    .thenComparing(Entry::getKey))
+            .forEach(entry -> rval.put(entry.getKey(), entry.getValue()));
+        return rval;
+    }
+
+    /**
+     * The most recent designs of every shard are interleaved, as the content versions used to
+     * order them are not comparable across shards.
+     * @see io.apicurio.hub.core.storage.IStorage#getRecentApiDesigns(java.lang.String)
+     */
+    @Override
+    public Collection<ApiDesign> getRecentApiDesigns(String userId) throws StorageException {
+        List<List<ApiDesign>> recent = new ArrayList<>();
+        for (Collection<ApiDesign> designs : fanOut((shard, shardIdx) -> shard.getRecentApiDesigns(userId))) {
+            recent.add(new ArrayList<>(designs));
+        }
+        List<ApiDesign> rval = new ArrayList<>();
+        for (int idx = 0; rval.size() < RECENT_DESIGNS; idx++) {
+            boolean found = false;
+            for (List<ApiDesign> designs : recent) {
+                if (idx < designs.size() && rval.size() < RECENT_DESIGNS) {
+                    rval.add(designs.get(idx));
+                    found = true;
+                }
+            }
+            if (!found) {
+                break;
+            }
+        }
+        return rval;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getLatestContentDocument(java.lang.String, java.lang.String)
+     */
+    @Override
+    public ApiDesignContent getLatestContentDocument(String userId, String designId) throws NotFoundException, StorageException {
+        return shardOf(designId).getLatestContentDocument(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#readLatestContentDocument(java.lang.String, java.lang.String, io.apicurio.hub.core.storage.IContentDocumentReader)
+     */
+    @Override
+    public <T> T readLatestContentDocument(String userId, String designId, IContentDocumentReader<T> reader)
+            throws NotFoundException, StorageException {
+        return shardOf(designId).readLatestContentDocument(userId, designId, reader);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getContentETag(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getContentETag(String userId, String designId) throws NotFoundException, StorageException {
+        return shardOf(designId).getContentETag(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listContentCommands(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public List<ApiDesignCommand> listContentCommands(String userId, String designId, long sinceVersion) throws StorageException {
+        return shardOf(designId).listContentCommands(userId, designId, sinceVersion);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listAllContentCommands(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public List<ApiDesignCommand> listAllContentCommands(String userId, String designId, long sinceVersion) throws StorageException {
+        return shardOf(designId).listAllContentCommands(userId, designId, sinceVersion);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#streamAllContentCommands(java.lang.String, java.lang.String, long, io.apicurio.hub.core.storage.IContentCommandConsumer)
+     */
+    @Override
+    public void streamAllContentCommands(String userId, String designId, long sinceVersion, IContentCommandConsumer consumer)
+            throws StorageException {
+        shardOf(designId).streamAllContentCommands(userId, designId, sinceVersion, consumer);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#addContent(java.lang.String, java.lang.String, io.apicurio.hub.core.beans.ApiContentType, java.lang.String)
+     */
+    @Override
+    public long addContent(String userId, String designId, ApiContentType type, String data) throws StorageException {
+        return shardOf(designId).addContent(userId, designId, type, data);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#undoContent(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public boolean undoContent(String user, String designId, long contentVersion) throws StorageException {
+        return shardOf(designId).undoContent(user, designId, contentVersion);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#redoContent(java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public boolean redoContent(String user, String designId, long contentVersion) throws StorageException {
+        return shardOf(designId).redoContent(user, designId, contentVersion);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createEditingSessionUuid(java.lang.String, java.lang.String, java.lang.String, java.lang.String, long, long)
+     */
+    @Override
+    public void createEditingSessionUuid(String uuid, String designId, String userId, String hash, long contentVersion,
+            long expiresOn) throws StorageException {
+        shardOf(designId).createEditingSessionUuid(uuid, designId, userId, hash, contentVersion, expiresOn);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#lookupEditingSessionUuid(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public long lookupEditingSessionUuid(String uuid, String designId, String userId, String hash) throws StorageException {
+        return shardOf(designId).lookupEditingSessionUuid(uuid, designId, userId, hash);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#consumeEditingSessionUuid(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public boolean consumeEditingSessionUuid(String uuid, String designId, String userId, String hash) throws StorageException {
+        return shardOf(designId).consumeEditingSessionUuid(uuid, designId, userId, hash);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createCollaborationInvite(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void createCollaborationInvite(String inviteId, String designId, String userId, String username, String role,
+            String subject) throws StorageException {
+        shardOf(designId).createCollaborationInvite(inviteId, designId, userId, username, role, subject);
+    }
+
+    /**
+     * The invite is not identified by its API design, so the shards are tried one at a time.
+     * @see io.apicurio.hub.core.storage.IStorage#updateCollaborationInviteStatus(java.lang.String, java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public boolean updateCollaborationInviteStatus(String inviteId, String fromStatus, String toStatus, String userId)
+            throws StorageException {
+        for (JdbcStorage shard : this.shards) {
+            if (shard.updateCollaborationInviteStatus(inviteId, fromStatus, toStatus, userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listCollaborationInvites(java.lang.String, java.lang.String)
+     */
+    @Override
+    public List<Invitation> listCollaborationInvites(String designId, String userId) throws StorageException {
+        return shardOf(designId).listCollaborationInvites(designId, userId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getCollaborationInvite(java.lang.String, java.lang.String)
+     */
+    @Override
+    public Invitation getCollaborationInvite(String designId, String inviteId) throws StorageException, NotFoundException {
+        return shardOf(designId).getCollaborationInvite(designId, inviteId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignActivity(java.lang.String, int, int)
+     */
+    @Override
+    public Collection<ApiDesignChange> listApiDesignActivity(String designId, int from, int to) throws StorageException {
+        return shardOf(designId).listApiDesignActivity(designId, from, to);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listUserActivity(java.lang.String, int, int)
+     */
+    @Override
+    public Collection<ApiDesignChange> listUserActivity(String user, int from, int to) throws StorageException {
+        List<ApiDesignChange> changes = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listUserActivity(user, 0, to)).forEach(changes::addAll);
+        changes.sort(ACTIVITY_ORDER);
+        return new ArrayList<>(changes.subList(Math.min(from, changes.size()), Math.min(to, changes.size())));
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignPublications(java.lang.String, int, int)
+     */
+    @Override
+    public Collection<ApiPublication> listApiDesignPublications(String designId, int from, int to) throws StorageException {
+        return shardOf(designId).listApiDesignPublications(designId, from, to);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listApiDesignActivity(String designId, PageCursor after, int limit) throws StorageException {
+        return shardOf(designId).listApiDesignActivity(designId, after, limit);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listUserActivity(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiDesignChange> listUserActivity(String user, PageCursor after, int limit) throws StorageException {
+        List<ApiDesignChange> changes = new ArrayList<>();
+        boolean more = false;
+        for (CursorPage<ApiDesignChange> page : fanOut((shard, shardIdx) -> shard.listUserActivity(user, after, limit))) {
+            changes.addAll(page.getItems());
+            more |= page.getNextCursor() != null;
+        }
+        changes.sort(ACTIVITY_ORDER);
+        if (changes.size() <= limit && !more) {
+            return new CursorPage<>(changes, null);
+        }
+        List<ApiDesignChange> items = new ArrayList<>(changes.subList(0, Math.min(limit, changes.size())));
+        ApiDesignChange last = items.get(items.size() - 1);
+        return new CursorPage<>(items, new PageCursor(last.getOn(), last.getVersion()));
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignPublications(java.lang.String, io.apicurio.hub.core.storage.PageCursor, int)
+     */
+    @Override
+    public CursorPage<ApiPublication> listApiDesignPublications(String designId, PageCursor after, int limit) throws StorageException {
+        return shardOf(designId).listApiDesignPublications(designId, after, limit);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listCodegenProjects(java.lang.String, java.lang.String)
+     */
+    @Override
+    public Collection<CodegenProject> listCodegenProjects(String userId, String designId) throws StorageException {
+        return shardOf(designId).listCodegenProjects(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getCodegenProject(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public CodegenProject getCodegenProject(String userId, String designId, String projectId) throws StorageException, NotFoundException {
+        return shardOf(designId).getCodegenProject(userId, designId, projectId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#createCodegenProject(java.lang.String, io.apicurio.hub.core.beans.CodegenProject)
+     */
+    @Override
+    public String createCodegenProject(String userId, CodegenProject project) throws StorageException {
+        return shardOf(project.getDesignId()).createCodegenProject(userId, project);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#updateCodegenProject(java.lang.String, io.apicurio.hub.core.beans.CodegenProject)
+     */
+    @Override
+    public void updateCodegenProject(String userId, CodegenProject project) throws StorageException, NotFoundException {
+        shardOf(project.getDesignId()).updateCodegenProject(userId, project);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteCodegenProject(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void deleteCodegenProject(String userId, String designId, String projectId) throws NotFoundException, StorageException {
+        shardOf(designId).deleteCodegenProject(userId, designId, projectId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteCodegenProjects(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void deleteCodegenProjects(String userId, String designId) throws NotFoundException, StorageException {
+        shardOf(designId).deleteCodegenProjects(userId, designId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIds(java.lang.String, int)
+     */
+    @Override
+    public List<String> listApiDesignIds(String afterId, int limit) throws StorageException {
+        List<String> rval = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listApiDesignIds(afterId, limit)).forEach(rval::addAll);
+        return sortIds(rval, limit);
+    }
+
+    /**
+     * Sorts a list of API design ids (numerically) and returns (at most) the first "limit" ones.
+     * @param designIds
+     * @param limit
+     */
+    private static List<String> sortIds(List<String> designIds, int limit) {
+        designIds.sort(Comparator.comparingLong(Long::parseLong));
+        return designIds.size() <= limit ? designIds : new ArrayList<>(designIds.subList(0, limit));
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#listAccessibleApiDesignIds(java.lang.String)
+     */
+    @Override
+    public Collection<String> listAccessibleApiDesignIds(String userId) throws StorageException {
+        List<String> rval = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listAccessibleApiDesignIds(userId)).forEach(rval::addAll);
+        return rval;
+    }
+
+    /**
+     * The change cursor is made up of the change cursors of all shards.
+     * @see io.apicurio.hub.core.storage.IStorage#listApiDesignIdsChangedSince(java.lang.String)
+     */
+    @Override
+    public List<String> listApiDesignIdsChangedSince(String changeCursor) throws StorageException {
+        String[] shardCursors = changeCursor == null ? new String[this.shards.size()] : changeCursor.split(",", -1);
+        if (shardCursors.length != this.shards.size()) {
+            throw new StorageException("Invalid change cursor: " + changeCursor);
+        }
+        List<String> rval = new ArrayList<>();
+        fanOut((shard, shardIdx) -> shard.listApiDesignIdsChangedSince(shardCursors[shardIdx])).forEach(rval::addAll);
+        return rval;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getChangeCursor()
+     */
+    @Override
+    public String getChangeCursor() throws StorageException {
+        return String.join(",", fanOut((shard, shardIdx) -> shard.getChangeCursor()));
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#getCheckpoint(java.lang.String)
+     */
+    @Override
+    public String getCheckpoint(String name) throws StorageException {
+        return this.primary.getCheckpoint(name);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#setCheckpoint(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void setCheckpoint(String name, String value) throws StorageException {
+        this.primary.setCheckpoint(name, value);
+    }
+
+    /**
+     * The shards are compressed one after the other.  The content versions returned (and passed
+     * back in) carry the index of the shard in their upper bits.
+     * @see io.apicurio.hub.core.storage.IStorage#compressContent(long, int)
+     */
+    @Override
+    public ContentCompressionBatch compressContent(long afterVersion, int limit) throws StorageException {
+        int shardIdx = (int) (afterVersion >>> SHARD_VERSION_BITS);
+        long version = afterVersion & SHARD_VERSION_MASK;
+        ContentCompressionBatch batch = null;
+        for (; shardIdx < this.shards.size(); shardIdx++, version = 0) {
+            batch = this.shards.get(shardIdx).compressContent(version, limit);
+            if (batch.getLastVersion() != -1) {
+                batch.setLastVersion(((long) shardIdx << SHARD_VERSION_BITS) | batch.getLastVersion());
+                return batch;
+            }
+        }
+        if (batch == null) {
+            batch = new ContentCompressionBatch();
+            batch.setLastVersion(-1);
+        }
+        return batch;
+    }
+
+    /**
+     * Documents are only deduplicated within a shard, so the reports of the shards are summed up.
+     * @see io.apicurio.hub.core.storage.IStorage#getContentDeduplicationReport()
+     */
+    @Override
+    public ContentDeduplicationReport getContentDeduplicationReport() throws StorageException {
+        ContentDeduplicationReport rval = new ContentDeduplicationReport();
+        for (ContentDeduplicationReport report : fanOut((shard, shardIdx) -> shard.getContentDeduplicationReport())) {
+            rval.setSharedDocuments(rval.getSharedDocuments() + report.getSharedDocuments());
+            rval.setBlobs(rval.getBlobs() + report.getBlobs());
+            rval.setLogicalBytes(rval.getLogicalBytes() + report.getLogicalBytes());
+            rval.setStoredBytes(rval.getStoredBytes() + report.getStoredBytes());
+            rval.setSavedBytes(rval.getSavedBytes() + report.getSavedBytes());
+        }
+        if (rval.getLogicalBytes() > 0) {
+            rval.setSavingsPercent(100.0 * rval.getSavedBytes() / rval.getLogicalBytes());
+        }
+        return rval;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#deleteOrphanedContentBlobs()
+     */
+    @Override
+    public int deleteOrphanedContentBlobs() throws StorageException {
+        int rval = 0;
+        for (Integer deleted : fanOut((shard, shardIdx) -> shard.deleteOrphanedContentBlobs())) {
+            rval += deleted;
+        }
+        return rval;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#compactContent(java.lang.String, int, java.util.Date, boolean, int)
+     */
+    @Override
+    public int compactContent(String designId, int keepSnapshots, Date olderThan, boolean archive, int limit) throws StorageException {
+        return shardOf(designId).compactContent(designId, keepSnapshots, olderThan, archive, limit);
+    }
+
+    /**
+     * Content versions are generated by each shard independently, so they cannot be reserved
+     * up front.
+     * @see io.apicurio.hub.core.storage.IStorage#reserveContentVersions(int)
+     */
+    @Override
+    public List<Long> reserveContentVersions(int count) throws StorageException {
+        return null;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#addReservedContent(java.util.List)
+     */
+    @Override
+    public int addReservedContent(List<ApiContentEntry> entries) throws StorageException {
+        Map<JdbcStorage, List<ApiContentEntry>> entriesByShard = new LinkedHashMap<>();
+        for (ApiContentEntry entry : entries) {
+            entriesByShard.computeIfAbsent(shardOf(entry.getDesignId()), shard -> new ArrayList<>()).add(entry);
+        }
+        int stored = 0;
+        for (Entry<JdbcStorage, List<ApiContentEntry>> shardEntries : entriesByShard.entrySet()) {
+            stored += shardEntries.getKey().addReservedContent(shardEntries.getValue());
+        }
+        return stored;
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#releaseConnections()
+     */
+    @Override
+    public void releaseConnections() {
+        for (JdbcStorage shard : this.shards) {
+            shard.releaseConnections();
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#markContentPending(java.lang.String, java.lang.String)
+     */
+    @Override
+    public void markContentPending(String designId, String journalId) throws StorageException {
+        shardOf(designId).markContentPending(designId, journalId);
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#clearContentPending(java.lang.String, java.util.Collection)
+     */
+    @Override
+    public void clearContentPending(String journalId, Collection<String> designIds) throws StorageException {
+        if (designIds == null) {
+            for (JdbcStorage shard : this.shards) {
+                shard.clearContentPending(journalId, null);
+            }
+            return;
+        }
+        Map<JdbcStorage, List<String>> idsByShard = new LinkedHashMap<>();
+        for (String designId : designIds) {
+            idsByShard.computeIfAbsent(shardOf(designId), shard -> new ArrayList<>()).add(designId);
+        }
+        for (Entry<JdbcStorage, List<String>> shardIds : idsByShard.entrySet()) {
+            shardIds.getKey().clearContentPending(journalId, shardIds.getValue());
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#isContentPending(java.lang.String)
+     */
+    @Override
+    public boolean isContentPending(String designId) throws StorageException {
+        return shardOf(designId).isContentPending(designId);
+    }
+
+    /**
+     * A unit of work is started on every shard (each with its own transaction).
+     * @see io.apicurio.hub.core.storage.IStorage#beginUnitOfWork(boolean)
+     */
+    @Override
+    public void beginUnitOfWork(boolean transactional) throws StorageException {
+        for (int idx = 0; idx < this.shards.size(); idx++) {
+            try {
+                this.shards.get(idx).beginUnitOfWork(transactional);
+            } catch (StorageException | RuntimeException e) {
+                for (int started = idx - 1; started >= 0; started--) {
+                    try {
+                        this.shards.get(started).endUnitOfWork(false);
+                    } catch (StorageException | RuntimeException e2) {
+                        logger.error("Error ending a unit of work.", e2);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @see io.apicurio.hub.core.storage.IStorage#endUnitOfWork(boolean)
+     */
+    @Override
+    public void endUnitOfWork(boolean commit) throws StorageException {
+        StorageException error = null;
+        for (JdbcStorage shard : this.shards) {
+            try {
+                shard.endUnitOfWork(commit);
+            } catch (StorageException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    logger.error("Error ending a unit of work.", e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+}
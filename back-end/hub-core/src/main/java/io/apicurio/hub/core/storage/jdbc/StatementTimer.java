@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jdbi.v3.core.argument.Argument;
+import org.jdbi.v3.core.statement.Binding;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.TimingCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.storage.IStorageMetrics;
+
+/**
+ * Reports the execution time of every statement to the storage metrics, keyed by the name of
+ * the {@link ISqlStatements} method that produced it (e.g. "selectContentCommands"), and logs
+ * statements that take longer than a configurable threshold (along with their bound
+ * parameters, redacted).  Statements are named by looking up their SQL - statements that are
+ * generated dynamically should instead be named explicitly by defining the
+ * {@link #STATEMENT_NAME} attribute on them.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class StatementTimer implements TimingCollector {
+
+    private static Logger logger = LoggerFactory.getLogger(StatementTimer.class);
+
+    public static final String STATEMENT_NAME = "apicurio.statement-name";
+    public static final String UNKNOWN_STATEMENT = "other";
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):(\\w+)");
+    private static final Pattern VISIBLE_VALUE = Pattern.compile("-?\\d+(\\.\\d+)?|true|false|null|NULL");
+
+    private final String datasource;
+    private final Supplier<IStorageMetrics> metrics;
+    private final long slowThresholdNanos;
+    private final Map<String, String> statementNames;
+
+    /**
+     * Constructor.
+     * @param datasource
+     * @param sqlStatements
+     * @param metrics supplies the metrics to report to (which may be registered later on)
+     * @param slowThresholdMillis statements slower than this are logged (0 to disable)
+     */
+    public StatementTimer(String datasource, ISqlStatements sqlStatements, Supplier<IStorageMetrics> metrics, long slowThresholdMillis) {
+        this.datasource = datasource;
+        this.metrics = metrics;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.statementNames = indexStatements(sqlStatements);
+    }
+
+    /**
+     * @see org.jdbi.v3.core.statement.TimingCollector#collect(long, org.jdbi.v3.core.statement.StatementContext)
+     */
+    @Override
+    public void collect(long elapsedNanos, StatementContext ctx) {
+        String sql = ctx.getRawSql();
+        String name = getStatementName(ctx);
+        IStorageMetrics metrics = this.metrics.get();
+        metrics.storageStatementExecuted(this.datasource, isQuery(sql) ? "read" : "write");
+        metrics.storageStatementTimed(this.datasource, name, elapsedNanos);
+        if (this.slowThresholdNanos > 0 && elapsedNanos >= this.slowThresholdNanos) {
+            logger.warn("Slow statement '{}' on the {} datasource took {}ms: {} {}", name, this.datasource,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sql, describeBindings(ctx));
+        }
+    }
+
+    /**
+     * Returns the name of the statement being executed in the given context.
+     * @param ctx
+     */
+    protected String getStatementName(StatementContext ctx) {
+        Object name = ctx.getAttribute(STATEMENT_NAME);
+        if (name != null) {
+            return name.toString();
+        }
+        String sql = ctx.getRawSql();
+        return sql == null ? UNKNOWN_STATEMENT : this.statementNames.getOrDefault(sql, UNKNOWN_STATEMENT);
+    }
+
+    /**
+     * Builds a map of SQL to the name of the {@link ISqlStatements} method that returns it.  Only
+     * methods without arguments (or with a single boolean argument) can be indexed.
+     * @param sqlStatements
+     */
+    private static Map<String, String> indexStatements(ISqlStatements sqlStatements) {
+        Map<String, String> names = new HashMap<>();
+        if (sqlStatements == null) {
+            return names;
+        }
+        for (Method method : ISqlStatements.class.getMethods()) {
+            if (method.getReturnType() != String.class) {
+                continue;
+            }
+            Class<?>[] params = method.getParameterTypes();
+            try {
+                if (params.length == 0) {
+                    putName(names, (String) method.invoke(sqlStatements), method.getName());
+                } else if (params.length == 1 && params[0] == boolean.class) {
+                    putName(names, (String) method.invoke(sqlStatements, true), method.getName());
+                    putName(names, (String) method.invoke(sqlStatements, false), method.getName());
+                }
+            } catch (Exception e) {
+                logger.debug("Failed to index SQL statement: {}", method.getName(), e);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Adds a statement to the index.  When the same SQL is returned by more than one method, the
+     * first name (alphabetically) wins so that the naming is stable.
+     * @param names
+     * @param sql
+     * @param name
+     */
+    private static void putName(Map<String, String> names, String sql, String name) {
+        if (sql != null) {
+            names.merge(sql, name, (n1, n2) -> n1.compareTo(n2) <= 0 ? n1 : n2);
+        }
+    }
+
+    /**
+     * Describes the parameters bound to the statement in the given context.  Only numbers,
+     * booleans and nulls are shown - everything else (user names, content, etc) is redacted.
+     * @param ctx
+     */
+    protected static String describeBindings(StatementContext ctx) {
+        Binding binding = ctx.getBinding();
+        if (binding == null) {
+            return "[]";
+        }
+        StringBuilder builder = new StringBuilder("[");
+        Matcher matcher = NAMED_PARAMETER.matcher(ctx.getRawSql() == null ? "" : ctx.getRawSql());
+        boolean named = false;
+        while (matcher.find()) {
+            if (named) {
+                builder.append(", ");
+            }
+            named = true;
+            String name = matcher.group(1);
+            builder.append(name).append('=').append(binding.findForName(name).map(StatementTimer::redact).orElse("?"));
+        }
+        if (!named) {
+            Optional<Argument> argument = binding.findForPosition(0);
+            for (int idx = 1; argument.isPresent(); idx++) {
+                if (idx > 1) {
+                    builder.append(", ");
+                }
+                builder.append(redact(argument.get()));
+                argument = binding.findForPosition(idx);
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Redacts the value of the given argument (unless it is a number, boolean or null).
+     * @param argument
+     */
+    private static String redact(Argument argument) {
+        String value = String.valueOf(argument);
+        return VISIBLE_VALUE.matcher(value).matches() ? value : "***";
+    }
+
+    /**
+     * Returns true if the given SQL statement is a query (rather than an update).
+     * @param sql
+     */
+    private static boolean isQuery(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        int idx = 0;
+        while (idx < sql.length() && (Character.isWhitespace(sql.charAt(idx)) || sql.charAt(idx) == '(')) {
+            idx++;
+        }
+        return sql.regionMatches(true, idx, "SELECT", 0, 6);
+    }
+
+}
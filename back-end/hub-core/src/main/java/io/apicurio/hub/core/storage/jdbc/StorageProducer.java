@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Disposes;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.cache.ContentCache;
+import io.apicurio.hub.core.cache.PermissionCache;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * Produces the {@link IStorage} used by the application: either the (primary) JDBC storage, or
+ * a storage that spreads API designs across the primary and the configured storage shards.
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class StorageProducer {
+    private static Logger logger = LoggerFactory.getLogger(StorageProducer.class);
+
+    @Inject
+    private HubConfiguration config;
+    @Inject
+    private ISqlStatements sqlStatements;
+    @Inject
+    private ContentCache contentCache;
+    @Inject
+    private PermissionCache permissionCache;
+    @Inject
+    private JdbcStorage jdbcStorage;
+
+    /**
+     * Produces an {@link IStorage} instance for injection.
+     */
+    @Produces @ApplicationScoped
+    public IStorage createStorage() {
+        List<String> shardNames = split(config.getStorageShards());
+        if (shardNames.isEmpty()) {
+            return jdbcStorage;
+        }
+        List<JdbcStorage> shards = new ArrayList<>();
+        for (String name : shardNames) {
+            logger.debug("Creating the storage of shard: {}", name);
+            DataSource dataSource;
+            try {
+                dataSource = (DataSource) new InitialContext().lookup(name);
+            } catch (NamingException | ClassCastException e) {
+                throw new RuntimeException("Storage shard datasource not found: " + name, e);
+            }
+            JdbcStorage shard = new JdbcStorage(name, config, sqlStatements, contentCache, permissionCache, dataSource);
+            shard.postConstruct();
+            shards.add(shard);
+        }
+        try {
+            return new ShardedStorage(jdbcStorage, shards, split(config.getStorageNewDesignShards()));
+        } catch (StorageException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Releases the resources of the produced {@link IStorage}.
+     * @param storage
+     */
+    public void closeStorage(@Disposes IStorage storage) {
+        if (storage instanceof ShardedStorage) {
+            ((ShardedStorage) storage).shutdown();
+        }
+    }
+
+    /**
+     * Splits a comma separated configuration value.
+     * @param value
+     */
+    private static List<String> split(String value) {
+        List<String> rval = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    rval.add(item.trim());
+                }
+            }
+        }
+        return rval;
+    }
+
+}
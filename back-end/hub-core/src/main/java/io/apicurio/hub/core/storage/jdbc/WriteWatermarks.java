@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+
+/**
+ * Remembers which API designs were recently written to (by this node) and the highest
+ * content versions written for them.  Used to route reads to a read replica only when
+ * that replica can be expected to already contain the caller's own writes: reads of a
+ * design written within the last "max lag" milliseconds go to the primary, and reads
+ * served by the replica can be checked against the recorded content versions.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class WriteWatermarks {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final long maxLagMillis;
+    private final long retainMillis;
+    private final Map<String, Watermark> watermarks = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     * @param maxLagMillis
+     */
+    public WriteWatermarks(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+        this.retainMillis = Math.max(maxLagMillis * 10, 60000);
+    }
+
+    /**
+     * Records a write to the given API design.  The content type and version are optional
+     * (e.g. when only the design's metadata or ACL changed).
+     * @param designId
+     * @param type
+     * @param contentVersion
+     */
+    public synchronized void record(String designId, ApiContentType type, long contentVersion) {
+        Watermark watermark = this.watermarks.remove(designId);
+        if (watermark == null) {
+            watermark = new Watermark();
+        }
+        watermark.writtenOn = System.currentTimeMillis();
+        if (type == ApiContentType.Document) {
+            watermark.documentVersion = Math.max(watermark.documentVersion, contentVersion);
+        } else if (type == ApiContentType.Command) {
+            watermark.commandVersion = Math.max(watermark.commandVersion, contentVersion);
+        }
+        // Re-inserted so that the map stays ordered by the time of the last write
+        this.watermarks.put(designId, watermark);
+        evict(watermark.writtenOn);
+    }
+
+    /**
+     * Returns true if the given API design was written to so recently that a read replica
+     * may not have seen the write yet.
+     * @param designId
+     */
+    public synchronized boolean isRecentlyWritten(String designId) {
+        Watermark watermark = this.watermarks.get(designId);
+        return watermark != null && watermark.writtenOn + this.maxLagMillis > System.currentTimeMillis();
+    }
+
+    /**
+     * Returns true if a version of content (of the given type) of the given API design read
+     * from a replica is older than the most recent version known to have been written.
+     * @param designId
+     * @param type
+     * @param contentVersion
+     */
+    public synchronized boolean isBehind(String designId, ApiContentType type, long contentVersion) {
+        Watermark watermark = this.watermarks.get(designId);
+        if (watermark == null) {
+            return false;
+        }
+        if (type == ApiContentType.Document) {
+            return contentVersion < watermark.documentVersion;
+        }
+        return contentVersion < watermark.commandVersion;
+    }
+
+    /**
+     * Removes watermarks that are too old to still matter, and the oldest ones if there
+     * are too many.
+     * @param now
+     */
+    private void evict(long now) {
+        Iterator<Watermark> iter = this.watermarks.values().iterator();
+        while (iter.hasNext()) {
+            Watermark watermark = iter.next();
+            if (watermark.writtenOn + this.retainMillis < now || this.watermarks.size() > MAX_ENTRIES) {
+                iter.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * The watermark of a single API design.
+     */
+    private static class Watermark {
+        private long writtenOn;
+        private long documentVersion;
+        private long commandVersion;
+    }
+
+}
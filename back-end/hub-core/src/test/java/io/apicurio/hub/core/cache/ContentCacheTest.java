@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.apicurio.hub.core.cache.ContentCache.Rendering;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        ContentCache cache = new ContentCache(1024 * 1024);
+        Assert.assertNull(cache.get("1", "e1", Rendering.JSON));
+
+        cache.put("1", "e1", Rendering.JSON, "{}");
+        cache.put("1", "e1", Rendering.YAML, "---");
+        Assert.assertEquals("{}", cache.get("1", "e1", Rendering.JSON));
+        Assert.assertEquals("---", cache.get("1", "e1", Rendering.YAML));
+        Assert.assertNull(cache.get("1", "e1", Rendering.FORMATTED_JSON));
+        Assert.assertNull(cache.get("1", "e2", Rendering.JSON));
+
+        // A new ETag replaces all renderings of the old one
+        cache.put("1", "e2", Rendering.JSON, "{ }");
+        Assert.assertNull(cache.get("1", "e1", Rendering.YAML));
+        Assert.assertNull(cache.get("1", "e2", Rendering.YAML));
+        Assert.assertEquals("{ }", cache.get("1", "e2", Rendering.JSON));
+
+        cache.invalidate("1");
+        Assert.assertNull(cache.get("1", "e2", Rendering.JSON));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        String content = new String(new char[100]);
+        ContentCache cache = new ContentCache(3 * (64 + 200));
+        cache.put("1", "e", Rendering.JSON, content);
+        cache.put("2", "e", Rendering.JSON, content);
+        cache.put("3", "e", Rendering.JSON, content);
+        
+        // Touch "1" so that "2" becomes the least recently used
+        Assert.assertNotNull(cache.get("1", "e", Rendering.JSON));
+        cache.put("4", "e", Rendering.JSON, content);
+
+        Assert.assertNotNull(cache.get("1", "e", Rendering.JSON));
+        Assert.assertNull(cache.get("2", "e", Rendering.JSON));
+        Assert.assertNotNull(cache.get("3", "e", Rendering.JSON));
+        Assert.assertNotNull(cache.get("4", "e", Rendering.JSON));
+        Assert.assertEquals(3 * (64 + 200), cache.getSize());
+
+        // Content larger than the whole cache is never cached
+        cache.put("5", "e", Rendering.JSON, new String(new char[1000]));
+        Assert.assertNull(cache.get("5", "e", Rendering.JSON));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class PermissionCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        PermissionCache cache = new PermissionCache(60000);
+        Assert.assertNull(cache.getRole("user", "1"));
+
+        cache.putRole("user", "1", "owner");
+        cache.putRole("user2", "1", "collaborator");
+        Assert.assertEquals("owner", cache.getRole("user", "1"));
+        Assert.assertEquals("collaborator", cache.getRole("user2", "1"));
+        Assert.assertNull(cache.getRole("user", "2"));
+        Assert.assertNull(cache.getRole("user3", "1"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        PermissionCache cache = new PermissionCache(60000);
+        cache.putRole("user", "1", "owner");
+        cache.putRole("user2", "1", "collaborator");
+        cache.putRole("user", "2", "owner");
+
+        cache.invalidate("user2", "1");
+        Assert.assertEquals("owner", cache.getRole("user", "1"));
+        Assert.assertNull(cache.getRole("user2", "1"));
+
+        cache.invalidate("1");
+        Assert.assertNull(cache.getRole("user", "1"));
+        Assert.assertEquals("owner", cache.getRole("user", "2"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        PermissionCache cache = new PermissionCache(1);
+        cache.putRole("user", "1", "owner");
+        Thread.sleep(10);
+        Assert.assertNull(cache.getRole("user", "1"));
+    }
+
+    @Test
+    public void testDisabled() {
+        PermissionCache cache = new PermissionCache(0);
+        cache.putRole("user", "1", "owner");
+        Assert.assertNull(cache.getRole("user", "1"));
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.editing;
+
+import java.sql.Driver;
+import java.util.Date;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.BulkRollupStatus;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.js.OaiCommandExecutor;
+import io.apicurio.hub.core.js.OaiCommandExecutorTest;
+import io.apicurio.hub.core.storage.jdbc.H2SqlStatements;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class RollupServiceTest {
+
+    private static int counter = 0;
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+    }
+
+    private RollupService rollupService;
+    private JdbcStorage storage;
+    private BasicDataSource ds;
+
+    @Before
+    public void setUp() {
+        storage = new JdbcStorage();
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:rollup" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        HubConfiguration config = new HubConfiguration();
+        H2SqlStatements sqlStatements = new H2SqlStatements(config);
+
+        TestUtil.setPrivateField(storage, "config", config);
+        TestUtil.setPrivateField(storage, "dataSource", ds);
+        TestUtil.setPrivateField(storage, "sqlStatements", sqlStatements);
+
+        storage.postConstruct();
+
+        rollupService = new RollupService();
+        TestUtil.setPrivateField(rollupService, "storage", storage);
+        TestUtil.setPrivateField(rollupService, "oaiCommandExecutor", new OaiCommandExecutor());
+        TestUtil.setPrivateField(rollupService, "config", config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    public void testRollupCommands() throws Exception {
+        String id = createDesign("user");
+        Assert.assertFalse(rollupService.rollupCommands("user", id));
+
+        String command = IOUtils.toString(OaiCommandExecutorTest.class.getResource("change-title.command.json"));
+        storage.addContent("user", id, ApiContentType.Command, command);
+        Assert.assertTrue(rollupService.rollupCommands("user", id));
+        Assert.assertTrue(storage.getLatestContentDocument("user", id).getOaiDocument().contains("Nashorn Test API"));
+        Assert.assertEquals("Nashorn Test API", storage.getApiDesign("user", id).getName());
+
+        // Nothing left to roll up
+        Assert.assertFalse(rollupService.rollupCommands("user", id));
+
+        // Commands that do not change the document do not produce a new snapshot
+        long version = storage.getLatestContentDocument("user", id).getContentVersion();
+        storage.addContent("user", id, ApiContentType.Command, command);
+        Assert.assertFalse(rollupService.rollupCommands("user", id));
+        Assert.assertEquals(version, storage.getLatestContentDocument("user", id).getContentVersion());
+        Assert.assertEquals(1, rollupService.getSkippedRollups());
+    }
+
+    @Test
+    public void testBulkRollup() throws Exception {
+        String command = IOUtils.toString(OaiCommandExecutorTest.class.getResource("change-title.command.json"));
+        for (int idx = 0; idx < 5; idx++) {
+            String id = createDesign("user" + idx);
+            if (idx % 2 == 0) {
+                storage.addContent("user" + idx, id, ApiContentType.Command, command);
+            }
+        }
+        // Pretend a previous run was interrupted after the first design
+        storage.setCheckpoint(RollupService.BULK_ROLLUP_CHECKPOINT, "1");
+
+        BulkRollupStatus status = rollupService.startBulkRollup(true);
+        Assert.assertEquals("1", status.getCheckpoint());
+        status = waitForBulkRollup();
+        Assert.assertEquals(4, status.getDesignsProcessed());
+        Assert.assertEquals(2, status.getDesignsRolledUp());
+        Assert.assertEquals(0, status.getDesignsFailed());
+        Assert.assertNotNull(status.getFinishedOn());
+        Assert.assertNull(storage.getCheckpoint(RollupService.BULK_ROLLUP_CHECKPOINT));
+        Assert.assertEquals("API 0", storage.getApiDesign("user0", "1").getName());
+        Assert.assertEquals("Nashorn Test API", storage.getApiDesign("user2", "3").getName());
+        Assert.assertEquals("Nashorn Test API", storage.getApiDesign("user4", "5").getName());
+
+        // A full (non-resumed) run picks up the remaining design
+        rollupService.startBulkRollup(false);
+        status = waitForBulkRollup();
+        Assert.assertEquals(5, status.getDesignsProcessed());
+        Assert.assertEquals(1, status.getDesignsRolledUp());
+        Assert.assertEquals("Nashorn Test API", storage.getApiDesign("user0", "1").getName());
+    }
+
+    /**
+     * Creates a new API design owned by the given user.
+     * @param userId
+     */
+    private String createDesign(String userId) throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy(userId);
+        design.setCreatedOn(new Date());
+        design.setName("API " + userId.substring(4));
+        return storage.createApiDesign(userId, design, "{ \"openapi\": \"3.0.0\" }");
+    }
+
+    /**
+     * Waits for the current bulk rollup to finish.
+     */
+    private BulkRollupStatus waitForBulkRollup() throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 60000;
+        BulkRollupStatus status = rollupService.getBulkRollupStatus();
+        while (status.isRunning() && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(50);
+            status = rollupService.getBulkRollupStatus();
+        }
+        Assert.assertFalse("Bulk rollup did not finish in time.", status.isRunning());
+        return status;
+    }
+
+}
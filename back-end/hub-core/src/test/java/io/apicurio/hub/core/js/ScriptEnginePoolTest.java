@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.js;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.script.ScriptEngineManager;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class ScriptEnginePoolTest {
+
+    @After
+    public void tearDown() {
+        ScriptEnginePool.setMetrics(null);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        List<String> events = new ArrayList<>();
+        ScriptEnginePool.setMetrics(new IScriptEngineMetrics() {
+            @Override
+            public void scriptEngineCreated(String pool, long millis) {
+                events.add("created:" + pool);
+            }
+            @Override
+            public void scriptEngineBorrowed(String pool, long waitMillis) {
+                events.add("borrowed:" + pool);
+            }
+            @Override
+            public void scriptEngineExecuted(String pool, int numCommands, int documentSize, long millis) {
+                events.add("executed:" + pool + ":" + numCommands + ":" + documentSize);
+            }
+            @Override
+            public void scriptEnginePoolState(String pool, int active, int idle, long evictions) {
+                events.add("state:" + pool + ":" + active + ":" + idle + ":" + evictions);
+            }
+        });
+
+        ScriptEnginePool pool = new ScriptEnginePool("test", () -> new ScriptEngineManager().getEngineByName("nashorn"));
+        Object result = pool.execute(2, 17, engine -> engine.invokeFunction("eval", "1 + 1"));
+        Assert.assertEquals(2, ((Number) result).intValue());
+        pool.execute(3, 5, engine -> null);
+
+        Assert.assertEquals("created:test", events.get(0));
+        Assert.assertEquals("borrowed:test", events.get(1));
+        Assert.assertEquals("state:test:1:0:0", events.get(2));
+        Assert.assertEquals("executed:test:2:17", events.get(3));
+        Assert.assertEquals("state:test:0:1:0", events.get(4));
+        // The second execution re-uses the pooled engine
+        Assert.assertEquals("borrowed:test", events.get(5));
+        Assert.assertEquals("executed:test:3:5", events.get(7));
+        Assert.assertEquals(9, events.size());
+    }
+
+    @Test
+    public void testRanges() {
+        Assert.assertEquals("0", IScriptEngineMetrics.commandCountRange(0));
+        Assert.assertEquals("1", IScriptEngineMetrics.commandCountRange(1));
+        Assert.assertEquals("2-10", IScriptEngineMetrics.commandCountRange(7));
+        Assert.assertEquals("1000+", IScriptEngineMetrics.commandCountRange(5000));
+        Assert.assertEquals("<10K", IScriptEngineMetrics.documentSizeRange(100));
+        Assert.assertEquals("100K-1M", IScriptEngineMetrics.documentSizeRange(200 * 1024));
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class SearchIndexTest {
+
+    private static final List<String> ALL = Arrays.asList("1", "2", "3");
+
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.index(design("1", "Pet Store API", "Manage the pets in a store.", "animals"),
+                "{ \"openapi\": \"3.0.0\", \"paths\": { \"/pets\": { \"get\": { \"operationId\": \"listPets\" } } } }");
+        index.index(design("2", "Invoice API", "Billing for the store.", null),
+                "{ \"openapi\": \"3.0.0\", \"components\": { \"schemas\": { \"PaymentReceipt\": {} } } }");
+        index.index(design("3", "Clinic API", "Appointments for vets.", "pets"), "{}");
+    }
+
+    @Test
+    public void testSearch() {
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(Arrays.asList("1", "3"), ids(index.search("pet", ALL, 0, 10)));
+        Assert.assertEquals(Arrays.asList("1", "2"), ids(index.search("STORE", ALL, 0, 10)));
+        Assert.assertEquals(Arrays.asList("1"), ids(index.search("pet store", ALL, 0, 10)));
+        Assert.assertEquals(Arrays.asList("2"), ids(index.search("receipt", ALL, 0, 10)));
+        Assert.assertEquals(Arrays.asList("1"), ids(index.search("list", ALL, 0, 10)));
+        Assert.assertEquals(Collections.emptyList(), ids(index.search("pet invoice", ALL, 0, 10)));
+        Assert.assertEquals(Collections.emptyList(), ids(index.search("  ", ALL, 0, 10)));
+    }
+
+    @Test
+    public void testAccessAndPaging() {
+        Assert.assertEquals(Arrays.asList("3"), ids(index.search("pet", Arrays.asList("2", "3"), 0, 10)));
+
+        ApiDesignPage page = index.search("api", ALL, 0, 2);
+        Assert.assertEquals(2, page.getItems().size());
+        Assert.assertEquals("2", page.getNextCursor());
+        page = index.search("api", ALL, 2, 2);
+        Assert.assertEquals(1, page.getItems().size());
+        Assert.assertNull(page.getNextCursor());
+
+        index.remove("1");
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(Arrays.asList("3"), ids(index.search("pet", ALL, 0, 10)));
+    }
+
+    @Test
+    public void testExtractContentText() {
+        String text = SearchIndex.extractContentText("{ \"info\": { \"title\": \"Pets\" }, \"tags\": [ { \"name\": \"dogs\" } ], "
+                + "\"paths\": { \"/cats\": { \"post\": { \"summary\": \"Adopt\" } } }, \"definitions\": { \"Owner\": {} } }");
+        for (String expected : new String[] { "Pets", "dogs", "/cats", "Adopt", "Owner" }) {
+            Assert.assertTrue(expected, text.contains(expected));
+        }
+        Assert.assertEquals("", SearchIndex.extractContentText("not json"));
+    }
+
+    private static ApiDesign design(String id, String name, String description, String tag) {
+        ApiDesign design = new ApiDesign();
+        design.setId(id);
+        design.setName(name);
+        design.setDescription(description);
+        if (tag != null) {
+            design.getTags().add(tag);
+        }
+        return design;
+    }
+
+    private static List<String> ids(ApiDesignPage page) {
+        String[] ids = new String[page.getItems().size()];
+        for (int idx = 0; idx < ids.length; idx++) {
+            ids[idx] = page.getItems().get(idx).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.sql.Driver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignChange;
+import io.apicurio.hub.core.beans.ContentCompactionStatus;
+import io.apicurio.hub.core.beans.Contributor;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.jdbc.H2SqlStatements;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCompactionServiceTest {
+
+    private static final String KEEP_SNAPSHOTS_SYSPROP = "apicurio.hub.compaction.keep-snapshots";
+    private static final String MODE_SYSPROP = "apicurio.hub.compaction.mode";
+
+    private static int counter = 0;
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+    }
+
+    private ContentCompactionService compactionService;
+    private JdbcStorage storage;
+    private BasicDataSource ds;
+
+    @Before
+    public void setUp() {
+        storage = new JdbcStorage();
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:compaction" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        HubConfiguration config = new HubConfiguration();
+        H2SqlStatements sqlStatements = new H2SqlStatements(config);
+
+        TestUtil.setPrivateField(storage, "config", config);
+        TestUtil.setPrivateField(storage, "dataSource", ds);
+        TestUtil.setPrivateField(storage, "sqlStatements", sqlStatements);
+
+        storage.postConstruct();
+
+        compactionService = new ContentCompactionService();
+        TestUtil.setPrivateField(compactionService, "storage", storage);
+        TestUtil.setPrivateField(compactionService, "config", config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(KEEP_SNAPSHOTS_SYSPROP);
+        System.clearProperty(MODE_SYSPROP);
+        ds.close();
+    }
+
+    @Test
+    public void testCompactContent() throws Exception {
+        String id = createDesign("user1");
+        addContent("user1", id, ApiContentType.Command, "{1}");
+        addContent("user1", id, ApiContentType.Command, "{2}");
+        addContent("user1", id, ApiContentType.Document, "{}");
+        addContent("user2", id, ApiContentType.Command, "{3}");
+        addContent("user1", id, ApiContentType.Document, "{}");
+        addContent("user2", id, ApiContentType.Command, "{4}");
+        int contributors = countEdits(id);
+
+        // The commands before the last 2 snapshots are archived
+        ContentCompactionStatus status = compactionService.start(false);
+        Assert.assertEquals("archive", status.getMode());
+        status = waitForCompaction();
+        Assert.assertEquals(1, status.getDesignsProcessed());
+        Assert.assertEquals(2, status.getRowsArchived());
+        Assert.assertNull(storage.getCheckpoint(ContentCompactionService.COMPACTION_CHECKPOINT));
+
+        // The activity (and contributors) still include the archived rows
+        Assert.assertEquals(Arrays.asList("{4}", "{3}", "{2}", "{1}"), activity(id));
+        Assert.assertEquals(Arrays.asList("{2}", "{1}"), pagedActivity(id));
+        Assert.assertEquals(contributors, countEdits(id));
+        // Only the commands after the second to last snapshot are left in the content table
+        Assert.assertEquals(2, storage.listContentCommands("user1", id, 0).size());
+
+        // Dropping everything behind the latest snapshot
+        System.setProperty(KEEP_SNAPSHOTS_SYSPROP, "1");
+        System.setProperty(MODE_SYSPROP, "drop");
+        compactionService.start(false);
+        status = waitForCompaction();
+        Assert.assertEquals("drop", status.getMode());
+        Assert.assertEquals(1, status.getRowsDropped());
+        Assert.assertEquals(Arrays.asList("{4}", "{2}", "{1}"), activity(id));
+        Assert.assertEquals(1, storage.listContentCommands("user1", id, 0).size());
+
+        // Nothing left to compact
+        compactionService.start(true);
+        status = waitForCompaction();
+        Assert.assertEquals(0, status.getRowsDropped());
+    }
+
+    /**
+     * Creates a new API design owned by the given user.
+     * @param userId
+     */
+    private String createDesign(String userId) throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy(userId);
+        design.setCreatedOn(new Date());
+        design.setName("Compaction API");
+        return storage.createApiDesign(userId, design, "{ \"openapi\": \"3.0.0\" }");
+    }
+
+    /**
+     * Adds a content row (making sure it has a later timestamp than the previous one).
+     * @param userId
+     * @param designId
+     * @param type
+     * @param data
+     */
+    private void addContent(String userId, String designId, ApiContentType type, String data) throws Exception {
+        Thread.sleep(5);
+        storage.addContent(userId, designId, type, data);
+    }
+
+    /**
+     * Returns the data of all activity of the given design.
+     * @param designId
+     */
+    private List<String> activity(String designId) throws Exception {
+        List<String> rval = new ArrayList<>();
+        for (ApiDesignChange change : storage.listApiDesignActivity(designId, 0, 20)) {
+            rval.add(change.getData());
+        }
+        return rval;
+    }
+
+    /**
+     * Returns the data of the second page (of 2 items) of the activity of the given design.
+     * @param designId
+     */
+    private List<String> pagedActivity(String designId) throws Exception {
+        CursorPage<ApiDesignChange> page = storage.listApiDesignActivity(designId, null, 2);
+        page = storage.listApiDesignActivity(designId, page.getNextCursor(), 2);
+        List<String> rval = new ArrayList<>();
+        page.getItems().forEach(change -> rval.add(change.getData()));
+        return rval;
+    }
+
+    /**
+     * Returns the total number of edits made by all contributors of the given design.
+     * @param designId
+     */
+    private int countEdits(String designId) throws Exception {
+        int rval = 0;
+        for (Contributor contributor : storage.listContributors("user1", designId)) {
+            rval += contributor.getEdits();
+        }
+        return rval;
+    }
+
+    /**
+     * Waits for the current compaction run to finish.
+     */
+    private ContentCompactionStatus waitForCompaction() throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 60000;
+        ContentCompactionStatus status = compactionService.getStatus();
+        while (status.isRunning() && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(50);
+            status = compactionService.getStatus();
+        }
+        Assert.assertFalse("Content compaction did not finish in time.", status.isRunning());
+        return status;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage;
+
+import java.sql.Driver;
+import java.util.Date;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ContentCompressionStatus;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.jdbc.H2SqlStatements;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class ContentCompressionServiceTest {
+
+    private static final String COMPRESSION_SYSPROP = "apicurio.hub.content.compression";
+    private static final String DEDUPLICATION_SYSPROP = "apicurio.hub.content.deduplication";
+
+    private static int counter = 0;
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+    }
+
+    private ContentCompressionService compressionService;
+    private JdbcStorage storage;
+    private BasicDataSource ds;
+
+    @Before
+    public void setUp() {
+        // Only documents stored inline (i.e. not deduplicated) are compressed after the fact
+        System.setProperty(DEDUPLICATION_SYSPROP, "false");
+        storage = new JdbcStorage();
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:compression" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        HubConfiguration config = new HubConfiguration();
+        H2SqlStatements sqlStatements = new H2SqlStatements(config);
+
+        TestUtil.setPrivateField(storage, "config", config);
+        TestUtil.setPrivateField(storage, "dataSource", ds);
+        TestUtil.setPrivateField(storage, "sqlStatements", sqlStatements);
+
+        storage.postConstruct();
+
+        compressionService = new ContentCompressionService();
+        TestUtil.setPrivateField(compressionService, "storage", storage);
+        TestUtil.setPrivateField(compressionService, "config", config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(COMPRESSION_SYSPROP);
+        System.clearProperty(DEDUPLICATION_SYSPROP);
+        ds.close();
+    }
+
+    @Test
+    public void testCompressExistingContent() throws Exception {
+        String id1 = createDesign("user1", "First");
+        String id2 = createDesign("user2", "Second");
+        String document = storage.getLatestContentDocument("user2", id2).getOaiDocument();
+        storage.addContent("user2", id2, ApiContentType.Command, "{ \"__type\": \"ChangeTitleCommand_20\" }");
+        storage.addContent("user2", id2, ApiContentType.Document, "{}");
+
+        // Compression is disabled, so nothing is compressed
+        ContentCompressionStatus status = compressionService.start(false);
+        Assert.assertEquals("none", status.getCodec());
+        status = waitForCompression();
+        Assert.assertEquals(0, status.getRowsProcessed());
+
+        System.setProperty(COMPRESSION_SYSPROP, "gzip");
+        storage.postConstruct();
+        compressionService.start(false);
+        status = waitForCompression();
+        Assert.assertEquals("gzip", status.getCodec());
+        // The tiny "{}" document is examined but not worth compressing
+        Assert.assertEquals(3, status.getRowsProcessed());
+        Assert.assertEquals(2, status.getRowsCompressed());
+        Assert.assertTrue(status.getBytesAfter() < status.getBytesBefore());
+        Assert.assertTrue(status.getSavingsPercent() > 0);
+        Assert.assertNotNull(status.getFinishedOn());
+        Assert.assertNull(storage.getCheckpoint(ContentCompressionService.COMPRESSION_CHECKPOINT));
+
+        // Compressed content reads back transparently
+        Assert.assertTrue(storage.getLatestContentDocument("user1", id1).getOaiDocument().contains("\"First\""));
+        Assert.assertEquals("{}", storage.getLatestContentDocument("user2", id2).getOaiDocument());
+        Assert.assertEquals(1, storage.listContentCommands("user2", id2, 0).size());
+
+        // New documents are compressed as they are written
+        storage.addContent("user2", id2, ApiContentType.Document, document);
+        Assert.assertEquals(document, storage.getLatestContentDocument("user2", id2).getOaiDocument());
+
+        // Nothing left to compress
+        compressionService.start(true);
+        status = waitForCompression();
+        Assert.assertEquals(0, status.getRowsCompressed());
+    }
+
+    /**
+     * Creates a new API design (with a reasonably large initial document) owned by the given user.
+     * @param userId
+     * @param name
+     */
+    private String createDesign(String userId, String name) throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy(userId);
+        design.setCreatedOn(new Date());
+        design.setName(name);
+        StringBuilder paths = new StringBuilder();
+        for (int idx = 0; idx < 50; idx++) {
+            if (idx > 0) {
+                paths.append(", ");
+            }
+            paths.append("\"/resources/" + idx + "\": { \"get\": { \"summary\": \"Get resource " + idx + "\" } }");
+        }
+        String content = "{ \"openapi\": \"3.0.0\", \"info\": { \"title\": \"" + name + "\" }, \"paths\": { " + paths + " } }";
+        return storage.createApiDesign(userId, design, content);
+    }
+
+    /**
+     * Waits for the current compression run to finish.
+     */
+    private ContentCompressionStatus waitForCompression() throws Exception {
+        long giveUpAt = System.currentTimeMillis() + 60000;
+        ContentCompressionStatus status = compressionService.getStatus();
+        while (status.isRunning() && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(50);
+            status = compressionService.getStatus();
+        }
+        Assert.assertFalse("Content compression did not finish in time.", status.isRunning());
+        return status;
+    }
+
+}
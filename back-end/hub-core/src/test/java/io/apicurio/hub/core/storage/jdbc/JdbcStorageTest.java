@@ -16,8 +16,12 @@
 
 package io.apicurio.hub.core.storage.jdbc;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Driver;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -29,11 +33,14 @@ import java.util.UUID;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import io.apicurio.hub.core.beans.ApiContentEntry;
 import io.apicurio.hub.core.beans.ApiContentType;
 import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignChange;
@@ -43,13 +50,20 @@ import io.apicurio.hub.core.beans.ApiDesignContent;
 import io.apicurio.hub.core.beans.ApiPublication;
 import io.apicurio.hub.core.beans.CodegenProject;
 import io.apicurio.hub.core.beans.CodegenProjectType;
+import io.apicurio.hub.core.beans.ContentDeduplicationReport;
 import io.apicurio.hub.core.beans.Contributor;
 import io.apicurio.hub.core.beans.Invitation;
 import io.apicurio.hub.core.beans.LinkedAccount;
 import io.apicurio.hub.core.beans.LinkedAccountType;
+import io.apicurio.hub.core.cache.PermissionCache;
 import io.apicurio.hub.core.config.HubConfiguration;
 import io.apicurio.hub.core.exceptions.AlreadyExistsException;
 import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.CursorPage;
+import io.apicurio.hub.core.storage.PageCursor;
 import io.apicurio.hub.core.storage.StorageException;
 import io.apicurio.test.core.TestUtil;
 
@@ -158,6 +172,49 @@ public class JdbcStorageTest {
         
     }
 
+    @Test
+    public void testCachedPermissions() throws Exception {
+        TestUtil.setPrivateField(storage, "permissionCache", new PermissionCache(60000));
+
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{}");
+
+        Assert.assertTrue(storage.hasOwnerPermission("user", id));
+        Assert.assertFalse(storage.hasWritePermission("user2", id));
+
+        // Cached and uncached reads both succeed for users with access
+        Assert.assertEquals("API Name", storage.getApiDesign("user", id).getName());
+        Assert.assertEquals("{}", storage.getLatestContentDocument("user", id).getOaiDocument());
+        Assert.assertNotNull(storage.getContentETag("user", id));
+        try {
+            storage.getApiDesign("user2", id);
+            Assert.fail("Expected a NotFoundException.");
+        } catch (NotFoundException e) {
+            // expected
+        }
+
+        // Changes to the ACL are visible immediately
+        storage.createPermission(id, "user2", "collaborator");
+        Assert.assertTrue(storage.hasWritePermission("user2", id));
+        Assert.assertFalse(storage.hasOwnerPermission("user2", id));
+        storage.updatePermission(id, "user2", "owner");
+        Assert.assertTrue(storage.hasOwnerPermission("user2", id));
+        storage.deletePermission(id, "user2");
+        Assert.assertFalse(storage.hasWritePermission("user2", id));
+        try {
+            storage.getApiDesign("user2", id);
+            Assert.fail("Expected a NotFoundException.");
+        } catch (NotFoundException e) {
+            // expected
+        }
+
+        storage.deleteApiDesign("user", id);
+        Assert.assertFalse(storage.hasOwnerPermission("user", id));
+    }
+
     @Test
     public void testListPermission() throws Exception {
         ApiDesign design = new ApiDesign();
@@ -273,6 +330,59 @@ public class JdbcStorageTest {
         }
     }
 
+    @Test
+    public void testSoftDeleteAndPurge() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        design.getTags().add("tag");
+        String designId = storage.createApiDesign("user", design, "{}");
+        for (int idx = 0; idx < 3; idx++) {
+            storage.addContent("user", designId, ApiContentType.Command, "{ \"command\": " + idx + " }");
+        }
+        storage.addContent("user", designId, ApiContentType.Document, "{}");
+        Assert.assertEquals(3, storage.compactContent(designId, 1, null, true, 100));
+        
+        // Deleted designs are hidden everywhere, but can be restored for a while
+        Date beforeDelete = new Date(System.currentTimeMillis() - 1000);
+        storage.deleteApiDesign("user", designId);
+        storage.listApiDesigns("user").forEach(listed -> Assert.assertNotEquals(designId, listed.getId()));
+        Assert.assertFalse(storage.listAccessibleApiDesignIds("user").contains(designId));
+        Assert.assertFalse(storage.countApiDesignTags("user").containsKey("tag"));
+        Assert.assertFalse(storage.hasWritePermission("user", designId));
+        try {
+            storage.getLatestContentDocument("user", designId);
+            Assert.fail("Expected NotFoundException");
+        } catch (NotFoundException e) {
+            // OK!
+        }
+        try {
+            storage.restoreApiDesign("user", designId, new Date(System.currentTimeMillis() + 1000));
+            Assert.fail("Expected NotFoundException");
+        } catch (NotFoundException e) {
+            // OK! - deleted before the undelete window
+        }
+        storage.restoreApiDesign("user", designId, beforeDelete);
+        Assert.assertEquals("API Name", storage.getApiDesign("user", designId).getName());
+        Assert.assertEquals(0, storage.purgeApiDesign(designId, 10));
+        
+        // Once purged (in batches), the design is gone for good
+        storage.deleteApiDesign("user", designId);
+        Date cutoff = new Date(System.currentTimeMillis() + 1000);
+        Assert.assertTrue(storage.listDeletedApiDesignIds(cutoff, 10).contains(designId));
+        // 2 documents (content table) and 3 commands (content archive)
+        Assert.assertEquals(3, storage.purgeApiDesign(designId, 3));
+        Assert.assertEquals(2, storage.purgeApiDesign(designId, 3));
+        Assert.assertFalse(storage.listDeletedApiDesignIds(cutoff, 10).contains(designId));
+        try {
+            storage.restoreApiDesign("user", designId, beforeDelete);
+            Assert.fail("Expected NotFoundException");
+        } catch (NotFoundException e) {
+            // OK!
+        }
+    }
+
     @Test
     public void testGetApiDesignById() throws Exception {
         ApiDesign design = new ApiDesign();
@@ -573,6 +683,25 @@ public class JdbcStorageTest {
         Assert.assertNotNull(contributors);
         Assert.assertFalse(contributors.isEmpty());
         Assert.assertEquals(2, contributors.size());
+        
+        // Undone edits do not count (until they are redone)
+        storage.addContent("user2", id, ApiContentType.Command, "{5}");
+        long version = storage.addContent("user2", id, ApiContentType.Command, "{6}");
+        storage.undoContent("user2", id, version);
+        Assert.assertEquals(Arrays.asList("user:3", "user2:3"), contributorEdits(id));
+        storage.redoContent("user2", id, version);
+        Assert.assertEquals(Arrays.asList("user2:4", "user:3"), contributorEdits(id));
+        
+        // Only the top contributors are returned, most active first
+        for (int idx = 0; idx < 6; idx++) {
+            for (int edit = 0; edit < idx + 4; edit++) {
+                storage.addContent("user" + (idx + 3), id, ApiContentType.Command, "{}");
+            }
+        }
+        Assert.assertEquals(Arrays.asList("user8:9", "user7:8", "user6:7", "user5:6", "user4:5"), contributorEdits(id));
+        
+        // A user without access to the design does not see any contributors
+        Assert.assertTrue(storage.listContributors("user3", id).isEmpty());
     }
 
     @Test
@@ -1016,6 +1145,203 @@ public class JdbcStorageTest {
         Assert.assertEquals("{Publish-3}", second.getInfo());
     }
 
+    @Test
+    public void testPagedActivity() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{}");
+
+        // Rows flushed from the command journal can share the same timestamp, so paging must
+        // fall back to the version
+        Thread.sleep(5);
+        List<Long> reserved = storage.reserveContentVersions(3);
+        List<ApiContentEntry> entries = new ArrayList<>();
+        Date now = new Date();
+        for (int idx = 0; idx < 3; idx++) {
+            ApiContentEntry entry = new ApiContentEntry();
+            entry.setContentVersion(reserved.get(idx));
+            entry.setDesignId(id);
+            entry.setType(ApiContentType.Command);
+            entry.setData("{" + (idx + 1) + "}");
+            entry.setCreatedBy("user");
+            entry.setCreatedOn(now);
+            entries.add(entry);
+        }
+        storage.addReservedContent(entries);
+        Thread.sleep(5);
+        storage.addContent("user", id, ApiContentType.Publish, "{PUBLISH:1}");
+        Thread.sleep(5);
+        storage.addContent("user2", id, ApiContentType.Command, "{4}");
+        Thread.sleep(5);
+        storage.addContent("user", id, ApiContentType.Publish, "{PUBLISH:2}");
+
+        List<String> data = new ArrayList<>();
+        PageCursor cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<ApiDesignChange> page = storage.listApiDesignActivity(id, cursor, 2);
+            page.getItems().forEach(change -> data.add(change.getData()));
+            cursor = page.getNextCursor();
+            if (cursor != null) {
+                cursor = PageCursor.parse(cursor.toString());
+            }
+            pages++;
+        } while (cursor != null);
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(Arrays.asList("{PUBLISH:2}", "{4}", "{PUBLISH:1}", "{3}", "{2}", "{1}"), data);
+
+        CursorPage<ApiDesignChange> userPage = storage.listUserActivity("user", null, 4);
+        Assert.assertEquals(4, userPage.getItems().size());
+        Assert.assertEquals("{2}", userPage.getItems().get(3).getData());
+        userPage = storage.listUserActivity("user", userPage.getNextCursor(), 4);
+        Assert.assertEquals(1, userPage.getItems().size());
+        Assert.assertEquals("{1}", userPage.getItems().get(0).getData());
+        Assert.assertNull(userPage.getNextCursor());
+
+        CursorPage<ApiPublication> pubPage = storage.listApiDesignPublications(id, null, 1);
+        Assert.assertEquals("{PUBLISH:2}", pubPage.getItems().get(0).getInfo());
+        pubPage = storage.listApiDesignPublications(id, pubPage.getNextCursor(), 1);
+        Assert.assertEquals("{PUBLISH:1}", pubPage.getItems().get(0).getInfo());
+        Assert.assertNull(pubPage.getNextCursor());
+    }
+
+    @Test
+    public void testActivityOfDeletedDesigns() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("Kept");
+        String keptId = storage.createApiDesign("user", design, "{}");
+        storage.addContent("user", keptId, ApiContentType.Command, "{kept}");
+        design.setName("Deleted");
+        String deletedId = storage.createApiDesign("user", design, "{}");
+        Thread.sleep(5);
+        for (int idx = 0; idx < 3; idx++) {
+            storage.addContent("user", deletedId, ApiContentType.Command, "{deleted}");
+        }
+        storage.createCollaborationInvite(UUID.randomUUID().toString(), deletedId, "user", "user", "collaborator", "Deleted");
+        Assert.assertEquals(1, storage.listCollaborationInvites(deletedId, "user").size());
+        storage.deleteApiDesign("user", deletedId);
+
+        // The changes of the deleted design must not use up the first page
+        Collection<ApiDesignChange> activity = storage.listUserActivity("user", 0, 2);
+        Assert.assertEquals(1, activity.size());
+        Assert.assertEquals("{kept}", activity.iterator().next().getData());
+        CursorPage<ApiDesignChange> page = storage.listUserActivity("user", null, 2);
+        Assert.assertEquals(1, page.getItems().size());
+        Assert.assertEquals("{kept}", page.getItems().get(0).getData());
+
+        Assert.assertEquals(0, storage.listCollaborationInvites(deletedId, "user").size());
+    }
+
+    @Test
+    public void testListApiDesignsPaged() throws Exception {
+        String[] names = { "Pets", "Pet Store", "Orders", "Pet_Shop", "Users" };
+        for (int idx = 0; idx < names.length; idx++) {
+            ApiDesign design = new ApiDesign();
+            design.setCreatedBy(idx % 2 == 0 ? "user" : "user2");
+            design.setCreatedOn(new Date());
+            design.setName(names[idx]);
+            if (idx < 3) {
+                design.getTags().add("pets");
+            }
+            design.getTags().add("tag" + idx);
+            storage.createApiDesign("user", design, "{}");
+        }
+
+        // Page through everything, sorted by name
+        ApiDesignQuery query = new ApiDesignQuery();
+        query.setLimit(2);
+        List<String> found = new ArrayList<>();
+        int pages = 0;
+        do {
+            ApiDesignPage page = storage.listApiDesigns("user", query);
+            page.getItems().forEach(design -> found.add(design.getName()));
+            query.setAfter(page.getNextCursor());
+            pages++;
+        } while (query.getAfter() != null);
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(Arrays.asList("Orders", "Pet Store", "Pet_Shop", "Pets", "Users"), found);
+
+        // Newest first, second page
+        query = new ApiDesignQuery();
+        query.setSort(ApiDesignSort.MODIFIED);
+        query.setAscending(false);
+        query.setLimit(3);
+        ApiDesignPage page = storage.listApiDesigns("user", query);
+        Assert.assertEquals("Users", page.getItems().get(0).getName());
+        query.setAfter(page.getNextCursor());
+        page = storage.listApiDesigns("user", query);
+        Assert.assertEquals(2, page.getItems().size());
+        Assert.assertEquals("Pet Store", page.getItems().get(0).getName());
+        Assert.assertNull(page.getNextCursor());
+
+        // Filters (the "_" in the name prefix must not be treated as a wildcard)
+        query = new ApiDesignQuery();
+        query.setNamePrefix("Pet_");
+        Assert.assertEquals(1, storage.listApiDesigns("user", query).getItems().size());
+        query.setNamePrefix("Pet");
+        Assert.assertEquals(3, storage.listApiDesigns("user", query).getItems().size());
+        query.setTag("pets");
+        Assert.assertEquals(2, storage.listApiDesigns("user", query).getItems().size());
+        query.setCreatedBy("user2");
+        Assert.assertEquals(1, storage.listApiDesigns("user", query).getItems().size());
+        Assert.assertEquals(0, storage.listApiDesigns("user3", query).getItems().size());
+
+        query = new ApiDesignQuery();
+        query.setAfter("not a cursor");
+        try {
+            storage.listApiDesigns("user", query);
+            Assert.fail("Expected an invalid cursor.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDesignTags() throws Exception {
+        String[] ids = new String[3];
+        for (int idx = 0; idx < ids.length; idx++) {
+            ApiDesign design = new ApiDesign();
+            design.setCreatedBy("user");
+            design.setCreatedOn(new Date());
+            design.setName("API " + idx);
+            design.getTags().add("common");
+            design.getTags().add(" tag" + idx + " ");
+            ids[idx] = storage.createApiDesign(idx < 2 ? "user" : "user2", design, "{}");
+        }
+        Assert.assertEquals("{common=2, tag0=1, tag1=1}", storage.countApiDesignTags("user").toString());
+
+        // Only the changed tags are touched, unknown tags are never listed
+        ApiDesign design = storage.getApiDesign("user", ids[0]);
+        design.getTags().remove("tag0");
+        design.getTags().add("tag1");
+        storage.updateApiDesign("user", design);
+        Assert.assertEquals("{common=2, tag1=2}", storage.countApiDesignTags("user").toString());
+        ApiDesignQuery query = new ApiDesignQuery();
+        query.setTag("tag1");
+        Assert.assertEquals(2, storage.listApiDesigns("user", query).getItems().size());
+        query.setTag("tag0");
+        Assert.assertEquals(0, storage.listApiDesigns("user", query).getItems().size());
+
+        storage.deleteApiDesign("user", ids[1]);
+        Assert.assertEquals("{common=1, tag1=1}", storage.countApiDesignTags("user").toString());
+
+        // Simulate an upgrade from an old DB version - the tags are backfilled (in the background) on startup
+        ds.getConnection().createStatement().execute("DELETE FROM design_tags");
+        storage.setCheckpoint("design-tags-backfill", "0");
+        JdbcStorage upgraded = createStorage(ds);
+        long giveUpAt = System.currentTimeMillis() + 10000;
+        while (upgraded.getCheckpoint("design-tags-backfill") != null && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(50);
+        }
+        Assert.assertNull(upgraded.getCheckpoint("design-tags-backfill"));
+        Assert.assertEquals("{common=1, tag1=1}", upgraded.countApiDesignTags("user").toString());
+        Assert.assertEquals("{common=1, tag2=1}", upgraded.countApiDesignTags("user2").toString());
+    }
+
     @Test
     public void testGetRecentApiDesigns() throws Exception {
         Collection<ApiDesign> designs = storage.listApiDesigns("user");
@@ -1276,17 +1602,429 @@ public class JdbcStorageTest {
         Assert.assertEquals("{4}", iter.next().getCommand());
     }
 
+
+    @Test
+    public void testListApiDesignIds() throws Exception {
+        for (int idx = 0; idx < 5; idx++) {
+            ApiDesign design = new ApiDesign();
+            design.setCreatedBy("user" + idx);
+            design.setCreatedOn(new Date());
+            design.setName("API " + idx);
+            storage.createApiDesign("user" + idx, design, "{}");
+        }
+
+        List<String> ids = storage.listApiDesignIds(null, 3);
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), ids);
+        ids = storage.listApiDesignIds("3", 3);
+        Assert.assertEquals(Arrays.asList("4", "5"), ids);
+        ids = storage.listApiDesignIds("5", 3);
+        Assert.assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    public void testCheckpoints() throws Exception {
+        Assert.assertNull(storage.getCheckpoint("test"));
+        storage.setCheckpoint("test", "17");
+        Assert.assertEquals("17", storage.getCheckpoint("test"));
+        storage.setCheckpoint("test", "42");
+        Assert.assertEquals("42", storage.getCheckpoint("test"));
+        Assert.assertNull(storage.getCheckpoint("other"));
+        storage.setCheckpoint("test", null);
+        Assert.assertNull(storage.getCheckpoint("test"));
+        
+        // Checkpoints must not clobber the DB version
+        storage.setCheckpoint("db_version", "1");
+        storage.postConstruct();
+    }
+    
+    @Test
+    public void testStreamContent() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{ \"openapi\": \"3.0.0\" }");
+
+        long v0 = storage.addContent("user", id, ApiContentType.Command, "{0}");
+        for (int idx = 1; idx <= 3; idx++) {
+            storage.addContent("user", id, ApiContentType.Command, "{" + idx + "}");
+        }
+        storage.undoContent("user", id, storage.listContentCommands("user", id, v0).get(2).getContentVersion());
+
+        List<ApiDesignCommand> streamed = new ArrayList<>();
+        storage.streamAllContentCommands("user", id, v0, streamed::add);
+        List<ApiDesignCommand> listed = storage.listAllContentCommands("user", id, v0);
+        Assert.assertEquals(3, streamed.size());
+        for (int idx = 0; idx < 3; idx++) {
+            Assert.assertEquals(listed.get(idx).getCommand(), streamed.get(idx).getCommand());
+            Assert.assertEquals(listed.get(idx).getContentVersion(), streamed.get(idx).getContentVersion());
+            Assert.assertEquals(listed.get(idx).isReverted(), streamed.get(idx).isReverted());
+        }
+        Assert.assertTrue(streamed.get(2).isReverted());
+
+        String document = storage.readLatestContentDocument("user", id, (version, reader) -> IOUtils.toString(reader));
+        Assert.assertEquals("{ \"openapi\": \"3.0.0\" }", document);
+
+        // Compressed documents are decoded while streaming
+        TestUtil.setPrivateField(storage, "contentCodec", ContentCodec.GZIP);
+        long v1 = storage.addContent("user", id, ApiContentType.Document, "{ \"openapi\": \"3.0.1\" }");
+        String[] read = new String[2];
+        storage.readLatestContentDocument("user", id, (version, reader) -> {
+            read[0] = String.valueOf(version);
+            read[1] = IOUtils.toString(reader);
+            return null;
+        });
+        Assert.assertEquals(String.valueOf(v1), read[0]);
+        Assert.assertEquals("{ \"openapi\": \"3.0.1\" }", read[1]);
+
+        try {
+            storage.readLatestContentDocument("user2", id, (version, reader) -> null);
+            Assert.fail("Expected a NotFoundException.");
+        } catch (NotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testContentDeduplication() throws Exception {
+        String template = "{ \"openapi\": \"3.0.2\", \"info\": { \"title\": \"Template\" } }";
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id1 = storage.createApiDesign("user", design, template);
+        String id2 = storage.createApiDesign("user", design, template);
+        storage.addContent("user", id1, ApiContentType.Command, "{}");
+        storage.addContent("user", id1, ApiContentType.Document, template);
+
+        // Three snapshots, but the template is only stored once
+        ContentDeduplicationReport report = storage.getContentDeduplicationReport();
+        int size = template.getBytes(StandardCharsets.UTF_8).length;
+        Assert.assertEquals(3, report.getSharedDocuments());
+        Assert.assertEquals(1, report.getBlobs());
+        Assert.assertEquals(3 * size, report.getLogicalBytes());
+        Assert.assertEquals(size, report.getStoredBytes());
+        Assert.assertEquals(2 * size, report.getSavedBytes());
+        Assert.assertEquals(66.6, report.getSavingsPercent(), 0.1);
+        Assert.assertEquals(template, storage.getLatestContentDocument("user", id1).getOaiDocument());
+        Assert.assertEquals(template, storage.getLatestContentDocument("user", id2).getOaiDocument());
+
+        // Compressed blobs are decoded when read (or streamed)
+        TestUtil.setPrivateField(storage, "contentCodec", ContentCodec.GZIP);
+        storage.addContent("user", id2, ApiContentType.Document, "{ \"openapi\": \"3.0.3\" }");
+        Assert.assertEquals("{ \"openapi\": \"3.0.3\" }", storage.getLatestContentDocument("user", id2).getOaiDocument());
+        Assert.assertEquals("{ \"openapi\": \"3.0.3\" }",
+                storage.readLatestContentDocument("user", id2, (version, reader) -> IOUtils.toString(reader)));
+        Assert.assertEquals(2, storage.getContentDeduplicationReport().getBlobs());
+
+        // Blobs that are still referenced (or were used recently) are never deleted
+        Assert.assertEquals(0, storage.deleteOrphanedContentBlobs());
+        Assert.assertEquals(2, storage.getContentDeduplicationReport().getBlobs());
+    }
+
+    @Test
+    public void testGetContentETag() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{}");
+
+        String etag1 = storage.getContentETag("user", id);
+        Assert.assertNotNull(etag1);
+        Assert.assertEquals(etag1, storage.getContentETag("user", id));
+
+        long v1 = storage.addContent("user", id, ApiContentType.Command, "{1}");
+        String etag2 = storage.getContentETag("user", id);
+        Assert.assertNotEquals(etag1, etag2);
+
+        storage.undoContent("user", id, v1);
+        String etag3 = storage.getContentETag("user", id);
+        Assert.assertNotEquals(etag2, etag3);
+
+        storage.redoContent("user", id, v1);
+        String etag4 = storage.getContentETag("user", id);
+        Assert.assertNotEquals(etag3, etag4);
+
+        // Content stored with a (lower) reserved version after other content also changes it
+        long reserved = storage.reserveContentVersions(1).get(0);
+        storage.addContent("user", id, ApiContentType.Command, "{2}");
+        String etag5 = storage.getContentETag("user", id);
+        ApiContentEntry entry = new ApiContentEntry();
+        entry.setContentVersion(reserved);
+        entry.setDesignId(id);
+        entry.setType(ApiContentType.Command);
+        entry.setData("{3}");
+        entry.setCreatedBy("user");
+        entry.setCreatedOn(new Date());
+        storage.addReservedContent(Arrays.asList(entry));
+        Assert.assertNotEquals(etag5, storage.getContentETag("user", id));
+
+        try {
+            storage.getContentETag("user2", id);
+            Assert.fail("Expected a NotFoundException.");
+        } catch (NotFoundException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testUnitOfWork() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        
+        // All calls share a single connection, which is released at the end
+        storage.beginUnitOfWork(false);
+        try {
+            String id = storage.createApiDesign("user", design, "{}");
+            storage.addContent("user", id, ApiContentType.Command, "{ \"command\": 1 }");
+            Assert.assertEquals(1, storage.listContentCommands("user", id, 0).size());
+            Assert.assertEquals(1, ds.getNumActive());
+            
+            // The connection can be released (e.g. during a slow remote call) and is taken again when needed
+            storage.releaseConnections();
+            Assert.assertEquals(0, ds.getNumActive());
+            Assert.assertEquals(1, storage.listContentCommands("user", id, 0).size());
+            Assert.assertEquals(1, ds.getNumActive());
+        } finally {
+            storage.endUnitOfWork(true);
+        }
+        Assert.assertEquals(0, ds.getNumActive());
+        
+        // A rolled back transaction leaves nothing behind, also when nested in another unit of work
+        storage.beginUnitOfWork(false);
+        try {
+            storage.beginUnitOfWork(true);
+            try {
+                storage.addContent("user", "1", ApiContentType.Command, "{ \"command\": 2 }");
+                storage.addContent("user", "1", ApiContentType.Command, "{ \"command\": 3 }");
+                Assert.assertEquals(3, storage.listContentCommands("user", "1", 0).size());
+            } finally {
+                storage.endUnitOfWork(false);
+            }
+            Assert.assertEquals(1, storage.listContentCommands("user", "1", 0).size());
+        } finally {
+            storage.endUnitOfWork(true);
+        }
+        
+        // A committed one does not
+        storage.beginUnitOfWork(true);
+        try {
+            storage.addContent("user", "1", ApiContentType.Command, "{ \"command\": 4 }");
+        } finally {
+            storage.endUnitOfWork(true);
+        }
+        Assert.assertEquals(2, storage.listContentCommands("user", "1", 0).size());
+        Assert.assertEquals(0, ds.getNumActive());
+    }
+    
+    @Test
+    public void testReadReplicaRouting() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{}");
+        
+        // The "replica" is a separate database that has not (yet) seen the latest document
+        BasicDataSource replicaDs = createInMemoryDatasource();
+        JdbcStorage replica = new JdbcStorage();
+        TestUtil.setPrivateField(replica, "config", new HubConfiguration());
+        TestUtil.setPrivateField(replica, "dataSource", replicaDs);
+        TestUtil.setPrivateField(replica, "sqlStatements", new H2SqlStatements(new HubConfiguration()));
+        replica.postConstruct();
+        replica.createApiDesign("user", design, "{}");
+        
+        List<String> statements = new ArrayList<>();
+        JdbcStorage.setMetrics((datasource, kind) -> statements.add(datasource + ":" + kind));
+        System.setProperty("apicurio.hub.read-datasource.max-lag", "0");
+        try {
+            JdbcStorage routed = new JdbcStorage();
+            TestUtil.setPrivateField(routed, "config", new HubConfiguration());
+            TestUtil.setPrivateField(routed, "dataSource", ds);
+            TestUtil.setPrivateField(routed, "readDataSource", replicaDs);
+            TestUtil.setPrivateField(routed, "sqlStatements", new H2SqlStatements(new HubConfiguration()));
+            routed.postConstruct();
+            
+            // Lists go to the replica
+            statements.clear();
+            Assert.assertEquals(1, routed.listApiDesigns("user").size());
+            Assert.assertEquals(Arrays.asList("replica:read"), statements);
+            
+            // Writes go to the primary
+            statements.clear();
+            routed.addContent("user", id, ApiContentType.Document, "{ \"openapi\": \"3.0.0\" }");
+            Assert.assertTrue(statements.contains("primary:write"));
+            Assert.assertFalse(statements.contains("replica:write"));
+            
+            // The replica's document is older than the one just written, so it is read again from the primary
+            statements.clear();
+            Assert.assertEquals("{ \"openapi\": \"3.0.0\" }", routed.getLatestContentDocument("user", id).getOaiDocument());
+            Assert.assertEquals(Arrays.asList("replica:read", "primary:read"), statements);
+            
+            // Nothing written to this design's commands, so the replica's answer is used
+            statements.clear();
+            Assert.assertEquals(0, routed.listContentCommands("user", id, 0).size());
+            Assert.assertEquals(Arrays.asList("replica:read"), statements);
+        } finally {
+            System.clearProperty("apicurio.hub.read-datasource.max-lag");
+            JdbcStorage.setMetrics(null);
+            replicaDs.close();
+        }
+    }
+    
+    @Test
+    public void testReservedContent() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{}");
+        long before = storage.addContent("user", id, ApiContentType.Command, "{ \"command\": 1 }");
+        
+        List<Long> versions = storage.reserveContentVersions(3);
+        Assert.assertEquals(3, versions.size());
+        Assert.assertTrue(versions.get(0) > before);
+        Assert.assertTrue(versions.get(0) < versions.get(1) && versions.get(1) < versions.get(2));
+        
+        // Content stored directly gets a version after the reserved ones
+        long after = storage.addContent("user", id, ApiContentType.Command, "{ \"command\": 2 }");
+        Assert.assertTrue(after > versions.get(2));
+        
+        List<ApiContentEntry> entries = new ArrayList<>();
+        for (int idx = 0; idx < 2; idx++) {
+            ApiContentEntry entry = new ApiContentEntry();
+            entry.setContentVersion(versions.get(idx));
+            entry.setDesignId(id);
+            entry.setType(ApiContentType.Command);
+            entry.setData("{ \"reserved\": " + idx + " }");
+            entry.setCreatedBy("user");
+            entry.setCreatedOn(new Date());
+            entries.add(entry);
+        }
+        Assert.assertEquals(2, storage.addReservedContent(entries));
+        List<ApiDesignCommand> commands = storage.listContentCommands("user", id, 0);
+        Assert.assertEquals(4, commands.size());
+        Assert.assertEquals(versions.get(0).longValue(), commands.get(1).getContentVersion());
+        Assert.assertEquals("{ \"reserved\": 1 }", commands.get(2).getCommand());
+        
+        // Storing the same entries again (e.g. when replaying a journal) does nothing
+        Assert.assertEquals(0, storage.addReservedContent(entries));
+        Assert.assertEquals(4, storage.listContentCommands("user", id, 0).size());
+        
+        // Entries of a design that does not exist are dropped
+        ApiContentEntry orphan = new ApiContentEntry();
+        orphan.setContentVersion(versions.get(2));
+        orphan.setDesignId("12345");
+        orphan.setType(ApiContentType.Command);
+        orphan.setData("{}");
+        orphan.setCreatedBy("user");
+        orphan.setCreatedOn(new Date());
+        Assert.assertEquals(0, storage.addReservedContent(Arrays.asList(orphan)));
+    }
+    
+    @Test
+    public void testAddContentIsAtomic() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        String id = storage.createApiDesign("user", design, "{ \"openapi\": \"3.0.0\" }");
+        
+        // The content row must not be stored when the contributor edits cannot be updated
+        ds.getConnection().createStatement().execute("ALTER TABLE design_contributors ADD CONSTRAINT CK_atomic_test CHECK (user_id <> 'blocked')");
+        try {
+            storage.addContent("blocked", id, ApiContentType.Command, "{ \"command\": 1 }");
+            Assert.fail("Expected a StorageException.");
+        } catch (StorageException e) {
+            // expected
+        }
+        Assert.assertEquals(0, storage.listContentCommands("user", id, 0).size());
+        Assert.assertEquals(Arrays.asList("user:1"), contributorEdits(id));
+        
+        // Nor must a design be created without its initial content
+        try {
+            storage.createApiDesign("blocked", design, "{ \"openapi\": \"3.0.0\" }");
+            Assert.fail("Expected a StorageException.");
+        } catch (StorageException e) {
+            // expected
+        }
+        Assert.assertEquals(0, storage.listApiDesigns("blocked").size());
+    }
+    
+    @Test
+    public void testFileDatabase() throws Exception {
+        File dir = Files.createTempDirectory("apicurio-db").toFile();
+        try {
+            String url = "jdbc:h2:file:" + new File(dir, "apicuriodb").getAbsolutePath() + ";AUTO_SERVER=TRUE";
+            BasicDataSource fileDs = createDatasource(url);
+            JdbcStorage fileStorage = createStorage(fileDs);
+            ApiDesign design = new ApiDesign();
+            design.setCreatedBy("user");
+            design.setCreatedOn(new Date());
+            design.setName("API Name");
+            String id = fileStorage.createApiDesign("user", design, "{ \"openapi\": \"3.0.0\" }");
+            fileStorage.addContent("user", id, ApiContentType.Command, "{ \"command\": 1 }");
+            fileDs.close();
+            
+            // Everything is still there after a "restart"
+            fileDs = createDatasource(url);
+            try {
+                fileStorage = createStorage(fileDs);
+                Assert.assertEquals("API Name", fileStorage.getApiDesign("user", id).getName());
+                Assert.assertEquals("{ \"openapi\": \"3.0.0\" }", fileStorage.getLatestContentDocument("user", id).getOaiDocument());
+                Assert.assertEquals(1, fileStorage.listContentCommands("user", id, 0).size());
+            } finally {
+                fileDs.close();
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+    
+    /**
+     * Returns the (top) contributors of the given design, as "name:edits".
+     * @param designId
+     */
+    private List<String> contributorEdits(String designId) throws Exception {
+        List<String> rval = new ArrayList<>();
+        storage.listContributors("user", designId).forEach(contributor -> rval.add(contributor.getName() + ":" + contributor.getEdits()));
+        return rval;
+    }
+    
+    /**
+     * Creates a storage (and initializes the database, if needed) for the given datasource.
+     * @param dataSource
+     */
+    private static JdbcStorage createStorage(BasicDataSource dataSource) {
+        JdbcStorage rval = new JdbcStorage();
+        TestUtil.setPrivateField(rval, "config", new HubConfiguration());
+        TestUtil.setPrivateField(rval, "dataSource", dataSource);
+        TestUtil.setPrivateField(rval, "sqlStatements", new H2SqlStatements(new HubConfiguration()));
+        rval.postConstruct();
+        return rval;
+    }
     
     /**
      * Creates an in-memory datasource.
      * @throws SQLException
      */
     private static BasicDataSource createInMemoryDatasource() {
+        return createDatasource("jdbc:h2:mem:test" + (counter++) + ";DB_CLOSE_DELAY=-1");
+    }
+    
+    /**
+     * Creates a datasource for the given (H2) URL.
+     * @param url
+     */
+    private static BasicDataSource createDatasource(String url) {
         BasicDataSource ds = new BasicDataSource();
         ds.setDriverClassName(Driver.class.getName());
         ds.setUsername("sa");
         ds.setPassword("");
-        ds.setUrl("jdbc:h2:mem:test" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        ds.setUrl(url);
         return ds;
     }
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.config.HubConfiguration;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class SchemaMigratorTest {
+
+    private static int counter = 0;
+
+    private BasicDataSource ds;
+    private Jdbi jdbi;
+
+    @Before
+    public void setUp() {
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:migrator" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        jdbi = Jdbi.create(ds);
+        jdbi.useHandle(handle -> {
+            handle.execute("CREATE TABLE apicurio (prop_name VARCHAR(255) NOT NULL PRIMARY KEY, prop_value VARCHAR(255))");
+            handle.execute("INSERT INTO apicurio (prop_name, prop_value) VALUES ('db_version', 1)");
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ds.close();
+    }
+
+    @Test
+    public void testResumeInterruptedUpgrade() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(jdbi, new H2SqlStatements(new HubConfiguration()) {
+            @Override
+            public List<String> databaseUpgrade(int fromVersion, int toVersion) {
+                return Arrays.asList(
+                        "UPDATE apicurio SET prop_value = 2 WHERE prop_name = 'db_version'",
+                        "CREATE TABLE first_table (id INT)",
+                        "INSERT INTO second_table (id) VALUES (1)");
+            }
+        });
+
+        // The last step fails - the DB version must not be bumped
+        try {
+            migrator.migrate(1, 2);
+            Assert.fail("Expected the upgrade to fail.");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals("1", getDatabaseVersion());
+
+        // The upgrade resumes with the step that failed (creating the first table again would fail)
+        jdbi.useHandle(handle -> handle.execute("CREATE TABLE second_table (id INT)"));
+        Assert.assertEquals(2, migrator.migrate(1, 2));
+        Assert.assertEquals("2", getDatabaseVersion());
+        Assert.assertEquals(Integer.valueOf(1), jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM second_table")
+                .mapTo(Integer.class).findOnly()));
+        Assert.assertEquals(Integer.valueOf(3), jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM db_upgrade_steps")
+                .mapTo(Integer.class).findOnly()));
+
+        // Nothing left to do
+        Assert.assertEquals(0, migrator.migrate(1, 2));
+    }
+
+    @Test
+    public void testResumeAfterCrashBetweenStepAndRecord() throws Exception {
+        boolean[] crash = { true };
+        SchemaMigrator migrator = new SchemaMigrator(jdbi, new H2SqlStatements(new HubConfiguration()) {
+            @Override
+            public List<String> databaseUpgrade(int fromVersion, int toVersion) {
+                return Arrays.asList(
+                        "UPDATE apicurio SET prop_value = 2 WHERE prop_name = 'db_version'",
+                        "ALTER TABLE apicurio ADD COLUMN extra VARCHAR(255)",
+                        "CREATE INDEX IDX_extra ON apicurio(extra)");
+            }
+            @Override
+            public String insertUpgradeStep() {
+                return crash[0] ? "INSERT INTO missing_table (a, b, c, d) VALUES (?, ?, ?, ?)" : super.insertUpgradeStep();
+            }
+        });
+
+        // The first step is applied (the DDL commits implicitly) but cannot be recorded
+        try {
+            migrator.migrate(1, 2);
+            Assert.fail("Expected the upgrade to fail.");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals("1", getDatabaseVersion());
+        Assert.assertEquals(Integer.valueOf(0), jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM db_upgrade_steps")
+                .mapTo(Integer.class).findOnly()));
+        jdbi.useHandle(handle -> handle.execute("UPDATE apicurio SET extra = 'applied'"));
+
+        // The resumed upgrade records the applied step instead of failing on it
+        crash[0] = false;
+        Assert.assertEquals(3, migrator.migrate(1, 2));
+        Assert.assertEquals("2", getDatabaseVersion());
+        Assert.assertEquals(Integer.valueOf(3), jdbi.withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM db_upgrade_steps")
+                .mapTo(Integer.class).findOnly()));
+        Assert.assertEquals(0, migrator.migrate(1, 2));
+    }
+
+    @Test
+    public void testAppliedStatements() throws Exception {
+        ISqlStatements h2 = new H2SqlStatements(new HubConfiguration());
+        ISqlStatements mysql = new MySQL5SqlStatements(new HubConfiguration());
+        ISqlStatements postgresql = new PostgreSQL9SqlStatements(new HubConfiguration());
+        String add = "ALTER TABLE api_content ADD COLUMN blob_hash VARCHAR(64)";
+        String drop = "DROP INDEX IDX_content_1 ON api_content";
+        Assert.assertTrue(mysql.isUpgradeStatementApplied(add, new SQLException("Duplicate column name 'blob_hash'", "42S21", 1060)));
+        Assert.assertFalse(mysql.isUpgradeStatementApplied(add, new SQLException("Table 'api_content' doesn't exist", "42S02", 1146)));
+        Assert.assertTrue(mysql.isUpgradeStatementApplied(drop, new SQLException("Can't DROP 'IDX_content_1'", "42000", 1091)));
+        Assert.assertFalse(mysql.isUpgradeStatementApplied(add, new SQLException("Can't DROP 'IDX_content_1'", "42000", 1091)));
+        Assert.assertTrue(h2.isUpgradeStatementApplied(add, new SQLException("Duplicate column name", "42S21", 42121)));
+        Assert.assertFalse(postgresql.isUpgradeStatementApplied(add, new SQLException("column already exists", "42701", 0)));
+    }
+
+    @Test
+    public void testOnlineStatements() throws Exception {
+        ISqlStatements h2 = new H2SqlStatements(new HubConfiguration());
+        ISqlStatements postgresql = new PostgreSQL9SqlStatements(new HubConfiguration());
+        String statement = "CREATE INDEX CONCURRENTLY IDX_content_11 ON api_content(blob_hash)";
+        Assert.assertFalse(h2.isOnlineStatement("CREATE INDEX IDX_content_11 ON api_content(blob_hash)"));
+        Assert.assertFalse(postgresql.isOnlineStatement("CREATE INDEX IDX_content_11 ON api_content(blob_hash)"));
+        Assert.assertTrue(postgresql.isOnlineStatement(statement));
+        Assert.assertEquals("DROP INDEX CONCURRENTLY IF EXISTS IDX_content_11", postgresql.cleanupOnlineStatement(statement));
+        Assert.assertNull(postgresql.cleanupOnlineStatement("CREATE TABLE content_blobs (hash VARCHAR(64))"));
+    }
+
+    /**
+     * Returns the DB version stored in the 'apicurio' table.
+     */
+    private String getDatabaseVersion() {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT a.prop_value FROM apicurio a WHERE a.prop_name = 'db_version'")
+                .mapTo(String.class).findOnly());
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.sql.Driver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.exceptions.NotFoundException;
+import io.apicurio.hub.core.storage.ApiDesignPage;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class ShardedStorageTest {
+
+    private static final String SHARD = "java:jboss/datasources/ApicurioShardDS";
+
+    private static int counter = 0;
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+    }
+
+    private JdbcStorage primary;
+    private JdbcStorage shard;
+    private ShardedStorage storage;
+    private BasicDataSource primaryDs;
+    private BasicDataSource shardDs;
+
+    @Before
+    public void setUp() throws Exception {
+        HubConfiguration config = new HubConfiguration();
+        H2SqlStatements sqlStatements = new H2SqlStatements(config);
+        int id = counter++;
+
+        primary = new JdbcStorage();
+        primaryDs = createDatasource("jdbc:h2:mem:shard-primary" + id + ";DB_CLOSE_DELAY=-1");
+        TestUtil.setPrivateField(primary, "config", config);
+        TestUtil.setPrivateField(primary, "dataSource", primaryDs);
+        TestUtil.setPrivateField(primary, "sqlStatements", sqlStatements);
+        primary.postConstruct();
+
+        shardDs = createDatasource("jdbc:h2:mem:shard-other" + id + ";DB_CLOSE_DELAY=-1");
+        shard = new JdbcStorage(SHARD, config, sqlStatements, null, null, shardDs);
+        shard.postConstruct();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (storage != null) {
+            storage.shutdown();
+        }
+        primaryDs.close();
+        shardDs.close();
+    }
+
+    @Test
+    public void testRouting() throws Exception {
+        // A design created before sharding was enabled
+        String legacyId = primary.createApiDesign("user", createDesign("API 0"), "{}");
+        storage = new ShardedStorage(primary, Arrays.asList(shard), Collections.emptyList());
+        String changeCursor = storage.getChangeCursor();
+
+        List<String> ids = new ArrayList<>();
+        for (int idx = 1; idx <= 4; idx++) {
+            ids.add(storage.createApiDesign("user", createDesign("API " + idx), "{}"));
+        }
+        Assert.assertEquals(Arrays.asList("2", "3", "4", "5"), ids);
+
+        // Designs are spread across both shards (by id)
+        Assert.assertEquals("API 1", primary.getApiDesign("user", "2").getName());
+        Assert.assertEquals("API 2", shard.getApiDesign("user", "3").getName());
+        try {
+            primary.getApiDesign("user", "3");
+            Assert.fail("Expected a NotFoundException.");
+        } catch (NotFoundException e) {
+            // expected
+        }
+        for (int idx = 0; idx <= 4; idx++) {
+            Assert.assertEquals("API " + idx, storage.getApiDesign("user", String.valueOf(idx + 1)).getName());
+        }
+        Assert.assertEquals("API 0", storage.getApiDesign("user", legacyId).getName());
+
+        storage.addContent("user", "5", ApiContentType.Command, "{ \"command\": true }");
+        Assert.assertEquals(1, storage.listContentCommands("user", "5", 0).size());
+        Assert.assertFalse(primary.listApiDesignIdsChangedSince(null).contains("5"));
+        Assert.assertTrue(storage.listApiDesignIdsChangedSince(changeCursor).containsAll(Arrays.asList("2", "3", "4", "5")));
+        Assert.assertFalse(storage.listApiDesignIdsChangedSince(changeCursor).contains(legacyId));
+
+        // Listings span all shards
+        Assert.assertEquals(5, storage.listApiDesigns("user").size());
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5"), storage.listApiDesignIds(null, 10));
+        Assert.assertEquals(Arrays.asList("3", "4"), storage.listApiDesignIds("2", 2));
+        Assert.assertEquals(5, storage.listAccessibleApiDesignIds("user").size());
+        Assert.assertEquals(5, storage.getRecentApiDesigns("user").size());
+        storage.addContent("user", "2", ApiContentType.Command, "{ \"command\": true }");
+        Assert.assertEquals(2, storage.listUserActivity("user", 0, 10).size());
+        Assert.assertEquals(Arrays.asList("2"), storage.listUserActivity("user", 0, 1).stream()
+                .map(change -> change.getApiId()).collect(Collectors.toList()));
+
+        // A new instance (e.g. another node) finds the designs via the directory
+        storage.shutdown();
+        storage = new ShardedStorage(primary, Arrays.asList(shard), Collections.emptyList());
+        Assert.assertEquals("API 3", storage.getApiDesign("user", "4").getName());
+        Assert.assertEquals("API 0", storage.getApiDesign("user", legacyId).getName());
+        storage.deleteApiDesign("user", "4");
+        Assert.assertEquals(Arrays.asList("4"), storage.listDeletedApiDesignIds(new Date(System.currentTimeMillis() + 1000), 10));
+    }
+
+    @Test
+    public void testListApiDesigns() throws Exception {
+        storage = new ShardedStorage(primary, Arrays.asList(shard), Collections.emptyList());
+        List<String> expected = new ArrayList<>();
+        for (int idx = 1; idx <= 7; idx++) {
+            storage.createApiDesign("user", createDesign("API " + idx), "{}");
+            expected.add("API " + idx);
+        }
+
+        ApiDesignQuery query = new ApiDesignQuery();
+        query.setLimit(3);
+        List<String> names = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        do {
+            ApiDesignPage page = storage.listApiDesigns("user", query);
+            page.getItems().forEach(design -> names.add(design.getName()));
+            pageSizes.add(page.getItems().size());
+            query.setAfter(page.getNextCursor());
+        } while (query.getAfter() != null);
+        Assert.assertEquals(expected, names);
+        Assert.assertEquals(Arrays.asList(3, 3, 1), pageSizes);
+
+        query = new ApiDesignQuery();
+        query.setSort(ApiDesignSort.CREATED);
+        query.setAscending(false);
+        query.setLimit(4);
+        ApiDesignPage page = storage.listApiDesigns("user", query);
+        Assert.assertEquals(Arrays.asList("7", "6", "5", "4"),
+                page.getItems().stream().map(ApiDesign::getId).collect(Collectors.toList()));
+        query.setAfter(page.getNextCursor());
+        page = storage.listApiDesigns("user", query);
+        Assert.assertEquals(Arrays.asList("3", "2", "1"),
+                page.getItems().stream().map(ApiDesign::getId).collect(Collectors.toList()));
+        Assert.assertNull(page.getNextCursor());
+
+        query.setAfter("foo");
+        try {
+            storage.listApiDesigns("user", query);
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNewDesignShards() throws Exception {
+        storage = new ShardedStorage(primary, Arrays.asList(shard), Arrays.asList(SHARD));
+        for (int idx = 1; idx <= 3; idx++) {
+            String id = storage.createApiDesign("user", createDesign("API " + idx), "{}");
+            Assert.assertEquals("API " + idx, shard.getApiDesign("user", id).getName());
+        }
+        Assert.assertEquals(0, primary.listApiDesigns("user").size());
+        Assert.assertEquals(3, storage.listApiDesigns("user").size());
+    }
+
+    @Test
+    public void testUnshardedNodeDesignIds() throws Exception {
+        storage = new ShardedStorage(primary, Arrays.asList(shard), Arrays.asList(SHARD));
+        String shardedId = storage.createApiDesign("user", createDesign("API 1"), "{}");
+        Assert.assertEquals("API 1", shard.getApiDesign("user", shardedId).getName());
+
+        // A node that is not (yet) configured for sharding must not reuse the id allocated above
+        String unshardedId = primary.createApiDesign("user", createDesign("API 2"), "{}");
+        Assert.assertTrue(Long.parseLong(unshardedId) > Long.parseLong(shardedId));
+        Assert.assertEquals("API 2", storage.getApiDesign("user", unshardedId).getName());
+        Assert.assertEquals("API 1", storage.getApiDesign("user", shardedId).getName());
+    }
+
+    /**
+     * Creates a new (unsaved) API design with the given name.
+     * @param name
+     */
+    private static ApiDesign createDesign(String name) {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName(name);
+        return design;
+    }
+
+    /**
+     * Creates a datasource for the given (H2) URL.
+     * @param url
+     */
+    private static BasicDataSource createDatasource(String url) {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl(url);
+        return ds;
+    }
+
+}
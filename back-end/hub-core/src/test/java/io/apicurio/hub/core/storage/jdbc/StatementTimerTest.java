@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import java.sql.Driver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.IStorageMetrics;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class StatementTimerTest {
+
+    private static int counter = 0;
+
+    private BasicDataSource ds;
+    private final List<String> timed = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:timer" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        JdbcStorage.setMetrics(new IStorageMetrics() {
+            @Override
+            public void storageStatementExecuted(String datasource, String kind) {
+            }
+            @Override
+            public void storageStatementTimed(String datasource, String statement, long nanos) {
+                timed.add(datasource + ":" + statement);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JdbcStorage.setMetrics(null);
+        ds.close();
+    }
+
+    @Test
+    public void testStatementNames() throws Exception {
+        HubConfiguration config = new HubConfiguration();
+        JdbcStorage storage = new JdbcStorage();
+        TestUtil.setPrivateField(storage, "config", config);
+        TestUtil.setPrivateField(storage, "dataSource", ds);
+        TestUtil.setPrivateField(storage, "sqlStatements", new H2SqlStatements(config));
+        storage.postConstruct();
+
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API");
+        String designId = storage.createApiDesign("user", design, "{}");
+        storage.addContent("user", designId, ApiContentType.Command, "{}");
+
+        timed.clear();
+        storage.listContentCommands("user", designId, 0);
+        storage.listApiDesigns("user", new ApiDesignQuery());
+        storage.getCheckpoint("test");
+        Assert.assertTrue(timed.toString(), timed.contains("primary:selectContentCommands"));
+        Assert.assertTrue(timed.toString(), timed.contains("primary:selectApiDesigns"));
+        Assert.assertTrue(timed.toString(), timed.contains("primary:selectProperty"));
+        Assert.assertFalse(timed.toString(), timed.contains("primary:getDatabaseVersion"));
+        Assert.assertFalse(timed.toString(), timed.contains("primary:" + StatementTimer.UNKNOWN_STATEMENT));
+    }
+
+    @Test
+    public void testDescribeBindings() throws Exception {
+        List<String> bindings = new ArrayList<>();
+        Jdbi jdbi = Jdbi.create(ds);
+        jdbi.getConfig(SqlStatements.class).setTimingCollector(
+                (elapsed, ctx) -> bindings.add(StatementTimer.describeBindings(ctx)));
+        try (Handle handle = jdbi.open()) {
+            handle.createQuery("SELECT ?, ?, ?").bind(0, 42).bind(1, "secret").bind(2, (String) null)
+                    .mapToMap().list();
+            handle.createQuery("SELECT :id, :name").bind("id", 7L).bind("name", "user@example.com")
+                    .mapToMap().list();
+        }
+        Assert.assertEquals("[42, ***, null]", bindings.get(0));
+        Assert.assertEquals("[id=7, name=***]", bindings.get(1));
+    }
+
+}
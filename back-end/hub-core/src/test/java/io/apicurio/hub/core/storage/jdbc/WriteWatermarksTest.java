@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.core.storage.jdbc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class WriteWatermarksTest {
+
+    @Test
+    public void testRecentlyWritten() throws Exception {
+        WriteWatermarks watermarks = new WriteWatermarks(60000);
+        Assert.assertFalse(watermarks.isRecentlyWritten("1"));
+        watermarks.record("1", null, 0);
+        Assert.assertTrue(watermarks.isRecentlyWritten("1"));
+        Assert.assertFalse(watermarks.isRecentlyWritten("2"));
+
+        watermarks = new WriteWatermarks(0);
+        watermarks.record("1", null, 0);
+        Thread.sleep(5);
+        Assert.assertFalse(watermarks.isRecentlyWritten("1"));
+    }
+
+    @Test
+    public void testBehind() {
+        WriteWatermarks watermarks = new WriteWatermarks(0);
+        Assert.assertFalse(watermarks.isBehind("1", ApiContentType.Document, 0));
+
+        watermarks.record("1", ApiContentType.Document, 5);
+        watermarks.record("1", ApiContentType.Command, 7);
+        watermarks.record("1", ApiContentType.Command, 6);
+        Assert.assertTrue(watermarks.isBehind("1", ApiContentType.Document, 4));
+        Assert.assertFalse(watermarks.isBehind("1", ApiContentType.Document, 5));
+        Assert.assertTrue(watermarks.isBehind("1", ApiContentType.Command, 6));
+        Assert.assertFalse(watermarks.isBehind("1", ApiContentType.Command, 7));
+        Assert.assertFalse(watermarks.isBehind("2", ApiContentType.Command, 0));
+    }
+
+}
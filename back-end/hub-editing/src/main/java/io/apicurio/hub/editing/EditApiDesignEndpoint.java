@@ -18,7 +18,7 @@ package io.apicurio.hub.editing;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,21 +44,19 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.apicurio.hub.core.beans.ApiContentType;
-import io.apicurio.hub.core.beans.ApiDesign;
 import io.apicurio.hub.core.beans.ApiDesignCommand;
 import io.apicurio.hub.core.beans.ApiDesignCommandAck;
-import io.apicurio.hub.core.beans.ApiDesignContent;
-import io.apicurio.hub.core.beans.ApiDesignResourceInfo;
 import io.apicurio.hub.core.beans.ApiDesignUndoRedo;
 import io.apicurio.hub.core.beans.ApiDesignUndoRedoAck;
 import io.apicurio.hub.core.editing.ApiDesignEditingSession;
 import io.apicurio.hub.core.editing.IEditingSessionManager;
+import io.apicurio.hub.core.editing.RollupService;
 import io.apicurio.hub.core.exceptions.NotFoundException;
 import io.apicurio.hub.core.exceptions.ServerError;
 import io.apicurio.hub.core.js.OaiCommandException;
-import io.apicurio.hub.core.js.OaiCommandExecutor;
 import io.apicurio.hub.core.storage.IStorage;
 import io.apicurio.hub.core.storage.StorageException;
+import io.apicurio.hub.editing.journal.CommandJournal;
 import io.apicurio.hub.editing.metrics.IEditingMetrics;
 
 /**
@@ -80,9 +78,11 @@ public class EditApiDesignEndpoint {
     @Inject
     private IStorage storage;
     @Inject
-    private OaiCommandExecutor oaiCommandExecutor;
+    private RollupService rollupService;
     @Inject
     private IEditingMetrics metrics;
+    @Inject
+    private CommandJournal journal;
 
     /**
      * Called when a web socket connection is made.  The format for the web socket URL endpoint is:
@@ -131,8 +131,8 @@ public class EditApiDesignEndpoint {
             }
             
             // Send any commands that have been created since the user asked to join the editing session.
-            List<ApiDesignCommand> commands = this.storage.listAllContentCommands(userId, designId, contentVersion);
-            for (ApiDesignCommand command : commands) {
+            this.journal.flush();
+            this.storage.streamAllContentCommands(userId, designId, contentVersion, command -> {
                 String cmdData = command.getCommand();
 
                 StringBuilder builder = new StringBuilder();
@@ -154,10 +154,10 @@ public class EditApiDesignEndpoint {
                 logger.debug("Sending command to client (onOpenSession): {}", builder.toString());
                 
                 session.getBasicRemote().sendText(builder.toString());
-            }
+            });
             
             editingSession.sendJoinToOthers(session, userId);
-        } catch (ServerError | StorageException | IOException e) {
+        } catch (ServerError | StorageException e) {
             if (editingSession != null) {
                 editingSession.leave(session);
             }
@@ -215,29 +215,18 @@ public class EditApiDesignEndpoint {
                 return;
             }
             try {
-                cmdContentVersion = storage.addContent(user, designId, ApiContentType.Command, content);
+                if (this.journal.isEnabled()) {
+                    cmdContentVersion = this.journal.append(user, designId, Collections.singletonList(content)).get(0);
+                } else {
+                    cmdContentVersion = storage.addContent(user, designId, ApiContentType.Command, content);
+                }
             } catch (StorageException e) {
                 logger.error("Error storing the command.", e);
                 // TODO do something sensible here - send a msg to the client?
                 return;
             }
             
-            // Send an ack message back to the user
-            ApiDesignCommandAck ack = new ApiDesignCommandAck();
-            ack.setCommandId(localCommandId);
-            ack.setContentVersion(cmdContentVersion);
-            editingSession.sendAckTo(session, ack);
-            logger.debug("ACK sent back to client.");
-            
-            // Now propagate the command to all other clients
-            ApiDesignCommand command = new ApiDesignCommand();
-            command.setCommand(content);
-            command.setContentVersion(cmdContentVersion);
-            command.setAuthor(user);
-            command.setReverted(false);
-            editingSession.sendCommandToOthers(session, user, command);
-            logger.debug("Command propagated to 'other' clients.");
-
+            ackAndPropagateCommand(session, editingSession, user, localCommandId, content, cmdContentVersion);
             return;
         } else if (msgType.equals("selection")) {
             String user = editingSession.getUser(session);
@@ -269,6 +258,7 @@ public class EditApiDesignEndpoint {
             logger.debug("\tuser:" + user);
             boolean reverted = false;
             try {
+                this.journal.flush();
                 reverted = storage.undoContent(user, designId, contentVersion);
             } catch (StorageException e) {
                 logger.error("Error undoing a command.", e);
@@ -308,6 +298,7 @@ public class EditApiDesignEndpoint {
             logger.debug("\tuser:" + user);
             boolean restored = false;
             try {
+                this.journal.flush();
                 restored = storage.redoContent(user, designId, contentVersion);
             } catch (StorageException e) {
                 logger.error("Error undoing a command.", e);
@@ -354,7 +345,8 @@ public class EditApiDesignEndpoint {
             editingSessionManager.closeEditingSession(editingSession);
             
             try {
-                rollupCommands(userId, designId);
+                this.journal.flush();
+                rollupService.rollupCommands(userId, designId);
             } catch (NotFoundException | StorageException | OaiCommandException e) {
                 logger.error("Failed to rollup commands for API with id: " + designId, "Rollup error: ", e);
             }
@@ -364,56 +356,32 @@ public class EditApiDesignEndpoint {
     }
 
     /**
-     * Finds all commands executed since the last full content rollup and applies
-     * them to the API design.  This produces a "latest" version of the API
-     * and stores that as a new content entry in the storage.
-     * @param userId
-     * @param designId
-     * @throws StorageException 
-     * @throws NotFoundException 
-     * @throws OaiCommandException 
+     * Sends an ack for a (stored) command back to the client that sent it, and then propagates
+     * the command to all other clients.
+     * @param session
+     * @param editingSession
+     * @param user
+     * @param localCommandId
+     * @param content
+     * @param cmdContentVersion
      */
-    private void rollupCommands(String userId, String designId) throws NotFoundException, StorageException, OaiCommandException {
-        logger.debug("Rolling up commands for API with ID: {}", designId);
-        ApiDesignContent designContent = this.storage.getLatestContentDocument(userId, designId);
-        List<ApiDesignCommand> apiCommands = this.storage.listContentCommands(userId, designId, designContent.getContentVersion());
-        if (apiCommands.isEmpty()) {
-            logger.debug("No hanging commands found, rollup of API {} canceled.", designId);
-            return;
-        }
-        List<String> commands = new ArrayList<>(apiCommands.size());
-        for (ApiDesignCommand apiCommand : apiCommands) {
-            commands.add(apiCommand.getCommand());
-        }
-        String content = this.oaiCommandExecutor.executeCommands(designContent.getOaiDocument(), commands);
-        long contentVersion = this.storage.addContent(userId, designId, ApiContentType.Document, content);
-        logger.debug("Rollup of {} commands complete with new content version: {}", commands.size(), contentVersion);
+    private void ackAndPropagateCommand(Session session, ApiDesignEditingSession editingSession, String user,
+            long localCommandId, String content, long cmdContentVersion) {
+        // Send an ack message back to the user
+        ApiDesignCommandAck ack = new ApiDesignCommandAck();
+        ack.setCommandId(localCommandId);
+        ack.setContentVersion(cmdContentVersion);
+        editingSession.sendAckTo(session, ack);
+        logger.debug("ACK sent back to client.");
         
-        try {
-            logger.debug("Updating meta-data for API design {} if necessary.", designId);
-            ApiDesign design = this.storage.getApiDesign(userId, designId);
-            ApiDesignResourceInfo info = ApiDesignResourceInfo.fromContent(content);
-            boolean dirty = false;
-            if (design.getName() == null || !design.getName().equals(info.getName())) {
-                design.setName(info.getName());
-                dirty = true;
-            }
-            if (design.getDescription() == null || !design.getDescription().equals(info.getDescription())) {
-                design.setDescription(info.getDescription());
-                dirty = true;
-            }
-            if (design.getTags() == null || !design.getTags().equals(info.getTags())) {
-                design.setTags(info.getTags());
-                dirty = true;
-            }
-            if (dirty) {
-                logger.debug("API design {} meta-data changed, updating in storage.", designId);
-                this.storage.updateApiDesign(userId, design);
-            }
-        } catch (Exception e) {
-            // Not the end of the world if we fail to update the API's meta-data
-            logger.error(e.getMessage(), e);
-        }
+        // Now propagate the command to all other clients
+        ApiDesignCommand command = new ApiDesignCommand();
+        command.setCommand(content);
+        command.setContentVersion(cmdContentVersion);
+        command.setAuthor(user);
+        command.setReverted(false);
+        editingSession.sendCommandToOthers(session, user, command);
+        logger.debug("Command propagated to 'other' clients.");
     }
 
     /**
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.editing.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.hub.core.beans.ApiContentEntry;
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.StorageException;
+
+/**
+ * Write-behind support for editing commands.  When enabled, commands are durably appended to a
+ * local (memory-mapped) journal file instead of being stored in the database directly, which
+ * means they can be ACKed without waiting for the database.  A background thread periodically
+ * moves the journaled commands to the database (in a single batch), and any commands that were
+ * not yet moved when the server stopped are moved when it starts again.
+ * 
+ * Commands are given their final content version when they are journaled - the versions are
+ * reserved from the database (see {@link IStorage#reserveContentVersions(int)}) as the commands
+ * are appended, so they are shared with (and ordered like) all other content.  Before reserving
+ * a version for a design, the design is marked as having pending content (see
+ * {@link IStorage#markContentPending(String, String)}) until its commands have been flushed.
+ * While marked, no snapshot (e.g. a rollup) of the design may be stored, as the snapshot would
+ * get a higher version than the journaled commands and would therefore hide them.  The marks
+ * are owned by the journal's id, which is kept in the journal directory, so that the marks left
+ * behind by a crash are cleared once the journal has been replayed.
+ * 
+ * Note that journaled commands are only visible to other nodes once they have been flushed.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+@ApplicationScoped
+public class CommandJournal {
+    
+    private static Logger logger = LoggerFactory.getLogger(CommandJournal.class);
+    
+    private static final String JOURNAL_FILE_NAME = "commands.journal";
+    private static final String JOURNAL_ID_FILE_NAME = "journal.id";
+
+    @Inject
+    private HubConfiguration config;
+    @Inject
+    private IStorage storage;
+    
+    private JournalFile journal;
+    private String journalId;
+    private final Set<String> markedDesigns = new HashSet<>();
+    private List<ApiContentEntry> pending = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private Thread flusher;
+    private volatile boolean stopped;
+    
+    @PostConstruct
+    public void postConstruct() {
+        String dir = config.getEditingJournalDir();
+        if (dir == null || dir.trim().isEmpty()) {
+            return;
+        }
+        try {
+            if (storage.reserveContentVersions(0) == null) {
+                logger.warn("The editing command journal is not supported by the configured database, commands will be stored directly.");
+                return;
+            }
+            File journalDir = new File(dir);
+            journalDir.mkdirs();
+            File journalFile = new File(journalDir, JOURNAL_FILE_NAME);
+            logger.info("Opening the editing command journal: {}", journalFile.getAbsolutePath());
+            String journalId = readJournalId(journalDir);
+            JournalFile journal = new JournalFile(journalFile, config.getEditingJournalSize() * 1024 * 1024);
+            
+            // Replay the entries that were not flushed before the server was stopped
+            List<ApiContentEntry> unflushed = journal.readUnflushed();
+            if (!unflushed.isEmpty()) {
+                int added = storage.addReservedContent(unflushed);
+                logger.info("Replayed {} (of {}) unflushed commands from the editing command journal.", added, unflushed.size());
+            }
+            storage.clearContentPending(journalId, null);
+            journal.markFlushed(journal.getWritePosition());
+            this.journalId = journalId;
+            this.journal = journal;
+        } catch (IOException | StorageException e) {
+            logger.error("Error opening the editing command journal, commands will be stored directly.", e);
+            return;
+        }
+        
+        int interval = config.getEditingJournalFlushInterval();
+        this.flusher = new Thread(() -> runFlusher(interval), "apicurio-command-journal");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+    
+    @PreDestroy
+    public void preDestroy() {
+        if (this.journal == null) {
+            return;
+        }
+        this.stopped = true;
+        this.flusher.interrupt();
+        try {
+            this.flusher.join();
+            flush();
+            this.journal.close();
+        } catch (InterruptedException | StorageException | IOException e) {
+            logger.error("Error closing the editing command journal.", e);
+        }
+    }
+    
+    /**
+     * @return true if commands should be appended to the journal
+     */
+    public boolean isEnabled() {
+        return this.journal != null;
+    }
+    
+    /**
+     * Durably appends the given commands to the journal, and returns the content version of
+     * each of them.
+     * @param user
+     * @param designId
+     * @param contents
+     * @throws StorageException
+     */
+    public List<Long> append(String user, String designId, List<String> contents) throws StorageException {
+        List<ApiContentEntry> entries = new ArrayList<>(contents.size());
+        List<Long> versions = new ArrayList<>(contents.size());
+        synchronized (this) {
+            // The design must be marked before its versions are reserved, so that a snapshot that
+            // gets a higher version is guaranteed to see the mark
+            if (!this.markedDesigns.contains(designId)) {
+                storage.markContentPending(designId, this.journalId);
+                this.markedDesigns.add(designId);
+            }
+            List<Long> reserved = storage.reserveContentVersions(contents.size());
+            Date now = new Date();
+            for (int idx = 0; idx < contents.size(); idx++) {
+                String content = contents.get(idx);
+                ApiContentEntry entry = new ApiContentEntry();
+                entry.setContentVersion(reserved.get(idx));
+                entry.setDesignId(designId);
+                entry.setType(ApiContentType.Command);
+                entry.setData(content);
+                entry.setCreatedBy(user);
+                entry.setCreatedOn(now);
+                entries.add(entry);
+                versions.add(entry.getContentVersion());
+            }
+            try {
+                if (this.journal.append(entries)) {
+                    this.pending.addAll(entries);
+                    return versions;
+                }
+            } catch (IOException e) {
+                throw new StorageException("Error appending to the editing command journal.", e);
+            }
+        }
+        
+        // The journal is full - flush it (blocking any other appends, so that the journal can be
+        // reset) and try again
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (!this.pending.isEmpty()) {
+                    storage.addReservedContent(this.pending);
+                    this.pending = new ArrayList<>();
+                }
+                this.journal.markFlushed(this.journal.getWritePosition());
+                try {
+                    if (this.journal.append(entries)) {
+                        this.pending.addAll(entries);
+                        clearMarks();
+                        return versions;
+                    }
+                } catch (IOException e) {
+                    throw new StorageException("Error appending to the editing command journal.", e);
+                }
+            }
+        }
+        throw new StorageException("The commands do not fit in the editing command journal.");
+    }
+    
+    /**
+     * Moves all journaled commands to the database.  This must be called before reading any
+     * commands (of a design being edited) from the database.
+     * @throws StorageException
+     */
+    public void flush() throws StorageException {
+        if (this.journal == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            List<ApiContentEntry> entries;
+            int position;
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    clearMarks();
+                    return;
+                }
+                entries = this.pending;
+                position = this.journal.getWritePosition();
+                this.pending = new ArrayList<>();
+            }
+            try {
+                storage.addReservedContent(entries);
+            } catch (StorageException e) {
+                synchronized (this) {
+                    entries.addAll(this.pending);
+                    this.pending = entries;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                this.journal.markFlushed(position);
+                clearMarks();
+            }
+        }
+    }
+
+    /**
+     * Clears the marks of all designs that no longer have any pending commands.  Must be called
+     * while holding the lock on the journal.  A mark that cannot be cleared is kept, and will be
+     * cleared by a later flush.
+     */
+    private void clearMarks() {
+        if (this.markedDesigns.isEmpty()) {
+            return;
+        }
+        Set<String> flushed = new HashSet<>(this.markedDesigns);
+        for (ApiContentEntry entry : this.pending) {
+            flushed.remove(entry.getDesignId());
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        try {
+            storage.clearContentPending(this.journalId, flushed);
+            this.markedDesigns.removeAll(flushed);
+        } catch (StorageException e) {
+            logger.error("Error clearing the pending content marks of the editing command journal.", e);
+        }
+    }
+
+    /**
+     * Reads the id of the journal in the given directory, creating it if necessary.
+     * @param journalDir
+     * @throws IOException
+     */
+    private static String readJournalId(File journalDir) throws IOException {
+        File idFile = new File(journalDir, JOURNAL_ID_FILE_NAME);
+        if (idFile.isFile()) {
+            return new String(Files.readAllBytes(idFile.toPath()), StandardCharsets.UTF_8).trim();
+        }
+        String journalId = UUID.randomUUID().toString();
+        Files.write(idFile.toPath(), journalId.getBytes(StandardCharsets.UTF_8));
+        return journalId;
+    }
+
+    /**
+     * Periodically flushes the journal until the service is stopped.
+     * @param interval
+     */
+    private void runFlusher(int interval) {
+        while (!this.stopped) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Error flushing the editing command journal.", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.editing.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.apicurio.hub.core.beans.ApiContentEntry;
+import io.apicurio.hub.core.beans.ApiContentType;
+
+/**
+ * A fixed size, memory-mapped journal file that content entries are appended to.  The file
+ * starts with a header (magic number, format version and the position up to which the entries
+ * have been flushed), followed by the records.  Each record is prefixed with its length and a
+ * CRC32 checksum, and the last record is always followed by a zero length, so that a record
+ * that was only partially written (e.g. due to a crash) is detected and ignored when the file
+ * is read again.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author eric.wittmann@gmail.com
+ */
+public class JournalFile {
+    
+    private static final int MAGIC = 0x41504A4C;
+    private static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    private static final int FLUSHED_POSITION_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    /**
+     * Constructor.  Opens (or creates) the journal file with the given size.
+     * @param journalFile
+     * @param size
+     * @throws IOException
+     */
+    public JournalFile(File journalFile, int size) throws IOException {
+        this.file = new RandomAccessFile(journalFile, "rw");
+        int capacity = (int) Math.max(size, this.file.length());
+        this.buffer = this.file.getChannel().map(MapMode.READ_WRITE, 0, capacity);
+        
+        int magic = this.buffer.getInt(0);
+        if (magic == 0) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, FORMAT_VERSION);
+            this.buffer.putLong(FLUSHED_POSITION_OFFSET, HEADER_SIZE);
+            this.buffer.putInt(HEADER_SIZE, 0);
+            this.buffer.force();
+        } else if (magic != MAGIC || this.buffer.getInt(4) != FORMAT_VERSION) {
+            this.file.close();
+            throw new IOException("Not a (supported) journal file: " + journalFile.getAbsolutePath());
+        }
+        
+        // Find the end of the last complete record
+        this.writePosition = getFlushedPosition();
+        while (readRecord(this.writePosition) != null) {
+            this.writePosition += RECORD_HEADER_SIZE + this.buffer.getInt(this.writePosition);
+        }
+    }
+    
+    /**
+     * Durably appends the given entries to the journal.  Returns false (without appending
+     * anything) if there is not enough room left in the journal.
+     * @param entries
+     * @throws IOException
+     */
+    public boolean append(List<ApiContentEntry> entries) throws IOException {
+        List<byte[]> records = new ArrayList<>(entries.size());
+        int size = 0;
+        for (ApiContentEntry entry : entries) {
+            byte[] record = serialize(entry);
+            records.add(record);
+            size += RECORD_HEADER_SIZE + record.length;
+        }
+        if (this.writePosition + size + 4 > this.buffer.capacity()) {
+            return false;
+        }
+        
+        int position = this.writePosition;
+        for (byte[] record : records) {
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            this.buffer.position(position + RECORD_HEADER_SIZE);
+            this.buffer.put(record);
+            this.buffer.putInt(position + 4, (int) crc.getValue());
+            this.buffer.putInt(position, record.length);
+            position += RECORD_HEADER_SIZE + record.length;
+        }
+        this.buffer.putInt(position, 0);
+        this.buffer.force();
+        this.writePosition = position;
+        return true;
+    }
+    
+    /**
+     * Reads all of the entries that were appended after the flushed position.
+     * @throws IOException
+     */
+    public List<ApiContentEntry> readUnflushed() throws IOException {
+        List<ApiContentEntry> rval = new ArrayList<>();
+        int position = getFlushedPosition();
+        while (position < this.writePosition) {
+            byte[] record = readRecord(position);
+            rval.add(deserialize(record));
+            position += RECORD_HEADER_SIZE + record.length;
+        }
+        return rval;
+    }
+    
+    /**
+     * Marks all entries up to the given position as flushed.  When all entries are flushed the
+     * journal is reset, so that its full size is available again.
+     * @param position
+     */
+    public void markFlushed(int position) {
+        if (position >= this.writePosition) {
+            this.buffer.putInt(HEADER_SIZE, 0);
+            this.buffer.putLong(FLUSHED_POSITION_OFFSET, HEADER_SIZE);
+            this.writePosition = HEADER_SIZE;
+        } else {
+            this.buffer.putLong(FLUSHED_POSITION_OFFSET, position);
+        }
+        this.buffer.force();
+    }
+    
+    /**
+     * @return the position right after the last appended entry
+     */
+    public int getWritePosition() {
+        return this.writePosition;
+    }
+    
+    /**
+     * @return the position up to which the entries have been flushed
+     */
+    public int getFlushedPosition() {
+        return (int) this.buffer.getLong(FLUSHED_POSITION_OFFSET);
+    }
+    
+    /**
+     * Closes the journal file.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.buffer.force();
+        this.file.close();
+    }
+
+    /**
+     * Reads the (payload of the) record at the given position, or returns null if there is no
+     * complete and valid record at that position.
+     * @param position
+     */
+    private byte[] readRecord(int position) {
+        if (position + RECORD_HEADER_SIZE > this.buffer.capacity()) {
+            return null;
+        }
+        int length = this.buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length > this.buffer.capacity()) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        this.buffer.position(position + RECORD_HEADER_SIZE);
+        this.buffer.get(record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        if ((int) crc.getValue() != this.buffer.getInt(position + 4)) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Serializes a single entry.
+     * @param entry
+     * @throws IOException
+     */
+    private static byte[] serialize(ApiContentEntry entry) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            byte[] data = entry.getData().getBytes(StandardCharsets.UTF_8);
+            out.writeLong(entry.getContentVersion());
+            out.writeLong(entry.getCreatedOn().getTime());
+            out.writeInt(entry.getType().getId());
+            out.writeUTF(entry.getDesignId());
+            out.writeUTF(entry.getCreatedBy());
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Deserializes a single entry.
+     * @param record
+     * @throws IOException
+     */
+    private static ApiContentEntry deserialize(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            ApiContentEntry entry = new ApiContentEntry();
+            entry.setContentVersion(in.readLong());
+            entry.setCreatedOn(new Date(in.readLong()));
+            entry.setType(ApiContentType.fromId(in.readInt()));
+            entry.setDesignId(in.readUTF());
+            entry.setCreatedBy(in.readUTF());
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            entry.setData(new String(data, StandardCharsets.UTF_8));
+            return entry;
+        }
+    }
+
+}
@@ -18,11 +18,14 @@ package io.apicurio.hub.editing.metrics;
 
 import java.io.IOException;
 
+import io.apicurio.hub.core.js.IScriptEngineMetrics;
+import io.apicurio.hub.core.storage.IStorageMetrics;
+
 /**
  * Interface used to report metrics information for the WebSocket based editing component.
  * @author eric.wittmann@gmail.com
  */
-public interface IEditingMetrics {
+public interface IEditingMetrics extends IScriptEngineMetrics, IStorageMetrics {
 
     /**
      * Returns the current state of the metrics.  This information is typically presented
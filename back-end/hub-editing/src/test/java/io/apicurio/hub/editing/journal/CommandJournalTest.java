@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.editing.journal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignContent;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.editing.RollupService;
+import io.apicurio.hub.core.js.OaiCommandExecutor;
+import io.apicurio.hub.core.storage.StorageException;
+import io.apicurio.hub.core.storage.jdbc.H2SqlStatements;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class CommandJournalTest {
+
+    private static final String JOURNAL_DIR_SYSPROP = "apicurio.hub.editing.journal.dir";
+    private static final String FLUSH_INTERVAL_SYSPROP = "apicurio.hub.editing.journal.flush-interval";
+
+    private static int counter = 0;
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+    }
+
+    private File dir;
+    private BasicDataSource ds;
+    private JdbcStorage storage;
+    private HubConfiguration config;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("journal").toFile();
+        System.setProperty(JOURNAL_DIR_SYSPROP, dir.getAbsolutePath());
+        // Only flush explicitly
+        System.setProperty(FLUSH_INTERVAL_SYSPROP, "3600000");
+
+        ds = new BasicDataSource();
+        ds.setDriverClassName(Driver.class.getName());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setUrl("jdbc:h2:mem:journal" + (counter++) + ";DB_CLOSE_DELAY=-1");
+        config = new HubConfiguration();
+        storage = new JdbcStorage();
+        TestUtil.setPrivateField(storage, "config", config);
+        TestUtil.setPrivateField(storage, "dataSource", ds);
+        TestUtil.setPrivateField(storage, "sqlStatements", new H2SqlStatements(config));
+        storage.postConstruct();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(JOURNAL_DIR_SYSPROP);
+        System.clearProperty(FLUSH_INTERVAL_SYSPROP);
+        ds.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFailedFlushKeepsCommands() throws Exception {
+        String id = createDesign();
+        CommandJournal journal = createJournal();
+        Assert.assertTrue(journal.isEnabled());
+        journal.append("user", id, Arrays.asList("{ \"command\": 1 }", "{ \"command\": 2 }"));
+
+        // The database (temporarily) refuses the commands - they must not be dropped
+        execute("ALTER TABLE api_content ADD CONSTRAINT CK_journal_test CHECK (type <> 1)");
+        try {
+            journal.flush();
+            Assert.fail("Expected a StorageException.");
+        } catch (StorageException e) {
+            // expected
+        }
+        Assert.assertEquals(0, storage.listContentCommands("user", id, 0).size());
+
+        // Still in the journal after a restart, and stored once the database accepts them again
+        journal.preDestroy();
+        execute("ALTER TABLE api_content DROP CONSTRAINT CK_journal_test");
+        journal = createJournal();
+        Assert.assertEquals(2, storage.listContentCommands("user", id, 0).size());
+        journal.preDestroy();
+    }
+
+    @Test
+    public void testPurgedDesignCommandsDropped() throws Exception {
+        String id = createDesign();
+        String purgedId = createDesign();
+        CommandJournal journal = createJournal();
+        journal.append("user", id, Collections.singletonList("{ \"command\": 1 }"));
+        journal.append("user", purgedId, Collections.singletonList("{ \"command\": 2 }"));
+
+        storage.deleteApiDesign("user", purgedId);
+        while (storage.purgeApiDesign(purgedId, 100) == 100) {
+            // keep purging
+        }
+        journal.flush();
+        Assert.assertEquals(1, storage.listContentCommands("user", id, 0).size());
+        journal.preDestroy();
+    }
+
+    @Test
+    public void testRollupWaitsForJournaledCommands() throws Exception {
+        String id = createDesign();
+        long initialVersion = storage.getLatestContentDocument("user", id).getContentVersion();
+        CommandJournal journal = createJournal();
+        long journaledVersion = journal.append("user", id, Collections.singletonList(changeTitle("Journaled API"))).get(0);
+
+        // Another writer stores a command (with a higher version) and rolls up the design while
+        // the journaled command is still pending - the rollup must not hide the journaled command
+        storage.addContent("user", id, ApiContentType.Command, changeTitle("Direct API"));
+        RollupService rollupService = createRollupService();
+        Assert.assertFalse(rollupService.rollupCommands("user", id));
+        Assert.assertEquals(initialVersion, storage.getLatestContentDocument("user", id).getContentVersion());
+
+        // Once flushed, the rollup includes both commands (in version order)
+        journal.flush();
+        Assert.assertFalse(storage.isContentPending(id));
+        Assert.assertTrue(rollupService.rollupCommands("user", id));
+        ApiDesignContent document = storage.getLatestContentDocument("user", id);
+        Assert.assertTrue(document.getContentVersion() > journaledVersion);
+        Assert.assertTrue(document.getOaiDocument().contains("Direct API"));
+        Assert.assertEquals(0, storage.listContentCommands("user", id, document.getContentVersion()).size());
+        journal.preDestroy();
+    }
+
+    /**
+     * Creates a rollup service that stores its snapshots directly (i.e. not through the journal).
+     */
+    private RollupService createRollupService() {
+        RollupService rollupService = new RollupService();
+        TestUtil.setPrivateField(rollupService, "storage", storage);
+        TestUtil.setPrivateField(rollupService, "oaiCommandExecutor", new OaiCommandExecutor());
+        TestUtil.setPrivateField(rollupService, "config", config);
+        return rollupService;
+    }
+
+    /**
+     * Returns a command that changes the title of an API design.
+     * @param title
+     */
+    private static String changeTitle(String title) {
+        return "{ \"__type\": \"ChangeTitleCommand_30\", \"_newTitle\": \"" + title + "\" }";
+    }
+
+    /**
+     * Creates (and starts) a command journal, replaying any commands left in it.
+     */
+    private CommandJournal createJournal() {
+        CommandJournal journal = new CommandJournal();
+        TestUtil.setPrivateField(journal, "config", config);
+        TestUtil.setPrivateField(journal, "storage", storage);
+        journal.postConstruct();
+        return journal;
+    }
+
+    /**
+     * Creates a new API design.
+     */
+    private String createDesign() throws Exception {
+        ApiDesign design = new ApiDesign();
+        design.setCreatedBy("user");
+        design.setCreatedOn(new Date());
+        design.setName("API Name");
+        return storage.createApiDesign("user", design, "{ \"openapi\": \"3.0.0\" }");
+    }
+
+    /**
+     * Executes a (DDL) statement against the database.
+     * @param sql
+     */
+    private void execute(String sql) throws Exception {
+        try (Connection connection = ds.getConnection()) {
+            connection.createStatement().execute(sql);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.hub.editing.journal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.apicurio.hub.core.beans.ApiContentEntry;
+import io.apicurio.hub.core.beans.ApiContentType;
+
+/**
+ * @author eric.wittmann@gmail.com
+ */
+public class JournalFileTest {
+    
+    private File dir;
+    
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("journal").toFile();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        File file = new File(dir, "test.journal");
+        JournalFile journal = new JournalFile(file, 4096);
+        Assert.assertTrue(journal.readUnflushed().isEmpty());
+        Assert.assertTrue(journal.append(entries(1, 3)));
+        Assert.assertTrue(journal.append(entries(4, 1)));
+        Assert.assertEquals(4, journal.readUnflushed().size());
+        journal.close();
+        
+        // Reopening the journal finds all of the (unflushed) entries
+        journal = new JournalFile(file, 4096);
+        List<ApiContentEntry> unflushed = journal.readUnflushed();
+        Assert.assertEquals(4, unflushed.size());
+        ApiContentEntry entry = unflushed.get(3);
+        Assert.assertEquals(4, entry.getContentVersion());
+        Assert.assertEquals("design-4", entry.getDesignId());
+        Assert.assertEquals(ApiContentType.Command, entry.getType());
+        Assert.assertEquals("{ \"command\": \"éè 4\" }", entry.getData());
+        Assert.assertEquals("user", entry.getCreatedBy());
+        Assert.assertEquals(1000L, entry.getCreatedOn().getTime());
+        
+        // Partially flushed
+        int position = journal.getWritePosition();
+        journal.append(entries(5, 2));
+        journal.markFlushed(position);
+        Assert.assertEquals(2, journal.readUnflushed().size());
+        journal.close();
+        journal = new JournalFile(file, 4096);
+        Assert.assertEquals(5, journal.readUnflushed().get(0).getContentVersion());
+        
+        // Fully flushed - the journal is reset
+        journal.markFlushed(journal.getWritePosition());
+        Assert.assertEquals(JournalFile.HEADER_SIZE, journal.getWritePosition());
+        Assert.assertTrue(journal.readUnflushed().isEmpty());
+        journal.close();
+        journal = new JournalFile(file, 4096);
+        Assert.assertTrue(journal.readUnflushed().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        JournalFile journal = new JournalFile(new File(dir, "full.journal"), 1024);
+        int appended = 0;
+        while (journal.append(entries(appended + 1, 1))) {
+            appended++;
+        }
+        Assert.assertTrue(appended > 0);
+        Assert.assertEquals(appended, journal.readUnflushed().size());
+        
+        journal.markFlushed(journal.getWritePosition());
+        Assert.assertTrue(journal.append(entries(appended + 1, 1)));
+        Assert.assertEquals(appended + 1, journal.readUnflushed().get(0).getContentVersion());
+        journal.close();
+    }
+    
+    @Test
+    public void testTornRecord() throws Exception {
+        File file = new File(dir, "torn.journal");
+        JournalFile journal = new JournalFile(file, 4096);
+        journal.append(entries(1, 1));
+        int position = journal.getWritePosition();
+        journal.append(entries(2, 1));
+        journal.close();
+        
+        // Corrupt the last record, as if the server crashed while it was being written
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        bytes[position + 20] ^= 0x7F;
+        FileUtils.writeByteArrayToFile(file, bytes);
+        
+        journal = new JournalFile(file, 4096);
+        Assert.assertEquals(1, journal.readUnflushed().size());
+        Assert.assertEquals(position, journal.getWritePosition());
+        journal.close();
+    }
+    
+    private static List<ApiContentEntry> entries(long firstVersion, int count) {
+        List<ApiContentEntry> rval = new ArrayList<>();
+        for (long version = firstVersion; version < firstVersion + count; version++) {
+            ApiContentEntry entry = new ApiContentEntry();
+            entry.setContentVersion(version);
+            entry.setDesignId("design-" + version);
+            entry.setType(ApiContentType.Command);
+            entry.setData("{ \"command\": \"éè " + version + "\" }");
+            entry.setCreatedBy("user");
+            entry.setCreatedOn(new Date(1000L));
+            rval.add(entry);
+        }
+        return rval;
+    }
+
+}
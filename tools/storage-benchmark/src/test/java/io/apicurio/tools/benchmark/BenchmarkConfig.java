@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.tools.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The configuration of a storage benchmark run, read from system properties (which can be
+ * passed on the maven command line, e.g. -Dbenchmark.designs=1000).
+ * @author eric.wittmann@gmail.com
+ */
+public class BenchmarkConfig {
+
+    private String database;
+    private String url;
+    private String driver;
+    private String user;
+    private String password;
+    private int designs;
+    private int commandsPerDesign;
+    private int collaboratorsPerDesign;
+    private int users;
+    private int threads;
+    private int warmup;
+    private int duration;
+    private int soak;
+    private int soakInterval;
+    private List<String> operations;
+    private boolean reuse;
+    private File output;
+
+    /**
+     * Reads the benchmark configuration from the system properties.
+     */
+    public static BenchmarkConfig fromSystemProperties() {
+        BenchmarkConfig config = new BenchmarkConfig();
+        config.database = System.getProperty("benchmark.database", "h2");
+        boolean h2 = "h2".equals(config.database);
+        config.url = System.getProperty("benchmark.jdbc.url",
+                h2 ? "jdbc:h2:file:" + new File("target/benchmark-db/apicurio").getAbsolutePath() : null);
+        config.driver = System.getProperty("benchmark.jdbc.driver", h2 ? "org.h2.Driver" : "org.postgresql.Driver");
+        config.user = System.getProperty("benchmark.jdbc.user", h2 ? "sa" : "apicurio");
+        config.password = System.getProperty("benchmark.jdbc.password", h2 ? "" : "apicurio");
+        config.designs = Integer.getInteger("benchmark.designs", 10000);
+        config.commandsPerDesign = Integer.getInteger("benchmark.commands", 200);
+        config.collaboratorsPerDesign = Integer.getInteger("benchmark.collaborators", 5);
+        config.users = Integer.getInteger("benchmark.users", 100);
+        config.threads = Integer.getInteger("benchmark.threads", 4);
+        config.warmup = Integer.getInteger("benchmark.warmup", 10);
+        config.duration = Integer.getInteger("benchmark.duration", 30);
+        config.soak = Integer.getInteger("benchmark.soak", 0);
+        config.soakInterval = Integer.getInteger("benchmark.soak.interval", 10);
+        config.operations = new ArrayList<>();
+        for (String operation : System.getProperty("benchmark.operations", "").split(",")) {
+            if (!operation.trim().isEmpty()) {
+                config.operations.add(operation.trim());
+            }
+        }
+        config.reuse = Boolean.parseBoolean(System.getProperty("benchmark.reuse", "true"));
+        config.output = new File(System.getProperty("benchmark.output", "target/storage-benchmark-" + config.database + ".json"));
+        return config;
+    }
+
+    /**
+     * @return the configuration as a map (included in the benchmark results)
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("database", database);
+        map.put("url", url);
+        map.put("designs", designs);
+        map.put("commandsPerDesign", commandsPerDesign);
+        map.put("collaboratorsPerDesign", collaboratorsPerDesign);
+        map.put("users", users);
+        map.put("threads", threads);
+        map.put("warmupSeconds", warmup);
+        map.put("durationSeconds", duration);
+        map.put("soakSeconds", soak);
+        map.put("operations", operations);
+        return map;
+    }
+
+    /**
+     * @return the database type (h2 or postgresql9)
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return the JDBC url of the database, or null if none is configured
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the JDBC driver class
+     */
+    public String getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return the database user
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * @return the database password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the number of API designs to generate
+     */
+    public int getDesigns() {
+        return designs;
+    }
+
+    /**
+     * @return the number of command rows to generate for every API design
+     */
+    public int getCommandsPerDesign() {
+        return commandsPerDesign;
+    }
+
+    /**
+     * @return the number of collaborators (ACL entries besides the owner) of every API design
+     */
+    public int getCollaboratorsPerDesign() {
+        return collaboratorsPerDesign;
+    }
+
+    /**
+     * @return the number of distinct users owning and collaborating on the API designs
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the number of threads calling the storage concurrently
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the number of seconds every operation is run before it is measured
+     */
+    public int getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return the number of seconds every operation is measured
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the number of seconds to run the (mixed) soak workload, 0 to skip it
+     */
+    public int getSoak() {
+        return soak;
+    }
+
+    /**
+     * @return the number of seconds covered by each soak test report
+     */
+    public int getSoakInterval() {
+        return soakInterval;
+    }
+
+    /**
+     * @return the names of the operations to benchmark (all when empty)
+     */
+    public List<String> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return true if an already populated database should be reused
+     */
+    public boolean isReuse() {
+        return reuse;
+    }
+
+    /**
+     * @return the file the (JSON) results are written to
+     */
+    public File getOutput() {
+        return output;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.tools.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latencies of the calls made (by a single thread) to a storage operation, and
+ * summarizes them (throughput and latency percentiles).  The recorders of multiple threads
+ * are merged before they are summarized.
+ * @author eric.wittmann@gmail.com
+ */
+public class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    /**
+     * Records the latency of a successful call.
+     * @param nanos
+     */
+    public void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    /**
+     * Records a failed call.
+     */
+    public void error() {
+        errors++;
+    }
+
+    /**
+     * Adds the calls recorded by another recorder to this one.
+     * @param other
+     */
+    public void merge(LatencyRecorder other) {
+        for (int idx = 0; idx < other.count; idx++) {
+            record(other.latencies[idx]);
+        }
+        errors += other.errors;
+    }
+
+    /**
+     * Summarizes the recorded calls, all latencies are reported in microseconds.
+     * @param elapsedNanos the (wall clock) time during which the calls were made
+     */
+    public Map<String, Object> summarize(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted) {
+            total += latency;
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("ops", count);
+        summary.put("errors", errors);
+        summary.put("throughput", elapsedNanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        summary.put("meanMicros", count == 0 ? 0 : toMicros(total / count));
+        summary.put("p50Micros", toMicros(percentile(sorted, 50)));
+        summary.put("p95Micros", toMicros(percentile(sorted, 95)));
+        summary.put("p99Micros", toMicros(percentile(sorted, 99)));
+        summary.put("maxMicros", count == 0 ? 0 : toMicros(sorted[count - 1]));
+        return summary;
+    }
+
+    /**
+     * Returns the given percentile (nearest rank) of the sorted latencies.
+     * @param sorted
+     * @param percentile
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.apicurio.hub.core.beans.ApiContentType;
+import io.apicurio.hub.core.beans.ApiDesign;
+import io.apicurio.hub.core.beans.ApiDesignCollaborator;
+import io.apicurio.hub.core.config.HubConfiguration;
+import io.apicurio.hub.core.storage.ApiDesignQuery;
+import io.apicurio.hub.core.storage.ApiDesignSort;
+import io.apicurio.hub.core.storage.IStorage;
+import io.apicurio.hub.core.storage.jdbc.H2SqlStatements;
+import io.apicurio.hub.core.storage.jdbc.ISqlStatements;
+import io.apicurio.hub.core.storage.jdbc.JdbcStorage;
+import io.apicurio.hub.core.storage.jdbc.PostgreSQL9SqlStatements;
+import io.apicurio.test.core.TestUtil;
+
+/**
+ * Benchmarks the JDBC storage against a realistic volume of data.  The database is first
+ * populated (API designs with a long command history, several collaborators and some tags),
+ * after which every storage operation is run by a number of concurrent threads for a fixed
+ * amount of time (after a warmup period), recording its throughput and latency.  Optionally
+ * a mixed workload is then run for a longer time (soak test), reporting throughput and
+ * latency per interval so that degradation over time shows up.  The results are written as
+ * JSON so that they can be compared between runs.
+ *
+ * @author eric.wittmann@gmail.com
+ */
+public class StorageBenchmark {
+
+    private static Logger logger = LoggerFactory.getLogger(StorageBenchmark.class);
+
+    private static final int PAGE_SIZE = 20;
+    private static final String[] TAGS = { "public", "internal", "beta", "pets", "store", "payments", "v1", "v2" };
+
+    private final BenchmarkConfig config;
+    private final BasicDataSource dataSource;
+    private final IStorage storage;
+    private final Map<String, Operation> readOperations = new LinkedHashMap<>();
+    private final Map<String, Operation> writeOperations = new LinkedHashMap<>();
+    private final List<String[]> designs = new ArrayList<>();
+    private String changeCursor;
+
+    /**
+     * Constructor.
+     * @param config
+     */
+    public StorageBenchmark(BenchmarkConfig config) {
+        this.config = config;
+
+        System.setProperty("apicurio.hub.storage.jdbc.type", config.getDatabase());
+        HubConfiguration hubConfig = new HubConfiguration();
+        ISqlStatements sqlStatements = "h2".equals(config.getDatabase()) ? new H2SqlStatements(hubConfig)
+                : new PostgreSQL9SqlStatements(hubConfig);
+
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName(config.getDriver());
+        dataSource.setUrl(config.getUrl());
+        dataSource.setUsername(config.getUser());
+        dataSource.setPassword(config.getPassword());
+        dataSource.setMaxActive(config.getThreads() * 2 + 2);
+
+        JdbcStorage jdbcStorage = new JdbcStorage();
+        TestUtil.setPrivateField(jdbcStorage, "config", hubConfig);
+        TestUtil.setPrivateField(jdbcStorage, "dataSource", dataSource);
+        TestUtil.setPrivateField(jdbcStorage, "sqlStatements", sqlStatements);
+        jdbcStorage.postConstruct();
+        this.storage = jdbcStorage;
+
+        registerOperations();
+    }
+
+    /**
+     * Closes the datasource.
+     * @throws Exception
+     */
+    public void close() throws Exception {
+        dataSource.close();
+    }
+
+    /**
+     * Runs the benchmark and writes the results to the configured output file.
+     * @throws Exception
+     */
+    public Map<String, Object> run() throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("timestamp", new Date());
+        results.put("config", config.toMap());
+        results.put("population", populate());
+        changeCursor = storage.getChangeCursor();
+
+        List<Map<String, Object>> operations = new ArrayList<>();
+        benchmark(readOperations, "read", operations);
+        benchmark(writeOperations, "write", operations);
+        results.put("operations", operations);
+
+        if (config.getSoak() > 0) {
+            results.put("soak", soak());
+        }
+
+        config.getOutput().getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(config.getOutput(), results);
+        logger.info("Benchmark results written to: {}", config.getOutput().getAbsolutePath());
+        return results;
+    }
+
+    /**
+     * Populates the database with the configured number of API designs, unless it already
+     * contains enough of them (and may be reused).
+     * @throws Exception
+     */
+    private Map<String, Object> populate() throws Exception {
+        loadDesigns();
+        Map<String, Object> population = new LinkedHashMap<>();
+        int missing = config.getDesigns() - designs.size();
+        if (missing <= 0 && config.isReuse()) {
+            logger.info("Reusing the {} existing API designs.", designs.size());
+            population.put("reused", true);
+            population.put("designs", designs.size());
+            return population;
+        }
+
+        logger.info("Creating {} API designs with {} commands each.", missing, config.getCommandsPerDesign());
+        AtomicLong rows = new AtomicLong();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(config.getThreads());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            int offset = designs.size();
+            for (int idx = 0; idx < missing; idx++) {
+                final int designIdx = offset + idx;
+                futures.add(executor.submit(() -> {
+                    rows.addAndGet(createDesign(designIdx));
+                    return null;
+                }));
+            }
+            int done = 0;
+            for (Future<?> future : futures) {
+                future.get();
+                if (++done % 1000 == 0) {
+                    logger.info("Created {} of {} API designs.", done, missing);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        loadDesigns();
+
+        population.put("reused", false);
+        population.put("designs", designs.size());
+        population.put("designsCreated", missing);
+        population.put("rowsCreated", rows.get());
+        population.put("millis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        population.put("rowsPerSecond", rows.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+        return population;
+    }
+
+    /**
+     * Creates a single (generated) API design along with its collaborators and command history.
+     * Returns the number of rows created.
+     * @param designIdx
+     * @throws Exception
+     */
+    private long createDesign(int designIdx) throws Exception {
+        Random random = ThreadLocalRandom.current();
+        String owner = user(designIdx);
+        ApiDesign design = new ApiDesign();
+        design.setName("API " + designIdx);
+        design.setDescription("Generated API design number " + designIdx);
+        design.setCreatedBy(owner);
+        design.setCreatedOn(new Date());
+        design.setTags(new HashSet<>(Arrays.asList(TAGS[random.nextInt(TAGS.length)], TAGS[random.nextInt(TAGS.length)])));
+        String designId = storage.createApiDesign(owner, design, document(designIdx));
+        long rows = 3;
+
+        for (int idx = 1; idx <= config.getCollaboratorsPerDesign(); idx++) {
+            storage.createPermission(designId, user(designIdx + idx), idx % 2 == 0 ? "owner" : "collaborator");
+            rows++;
+        }
+        for (int idx = 0; idx < config.getCommandsPerDesign(); idx++) {
+            storage.addContent(user(designIdx + random.nextInt(config.getCollaboratorsPerDesign() + 1)),
+                    designId, ApiContentType.Command, command(random));
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Loads the ids (and owners) of all API designs in the database.
+     * @throws Exception
+     */
+    private void loadDesigns() throws Exception {
+        designs.clear();
+        List<String> ids = storage.listApiDesignIds(null, 1000);
+        while (!ids.isEmpty()) {
+            for (String designId : ids) {
+                String owner = null;
+                for (ApiDesignCollaborator collaborator : storage.listPermissions(designId)) {
+                    if (owner == null || "owner".equals(collaborator.getRole())) {
+                        owner = collaborator.getUserId();
+                    }
+                }
+                if (owner != null) {
+                    designs.add(new String[] { designId, owner });
+                }
+            }
+            ids = storage.listApiDesignIds(ids.get(ids.size() - 1), 1000);
+        }
+    }
+
+    /**
+     * Benchmarks each of the given (selected) operations in turn.
+     * @param operations
+     * @param kind
+     * @param results
+     * @throws Exception
+     */
+    private void benchmark(Map<String, Operation> operations, String kind, List<Map<String, Object>> results) throws Exception {
+        for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+            if (!config.getOperations().isEmpty() && !config.getOperations().contains(operation.getKey())) {
+                continue;
+            }
+            logger.info("Benchmarking: {}", operation.getKey());
+            measure(operation.getValue(), config.getWarmup());
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("name", operation.getKey());
+            result.put("kind", kind);
+            result.putAll(measure(operation.getValue(), config.getDuration()));
+            logger.info("{}: {} ops, {} ops/s, p50 {}us, p99 {}us", operation.getKey(), result.get("ops"),
+                    String.format("%.1f", result.get("throughput")), result.get("p50Micros"), result.get("p99Micros"));
+            results.add(result);
+        }
+    }
+
+    /**
+     * Runs a mixed workload (80% reads, 20% writes) for the configured soak time, reporting the
+     * throughput and latency of every interval.
+     * @throws Exception
+     */
+    private List<Map<String, Object>> soak() throws Exception {
+        List<Operation> reads = new ArrayList<>(readOperations.values());
+        List<Operation> writes = new ArrayList<>(writeOperations.values());
+        Operation mixed = random -> {
+            List<Operation> pool = random.nextInt(100) < 80 ? reads : writes;
+            pool.get(random.nextInt(pool.size())).execute(random);
+        };
+        logger.info("Running the soak test for {} seconds.", config.getSoak());
+        List<Map<String, Object>> intervals = new ArrayList<>();
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(config.getSoak())) {
+            Map<String, Object> interval = new LinkedHashMap<>();
+            interval.put("second", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            interval.putAll(measure(mixed, config.getSoakInterval()));
+            logger.info("Soak @{}s: {} ops/s, p99 {}us", interval.get("second"),
+                    String.format("%.1f", interval.get("throughput")), interval.get("p99Micros"));
+            intervals.add(interval);
+        }
+        return intervals;
+    }
+
+    /**
+     * Calls an operation from the configured number of threads (as often as possible) for the
+     * given number of seconds, and returns a summary of the calls.
+     * @param operation
+     * @param seconds
+     * @throws Exception
+     */
+    private Map<String, Object> measure(Operation operation, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(config.getThreads());
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        long until = start + TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            for (int idx = 0; idx < config.getThreads(); idx++) {
+                futures.add(executor.submit(() -> {
+                    Random random = ThreadLocalRandom.current();
+                    LatencyRecorder recorder = new LatencyRecorder();
+                    long callStart = System.nanoTime();
+                    while (callStart < until) {
+                        try {
+                            operation.execute(random);
+                            recorder.record(System.nanoTime() - callStart);
+                        } catch (Exception e) {
+                            recorder.error();
+                            logger.debug("Storage operation failed.", e);
+                        }
+                        callStart = System.nanoTime();
+                    }
+                    return recorder;
+                }));
+            }
+            LatencyRecorder total = new LatencyRecorder();
+            for (Future<LatencyRecorder> future : futures) {
+                total.merge(future.get());
+            }
+            return total.summarize(System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Registers the storage operations to benchmark.
+     */
+    private void registerOperations() {
+        readOperations.put("getApiDesign", random -> {
+            String[] design = design(random);
+            storage.getApiDesign(design[1], design[0]);
+        });
+        readOperations.put("listApiDesigns", random -> storage.listApiDesigns(design(random)[1]));
+        readOperations.put("listApiDesigns.page", random -> {
+            ApiDesignQuery query = new ApiDesignQuery();
+            query.setSort(ApiDesignSort.values()[random.nextInt(ApiDesignSort.values().length)]);
+            query.setLimit(PAGE_SIZE);
+            storage.listApiDesigns(design(random)[1], query);
+        });
+        readOperations.put("listApiDesigns.tag", random -> {
+            ApiDesignQuery query = new ApiDesignQuery();
+            query.setTag(TAGS[random.nextInt(TAGS.length)]);
+            query.setLimit(PAGE_SIZE);
+            storage.listApiDesigns(design(random)[1], query);
+        });
+        readOperations.put("countApiDesignTags", random -> storage.countApiDesignTags(design(random)[1]));
+        readOperations.put("getRecentApiDesigns", random -> storage.getRecentApiDesigns(design(random)[1]));
+        readOperations.put("getLatestContentDocument", random -> {
+            String[] design = design(random);
+            storage.getLatestContentDocument(design[1], design[0]);
+        });
+        readOperations.put("getContentETag", random -> {
+            String[] design = design(random);
+            storage.getContentETag(design[1], design[0]);
+        });
+        readOperations.put("listContentCommands", random -> {
+            String[] design = design(random);
+            storage.listContentCommands(design[1], design[0], 0);
+        });
+        readOperations.put("listAllContentCommands", random -> {
+            String[] design = design(random);
+            storage.listAllContentCommands(design[1], design[0], 0);
+        });
+        readOperations.put("listPermissions", random -> storage.listPermissions(design(random)[0]));
+        readOperations.put("hasOwnerPermission", random -> {
+            String[] design = design(random);
+            storage.hasOwnerPermission(design[1], design[0]);
+        });
+        readOperations.put("hasWritePermission", random -> storage.hasWritePermission(user(random.nextInt(config.getUsers())), design(random)[0]));
+        readOperations.put("listContributors", random -> {
+            String[] design = design(random);
+            storage.listContributors(design[1], design[0]);
+        });
+        readOperations.put("listApiDesignActivity", random -> storage.listApiDesignActivity(design(random)[0], null, PAGE_SIZE));
+        readOperations.put("listUserActivity", random -> storage.listUserActivity(design(random)[1], null, PAGE_SIZE));
+        readOperations.put("listApiDesignPublications", random -> storage.listApiDesignPublications(design(random)[0], null, PAGE_SIZE));
+        readOperations.put("listCollaborationInvites", random -> {
+            String[] design = design(random);
+            storage.listCollaborationInvites(design[0], design[1]);
+        });
+        readOperations.put("listCodegenProjects", random -> {
+            String[] design = design(random);
+            storage.listCodegenProjects(design[1], design[0]);
+        });
+        readOperations.put("listApiDesignIds", random -> storage.listApiDesignIds(design(random)[0], 100));
+        readOperations.put("listAccessibleApiDesignIds", random -> storage.listAccessibleApiDesignIds(design(random)[1]));
+        readOperations.put("listApiDesignIdsChangedSince", random -> storage.listApiDesignIdsChangedSince(changeCursor));
+        readOperations.put("getChangeCursor", random -> storage.getChangeCursor());
+        readOperations.put("getCheckpoint", random -> storage.getCheckpoint("benchmark"));
+
+        writeOperations.put("addContent", random -> {
+            String[] design = design(random);
+            storage.addContent(design[1], design[0], ApiContentType.Command, command(random));
+        });
+        writeOperations.put("undoContent+redoContent", random -> {
+            String[] design = design(random);
+            long version = storage.addContent(design[1], design[0], ApiContentType.Command, command(random));
+            storage.undoContent(design[1], design[0], version);
+            storage.redoContent(design[1], design[0], version);
+        });
+        writeOperations.put("updateApiDesign", random -> {
+            String[] design = design(random);
+            ApiDesign update = new ApiDesign();
+            update.setId(design[0]);
+            update.setName("API " + design[0]);
+            update.setDescription("Updated at " + System.currentTimeMillis());
+            update.setTags(new HashSet<>(Collections.singleton(TAGS[random.nextInt(TAGS.length)])));
+            storage.updateApiDesign(design[1], update);
+        });
+        writeOperations.put("createPermission+deletePermission", random -> {
+            String designId = design(random)[0];
+            String userId = "benchmark-" + UUID.randomUUID();
+            storage.createPermission(designId, userId, "collaborator");
+            storage.deletePermission(designId, userId);
+        });
+        writeOperations.put("editingSessionUuid", random -> {
+            String[] design = design(random);
+            String uuid = UUID.randomUUID().toString();
+            storage.createEditingSessionUuid(uuid, design[0], design[1], "hash", 1, System.currentTimeMillis() + 60000);
+            storage.lookupEditingSessionUuid(uuid, design[0], design[1], "hash");
+            storage.consumeEditingSessionUuid(uuid, design[0], design[1], "hash");
+        });
+        writeOperations.put("createCollaborationInvite", random -> {
+            String[] design = design(random);
+            storage.createCollaborationInvite(UUID.randomUUID().toString(), design[0], design[1], design[1],
+                    "collaborator", "API " + design[0]);
+        });
+        writeOperations.put("setCheckpoint", random -> storage.setCheckpoint("benchmark", String.valueOf(random.nextLong())));
+        writeOperations.put("createApiDesign", random -> {
+            String owner = user(random.nextInt(config.getUsers()));
+            ApiDesign design = new ApiDesign();
+            design.setName("Benchmark API");
+            design.setCreatedBy(owner);
+            design.setCreatedOn(new Date());
+            storage.createApiDesign(owner, design, document(0));
+        });
+        writeOperations.put("compactContent", random -> storage.compactContent(design(random)[0], 1, null, true, 100));
+    }
+
+    /**
+     * Picks a random API design, returned as its id and the id of its owner.
+     * @param random
+     */
+    private String[] design(Random random) {
+        return designs.get(random.nextInt(designs.size()));
+    }
+
+    /**
+     * Returns the id of one of the (generated) users.
+     * @param idx
+     */
+    private String user(int idx) {
+        return "user-" + (idx % config.getUsers());
+    }
+
+    /**
+     * Generates an OpenAPI document of a realistic size.
+     * @param designIdx
+     */
+    private static String document(int designIdx) {
+        StringBuilder paths = new StringBuilder();
+        for (int idx = 0; idx < 10; idx++) {
+            if (idx > 0) {
+                paths.append(", ");
+            }
+            paths.append("\"/resources").append(idx).append("/{id}\": { \"get\": { \"summary\": \"Get resource ")
+                 .append(idx).append("\", \"parameters\": [ { \"name\": \"id\", \"in\": \"path\", \"required\": true, ")
+                 .append("\"schema\": { \"type\": \"string\" } } ], \"responses\": { \"200\": { \"description\": \"OK\" } } } }");
+        }
+        return "{ \"openapi\": \"3.0.0\", \"info\": { \"title\": \"API " + designIdx + "\", \"version\": \"1.0.0\" }, "
+                + "\"paths\": { " + paths + " } }";
+    }
+
+    /**
+     * Generates an editing command of a realistic size.
+     * @param random
+     */
+    private static String command(Random random) {
+        return "{ \"__type\": \"AddSchemaDefinitionCommand_30\", \"_newDefinitionName\": \"Schema" + random.nextInt(1000)
+                + "\", \"_newDefinitionObj\": { \"required\": [ \"name\" ], \"type\": \"object\", \"properties\": { "
+                + "\"name\": { \"type\": \"string\" }, \"address\": { \"$ref\": \"#/components/schemas/Address\" }, "
+                + "\"age\": { \"format\": \"int32\", \"minimum\": 0, \"type\": \"integer\" } } } }";
+    }
+
+    /**
+     * A single (benchmarked) call, or short sequence of calls, to the storage.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        void execute(Random random) throws Exception;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.tools.benchmark;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Runs the storage benchmark (see {@link StorageBenchmark} and the README for its options).
+ * @author eric.wittmann@gmail.com
+ */
+public class StorageBenchmarkTest {
+
+    static {
+        System.setProperty("org.slf4j.simpleLogger.logFile", "System.out");
+        // H2 1.3 can deadlock (LobStorageBackend vs. sequence flush) when many threads insert
+        // CLOB content at once, so keep LOBs out of the database unless told otherwise.
+        if (System.getProperty("h2.lobInDatabase") == null) {
+            System.setProperty("h2.lobInDatabase", "false");
+        }
+    }
+
+    @Test
+    public void testStorageBenchmark() throws Exception {
+        BenchmarkConfig config = BenchmarkConfig.fromSystemProperties();
+        Assume.assumeTrue("No JDBC url configured for database: " + config.getDatabase(), config.getUrl() != null);
+
+        StorageBenchmark benchmark = new StorageBenchmark(config);
+        try {
+            benchmark.run();
+        } finally {
+            benchmark.close();
+        }
+    }
+
+}